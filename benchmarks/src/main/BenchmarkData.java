@@ -0,0 +1,155 @@
+package main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * <b>BenchmarkData</b> loads the bundled OpenFlights files once per benchmark JVM and
+ * draws the fixed, seeded query sets the benchmarks run. The same seed always yields
+ * the same queries, so results of different builds can be compared.
+ *
+ * The data directory is taken from the system property pathfinder.data, "data" by
+ * default, so the benchmarks are normally run from the repository root.
+ *
+ * There is no representation invariant or abstraction function for this class. This
+ * is because BenchmarkData is never constructed and only contains static methods.
+ */
+public final class BenchmarkData {
+
+	/** The seed of every query set. */
+	public static final long SEED = 20240611L;
+
+	/** The number of queries in every query set. */
+	public static final int QUERY_COUNT = 256;
+
+	private static GraphSnapshot snapshot;
+	private static LandmarkIndex landmarks;
+	private static ContractionHierarchy hierarchy;
+
+	private BenchmarkData() {
+	}
+
+	/**
+	 * @param name The name of a file in the data directory.
+	 * @returns the path of that file.
+	 */
+	public static String file(String name) {
+		return System.getProperty("pathfinder.data", "data") + "/" + name;
+	}
+
+	/**
+	 * @returns the graph and airports parsed from airports-extended.csv and routes.csv.
+	 */
+	public static synchronized GraphSnapshot snapshot() {
+		if (snapshot == null) {
+			try {
+				snapshot = GraphSnapshot.fromCsv(file("airports-extended.csv"), file("routes.csv"));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @returns 16 landmarks of the graph of snapshot().
+	 */
+	public static synchronized LandmarkIndex landmarks() {
+		if (landmarks == null) {
+			landmarks = LandmarkIndex.build(snapshot().getGraph(), 16);
+		}
+		return landmarks;
+	}
+
+	/**
+	 * @returns the contraction hierarchy of the graph of snapshot().
+	 */
+	public static synchronized ContractionHierarchy hierarchy() {
+		if (hierarchy == null) {
+			hierarchy = ContractionHierarchy.build(snapshot().getGraph());
+		}
+		return hierarchy;
+	}
+
+	/**
+	 * <b>Distance</b> is a class of single-pair queries.
+	 */
+	public enum Distance {
+		/** Pairs joined by a route of at most two legs and under 2,000 km. */
+		SHORT,
+		/** Pairs whose shortest route is at least 10,000 km long. */
+		LONG,
+		/** Pairs with no route at all. */
+		UNREACHABLE
+	}
+
+	/**
+	 * @param graph The graph to draw queries from.
+	 * @param distance The class of queries to draw.
+	 * @returns QUERY_COUNT pairs of node indices of the given class, interleaved as
+	 * 	source, target, drawn with a Random seeded with SEED from the airports that
+	 * 	have routes.
+	 */
+	public static int[] pairs(RouteGraph graph, Distance distance) {
+		int[] served = servedAirports(graph);
+		Random random = new Random(SEED + distance.ordinal());
+		SearchWorkspace ws = new SearchWorkspace(graph.getNodeCount());
+		int[] pairs = new int[2 * QUERY_COUNT];
+		int count = 0;
+		while (count < QUERY_COUNT) {
+			int source = served[random.nextInt(served.length)];
+			int target = served[random.nextInt(served.length)];
+			if (source == target) {
+				continue;
+			}
+			boolean matches;
+			if (!graph.components().canReach(source, target)) {
+				matches = distance == Distance.UNREACHABLE;
+			} else if (distance == Distance.UNREACHABLE) {
+				matches = false;
+			} else {
+				PathFinder.dijkstra(graph, ws, source, target);
+				RoutePath path = RoutePath.fromWorkspace(ws, target);
+				matches = distance == Distance.SHORT
+						? path.getLegCount() <= 2 && path.getCost() < 2000.0
+						: path.getCost() >= 10000.0;
+			}
+			if (matches) {
+				pairs[2 * count] = source;
+				pairs[2 * count + 1] = target;
+				count++;
+			}
+		}
+		return pairs;
+	}
+
+	/**
+	 * @param graph The graph to draw origins from.
+	 * @returns QUERY_COUNT node indices of airports with routes, drawn with a Random
+	 * 	seeded with SEED.
+	 */
+	public static int[] origins(RouteGraph graph) {
+		int[] served = servedAirports(graph);
+		Random random = new Random(SEED);
+		int[] origins = new int[QUERY_COUNT];
+		for (int i = 0; i < origins.length; i++) {
+			origins[i] = served[random.nextInt(served.length)];
+		}
+		return origins;
+	}
+
+	// The airports with at least one departing route, in index order.
+	private static int[] servedAirports(RouteGraph graph) {
+		int[] served = new int[graph.getNodeCount()];
+		int count = 0;
+		for (int v = 0; v < graph.getNodeCount(); v++) {
+			if (graph.outDegree(v) > 0) {
+				served[count++] = v;
+			}
+		}
+		return Arrays.copyOf(served, count);
+	}
+
+}
@@ -0,0 +1,36 @@
+package main;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <b>BenchmarkMain</b> is the entry point of benchmarks.jar. It runs the JMH benchmarks
+ * selected on the command line, with the usual JMH options, and always with the GC
+ * profiler attached, so every result reports the bytes allocated per operation
+ * (gc.alloc.rate.norm) next to its latency.
+ *
+ * There is no representation invariant or abstraction function for this class. This
+ * is because BenchmarkMain is never constructed and only contains static methods.
+ */
+public final class BenchmarkMain {
+
+	private BenchmarkMain() {
+	}
+
+	/**
+	 * @param args JMH command line options, for example a benchmark name pattern.
+	 */
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,52 @@
+package main;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <b>CsvIngestBenchmark</b> times reading the bundled OpenFlights files: the chunked
+ * CsvParser on each file, the whole GraphSnapshot.fromCsv load that createNewGraph
+ * runs, and the original DataParser.readData for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CsvIngestBenchmark {
+
+	@Benchmark
+	public CsvParser.Airports parseAirports() throws IOException {
+		return CsvParser.readAirports(BenchmarkData.file("airports-extended.csv"));
+	}
+
+	@Benchmark
+	public CsvParser.Routes parseRoutes() throws IOException {
+		return CsvParser.readRoutes(BenchmarkData.file("routes.csv"));
+	}
+
+	@Benchmark
+	public GraphSnapshot loadCsv() throws IOException {
+		return GraphSnapshot.fromCsv(BenchmarkData.file("airports-extended.csv"), BenchmarkData.file("routes.csv"));
+	}
+
+	@Benchmark
+	public HashSet<ArrayList<String>> legacyReadData() throws IOException {
+		HashSet<ArrayList<String>> edges = new HashSet<>();
+		DataParser.readData(BenchmarkData.file("airports.csv"), BenchmarkData.file("routes.csv"),
+							new HashMap<>(), new HashMap<>(), edges);
+		return edges;
+	}
+
+}
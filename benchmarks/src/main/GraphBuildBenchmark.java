@@ -0,0 +1,99 @@
+package main;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <b>GraphBuildBenchmark</b> times building a graph from rows that are already parsed:
+ * a RouteGraph with its reverse and component indexes, fed through RouteGraph.Builder
+ * the way GraphSnapshot.fromCsv feeds it, and the original Graph of Nodes for
+ * comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class GraphBuildBenchmark {
+
+	private CsvParser.Airports airports;
+	private CsvParser.Routes routes;
+	private HashMap<String, ArrayList<String>> idToInfo;
+	private HashSet<ArrayList<String>> edges;
+
+	@Setup
+	public void parse() throws IOException {
+		airports = CsvParser.readAirports(BenchmarkData.file("airports-extended.csv"));
+		routes = CsvParser.readRoutes(BenchmarkData.file("routes.csv"));
+		idToInfo = new HashMap<>();
+		edges = new HashSet<>();
+		DataParser.readData(BenchmarkData.file("airports.csv"), BenchmarkData.file("routes.csv"),
+							new HashMap<>(), idToInfo, edges);
+		// DataParser splits quoted names at their commas, which shifts the coordinates
+		// of those rows; the original model could not load them either
+		idToInfo.values().removeIf(info -> !isNumber(info.get(2)) || !isNumber(info.get(3)));
+	}
+
+	private static boolean isNumber(String value) {
+		try {
+			Double.parseDouble(value);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	@Benchmark
+	public RouteGraph buildRouteGraph() {
+		RouteGraph.Builder builder = new RouteGraph.Builder(airports.size(), routes.size());
+		for (int i = 0; i < airports.size(); i++) {
+			builder.addNode(airports.id(i), airports.latitude(i), airports.longitude(i));
+		}
+		for (int i = 0; i < routes.size(); i++) {
+			int from = builder.indexOf(routes.sourceId(i));
+			int to = builder.indexOf(routes.destId(i));
+			if (from < 0 || to < 0) {
+				continue;
+			}
+			double distance = GreatCircle.distanceKm(builder.latitude(from), builder.longitude(from),
+													 builder.latitude(to), builder.longitude(to));
+			builder.addEdge(from, to, distance, builder.carrier(routes.airline(i)));
+		}
+		return builder.build();
+	}
+
+	@Benchmark
+	public Graph<String, Double> buildLegacyGraph() {
+		Graph<String, Double> graph = new Graph<>();
+		for (String id : idToInfo.keySet()) {
+			graph.addNode(id);
+		}
+		for (ArrayList<String> edge : edges) {
+			ArrayList<String> from = idToInfo.get(edge.get(0));
+			ArrayList<String> to = idToInfo.get(edge.get(1));
+			if (from == null || to == null) {
+				continue;
+			}
+			double dx = Double.parseDouble(from.get(2)) - Double.parseDouble(to.get(2));
+			double dy = Double.parseDouble(from.get(3)) - Double.parseDouble(to.get(3));
+			graph.addEdge(edge.get(0), edge.get(1), Math.hypot(dx, dy));
+		}
+		return graph;
+	}
+
+}
@@ -0,0 +1,101 @@
+package main;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <b>NameLookupBenchmark</b> times resolving what users type to an airport: cities,
+ * airport names, IATA and ICAO codes looked up in the AirportStore, and numeric ids
+ * resolved by the graph, and prefixes completed by the NameIndex. The keys are drawn
+ * with a seeded Random from the bundled airports; a quarter of them are misspelled so
+ * that misses, and the typo-tolerant completions they fall back to, are timed too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class NameLookupBenchmark {
+
+	private RouteGraph graph;
+	private AirportStore airports;
+	private String[] cities;
+	private String[] names;
+	private String[] codes;
+	private String[] ids;
+	private String[] prefixes;
+	private NameIndex index;
+	private NameIndex.Completions completions;
+	private int next;
+
+	@Setup
+	public void prepare() {
+		graph = BenchmarkData.snapshot().getGraph();
+		airports = BenchmarkData.snapshot().getAirports();
+		Random random = new Random(BenchmarkData.SEED);
+		int count = BenchmarkData.QUERY_COUNT;
+		cities = new String[count];
+		names = new String[count];
+		codes = new String[count];
+		ids = new String[count];
+		prefixes = new String[count];
+		for (int q = 0; q < count; q++) {
+			int i = random.nextInt(airports.size());
+			boolean miss = q % 4 == 3;
+			String suffix = miss ? "x" : "";
+			cities[q] = airports.city(i) + suffix;
+			names[q] = airports.name(i) + suffix;
+			String iata = airports.get(i, AirportStore.IATA);
+			codes[q] = (iata.isEmpty() ? airports.get(i, AirportStore.ICAO) : iata) + suffix;
+			ids[q] = miss ? "-" + graph.idOf(i) : graph.idOf(i);
+			String name = airports.name(i);
+			prefixes[q] = name.substring(0, 1 + random.nextInt(name.length())) + suffix;
+		}
+		index = new NameIndex(airports, graph);
+		completions = new NameIndex.Completions();
+	}
+
+	private int nextKey() {
+		int q = next;
+		next = (next + 1) % cities.length;
+		return q;
+	}
+
+	@Benchmark
+	public int byCity() {
+		return airports.indexOfCity(cities[nextKey()]);
+	}
+
+	@Benchmark
+	public int byName() {
+		return airports.indexOfName(names[nextKey()]);
+	}
+
+	@Benchmark
+	public int byCode() {
+		return airports.indexOfCode(codes[nextKey()]);
+	}
+
+	@Benchmark
+	public int byId() {
+		return graph.indexOf(ids[nextKey()]);
+	}
+
+	@Benchmark
+	public int completePrefix() {
+		return index.complete(prefixes[nextKey()], 10, completions);
+	}
+
+}
@@ -0,0 +1,79 @@
+package main;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <b>OneToAllBenchmark</b> times searches from one origin to every airport, over a
+ * seeded set of origins: a full Dijkstra search, which is also what a shortest-path
+ * tree of ShortestPathTreeCache costs, a two-leg hop-limited search, and the bounded
+ * reachability queries of Reachability, the leg query both on the calling thread and
+ * on the common pool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class OneToAllBenchmark {
+
+	private RouteGraph graph;
+	private SearchWorkspace ws;
+	private HopLimitedSearch hopSearch;
+	private int[] origins;
+	private int next;
+
+	@Setup
+	public void prepare() {
+		graph = BenchmarkData.snapshot().getGraph();
+		ws = new SearchWorkspace(graph.getNodeCount());
+		hopSearch = new HopLimitedSearch(graph.getNodeCount());
+		origins = BenchmarkData.origins(graph);
+	}
+
+	private int nextOrigin() {
+		int origin = origins[next];
+		next = (next + 1) % origins.length;
+		return origin;
+	}
+
+	@Benchmark
+	public int dijkstraToAll() {
+		PathFinder.dijkstra(graph, ws, nextOrigin(), -1);
+		return ws.getSettledCount();
+	}
+
+	@Benchmark
+	public int withinTwoLegs() {
+		hopSearch.search(graph, nextOrigin(), -1, 2, null, null);
+		return hopSearch.getScannedCount();
+	}
+
+	@Benchmark
+	public int reachableWithin2000Km() {
+		return Reachability.withinDistance(graph, ws, nextOrigin(), 2000.0).size();
+	}
+
+	@Benchmark
+	public int reachableWithinTwoLegs() {
+		return Reachability.withinLegs(graph, nextOrigin(), 2, null).size();
+	}
+
+	@Benchmark
+	public int reachableWithinTwoLegsParallel() {
+		return Reachability.withinLegs(graph, nextOrigin(), 2, ForkJoinPool.commonPool()).size();
+	}
+
+}
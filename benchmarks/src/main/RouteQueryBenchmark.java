@@ -0,0 +1,84 @@
+package main;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <b>RouteQueryBenchmark</b> times single-pair route queries in every query mode, over
+ * seeded sets of short, long and unreachable pairs. Each operation answers the next
+ * pair of the set the way AirlineModel.findRoute answers a cache miss: unreachable
+ * pairs are rejected by the component index, and the others are searched and turned
+ * into a RoutePath. The route caches are bypassed, so every operation is a search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RouteQueryBenchmark {
+
+	@Param({"SHORT", "LONG", "UNREACHABLE"})
+	public BenchmarkData.Distance distance;
+
+	@Param({"DIJKSTRA", "ASTAR", "ALT", "CH", "BIDIRECTIONAL"})
+	public QueryMode mode;
+
+	private RouteGraph graph;
+	private GreatCircle greatCircle;
+	private LandmarkIndex landmarks;
+	private ContractionHierarchy hierarchy;
+	private SearchWorkspace ws;
+	private SearchWorkspace reverseWs;
+	private int[] pairs;
+	private int next;
+
+	@Setup
+	public void prepare() {
+		graph = BenchmarkData.snapshot().getGraph();
+		greatCircle = new GreatCircle(graph);
+		landmarks = mode == QueryMode.ALT ? BenchmarkData.landmarks() : null;
+		hierarchy = mode == QueryMode.CH ? BenchmarkData.hierarchy() : null;
+		ws = new SearchWorkspace(graph.getNodeCount());
+		reverseWs = new SearchWorkspace(graph.getNodeCount());
+		pairs = BenchmarkData.pairs(graph, distance);
+	}
+
+	@Benchmark
+	public RoutePath route() {
+		int source = pairs[next];
+		int target = pairs[next + 1];
+		next = (next + 2) % pairs.length;
+		if (!graph.components().canReach(source, target)) {
+			return null;
+		}
+		switch (mode) {
+		case CH:
+			return hierarchy.findRoute(graph, ws, reverseWs, source, target);
+		case BIDIRECTIONAL:
+			int meeting = PathFinder.bidirectional(graph, ws, reverseWs, source, target);
+			return meeting < 0 ? null : RoutePath.fromMeeting(ws, reverseWs, meeting);
+		case ASTAR:
+			return PathFinder.aStar(graph, ws, source, target, greatCircle)
+					? RoutePath.fromWorkspace(ws, target) : null;
+		case ALT:
+			return PathFinder.aStar(graph, ws, source, target, landmarks)
+					? RoutePath.fromWorkspace(ws, target) : null;
+		default:
+			return PathFinder.dijkstra(graph, ws, source, target)
+					? RoutePath.fromWorkspace(ws, target) : null;
+		}
+	}
+
+}
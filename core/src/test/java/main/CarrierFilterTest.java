@@ -0,0 +1,92 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CarrierFilterTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void filteredSearchesMatchDijkstraOnTheAllowedRoutesAlone() {
+		AirlineModel model = TestData.load();
+		model.prepareLandmarks(8, directory.resolve("routes.landmarks").toString());
+		model.prepareHierarchy(directory.resolve("routes.ch").toString(), true);
+		RouteGraph graph = model.getGraph();
+		int n = graph.getNodeCount();
+		Random random = new Random(TestData.SEED);
+		SearchWorkspace ws = new SearchWorkspace(n);
+		List<String> skyTeamAndBa = new ArrayList<>(Alliance.SKYTEAM.getMembers());
+		skyTeamAndBa.add("BA");
+		CarrierFilter[] filters = {
+			model.allianceFilter(Alliance.STAR_ALLIANCE),
+			model.carrierFilter("oneworld"),
+			model.carrierFilter("SkyTeam, ba"),
+			model.carrierFilter("LH"),
+		};
+		List<List<String>> codes = List.of(Alliance.STAR_ALLIANCE.getMembers(), Alliance.ONEWORLD.getMembers(),
+										   skyTeamAndBa, List.of("LH"));
+		for (int f = 0; f < filters.length; f++) {
+			CarrierFilter filter = filters[f];
+			RouteGraph allowed = allowedRoutes(graph, new HashSet<>(codes.get(f)));
+			assertTrue(allowed.getEdgeCount() > 0 && allowed.getEdgeCount() < graph.getEdgeCount());
+			int[] origins = withRoutes(allowed);
+			int[] destinations = withRoutes(allowed.reverse());
+			for (int q = 0; q < 50; q++) {
+				int source = origins[random.nextInt(origins.length)];
+				int target = destinations[random.nextInt(destinations.length)];
+				boolean reachable = PathFinder.dijkstra(allowed, ws, source, target);
+				for (QueryMode mode : QueryMode.values()) {
+					RoutePath path = model.findRoute(graph.idOf(source), graph.idOf(target), mode, filter);
+					String query = "filter " + f + ", " + mode + " query " + q;
+					assertEquals(reachable, path != null, query);
+					if (path != null) {
+						assertEquals(ws.distance(target), path.getCost(), 1e-6, query);
+						for (int i = 1; i < path.getNodeCount(); i++) {
+							assertTrue(allowed.edgeTo(path.nodeAt(i - 1), path.nodeAt(i)) >= 0, query);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// The graph with the same nodes and only the routes flown by one of codes,
+	// read from the carrier sets without going through CarrierFilter.
+	private static RouteGraph allowedRoutes(RouteGraph graph, Set<String> codes) {
+		CarrierSets carriers = graph.carriers();
+		RouteGraph.Builder builder = new RouteGraph.Builder(graph.getNodeCount(), graph.getEdgeCount());
+		for (int i = 0; i < graph.getNodeCount(); i++) {
+			builder.addNode(graph.numericIdOf(i), graph.latitude(i), graph.longitude(i));
+		}
+		for (int u = 0; u < graph.getNodeCount(); u++) {
+			for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+				int set = graph.carrierSet(e);
+				for (int p = carriers.firstMember(set); p < carriers.endMember(set); p++) {
+					if (codes.contains(carriers.code(carriers.member(p)))) {
+						builder.addEdge(u, graph.target(e), graph.weight(e));
+						break;
+					}
+				}
+			}
+		}
+		return builder.build();
+	}
+
+	private static int[] withRoutes(RouteGraph graph) {
+		return IntStream.range(0, graph.getNodeCount()).filter(v -> graph.outDegree(v) > 0).toArray();
+	}
+
+}
@@ -0,0 +1,108 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import main.Centrality.Result;
+
+class CentralityTest {
+
+	@Test
+	void betweennessMatchesACountOverEveryPair() {
+		Random random = new Random(TestData.SEED);
+		ForkJoinPool one = new ForkJoinPool(1);
+		ForkJoinPool four = new ForkJoinPool(4);
+		try {
+			for (int g = 0; g < 5; g++) {
+				RouteGraph graph = randomGraph(random, 60 + random.nextInt(60));
+				int n = graph.getNodeCount();
+				Result sequential = Centrality.exact(graph, one);
+				Result parallel = Centrality.exact(graph, four);
+				double[] expected = pairCount(graph);
+				for (int v = 0; v < n; v++) {
+					double tolerance = 1e-6 * Math.max(1.0, expected[v]);
+					assertEquals(expected[v], sequential.betweenness(v), tolerance, "graph " + g + " node " + v);
+					assertEquals(expected[v], parallel.betweenness(v), tolerance, "graph " + g + " node " + v);
+					assertEquals(sequential.closeness(v), parallel.closeness(v), 1e-12, "graph " + g + " node " + v);
+				}
+			}
+		} finally {
+			one.shutdown();
+			four.shutdown();
+		}
+	}
+
+	// A random graph in which small whole weights make ties, and so several shortest
+	// routes, common.
+	private static RouteGraph randomGraph(Random random, int n) {
+		RouteGraph.Builder builder = new RouteGraph.Builder(n, 4 * n);
+		for (int v = 0; v < n; v++) {
+			builder.addNode(v, 0.0, 0.0);
+		}
+		for (int e = 0; e < 4 * n; e++) {
+			int u = random.nextInt(n);
+			int v = random.nextInt(n);
+			if (u != v) {
+				builder.addEdge(u, v, 1 + random.nextInt(3));
+			}
+		}
+		return builder.build();
+	}
+
+	// Betweenness by counting, for every ordered pair s, t, the shortest routes through
+	// each other node, from all-pairs distances and route counts.
+	private static double[] pairCount(RouteGraph graph) {
+		int n = graph.getNodeCount();
+		RouteGraph reverse = graph.reverse();
+		double[][] dist = new double[n][];
+		double[][] paths = new double[n][];
+		SearchWorkspace ws = new SearchWorkspace(n);
+		for (int s = 0; s < n; s++) {
+			PathFinder.dijkstra(graph, ws, s, -1);
+			dist[s] = new double[n];
+			paths[s] = new double[n];
+			for (int v = 0; v < n; v++) {
+				dist[s][v] = ws.isSettled(v) ? ws.distance(v) : Double.POSITIVE_INFINITY;
+			}
+			// count routes in order of distance; weights are positive
+			Integer[] order = new Integer[n];
+			for (int v = 0; v < n; v++) {
+				order[v] = v;
+			}
+			double[] d = dist[s];
+			Arrays.sort(order, (a, b) -> Double.compare(d[a], d[b]));
+			paths[s][s] = 1.0;
+			for (int w : order) {
+				if (w == s || d[w] == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				for (int e = reverse.firstEdge(w); e < reverse.endEdge(w); e++) {
+					int v = reverse.target(e);
+					if (d[v] + reverse.weight(e) == d[w]) {
+						paths[s][w] += paths[s][v];
+					}
+				}
+			}
+		}
+		double[] betweenness = new double[n];
+		for (int s = 0; s < n; s++) {
+			for (int t = 0; t < n; t++) {
+				if (s == t || dist[s][t] == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				for (int v = 0; v < n; v++) {
+					if (v != s && v != t && dist[s][v] + dist[v][t] == dist[s][t]) {
+						betweenness[v] += paths[s][v] * paths[v][t] / paths[s][t];
+					}
+				}
+			}
+		}
+		return betweenness;
+	}
+
+}
@@ -0,0 +1,75 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ContractionHierarchyTest {
+
+	private static RouteGraph graph;
+	private static ContractionHierarchy hierarchy;
+
+	@TempDir
+	Path directory;
+
+	@BeforeAll
+	static void contract() {
+		graph = TestData.model().getGraph();
+		hierarchy = ContractionHierarchy.build(graph);
+	}
+
+	@Test
+	void costsMatchDijkstraOnRandomPairs() {
+		assertSameAnswers(hierarchy, 2000);
+	}
+
+	@Test
+	void aSavedHierarchyLoadsOnlyForItsGraph() throws IOException {
+		File file = directory.resolve("routes.csv.ch").toFile();
+		hierarchy.save(file, graph.fingerprint());
+		assertNull(ContractionHierarchy.load(file, graph.fingerprint() + 1));
+		ContractionHierarchy loaded = ContractionHierarchy.load(file, graph.fingerprint());
+		assertNotNull(loaded);
+		assertEquals(hierarchy.getNodeCount(), loaded.getNodeCount());
+		assertEquals(hierarchy.getEdgeCount(), loaded.getEdgeCount());
+		assertSameAnswers(loaded, 200);
+	}
+
+	// Checks ch against PathFinder.dijkstra on seeded random pairs, including that the
+	// unpacked route follows real routes and adds up to its cost.
+	private static void assertSameAnswers(ContractionHierarchy ch, int pairs) {
+		Random random = new Random(TestData.SEED);
+		SearchWorkspace ws = new SearchWorkspace(graph.getNodeCount());
+		SearchWorkspace reverseWs = new SearchWorkspace(graph.getNodeCount());
+		SearchWorkspace reference = new SearchWorkspace(graph.getNodeCount());
+		for (int i = 0; i < pairs; i++) {
+			int s = random.nextInt(graph.getNodeCount());
+			int t = random.nextInt(graph.getNodeCount());
+			String pair = graph.idOf(s) + " --> " + graph.idOf(t);
+			RoutePath route = ch.findRoute(graph, ws, reverseWs, s, t);
+			boolean found = PathFinder.dijkstra(graph, reference, s, t);
+			assertEquals(found, route != null, pair);
+			if (found) {
+				assertEquals(reference.distance(t), route.getCost(), 1e-6, pair);
+				int[] nodes = route.toNodeArray();
+				double cost = 0.0;
+				for (int j = 1; j < nodes.length; j++) {
+					cost += graph.edgeWeight(nodes[j - 1], nodes[j]);
+				}
+				assertEquals(s, nodes[0], pair);
+				assertEquals(t, nodes[nodes.length - 1], pair);
+				assertEquals(route.getCost(), cost, 1e-6, pair);
+			}
+		}
+	}
+
+}
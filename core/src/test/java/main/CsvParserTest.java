@@ -0,0 +1,99 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CsvParserTest {
+
+	// the smallest chunk CsvParser splits a file into
+	private static final int CHUNK_BYTES = 1 << 20;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void quotedFieldsSurviveCommasQuotesLineEndingsAndChunkBoundaries() throws IOException {
+		StringBuilder csv = new StringBuilder();
+		List<String> names = new ArrayList<>();
+		List<String> cities = new ArrayList<>();
+		int bytes = 0;
+		boolean spanned = false;
+		// about three chunks of rows, one of which has its quoted name cut by the
+		// first chunk boundary
+		for (int id = 0; bytes < 3 * CHUNK_BYTES; id++) {
+			String pad = "";
+			if (!spanned && bytes + 200 > CHUNK_BYTES) {
+				pad = "x".repeat(300);
+				spanned = true;
+			}
+			String name = "Airport \"" + id + "\", Terminal " + pad;
+			// only even rows quote the city, so only they may have commas in it
+			String city = id % 6 == 0 ? "São Paulo, \"SP\"" : id % 3 == 0 ? "São Paulo" : "City " + id;
+			String prefix = id + ",\"" + name.replace("\"", "\"\"") + "\",";
+			if (pad.length() > 0) {
+				assertTrue(bytes + prefix.length() > CHUNK_BYTES && bytes + 3 < CHUNK_BYTES,
+						   "the boundary must fall inside the quoted name");
+			}
+			int rowStart = csv.length();
+			csv.append(prefix)
+			   .append(id % 2 == 0 ? "\"" + city.replace("\"", "\"\"") + "\"" : city)
+			   .append(",Country,")
+			   .append(id % 5 == 0 ? "\\N" : "A" + (id % 100))
+			   .append(",\"B").append(id % 1000).append("\",")
+			   .append('-').append(id % 90).append('.').append(id % 7).append(',')
+			   .append(id % 180).append(".25,0,U,\"Europe/Paris\",airport,OurAirports")
+			   .append(id % 4 == 0 ? "\r\n" : "\n");
+			bytes += csv.substring(rowStart).getBytes(StandardCharsets.UTF_8).length;
+			names.add(name);
+			cities.add(city);
+		}
+		assertTrue(spanned);
+		Path file = directory.resolve("airports.csv");
+		Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+		CsvParser.Airports airports = CsvParser.readAirports(file.toString());
+		assertEquals(names.size(), airports.size());
+		for (int i = 0; i < airports.size(); i++) {
+			assertEquals(i, airports.id(i));
+			assertEquals(names.get(i), airports.name(i), "row " + i);
+			assertEquals(cities.get(i), airports.city(i), "row " + i);
+			assertEquals(i % 5 == 0 ? "\\N" : "A" + (i % 100), airports.iata(i), "row " + i);
+			assertEquals("B" + (i % 1000), airports.icao(i), "row " + i);
+			assertEquals(-(i % 90 + (i % 7) / 10.0), airports.latitude(i), 1e-12, "row " + i);
+			assertEquals(i % 180 + 0.25, airports.longitude(i), 1e-12, "row " + i);
+		}
+	}
+
+	@Test
+	void routesWithoutKnownAirportsAreSkipped() throws IOException {
+		Path file = directory.resolve("routes.csv");
+		Files.write(file, ("AA,24,JFK,3797,LAX,3484,,0,738\r\n"
+				+ "\"B,6\",1,LHR,507,\\N,\\N,,0,320\n"
+				+ "\n"
+				+ "\\N,\\N,CDG,1382,FRA,340,Y,0,319\r\n"
+				+ "LUFT,3320,FRA,340,CDG,1382,,0,319").getBytes(StandardCharsets.UTF_8));
+
+		CsvParser.Routes routes = CsvParser.readRoutes(file.toString());
+		assertEquals(3, routes.size());
+		assertEquals(3797, routes.sourceId(0));
+		assertEquals(3484, routes.destId(0));
+		assertEquals(CarrierSets.pack("AA"), routes.airline(0));
+		assertEquals(1382, routes.sourceId(1));
+		assertEquals(340, routes.destId(1));
+		assertEquals(0, routes.airline(1));
+		assertEquals(340, routes.sourceId(2));
+		assertEquals(1382, routes.destId(2));
+		assertEquals(CarrierSets.pack("LUFT"), routes.airline(2));
+	}
+
+}
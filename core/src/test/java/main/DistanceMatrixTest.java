@@ -0,0 +1,52 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+class DistanceMatrixTest {
+
+	@Test
+	void matrixMatchesPointToPointSearches() {
+		RouteGraph graph = TestData.model().getGraph();
+		int size = 60;
+		Random random = new Random(TestData.SEED);
+		int[] origins = new int[size];
+		int[] destinations = new int[size];
+		for (int i = 0; i < size; i++) {
+			origins[i] = random.nextInt(graph.getNodeCount());
+			destinations[i] = random.nextInt(graph.getNodeCount());
+		}
+		double[] matrix = DistanceMatrix.compute(graph, origins, destinations, ForkJoinPool.commonPool());
+
+		SearchWorkspace reference = new SearchWorkspace(graph.getNodeCount());
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				boolean found = PathFinder.dijkstra(graph, reference, origins[i], destinations[j]);
+				double expected = found ? reference.distance(destinations[j]) : Double.POSITIVE_INFINITY;
+				assertEquals(expected, matrix[i * size + j], 1e-6, "cell " + i + ", " + j);
+			}
+		}
+	}
+
+	@Test
+	void streamDeliversEveryRowOnce() {
+		RouteGraph graph = TestData.model().getGraph();
+		int[] origins = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+		int[] destinations = {10, 11, 12};
+		int[] delivered = new int[origins.length];
+		DistanceMatrix.stream(graph, origins, destinations, ForkJoinPool.commonPool(), (origin, distances) -> {
+			synchronized (delivered) {
+				delivered[origin]++;
+			}
+			assertEquals(destinations.length, distances.length);
+		});
+		for (int count : delivered) {
+			assertEquals(1, count);
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class GraphDeltaTest {
+
+	@Test
+	void updatesMatchAGraphRebuiltFromScratch() {
+		AirlineModel model = TestData.load();
+		Random random = new Random(TestData.SEED);
+		RouteGraph graph = model.getGraph();
+		int nextId = 0;
+		for (int i = 0; i < graph.getNodeCount(); i++) {
+			nextId = Math.max(nextId, graph.numericIdOf(i) + 1);
+		}
+		int[] origins = new int[16];
+		for (int i = 0; i < origins.length; i++) {
+			origins[i] = random.nextInt(graph.getNodeCount());
+		}
+		List<int[]> asked = new ArrayList<>();
+		QueryMode[] modes = {QueryMode.DIJKSTRA, QueryMode.ASTAR, QueryMode.BIDIRECTIONAL};
+		for (int step = 0; step < 100; step++) {
+			graph = model.getGraph();
+			int n = graph.getNodeCount();
+			// queries from a few origins, asked again later, keep both caches warm
+			for (int q = 0; q < 20; q++) {
+				asked.add(new int[] {origins[random.nextInt(origins.length)], random.nextInt(n), q % modes.length});
+			}
+			int u = random.nextInt(n);
+			int v = random.nextInt(n);
+			int e = graph.outDegree(u) > 0 ? graph.firstEdge(u) + random.nextInt(graph.outDegree(u)) : -1;
+			int kind = random.nextInt(10);
+			if (kind < 4 && u != v) {
+				model.addRoute(graph.idOf(u), graph.idOf(v), random.nextBoolean() ? "ZZ" : "AA");
+			} else if (kind < 6 && e >= 0) {
+				model.removeRoute(graph.idOf(u), graph.idOf(graph.target(e)));
+			} else if (kind < 9 && e >= 0) {
+				double factor = 0.3 + 1.7 * random.nextDouble();
+				model.changeWeight(graph.idOf(u), graph.idOf(graph.target(e)), graph.weight(e) * factor);
+			} else {
+				model.addAirport(nextId, "Airport " + nextId, "City " + nextId, null, null,
+								 graph.latitude(u) + 0.5, graph.longitude(u) + 0.5);
+				model.addRoute(graph.idOf(u), Integer.toString(nextId), "ZZ");
+				model.addRoute(Integer.toString(nextId), graph.idOf(v), "ZZ");
+				nextId++;
+			}
+
+			graph = model.getGraph();
+			RouteGraph rebuilt = rebuild(graph);
+			assertEquals(rebuilt.getEdgeCount(), graph.getEdgeCount(), "step " + step);
+			assertEquals(rebuilt.fingerprint(), graph.fingerprint(), "step " + step);
+			assertEquals(rebuilt.reverse().fingerprint(), graph.reverse().fingerprint(), "step " + step);
+			SearchWorkspace ws = new SearchWorkspace(rebuilt.getNodeCount());
+			for (int q = Math.max(0, asked.size() - 200); q < asked.size(); q++) {
+				int[] query = asked.get(q);
+				RoutePath path = model.findRoute(graph.idOf(query[0]), graph.idOf(query[1]), modes[query[2]]);
+				double expected = PathFinder.dijkstra(rebuilt, ws, query[0], query[1])
+						? ws.distance(query[1]) : Double.POSITIVE_INFINITY;
+				double actual = path == null ? Double.POSITIVE_INFINITY : path.getCost();
+				assertEquals(expected, actual, 1e-6, "step " + step + " query " + q);
+			}
+		}
+		assertAirportsMatchRebuiltStore(model.getAirports());
+	}
+
+	// Checks that a store extended one airport at a time finds every airport the way a
+	// store built from scratch does.
+	private static void assertAirportsMatchRebuiltStore(AirportStore airports) {
+		AirportStore.Builder builder = new AirportStore.Builder(airports.size());
+		for (int i = 0; i < airports.size(); i++) {
+			builder.add(airports.get(i, AirportStore.NAME), airports.get(i, AirportStore.CITY),
+						airports.get(i, AirportStore.IATA), airports.get(i, AirportStore.ICAO));
+		}
+		AirportStore rebuilt = builder.build();
+		assertEquals(rebuilt.size(), airports.size());
+		for (int i = 0; i < airports.size(); i++) {
+			String name = airports.name(i);
+			String city = airports.city(i);
+			String iata = airports.get(i, AirportStore.IATA);
+			String icao = airports.get(i, AirportStore.ICAO);
+			assertEquals(rebuilt.indexOfName(name), airports.indexOfName(name), name);
+			assertEquals(rebuilt.indexOfCity(city), airports.indexOfCity(city), city);
+			assertEquals(rebuilt.indexOfCode(iata), airports.indexOfCode(iata), iata);
+			assertEquals(rebuilt.indexOfCode(icao), airports.indexOfCode(icao), icao);
+		}
+	}
+
+	@Test
+	void airportIdsFarPastTheIdIndexAreRejected() {
+		AirlineModel model = TestData.load();
+		int limit = model.getGraph().getIdLimit();
+		for (int id : new int[] {-1, limit, 2_000_000_000}) {
+			assertThrows(IllegalArgumentException.class,
+						 () -> model.addAirport(id, "Airport", "City", null, null, 0.0, 0.0), "id " + id);
+		}
+		model.addAirport(limit - 1, "Airport", "City", null, null, 0.0, 0.0);
+		assertEquals(model.getGraph().getNodeCount() - 1, model.getGraph().indexOf(limit - 1));
+	}
+
+	private static RouteGraph rebuild(RouteGraph graph) {
+		RouteGraph.Builder builder = new RouteGraph.Builder(graph.getNodeCount(), graph.getEdgeCount());
+		for (int i = 0; i < graph.getNodeCount(); i++) {
+			builder.addNode(graph.numericIdOf(i), graph.latitude(i), graph.longitude(i));
+		}
+		for (int u = 0; u < graph.getNodeCount(); u++) {
+			for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+				builder.addEdge(u, graph.target(e), graph.weight(e));
+			}
+		}
+		return builder.build();
+	}
+
+}
@@ -0,0 +1,117 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GraphSnapshotTest {
+
+	@TempDir
+	Path directory;
+
+	private String nodeFile;
+	private String edgeFile;
+	private File file;
+	private GraphSnapshot parsed;
+
+	// Copies the CSV files, which the staleness tests touch, and snapshots the copies.
+	@BeforeEach
+	void save() throws IOException {
+		Path nodes = directory.resolve("airports.csv");
+		Path edges = directory.resolve("routes.csv");
+		Files.copy(Paths.get(TestData.AIRPORTS), nodes);
+		Files.copy(Paths.get(TestData.ROUTES), edges);
+		nodeFile = nodes.toString();
+		edgeFile = edges.toString();
+		file = directory.resolve("routes.snapshot").toFile();
+		parsed = GraphSnapshot.fromCsv(nodeFile, edgeFile);
+		parsed.save(file, nodeFile, edgeFile);
+	}
+
+	@Test
+	void openedSnapshotsMatchTheParsedOne() throws IOException {
+		GraphSnapshot opened = GraphSnapshot.open(file, nodeFile, edgeFile);
+		assertNotNull(opened);
+		RouteGraph graph = opened.getGraph();
+		assertEquals(parsed.getGraph().fingerprint(), graph.fingerprint());
+		assertEquals(parsed.getGraph().getNodeCount(), graph.getNodeCount());
+		AirportStore airports = opened.getAirports();
+		assertEquals(parsed.getAirports().size(), airports.size());
+		for (int i = 0; i < airports.size(); i++) {
+			assertEquals(parsed.getGraph().numericIdOf(i), graph.numericIdOf(i));
+			assertEquals(parsed.getGraph().latitude(i), graph.latitude(i), 0.0);
+			assertEquals(parsed.getGraph().longitude(i), graph.longitude(i), 0.0);
+			for (int field = AirportStore.NAME; field <= AirportStore.ICAO; field++) {
+				assertEquals(parsed.getAirports().get(i, field), airports.get(i, field), "airport " + i);
+			}
+		}
+
+		AirlineModel model = new AirlineModel();
+		assertTrue(model.loadGraph(file.toString(), nodeFile, edgeFile));
+		assertEquals(parsed.getGraph().fingerprint(), model.getGraph().fingerprint());
+	}
+
+	@Test
+	void corruptSnapshotsAreRejected() throws IOException {
+		try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+			// one flipped byte in the middle of the payload
+			long at = out.length() / 2;
+			out.seek(at);
+			int b = out.read();
+			out.seek(at);
+			out.write(b ^ 0x01);
+		}
+		assertNull(GraphSnapshot.open(file, nodeFile, edgeFile));
+		assertFallsBackToCsv();
+	}
+
+	@Test
+	void snapshotsOfAnotherVersionAreRejected() throws IOException {
+		try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+			// the version is the little-endian int after the magic number
+			out.seek(4);
+			out.write(0x7f);
+		}
+		assertNull(GraphSnapshot.open(file, nodeFile, edgeFile));
+		assertFallsBackToCsv();
+	}
+
+	@Test
+	void snapshotsOfChangedCsvFilesAreRejected() throws IOException {
+		File nodes = new File(nodeFile);
+		assertTrue(nodes.setLastModified(nodes.lastModified() - 60_000));
+		assertNull(GraphSnapshot.open(file, nodeFile, edgeFile));
+		assertFallsBackToCsv();
+
+		parsed.save(file, nodeFile, edgeFile);
+		assertNotNull(GraphSnapshot.open(file, nodeFile, edgeFile));
+		long modified = new File(edgeFile).lastModified();
+		Files.write(Paths.get(edgeFile), "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		// only the size tells the route file apart
+		assertTrue(new File(edgeFile).setLastModified(modified));
+		assertNull(GraphSnapshot.open(file, nodeFile, edgeFile));
+		assertFallsBackToCsv();
+	}
+
+	private void assertFallsBackToCsv() {
+		AirlineModel model = new AirlineModel();
+		assertFalse(model.loadGraph(file.toString(), nodeFile, edgeFile));
+		assertEquals(parsed.getGraph().fingerprint(), model.getGraph().fingerprint());
+	}
+
+}
@@ -0,0 +1,86 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class HopLimitedSearchTest {
+
+	@Test
+	void distancesMatchLayeredBellmanFord() {
+		RouteGraph graph = TestData.model().getGraph();
+		int n = graph.getNodeCount();
+		GreatCircle greatCircle = new GreatCircle(graph);
+		HopLimitedSearch search = new HopLimitedSearch(n);
+		Random random = new Random(TestData.SEED);
+		for (int q = 0; q < 200; q++) {
+			int source = random.nextInt(n);
+			int target = random.nextInt(n);
+			int maxLegs = q < 190 ? 1 + q % 6 : HopLimitedSearch.MAX_LEGS;
+			boolean found = search.search(graph, source, target, maxLegs, greatCircle, null);
+			double expected = bellmanFord(graph, source, maxLegs)[target];
+			double actual = found ? search.distance(target) : Double.POSITIVE_INFINITY;
+			assertEquals(expected, actual, 1e-6, "query " + q);
+			if (found) {
+				assertRoute(graph, search.path(target), source, target, maxLegs);
+			}
+		}
+	}
+
+	@Test
+	void searchWithoutTargetReachesEveryNodeWithinTheLimit() {
+		RouteGraph graph = TestData.model().getGraph();
+		int n = graph.getNodeCount();
+		HopLimitedSearch search = new HopLimitedSearch(n);
+		Random random = new Random(TestData.SEED);
+		for (int q = 0; q < 20; q++) {
+			int source = random.nextInt(n);
+			int maxLegs = 1 + q % 4;
+			search.search(graph, source, -1, maxLegs, null, null);
+			double[] expected = bellmanFord(graph, source, maxLegs);
+			for (int v = 0; v < n; v++) {
+				assertEquals(expected[v] < Double.POSITIVE_INFINITY, search.isReached(v), "query " + q);
+				if (search.isReached(v)) {
+					assertEquals(expected[v], search.distance(v), 1e-6, "query " + q);
+					assertRoute(graph, search.path(v), source, v, maxLegs);
+				}
+			}
+		}
+	}
+
+	// Distances from source using at most maxLegs legs, relaxing every edge once per leg.
+	private static double[] bellmanFord(RouteGraph graph, int source, int maxLegs) {
+		int n = graph.getNodeCount();
+		double[] previous = new double[n];
+		double[] current = new double[n];
+		Arrays.fill(previous, Double.POSITIVE_INFINITY);
+		previous[source] = 0.0;
+		for (int layer = 0; layer < maxLegs; layer++) {
+			System.arraycopy(previous, 0, current, 0, n);
+			for (int u = 0; u < n; u++) {
+				for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+					current[graph.target(e)] = Math.min(current[graph.target(e)], previous[u] + graph.weight(e));
+				}
+			}
+			System.arraycopy(current, 0, previous, 0, n);
+		}
+		return previous;
+	}
+
+	private static void assertRoute(RouteGraph graph, RoutePath path, int source, int target, int maxLegs) {
+		int[] nodes = path.toNodeArray();
+		double cost = 0.0;
+		for (int i = 1; i < nodes.length; i++) {
+			cost += graph.edgeWeight(nodes[i - 1], nodes[i]);
+		}
+		assertEquals(source, nodes[0]);
+		assertEquals(target, nodes[nodes.length - 1]);
+		assertTrue(path.getLegCount() <= maxLegs);
+		assertEquals(path.getCost(), cost, 1e-6);
+	}
+
+}
@@ -0,0 +1,105 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+class KShortestPathsTest {
+
+	@Test
+	void routesAreDistinctLooplessAndInOrder() {
+		RouteGraph graph = TestData.model().getGraph();
+		Random random = new Random(TestData.SEED);
+		SearchWorkspace reference = new SearchWorkspace(graph.getNodeCount());
+		for (int q = 0; q < 100; q++) {
+			int source = random.nextInt(graph.getNodeCount());
+			int target = random.nextInt(graph.getNodeCount());
+			List<RoutePath> paths = KShortestPaths.find(graph, source, target, 10, ForkJoinPool.commonPool());
+			boolean reachable = PathFinder.dijkstra(graph, reference, source, target);
+			assertEquals(reachable, !paths.isEmpty(), "query " + q);
+			if (reachable) {
+				assertEquals(reference.distance(target), paths.get(0).getCost(), 1e-6, "query " + q);
+			}
+			HashSet<IntBuffer> distinct = new HashSet<>();
+			double last = 0.0;
+			for (RoutePath path : paths) {
+				int[] nodes = path.toNodeArray();
+				double cost = 0.0;
+				HashSet<Integer> visited = new HashSet<>();
+				for (int i = 0; i < nodes.length; i++) {
+					visited.add(nodes[i]);
+					cost += i > 0 ? graph.edgeWeight(nodes[i - 1], nodes[i]) : 0.0;
+				}
+				assertEquals(source, nodes[0]);
+				assertEquals(target, nodes[nodes.length - 1]);
+				assertEquals(nodes.length, visited.size(), "route has a loop");
+				assertEquals(cost, path.getCost(), 1e-6);
+				assertTrue(path.getCost() >= last - 1e-6, "routes out of order");
+				assertTrue(distinct.add(IntBuffer.wrap(nodes)), "route repeated");
+				last = path.getCost();
+			}
+		}
+	}
+
+	@Test
+	void costsMatchEveryLooplessRouteOfASmallGraph() {
+		Random random = new Random(TestData.SEED);
+		for (int g = 0; g < 20; g++) {
+			int n = 8;
+			RouteGraph.Builder builder = new RouteGraph.Builder(n, 24);
+			for (int v = 0; v < n; v++) {
+				builder.addNode(v, 0.0, 0.0);
+			}
+			for (int i = 0; i < 24; i++) {
+				int u = random.nextInt(n);
+				int v = random.nextInt(n);
+				if (u != v) {
+					builder.addEdge(u, v, 1 + random.nextInt(20));
+				}
+			}
+			RouteGraph graph = builder.build();
+			for (int source = 0; source < n; source++) {
+				for (int target = 0; target < n; target++) {
+					if (source == target) {
+						continue;
+					}
+					List<Double> all = new ArrayList<>();
+					enumerate(graph, source, target, new boolean[n], 0.0, all);
+					Collections.sort(all);
+					List<RoutePath> paths = KShortestPaths.find(graph, source, target, 10, ForkJoinPool.commonPool());
+					String query = "graph " + g + ", " + source + " to " + target;
+					assertEquals(Math.min(10, all.size()), paths.size(), query);
+					for (int i = 0; i < paths.size(); i++) {
+						assertEquals(all.get(i), paths.get(i).getCost(), 1e-9, query);
+					}
+				}
+			}
+		}
+	}
+
+	// Adds the cost of every loopless route from u to target to costs, by depth-first search.
+	private static void enumerate(RouteGraph graph, int u, int target, boolean[] onRoute, double cost,
+								  List<Double> costs) {
+		if (u == target) {
+			costs.add(cost);
+			return;
+		}
+		onRoute[u] = true;
+		for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+			if (!onRoute[graph.target(e)]) {
+				enumerate(graph, graph.target(e), target, onRoute, cost + graph.weight(e), costs);
+			}
+		}
+		onRoute[u] = false;
+	}
+
+}
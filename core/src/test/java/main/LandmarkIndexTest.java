@@ -0,0 +1,47 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LandmarkIndexTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void countsAboveTheRoutedAirportsAreClamped() throws IOException {
+		// a triangle of routes and two airports without any
+		RouteGraph.Builder builder = new RouteGraph.Builder(5, 3);
+		for (int v = 0; v < 5; v++) {
+			builder.addNode(v, v, v);
+		}
+		builder.addEdge(0, 1, 1.0);
+		builder.addEdge(1, 2, 1.0);
+		builder.addEdge(2, 0, 1.0);
+		RouteGraph graph = builder.build();
+		assertEquals(2, LandmarkIndex.landmarkCount(graph, 2));
+		assertEquals(3, LandmarkIndex.landmarkCount(graph, LandmarkIndex.MAX_LANDMARKS));
+
+		LandmarkIndex index = LandmarkIndex.build(graph, LandmarkIndex.MAX_LANDMARKS);
+		assertEquals(3, index.getLandmarkCount());
+		File file = directory.resolve("routes.landmarks").toFile();
+		index.save(file, graph.fingerprint());
+		LandmarkIndex loaded = LandmarkIndex.load(file, graph, graph.fingerprint());
+		assertNotNull(loaded);
+		// what prepareLandmarks compares to decide the saved tables can be reused
+		assertEquals(LandmarkIndex.landmarkCount(graph, LandmarkIndex.MAX_LANDMARKS), loaded.getLandmarkCount());
+		for (int v = 0; v < 3; v++) {
+			for (int t = 0; t < 3; t++) {
+				assertEquals(index.estimate(v, t), loaded.estimate(v, t), 0.0);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import main.Metrics.Outcome;
+
+class MetricsTest {
+
+	@Test
+	void histogramQuantilesAreCloseToExactOnes() {
+		Random random = new Random(TestData.SEED);
+		LogHistogram histogram = new LogHistogram();
+		long[] values = new long[100000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long) Math.exp(random.nextDouble() * 30);
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+		for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999}) {
+			long exact = values[(int) Math.ceil(quantile * values.length) - 1];
+			double error = Math.abs(histogram.getValueAtQuantile(quantile) - exact) / (double) exact;
+			assertTrue(error < 0.125, "quantile " + quantile + " off by " + error);
+		}
+	}
+
+	@Test
+	void everyQueryIsRecordedOnlyWhileEnabled() {
+		AirlineModel model = TestData.load();
+		Metrics metrics = model.getMetrics();
+		RouteGraph graph = model.getGraph();
+		Random random = new Random(TestData.SEED);
+		QueryMode[] modes = {QueryMode.DIJKSTRA, QueryMode.ASTAR, QueryMode.BIDIRECTIONAL};
+		int queries = 600;
+		for (int round = 0; round < 2; round++) {
+			metrics.setEnabled(round == 1);
+			for (int q = 0; q < queries; q++) {
+				model.findRoute(graph.idOf(random.nextInt(graph.getNodeCount())),
+						graph.idOf(random.nextInt(graph.getNodeCount())), modes[q % modes.length]);
+			}
+		}
+		long recorded = 0;
+		for (Outcome outcome : Outcome.values()) {
+			recorded += metrics.getOutcomeCount(outcome);
+		}
+		assertEquals(queries, recorded);
+	}
+
+}
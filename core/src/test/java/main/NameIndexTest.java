@@ -0,0 +1,99 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import main.NameIndex.Completions;
+
+class NameIndexTest {
+
+	@Test
+	void completionsMatchAScanOfEveryAttributeAndWord() {
+		AirlineModel model = TestData.model();
+		RouteGraph graph = model.getGraph();
+		AirportStore store = model.getAirports();
+		NameIndex index = new NameIndex(store, graph);
+		int[] ranks = new int[store.size()];
+		for (int a = 0; a < ranks.length; a++) {
+			ranks[a] = graph.outDegree(a) + graph.reverse().outDegree(a);
+		}
+		Random random = new Random(TestData.SEED);
+		Completions out = new Completions();
+		long[] expected = new long[store.size()];
+		for (int q = 0; q < 300; q++) {
+			String value = "";
+			while (value.isEmpty()) {
+				value = store.get(random.nextInt(store.size()), random.nextInt(4));
+			}
+			String prefix = value.substring(0, 1 + random.nextInt(value.length()));
+			int found = index.complete(prefix, 10, out);
+			if (out.isFuzzy()) {
+				continue;
+			}
+
+			// the scores of the results must be the best scores of a scan, in order
+			String folded = NameIndex.fold(prefix.trim());
+			int matching = 0;
+			for (int a = 0; a < store.size(); a++) {
+				long score = -1;
+				for (int field = 0; field < 4; field++) {
+					String text = store.get(a, field);
+					for (int from = 0; from < text.length(); from = NameIndex.nextWord(text, from)) {
+						String key = NameIndex.fold(text.substring(from));
+						if (key.startsWith(folded)) {
+							boolean exact = from == 0 && key.length() == folded.length();
+							score = Math.max(score, ((exact ? 1L : 0L) << 32) | ranks[a]);
+						}
+					}
+				}
+				if (score >= 0) {
+					expected[matching++] = score;
+				}
+			}
+			Arrays.sort(expected, 0, matching);
+			assertEquals(Math.min(10, matching), found, "query " + prefix);
+			for (int i = 0; i < found; i++) {
+				long exact = hasExactKey(store, out.airport(i), folded) ? 1L << 32 : 0L;
+				assertEquals(expected[matching - 1 - i], exact | ranks[out.airport(i)], "query " + prefix);
+			}
+		}
+	}
+
+	@Test
+	void citiesAreListedOncePerSpelling() {
+		AirportStore.Builder airports = new AirportStore.Builder(5);
+		airports.add("Guarulhos", "São Paulo", "GRU", "SBGR");
+		airports.add("Congonhas", "São Paulo", "CGH", "SBSP");
+		airports.add("Viracopos", "Sao Paulo", "VCP", "SBKP");
+		airports.add("Campo de Marte", "SAO PAULO", "", "SBMT");
+		airports.add("Galeão", "Rio de Janeiro", "GIG", "SBGL");
+		RouteGraph.Builder graph = new RouteGraph.Builder(5, 0);
+		for (int v = 0; v < 5; v++) {
+			graph.addNode(v, 0.0, 0.0);
+		}
+		AirportStore store = airports.build();
+		NameIndex index = new NameIndex(store, graph.build());
+		List<String> cities = new ArrayList<>();
+		for (int e = index.nextCity(0); e >= 0; e = index.nextCity(e + 1)) {
+			cities.add(store.city(index.airport(e)));
+		}
+		cities.sort(null);
+		assertEquals(List.of("Rio de Janeiro", "SAO PAULO", "Sao Paulo", "São Paulo"), cities);
+	}
+
+	private static boolean hasExactKey(AirportStore store, int a, String folded) {
+		for (int field = 0; field < 4; field++) {
+			if (NameIndex.fold(store.get(a, field)).equals(folded)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
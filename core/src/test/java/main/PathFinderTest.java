@@ -0,0 +1,133 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PathFinderTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void areaRoutesMatchTheBestPairwiseRoute() {
+		AirlineModel model = TestData.model();
+		RouteGraph graph = model.getGraph();
+		int n = graph.getNodeCount();
+		SpatialIndex index = new SpatialIndex(graph);
+		SearchWorkspace ws = new SearchWorkspace(n);
+		Random random = new Random(TestData.SEED);
+		for (int q = 0; q < 40; q++) {
+			// areas around airports, so that neither is empty
+			int a = random.nextInt(n);
+			int b = random.nextInt(n);
+			double radius1 = 100 + random.nextInt(500);
+			double radius2 = 100 + random.nextInt(500);
+			int[] sources = index.within(graph.latitude(a), graph.longitude(a), radius1);
+			int[] targets = index.within(graph.latitude(b), graph.longitude(b), radius2);
+			double best = Double.POSITIVE_INFINITY;
+			for (int source : sources) {
+				PathFinder.dijkstra(graph, ws, source, -1);
+				for (int target : targets) {
+					if (ws.isSettled(target)) {
+						best = Math.min(best, ws.distance(target));
+					}
+				}
+			}
+			RoutePath route = model.findRouteBetweenAreas(graph.latitude(a), graph.longitude(a), radius1,
+														  graph.latitude(b), graph.longitude(b), radius2);
+			assertEquals(best < Double.POSITIVE_INFINITY, route != null, "query " + q);
+			if (route != null) {
+				assertEquals(best, route.getCost(), 1e-6, "query " + q);
+				int[] nodes = route.toNodeArray();
+				double cost = 0.0;
+				for (int i = 1; i < nodes.length; i++) {
+					cost += graph.edgeWeight(nodes[i - 1], nodes[i]);
+				}
+				assertEquals(route.getCost(), cost, 1e-6, "query " + q);
+				assertTrue(contains(sources, nodes[0]), "query " + q);
+				assertTrue(contains(targets, nodes[nodes.length - 1]), "query " + q);
+			}
+		}
+	}
+
+	@Test
+	void aStarMatchesDijkstraAfterRoutesGetShorter() {
+		AirlineModel model = TestData.load();
+		Random random = new Random(TestData.SEED);
+		assertSameCosts(model, QueryMode.ASTAR, random, 200, -1);
+		for (int step = 0; step < 20; step++) {
+			// well below the great-circle distance, which the bound must be scaled for
+			int origin = changeRouteFrom(model, random, 0.1 + 0.5 * random.nextDouble());
+			assertSameCosts(model, QueryMode.ASTAR, random, 20, origin);
+		}
+	}
+
+	@Test
+	void altMatchesDijkstraWithKeptAndDroppedLandmarks() {
+		AirlineModel model = TestData.load();
+		model.prepareLandmarks(16, directory.resolve("routes.landmarks").toString());
+		Random random = new Random(TestData.SEED);
+		assertSameCosts(model, QueryMode.ALT, random, 200, -1);
+		// routes that only get longer keep the landmark tables, which stay lower bounds
+		for (int step = 0; step < 20; step++) {
+			int origin = changeRouteFrom(model, random, 1.5 + 2 * random.nextDouble());
+			assertTrue(model.hasLandmarks());
+			assertSameCosts(model, QueryMode.ALT, random, 20, origin);
+		}
+		for (int step = 0; step < 20; step++) {
+			int origin = changeRouteFrom(model, random, 0.1 + 0.5 * random.nextDouble());
+			assertSameCosts(model, QueryMode.ALT, random, 20, origin);
+		}
+	}
+
+	// Changes the length of a random route to factor times its length and returns its origin.
+	private static int changeRouteFrom(AirlineModel model, Random random, double factor) {
+		RouteGraph graph = model.getGraph();
+		int u;
+		do {
+			u = random.nextInt(graph.getNodeCount());
+		} while (graph.outDegree(u) == 0);
+		int e = graph.firstEdge(u) + random.nextInt(graph.outDegree(u));
+		model.changeWeight(graph.idOf(u), graph.idOf(graph.target(e)), factor * graph.weight(e));
+		return u;
+	}
+
+	// Compares the cost of queries in mode with Dijkstra on the current graph. Half of
+	// them start at origin, or at a random airport with routes if origin is -1, so that
+	// they mostly have a route.
+	private static void assertSameCosts(AirlineModel model, QueryMode mode, Random random, int queries,
+										int origin) {
+		RouteGraph graph = model.getGraph();
+		int n = graph.getNodeCount();
+		SearchWorkspace ws = new SearchWorkspace(n);
+		for (int q = 0; q < queries; q++) {
+			int source = q % 2 == 0 ? origin : -1;
+			while (source < 0 || (q % 2 == 0 && graph.outDegree(source) == 0)) {
+				source = random.nextInt(n);
+			}
+			int target = random.nextInt(n);
+			boolean found = PathFinder.dijkstra(graph, ws, source, target);
+			RoutePath path = model.findRoute(graph.idOf(source), graph.idOf(target), mode);
+			assertEquals(found, path != null, mode + " query " + q);
+			if (found) {
+				assertEquals(ws.distance(target), path.getCost(), 1e-6, mode + " query " + q);
+			}
+		}
+	}
+
+	private static boolean contains(int[] nodes, int node) {
+		for (int v : nodes) {
+			if (v == node) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,129 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import main.Reachability.ReachableSet;
+
+class ReachabilityTest {
+
+	@Test
+	void withinDistanceMatchesAFullSearch() {
+		RouteGraph graph = TestData.model().getGraph();
+		int n = graph.getNodeCount();
+		Random random = new Random(TestData.SEED);
+		SearchWorkspace ws = new SearchWorkspace(n);
+		SearchWorkspace full = new SearchWorkspace(n);
+		for (int q = 0; q < 100; q++) {
+			int source = random.nextInt(n);
+			double budget = 500 + random.nextInt(5000);
+			ReachableSet set = Reachability.withinDistance(graph, ws, source, budget);
+			PathFinder.dijkstra(graph, full, source, -1);
+			int expected = 0;
+			for (int v = 0; v < n; v++) {
+				if (full.isSettled(v) && full.distance(v) <= budget) {
+					expected++;
+				}
+			}
+			assertEquals(expected, set.size(), "query " + q);
+			assertEquals(source, set.node(0));
+			assertEquals(0, set.legs(0));
+			// routes of equal length may differ in legs, so only their range is checked
+			for (int i = 1; i < set.size(); i++) {
+				assertEquals(full.distance(set.node(i)), set.distance(i), 1e-6, "query " + q);
+				assertTrue(set.distance(i - 1) <= set.distance(i), "query " + q);
+				assertTrue(set.legs(i) >= 1 && set.legs(i) < n, "query " + q);
+			}
+		}
+	}
+
+	@Test
+	void airportsReachingAreEveryOriginNearestFirst() {
+		AirlineModel model = TestData.model();
+		RouteGraph graph = model.getGraph();
+		int n = graph.getNodeCount();
+		Random random = new Random(TestData.SEED);
+		SearchWorkspace ws = new SearchWorkspace(n);
+		for (int q = 0; q < 20; q++) {
+			int target = random.nextInt(n);
+			List<String> airports = model.getAirportsReaching(graph.idOf(target));
+			PathFinder.dijkstra(graph.reverse(), ws, target, -1);
+			int expected = 0;
+			for (int v = 0; v < n; v++) {
+				if (v != target && ws.isSettled(v)) {
+					expected++;
+				}
+			}
+			assertEquals(expected, airports.size(), "query " + q);
+			double last = 0.0;
+			for (String id : airports) {
+				int v = graph.indexOf(id);
+				assertTrue(v != target && ws.isSettled(v), "query " + q);
+				assertTrue(ws.distance(v) >= last, "query " + q);
+				last = ws.distance(v);
+			}
+		}
+	}
+
+	@Test
+	void withinLegsMatchesABreadthFirstSearch() {
+		RouteGraph graph = TestData.model().getGraph();
+		int n = graph.getNodeCount();
+		// the hubs with the most routes, which the parallel expansion is for
+		Integer[] byDegree = new Integer[n];
+		for (int v = 0; v < n; v++) {
+			byDegree[v] = v;
+		}
+		Arrays.sort(byDegree, (a, b) -> Integer.compare(graph.outDegree(b), graph.outDegree(a)));
+		Random random = new Random(TestData.SEED);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int i = 0; i < 100; i++) {
+				int source = i < 50 ? byDegree[i] : random.nextInt(n);
+				int maxLegs = 1 + i % 3;
+				assertSameLevels(graph, source, maxLegs, Reachability.withinLegs(graph, source, maxLegs, null));
+				assertSameLevels(graph, source, maxLegs, Reachability.withinLegs(graph, source, maxLegs, pool));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	// Checks that set holds exactly the nodes a plain breadth-first search reaches
+	// within maxLegs, with their fewest legs, by ascending legs.
+	private static void assertSameLevels(RouteGraph graph, int source, int maxLegs, ReachableSet set) {
+		int[] legs = new int[graph.getNodeCount()];
+		Arrays.fill(legs, -1);
+		int[] queue = new int[graph.getNodeCount()];
+		int head = 0;
+		int size = 0;
+		legs[source] = 0;
+		queue[size++] = source;
+		while (head < size) {
+			int u = queue[head++];
+			if (legs[u] == maxLegs) {
+				continue;
+			}
+			for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+				int v = graph.target(e);
+				if (legs[v] < 0) {
+					legs[v] = legs[u] + 1;
+					queue[size++] = v;
+				}
+			}
+		}
+		assertEquals(size, set.size(), "source " + source);
+		for (int i = 0; i < set.size(); i++) {
+			assertEquals(legs[set.node(i)], set.legs(i), "source " + source);
+			assertTrue(i == 0 || set.legs(i - 1) <= set.legs(i), "source " + source);
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class RouteBatcherTest {
+
+	@Test
+	void batchedAnswersMatchIndependentSearches() {
+		RouteGraph graph = TestData.model().getGraph();
+		int queries = 2000;
+		Random random = new Random(TestData.SEED);
+		int[] origins = new int[16];
+		for (int i = 0; i < origins.length; i++) {
+			origins[i] = random.nextInt(graph.getNodeCount());
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try (RouteBatcher batcher = new RouteBatcher(500, 256, pool)) {
+			int[] sources = new int[queries];
+			int[] targets = new int[queries];
+			List<CompletableFuture<RoutePath>> batched = new ArrayList<>(queries);
+			for (int q = 0; q < queries; q++) {
+				sources[q] = origins[random.nextInt(origins.length)];
+				targets[q] = random.nextInt(graph.getNodeCount());
+				batched.add(batcher.submit(graph, sources[q], targets[q]));
+			}
+			SearchWorkspace ws = new SearchWorkspace(graph.getNodeCount());
+			for (int q = 0; q < queries; q++) {
+				RoutePath path = batched.get(q).join();
+				boolean found = PathFinder.dijkstra(graph, ws, sources[q], targets[q]);
+				assertEquals(found, path != null, "query " + q);
+				if (found) {
+					assertEquals(ws.distance(targets[q]), path.getCost(), 1e-6, "query " + q);
+				}
+			}
+			// queries from 16 origins are answered by far fewer than one search each
+			assertTrue(batcher.getSearchCount() < queries);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void queriesAfterCloseOrOnAShutDownExecutorStillComplete() {
+		RouteGraph graph = TestData.model().getGraph();
+		Random random = new Random(TestData.SEED);
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		pool.shutdown();
+		SearchWorkspace ws = new SearchWorkspace(graph.getNodeCount());
+		RouteBatcher batcher = new RouteBatcher(500, 4, pool);
+		for (int q = 0; q < 20; q++) {
+			if (q == 10) {
+				batcher.close();
+			}
+			int source = random.nextInt(graph.getNodeCount());
+			int target = random.nextInt(graph.getNodeCount());
+			RoutePath path = batcher.submit(graph, source, target).orTimeout(10, TimeUnit.SECONDS).join();
+			boolean found = PathFinder.dijkstra(graph, ws, source, target);
+			assertEquals(found, path != null, "query " + q);
+			if (found) {
+				assertEquals(ws.distance(target), path.getCost(), 1e-6, "query " + q);
+			}
+		}
+	}
+
+}
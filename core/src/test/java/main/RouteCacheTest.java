@@ -0,0 +1,126 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class RouteCacheTest {
+
+	// the number of segments a RouteCache splits its capacity over
+	private static final int SEGMENTS = 16;
+
+	private static RoutePath route(double cost, int... nodes) {
+		return new RoutePath(nodes, cost, 0, false);
+	}
+
+	@Test
+	void fullSegmentsEvictTheLeastRecentlyUsedEntry() {
+		// find three queries that share a segment: in a cache of one entry per
+		// segment, each evicts the one before
+		RouteCache probe = new RouteCache(SEGMENTS);
+		int[] targets = new int[3];
+		int found = 1;
+		int puts = 1;
+		probe.put(probe.getGeneration(), 0, targets[0], QueryMode.DIJKSTRA, route(1.0, 0, targets[0]));
+		for (int t = 1; found < targets.length; t++) {
+			probe.put(probe.getGeneration(), 0, t, QueryMode.DIJKSTRA, route(1.0, 0, t));
+			puts++;
+			if (probe.get(0, targets[found - 1], QueryMode.DIJKSTRA) == null) {
+				targets[found++] = t;
+			}
+		}
+		assertEquals(puts - probe.size(), probe.getEvictionCount());
+		assertEquals(SEGMENTS, probe.size());
+
+		// two entries per segment: reading the first makes the second the eldest
+		RouteCache cache = new RouteCache(2 * SEGMENTS);
+		long generation = cache.getGeneration();
+		cache.put(generation, 0, targets[0], QueryMode.DIJKSTRA, route(1.0, 0, targets[0]));
+		cache.put(generation, 0, targets[1], QueryMode.DIJKSTRA, route(2.0, 0, targets[1]));
+		assertNotNull(cache.get(0, targets[0], QueryMode.DIJKSTRA));
+		cache.put(generation, 0, targets[2], QueryMode.DIJKSTRA, route(3.0, 0, targets[2]));
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(2, cache.size());
+		assertNull(cache.get(0, targets[1], QueryMode.DIJKSTRA));
+		assertEquals(1.0, cache.get(0, targets[0], QueryMode.DIJKSTRA).getCost(), 0.0);
+		assertEquals(3.0, cache.get(0, targets[2], QueryMode.DIJKSTRA).getCost(), 0.0);
+	}
+
+	@Test
+	void invalidatedAndStaleResultsAreNeverServed() {
+		RouteCache cache = new RouteCache(64);
+		long generation = cache.getGeneration();
+		cache.put(generation, 1, 2, QueryMode.DIJKSTRA, route(5.0, 1, 3, 2));
+		cache.put(generation, 1, 4, QueryMode.DIJKSTRA, null);
+		assertArrayEquals(new int[] {1, 3, 2}, cache.get(1, 2, QueryMode.DIJKSTRA).toNodeArray());
+		assertSame(RouteCache.NO_ROUTE, cache.get(1, 4, QueryMode.DIJKSTRA));
+		// the mode is part of the key
+		assertNull(cache.get(1, 2, QueryMode.ASTAR));
+
+		cache.invalidate();
+		assertEquals(generation + 1, cache.getGeneration());
+		assertEquals(0, cache.size());
+		assertNull(cache.get(1, 2, QueryMode.DIJKSTRA));
+		// a query that started before the invalidation does not cache its result
+		cache.put(generation, 1, 2, QueryMode.DIJKSTRA, route(5.0, 1, 3, 2));
+		assertEquals(0, cache.size());
+		assertNull(cache.get(1, 2, QueryMode.DIJKSTRA));
+	}
+
+	@Test
+	void edgeChangesDropOnlyTheEntriesTheyCanAffect() {
+		RouteCache cache = new RouteCache(64);
+		// a bound of 3 between any two distinct nodes
+		DistanceBound three = (node, target) -> node == target ? 0.0 : 3.0;
+		DistanceBound zero = (node, target) -> 0.0;
+		fill(cache);
+
+		// an unrelated route gets longer, or shorter but not short enough to beat anything
+		cache.edgeChanged(7, 8, 4.0, 6.0, zero);
+		assertEquals(3, cache.size());
+		cache.edgeChanged(7, 8, 6.0, 5.5, three);
+		// only the query without a route could now have one
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get(0, 2, QueryMode.DIJKSTRA));
+		assertNotNull(cache.get(3, 4, QueryMode.DIJKSTRA));
+		assertNull(cache.get(5, 6, QueryMode.DIJKSTRA));
+
+		// a cached route flies the edge that got longer
+		fill(cache);
+		cache.edgeChanged(0, 1, 2.0, 3.0, zero);
+		assertNull(cache.get(0, 2, QueryMode.DIJKSTRA));
+		assertNotNull(cache.get(3, 4, QueryMode.DIJKSTRA));
+		assertSame(RouteCache.NO_ROUTE, cache.get(5, 6, QueryMode.DIJKSTRA));
+
+		// a new route of 1 may beat the route of 10 from 0 to 2 under the bound of 3,
+		// as 3 + 1 + 3 < 10, but not the route of 5 from 3 to 4; under a zero bound it
+		// may beat that one too
+		fill(cache);
+		cache.edgeChanged(7, 8, Double.NaN, 1.0, three);
+		assertNull(cache.get(0, 2, QueryMode.DIJKSTRA));
+		assertNotNull(cache.get(3, 4, QueryMode.DIJKSTRA));
+		fill(cache);
+		cache.edgeChanged(7, 9, Double.NaN, 1.0, zero);
+		assertNull(cache.get(3, 4, QueryMode.DIJKSTRA));
+
+		// a removed route drops the entries flying it, and nothing else
+		fill(cache);
+		cache.edgeChanged(3, 4, 5.0, Double.NaN, zero);
+		assertNull(cache.get(3, 4, QueryMode.DIJKSTRA));
+		assertNotNull(cache.get(0, 2, QueryMode.DIJKSTRA));
+		assertSame(RouteCache.NO_ROUTE, cache.get(5, 6, QueryMode.DIJKSTRA));
+	}
+
+	// Caches a route of 10 from 0 to 2, one of 5 from 3 to 4, and none from 5 to 6.
+	private static void fill(RouteCache cache) {
+		long generation = cache.getGeneration();
+		cache.put(generation, 0, 2, QueryMode.DIJKSTRA, route(10.0, 0, 1, 2));
+		cache.put(generation, 3, 4, QueryMode.DIJKSTRA, route(5.0, 3, 4));
+		cache.put(generation, 5, 6, QueryMode.DIJKSTRA, null);
+	}
+
+}
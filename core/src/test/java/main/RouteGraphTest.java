@@ -0,0 +1,41 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class RouteGraphTest {
+
+	@Test
+	void builtSlicesAreSortedByTargetWithParallelEdgesMerged() {
+		Random random = new Random(TestData.SEED);
+		int n = 500;
+		RouteGraph.Builder builder = new RouteGraph.Builder(n, 16);
+		for (int v = 0; v < n; v++) {
+			builder.addNode(v, 0.0, 0.0);
+		}
+		// a few hubs with large slices, added in random order, with many parallel edges
+		Map<Long, Double> shortest = new HashMap<>();
+		for (int i = 0; i < 50000; i++) {
+			int u = i % 3 == 0 ? random.nextInt(5) : random.nextInt(n);
+			int v = random.nextInt(n);
+			double weight = 1 + random.nextInt(1000);
+			builder.addEdge(u, v, weight);
+			shortest.merge((long) u * n + v, weight, Math::min);
+		}
+		RouteGraph graph = builder.build();
+		assertEquals(shortest.size(), graph.getEdgeCount());
+		for (int u = 0; u < n; u++) {
+			for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+				assertTrue(e == graph.firstEdge(u) || graph.target(e - 1) < graph.target(e), "node " + u);
+				assertEquals(shortest.get((long) u * n + graph.target(e)), graph.weight(e), 0.0, "node " + u);
+			}
+		}
+	}
+
+}
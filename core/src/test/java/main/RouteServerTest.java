@@ -0,0 +1,148 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RouteServerTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void concurrentClientsGetDijkstraAnswersAcrossAReload() throws Exception {
+		AirlineModel model = TestData.load();
+		RouteGraph graph = model.getGraph();
+		int clients = 8;
+		int queriesPerClient = 50;
+		AtomicInteger mismatches = new AtomicInteger();
+		try (RouteServer server = new RouteServer(model, 0, directory.resolve("routes.snapshot").toString(),
+				TestData.AIRPORTS, TestData.ROUTES, null, -1)) {
+			server.start();
+			Thread[] threads = new Thread[clients];
+			for (int c = 0; c < clients; c++) {
+				long seed = c;
+				threads[c] = new Thread(() -> {
+					Random random = new Random(seed);
+					SearchWorkspace reference = new SearchWorkspace(graph.getNodeCount());
+					try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+						 BufferedReader in = new BufferedReader(
+								 new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+						 Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+						for (int q = 0; q < queriesPerClient; q++) {
+							int source = random.nextInt(graph.getNodeCount());
+							int target = random.nextInt(graph.getNodeCount());
+							out.write((q == queriesPerClient / 2 && seed == 0 ? "RELOAD\n" : "")
+									+ "ROUTE " + graph.idOf(source) + " " + graph.idOf(target) + "\n");
+							out.flush();
+							String response = in.readLine();
+							if (response.startsWith("OK reloading")) {
+								response = in.readLine();
+							}
+							boolean found = PathFinder.dijkstra(graph, reference, source, target);
+							String expected = found ? String.format("OK %.3f", reference.distance(target)) : "NONE";
+							if (!response.startsWith(expected)) {
+								mismatches.incrementAndGet();
+							}
+						}
+						out.write("QUIT\n");
+						out.flush();
+					} catch (IOException e) {
+						mismatches.incrementAndGet();
+					}
+				});
+				threads[c].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			// completes exceptionally if the reload failed
+			server.getReload().join();
+		}
+		assertEquals(0, mismatches.get());
+		assertTrue(model.getGraph() != graph, "the graph was not reloaded");
+	}
+
+	@Test
+	void queriesFinishWhileRoutesKeepChanging() throws Exception {
+		AirlineModel model = TestData.load();
+		RouteGraph graph = model.getGraph();
+		int u = 0;
+		while (graph.outDegree(u) == 0) {
+			u++;
+		}
+		String from = graph.idOf(u);
+		String to = graph.idOf(graph.target(graph.firstEdge(u)));
+		double weight = graph.weight(graph.firstEdge(u));
+		AtomicBoolean running = new AtomicBoolean(true);
+		// every update installs a new graph, which must not make a running query start over
+		Thread updater = new Thread(() -> {
+			for (int i = 0; running.get(); i++) {
+				model.changeWeight(from, to, weight + i % 2);
+			}
+		});
+		try (RouteServer server = new RouteServer(model, 0, directory.resolve("routes.snapshot").toString(),
+				TestData.AIRPORTS, TestData.ROUTES, null, -1)) {
+			updater.start();
+			Random random = new Random(TestData.SEED);
+			assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+				for (int q = 0; q < 20; q++) {
+					String source = graph.idOf(random.nextInt(graph.getNodeCount()));
+					String target = graph.idOf(random.nextInt(graph.getNodeCount()));
+					for (String request : new String[] {"PATHS 10 ", "LEGS 3 ", "ROUTE "}) {
+						String response = server.answer(request + source + " " + target);
+						assertTrue(response.startsWith("OK ") || response.equals("NONE\n"), request + response);
+					}
+				}
+			});
+		} finally {
+			running.set(false);
+			updater.join();
+		}
+	}
+
+	@Test
+	void requestsBeyondTheLimitsAreAnsweredWithAnError() throws IOException {
+		AirlineModel model = TestData.model();
+		RouteGraph graph = model.getGraph();
+		String from = graph.idOf(0);
+		String to = graph.idOf(1);
+		try (RouteServer server = new RouteServer(model, 0, directory.resolve("routes.snapshot").toString(),
+				TestData.AIRPORTS, TestData.ROUTES, null, -1)) {
+			for (String request : new String[] {
+					"PATHS 2000000000 " + from + " " + to,
+					"PATHS " + (KShortestPaths.MAX_PATHS + 1) + " " + from + " " + to,
+					"PATHS 0 " + from + " " + to,
+					"LEGS 100000 " + from + " " + to,
+					"LEGS " + (HopLimitedSearch.MAX_LEGS + 1) + " " + from + " " + to,
+					"LEGS -1 " + from + " " + to,
+					"LEGS many " + from + " " + to,
+					"ROUTE " + from + " nowhere"}) {
+				String response = server.answer(request);
+				assertTrue(response.startsWith("ERROR "), request + ": " + response);
+				assertEquals(1, response.split("\n").length, request + ": " + response);
+			}
+			assertTrue(server.answer("PATHS " + KShortestPaths.MAX_PATHS + " " + from + " " + to).startsWith("OK "));
+			String legs = server.answer("LEGS " + HopLimitedSearch.MAX_LEGS + " " + from + " " + to);
+			assertTrue(legs.startsWith("OK ") || legs.equals("NONE\n"), legs);
+		}
+	}
+
+}
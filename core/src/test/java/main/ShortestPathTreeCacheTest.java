@@ -0,0 +1,137 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ShortestPathTreeCacheTest {
+
+	// the bytes a tree over the six airports of graph() occupies
+	private static final long TREE_BYTES = 96 + 6 * (Double.BYTES + Integer.BYTES);
+
+	// 0 -> 1 -> 2 -> 3 in legs of 1, a direct 0 -> 3 of 5, and 4 -> 5 of 1
+	private static RouteGraph graph() {
+		RouteGraph.Builder builder = new RouteGraph.Builder(6, 5);
+		for (int v = 0; v < 6; v++) {
+			builder.addNode(v, 0.0, 0.0);
+		}
+		builder.addEdge(0, 1, 1.0);
+		builder.addEdge(1, 2, 1.0);
+		builder.addEdge(2, 3, 1.0);
+		builder.addEdge(0, 3, 5.0);
+		builder.addEdge(4, 5, 1.0);
+		return builder.build();
+	}
+
+	@Test
+	void originsGetATreeOnceHot() {
+		RouteGraph graph = graph();
+		ShortestPathTreeCache cache = new ShortestPathTreeCache(1 << 20, 3);
+		cache.invalidate(graph);
+		assertNull(cache.find(graph, 0, 3));
+		assertNull(cache.find(graph, 0, 2));
+		assertEquals(0, cache.size());
+		// the third query computes the tree and reports the search
+		RoutePath fresh = cache.find(graph, 0, 3);
+		assertArrayEquals(new int[] {0, 1, 2, 3}, fresh.toNodeArray());
+		assertFalse(fresh.isCached());
+		assertTrue(fresh.getSettledCount() > 0);
+		assertEquals(1, cache.size());
+		assertEquals(TREE_BYTES, cache.getByteCount());
+
+		RoutePath cached = cache.find(graph, 0, 2);
+		assertArrayEquals(new int[] {0, 1, 2}, cached.toNodeArray());
+		assertTrue(cached.isCached());
+		assertSame(RouteCache.NO_ROUTE, cache.find(graph, 0, 5));
+		assertEquals(2, cache.getHitCount());
+		assertEquals(3, cache.getMissCount());
+		// a graph the cache was not told about is never answered from it
+		assertNull(cache.find(graph(), 0, 3));
+
+		cache.invalidate(graph);
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getByteCount());
+		assertNull(cache.find(graph, 0, 3));
+	}
+
+	@Test
+	void treesStayWithinTheByteBound() {
+		RouteGraph graph = graph();
+		ShortestPathTreeCache cache = new ShortestPathTreeCache(2 * TREE_BYTES, 1);
+		cache.invalidate(graph);
+		assertNotNull(cache.find(graph, 0, 3));
+		assertNotNull(cache.find(graph, 1, 3));
+		// reading the tree of 0 leaves that of 1 the least recently used
+		assertTrue(cache.find(graph, 0, 2).isCached());
+		assertNotNull(cache.find(graph, 4, 5));
+		assertEquals(2, cache.size());
+		assertEquals(2 * TREE_BYTES, cache.getByteCount());
+		assertEquals(1, cache.getEvictionCount());
+		assertTrue(cache.find(graph, 0, 3).isCached());
+		assertTrue(cache.find(graph, 4, 5).isCached());
+		assertFalse(cache.find(graph, 1, 3).isCached());
+
+		// a tree larger than the whole budget answers its query but is not kept
+		ShortestPathTreeCache small = new ShortestPathTreeCache(TREE_BYTES - 1, 1);
+		small.invalidate(graph);
+		assertArrayEquals(new int[] {0, 1, 2, 3}, small.find(graph, 0, 3).toNodeArray());
+		assertEquals(0, small.size());
+		assertEquals(0, small.getByteCount());
+	}
+
+	@Test
+	void edgeChangesDropOnlyTheTreesTheyCanAffect() {
+		RouteGraph graph = graph();
+		ShortestPathTreeCache cache = new ShortestPathTreeCache(1 << 20, 1);
+		cache.invalidate(graph);
+		cache.find(graph, 0, 3);
+		cache.find(graph, 4, 5);
+
+		// a longer route that no tree flies
+		graph = changed(cache, graph, 0, 3, 6.0);
+		assertEquals(2, cache.size());
+		assertEquals(3.0, cache.find(graph, 0, 3).getCost(), 0.0);
+
+		// a longer route in the tree of 4 only
+		graph = changed(cache, graph, 4, 5, 2.0);
+		assertEquals(1, cache.size());
+		assertTrue(cache.find(graph, 0, 3).isCached());
+		assertEquals(2.0, cache.find(graph, 4, 5).getCost(), 0.0);
+		assertEquals(2, cache.size());
+
+		// a new route that shortens the way from 0 to 3, but cannot help 4
+		graph = changed(cache, graph, 1, 3, 0.5);
+		assertEquals(1, cache.size());
+		assertTrue(cache.find(graph, 4, 5).isCached());
+		RoutePath route = cache.find(graph, 0, 3);
+		assertFalse(route.isCached());
+		assertArrayEquals(new int[] {0, 1, 3}, route.toNodeArray());
+		assertEquals(1.5, route.getCost(), 0.0);
+
+		// a route that gets shorter but still beats nothing
+		graph = changed(cache, graph, 0, 3, 5.0);
+		assertEquals(2, cache.size());
+
+		// an added airport keeps every tree
+		graph = graph.withNode(6, 0.0, 0.0);
+		cache.graphReplaced(graph);
+		assertEquals(2, cache.size());
+		assertSame(RouteCache.NO_ROUTE, cache.find(graph, 0, 6));
+	}
+
+	// Changes the route from u to v to weight, or adds it, and tells the cache.
+	private static RouteGraph changed(ShortestPathTreeCache cache, RouteGraph graph, int u, int v, double weight) {
+		int e = graph.edgeTo(u, v);
+		double oldWeight = e < 0 ? Double.NaN : graph.weight(e);
+		RouteGraph next = graph.withEdge(u, v, weight, e < 0 ? 0 : graph.carrierSet(e), graph.carriers());
+		cache.edgeChanged(next, u, v, oldWeight, weight);
+		return next;
+	}
+
+}
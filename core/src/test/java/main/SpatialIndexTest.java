@@ -0,0 +1,57 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SpatialIndexTest {
+
+	@Test
+	void nearestAndWithinMatchAScan() {
+		RouteGraph graph = TestData.model().getGraph();
+		int n = graph.getNodeCount();
+		SpatialIndex index = new SpatialIndex(graph);
+		Random random = new Random(TestData.SEED);
+		double[] distances = new double[n];
+		for (int q = 0; q < 500; q++) {
+			// uniform over the sphere
+			double latitude = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+			double longitude = 360 * random.nextDouble() - 180;
+			int k = 1 + random.nextInt(20);
+			double radius = 2000 * random.nextDouble();
+			int[] nearest = index.nearest(latitude, longitude, k);
+			int[] within = index.within(latitude, longitude, radius);
+
+			int inside = 0;
+			for (int v = 0; v < n; v++) {
+				distances[v] = GreatCircle.distanceKm(latitude, longitude, graph.latitude(v), graph.longitude(v));
+				if (distances[v] <= radius) {
+					inside++;
+				}
+			}
+			double[] sorted = distances.clone();
+			Arrays.sort(sorted);
+			assertEquals(k, nearest.length, "query " + q);
+			assertEquals(inside, within.length, "query " + q);
+			for (int i = 0; i < nearest.length; i++) {
+				assertEquals(sorted[i], distances[nearest[i]], 1e-6, "query " + q);
+			}
+			for (int i = 0; i < within.length; i++) {
+				assertEquals(sorted[i], distances[within[i]], 1e-6, "query " + q);
+			}
+		}
+	}
+
+	@Test
+	void negativeOrMissingRadiiFindNothing() {
+		SpatialIndex index = new SpatialIndex(TestData.model().getGraph());
+		for (double radius : new double[] {-500.0, -0.5, Double.NaN, Double.NEGATIVE_INFINITY}) {
+			assertEquals(0, index.within(0.0, 0.0, radius).length, "radius " + radius);
+		}
+		assertEquals(index.size(), index.within(0.0, 0.0, Double.POSITIVE_INFINITY).length);
+	}
+
+}
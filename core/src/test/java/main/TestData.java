@@ -0,0 +1,39 @@
+package main;
+
+/**
+ * <b>TestData</b> loads the bundled airports and routes once per test run, for the
+ * tests that only query them. Tests that update a model load their own.
+ */
+final class TestData {
+
+	static final String AIRPORTS = "data/airports-extended.csv";
+	static final String ROUTES = "data/routes.csv";
+	// every test draws its queries from a Random with this seed
+	static final long SEED = 42;
+
+	private static AirlineModel model;
+
+	private TestData() {
+	}
+
+	/**
+	 * @returns a new model loaded from the bundled CSV files.
+	 */
+	static AirlineModel load() {
+		AirlineModel loaded = new AirlineModel();
+		loaded.createNewGraph(AIRPORTS, ROUTES);
+		return loaded;
+	}
+
+	/**
+	 * @returns the shared model loaded from the bundled CSV files, which tests must
+	 * 	not update.
+	 */
+	static synchronized AirlineModel model() {
+		if (model == null) {
+			model = load();
+		}
+		return model;
+	}
+
+}
@@ -1,122 +1,1274 @@
 package main;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.PriorityQueue;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public class AirlineModel {
 
-	private Graph<String,Double> g;
-	private HashMap<String,ArrayList<String>> idToInfo;
-	private HashMap<String,ArrayList<String>> nameToInfo;
+	private static final int ROUTE_CACHE_CAPACITY = 4096;
+	private static final long TREE_CACHE_BYTES = 64L << 20;
+	private static final int HOT_ORIGIN_THRESHOLD = 2;
+	// route updates are folded into fresh CSR columns once their delta records exceed
+	// this many, or a quarter of the edges if that is more
+	private static final int COMPACTION_MIN_RECORDS = 4096;
+
+	// Queries read state once and run entirely against that State, so they never see
+	// a half-installed graph; writers replace it whole while holding writeLock.
+	private volatile State state;
+	private final Object writeLock;
+	private final RouteCache routeCache;
+	private final ShortestPathTreeCache treeCache;
+	private volatile QueryMode queryMode;
+	private volatile RouteBatcher batcher;
+	private final Metrics metrics;
+	
+	/**
+	 * <b>State</b> is an immutable graph together with its airports and the search
+	 * indexes prepared for it.
+	 */
+	private static final class State {
+		
+		final RouteGraph graph;
+		final AirportStore airports;
+		final GreatCircle greatCircle;
+		final LandmarkIndex landmarks;
+		final ContractionHierarchy hierarchy;
+		// built on first use, and handed on to the states over the same airports; the
+		// name index keeps ranking airports by the routes they had when it was built
+		volatile SpatialIndex spatial;
+		volatile NameIndex names;
+		
+		State(RouteGraph graph, AirportStore airports, GreatCircle greatCircle, LandmarkIndex landmarks,
+			  ContractionHierarchy hierarchy) {
+			this.graph = graph;
+			this.airports = airports;
+			this.greatCircle = greatCircle;
+			this.landmarks = landmarks;
+			this.hierarchy = hierarchy;
+		}
+		
+		State(GraphSnapshot snapshot) {
+			this(snapshot.getGraph(), snapshot.getAirports(), new GreatCircle(snapshot.getGraph()), null, null);
+		}
+		
+		SpatialIndex spatial() {
+			SpatialIndex index = spatial;
+			if (index == null) {
+				// racing threads may each build one; they are equal
+				index = new SpatialIndex(graph);
+				spatial = index;
+			}
+			return index;
+		}
+		
+		NameIndex names() {
+			NameIndex index = names;
+			if (index == null) {
+				index = new NameIndex(airports, graph);
+				names = index;
+			}
+			return index;
+		}
+		
+	}
+	
+	/**
+	 * <b>Answer</b> is the result of a query together with the graph it was answered
+	 * in, whose node indices the routes of the result refer to.
+	 */
+	public static final class Answer<T> {
+		
+		private final RouteGraph graph;
+		private final T result;
+		
+		private Answer(RouteGraph graph, T result) {
+			this.graph = graph;
+			this.result = result;
+		}
+		
+		/**
+		 * @returns the graph the query was answered in.
+		 */
+		public RouteGraph getGraph() {
+			return graph;
+		}
+		
+		/**
+		 * @returns the result of the query.
+		 */
+		public T getResult() {
+			return result;
+		}
+		
+	}
 	
 	public AirlineModel() {
-		this.g = new Graph<>();
-		this.idToInfo = new HashMap<>();
-		this.nameToInfo = new HashMap<>();
+		this.writeLock = new Object();
+		this.queryMode = QueryMode.DIJKSTRA;
+		this.routeCache = new RouteCache(ROUTE_CACHE_CAPACITY);
+		this.treeCache = new ShortestPathTreeCache(TREE_CACHE_BYTES, HOT_ORIGIN_THRESHOLD);
+		this.metrics = new Metrics();
+		RouteGraph empty = new RouteGraph.Builder(0, 0).build();
+		this.state = new State(empty, new AirportStore.Builder(0).build(), new GreatCircle(empty), null, null);
+		this.treeCache.invalidate(empty);
+	}
+	
+	public QueryMode getQueryMode() {
+		return this.queryMode;
 	}
 	
+	public void setQueryMode(QueryMode mode) {
+		this.queryMode = mode;
+	}
+	
+	/**
+	 * @returns the city names of the airports, each spelling once, in alphabetical
+	 * 	order ignoring case and accents, read in order from the name index. Cities
+	 * 	spelled differently, such as "São Paulo" and "Sao Paulo", are listed apart.
+	 */
 	public Iterator<String> getSortedNodes() {
-		return (new TreeSet<String>(this.nameToInfo.keySet()).iterator());
+		AirportStore airports = this.state.airports;
+		NameIndex index = this.state.names();
+		return new Iterator<String>() {
+			private int entry = index.nextCity(0);
+			
+			@Override
+			public boolean hasNext() {
+				return entry >= 0;
+			}
+			
+			@Override
+			public String next() {
+				if (entry < 0) {
+					throw new NoSuchElementException();
+				}
+				String city = airports.city(index.airport(entry));
+				entry = index.nextCity(entry + 1);
+				return city;
+			}
+		};
+	}
+	
+	/**
+	 * @returns the name and code index of the current airports, built on first use.
+	 */
+	public NameIndex getNameIndex() {
+		return this.state.names();
 	}
 	
 	public void createNewGraph(String nodeFile, String edgeFile) {
-		Graph<String,Double> newGraph = new Graph<>();
-		HashSet<ArrayList<String>> edges = new HashSet<>();
 		try {
-			DataParser.readData(nodeFile, edgeFile, 
-								this.nameToInfo, this.idToInfo, edges);			
+			install(GraphSnapshot.fromCsv(nodeFile, edgeFile, metrics.startLap()));
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
-		
-		for (String key : this.idToInfo.keySet()) {
-			newGraph.addNode(key);
+	}
+	
+	/**
+	 * @param snapshotFile The binary snapshot to open.
+	 * @param nodeFile The airport file the snapshot was exported from.
+	 * @param edgeFile The route file the snapshot was exported from.
+	 * @modifies this
+	 * @effects Replaces the graph with the one in snapshotFile, read straight from the
+	 * 	mapped file, or with the one parsed from nodeFile and edgeFile if the snapshot
+	 * 	is missing, corrupt, or older than the CSV files.
+	 * @returns true iff the graph was opened from snapshotFile.
+	 */
+	public boolean loadGraph(String snapshotFile, String nodeFile, String edgeFile) {
+		Metrics.Lap lap = metrics.startLap();
+		GraphSnapshot snapshot = openSnapshot(snapshotFile, nodeFile, edgeFile);
+		if (snapshot != null) {
+			if (lap != null) {
+				lap.record(Metrics.Phase.OPEN_SNAPSHOT);
+			}
+			install(snapshot);
+			return true;
 		}
-		
-		for (ArrayList<String> edge : edges) {
-			String startNode = edge.get(0);
-        	String destNode = edge.get(1);
-        	if (startNode.equals("\\N") || destNode.equals("\\N")) continue;
-        	double deltaX = Double.parseDouble(idToInfo.get(startNode).get(2))-Double.parseDouble(idToInfo.get(destNode).get(2));
-        	double deltaY = Double.parseDouble(idToInfo.get(startNode).get(3))-Double.parseDouble(idToInfo.get(destNode).get(3));
-        	double distance = Math.hypot(deltaX, deltaY);
-        	newGraph.addEdge(startNode, destNode, distance);
+		createNewGraph(nodeFile, edgeFile);
+		return false;
+	}
+	
+	private static GraphSnapshot openSnapshot(String snapshotFile, String nodeFile, String edgeFile) {
+		try {
+			return GraphSnapshot.open(new File(snapshotFile), nodeFile, edgeFile);
+		} catch (IOException e) {
+			// an unreadable snapshot is treated like a missing one
+			return null;
 		}
-		this.g = newGraph;
 	}
 	
-	public LinkedList<String[]> Dijkstra(String node1, String node2) {
-		String startNode = node1;
-		String destNode = node2;
-		// create comparator for the priority queue based on lowest cost
-		Comparator<LinkedList<String[]>> lowestCostComparator = new Comparator<LinkedList<String[]>>() {
-			public int compare(LinkedList<String[]> l1, LinkedList<String[]> l2) {
-				String sum1 = l1.peekFirst()[3];
-				String sum2 = l2.peekFirst()[3];
-				return Double.compare(Double.valueOf(sum1), Double.valueOf(sum2));
-			}
-		};
-		PriorityQueue<LinkedList<String[]>> activePaths = new PriorityQueue<>(lowestCostComparator);
-		HashSet<String> finishedNodes = new HashSet<>();
-		// create initial path
-		LinkedList<String[]> startPath = new LinkedList<>();
-		String[] initialEdge = {startNode, startNode, "0.0", "0.0"};
-		startPath.add(initialEdge);
-		activePaths.add(startPath);
-		
-		while (activePaths.size() != 0) {
-			LinkedList<String[]> minPath = activePaths.poll();
-			String minDest = minPath.peekLast()[1];
-			if (minDest.equals(destNode)) {
-				// remove the first edge because it is always 'reflexive'
-				minPath.removeFirst();
-				return minPath;
+	/**
+	 * @param snapshotFile The binary snapshot to open.
+	 * @param nodeFile The airport file the snapshot was exported from.
+	 * @param edgeFile The route file the snapshot was exported from.
+	 * @param hierarchyFile The file that stores the contraction hierarchy, or null to
+	 * 	leave the CH query mode unprepared.
+	 * @param executor The executor to load the data on.
+	 * @modifies this
+	 * @effects Loads the graph like loadGraph, and its contraction hierarchy like
+	 * 	prepareHierarchy without rebuilding, on executor, then swaps the result in as a
+	 * 	whole. Queries keep running against the previous graph until the swap and are
+	 * 	never blocked by the reload.
+	 * @returns a future that completes with true iff the graph was opened from
+	 * 	snapshotFile, once the new graph is installed, or exceptionally if the CSV
+	 * 	files cannot be read, in which case the previous graph stays in place.
+	 */
+	public CompletableFuture<Boolean> reloadAsync(String snapshotFile, String nodeFile, String edgeFile,
+												  String hierarchyFile, Executor executor) {
+		return CompletableFuture.supplyAsync(() -> {
+			Metrics.Lap lap = metrics.startLap();
+			GraphSnapshot snapshot = openSnapshot(snapshotFile, nodeFile, edgeFile);
+			boolean mapped = snapshot != null;
+			try {
+				if (snapshot == null) {
+					snapshot = GraphSnapshot.fromCsv(nodeFile, edgeFile, metrics.startLap());
+				} else if (lap != null) {
+					lap.record(Metrics.Phase.OPEN_SNAPSHOT);
+				}
+				State loaded = new State(snapshot);
+				if (hierarchyFile != null) {
+					ContractionHierarchy ch = ContractionHierarchy.load(new File(hierarchyFile),
+																		loaded.graph.fingerprint());
+					loaded = new State(loaded.graph, loaded.airports, loaded.greatCircle, null, ch);
+				}
+				install(loaded);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
-			
-			if (finishedNodes.contains(minDest)) continue;
-			
-			Set<String> children = g.getChildNodes(minDest);
-			for (String child : children) {
-				Set<Double> edgeLabels = g.getEdgeLabels(minDest, child);
-				for (Double edgeLabel : edgeLabels) {
-					// check if the node already has a lowest cost path known
-					if (!finishedNodes.contains(child)) {
-						String[] newEdge = {minDest, child, edgeLabel.toString()};
-						LinkedList<String[]> newPath = new LinkedList<>();
-						for (int i = 0; i < minPath.size(); i++) {
-							newPath.add(minPath.get(i).clone());
-						}
-						newPath.add(newEdge);
-						String[] firstEdge = newPath.peekFirst();
-						Double newPathWeight = Double.valueOf(firstEdge[3]) + edgeLabel;
-						firstEdge[3] = newPathWeight.toString();
-						activePaths.add(newPath);
-					}
+			return mapped;
+		}, executor);
+	}
+	
+	/**
+	 * @param snapshotFile The binary snapshot to write.
+	 * @param nodeFile The path to the airport file.
+	 * @param edgeFile The path to the route file.
+	 * @modifies snapshotFile
+	 * @effects Parses nodeFile and edgeFile and writes the resulting graph to
+	 * 	snapshotFile, stamped with the size and modification time of both files.
+	 */
+	public void exportSnapshot(String snapshotFile, String nodeFile, String edgeFile) {
+		try {
+			GraphSnapshot.fromCsv(nodeFile, edgeFile).save(new File(snapshotFile), nodeFile, edgeFile);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private void install(GraphSnapshot snapshot) {
+		install(new State(snapshot));
+	}
+	
+	// The state is swapped before the caches are invalidated, and queries read the
+	// cache generation before the state, so no result from an old graph is cached
+	// under the new generation.
+	private void install(State loaded) {
+		synchronized (writeLock) {
+			this.state = loaded;
+			this.routeCache.invalidate();
+			this.treeCache.invalidate(loaded.graph);
+		}
+	}
+	
+	/**
+	 * @param fromId The id of the airport the route departs from.
+	 * @param toId The id of the airport the route arrives at.
+	 * @param airline The IATA or ICAO code of the airline flying the route, or null.
+	 * @modifies this
+	 * @effects Adds the route to the graph, weighted with the great-circle distance
+	 * 	between the airports like the routes of the route file, or adds airline to the
+	 * 	carriers of the route if it is already flown. See updateRoute for how the
+	 * 	change is applied.
+	 * @throws IllegalArgumentException if either airport is unknown
+	 */
+	public void addRoute(String fromId, String toId, String airline) {
+		synchronized (writeLock) {
+			State current = this.state;
+			RouteGraph graph = current.graph;
+			int[] ends = indicesOf(graph, new String[] {fromId, toId});
+			int u = ends[0];
+			int v = ends[1];
+			double distance = GreatCircle.distanceKm(graph.latitude(u), graph.longitude(u),
+													 graph.latitude(v), graph.longitude(v));
+			int e = graph.edgeTo(u, v);
+			double oldWeight = e < 0 ? Double.NaN : graph.weight(e);
+			int oldSet = e < 0 ? 0 : graph.carrierSet(e);
+			CarrierSets carriers = graph.carriers();
+			int set = oldSet;
+			int code = CarrierSets.pack(airline);
+			int carrier = carriers.indexOf(airline);
+			int union = carrier >= 0 ? carriers.union(oldSet, carrier) : -1;
+			if (union >= 0) {
+				set = union;
+			} else if (code != 0) {
+				CarrierSets.Builder builder = new CarrierSets.Builder(carriers);
+				int first = carriers.firstMember(oldSet);
+				int[] members = new int[carriers.endMember(oldSet) - first + 1];
+				for (int i = 0; i < members.length - 1; i++) {
+					members[i] = carriers.member(first + i);
+				}
+				members[members.length - 1] = builder.carrier(code);
+				set = builder.intern(members, members.length);
+				// existing carrier filters stay usable unless a set had to be added
+				if (builder.getSetCount() != carriers.getSetCount()) {
+					carriers = builder.build();
 				}
 			}
-			finishedNodes.add(minDest);
+			double weight = e < 0 ? distance : Math.min(oldWeight, distance);
+			if (weight == oldWeight && set == oldSet) {
+				return;
+			}
+			updateRoute(current, u, v, oldWeight, weight, set, carriers);
+		}
+	}
+	
+	/**
+	 * @param fromId The id of the airport the route departs from.
+	 * @param toId The id of the airport the route arrives at.
+	 * @modifies this
+	 * @effects Removes the route from the graph, whichever airlines fly it. See
+	 * 	updateRoute for how the change is applied.
+	 * @throws IllegalArgumentException if either airport is unknown
+	 * @returns true iff there was such a route.
+	 */
+	public boolean removeRoute(String fromId, String toId) {
+		synchronized (writeLock) {
+			State current = this.state;
+			RouteGraph graph = current.graph;
+			int[] ends = indicesOf(graph, new String[] {fromId, toId});
+			int e = graph.edgeTo(ends[0], ends[1]);
+			if (e < 0) {
+				return false;
+			}
+			updateRoute(current, ends[0], ends[1], graph.weight(e), Double.NaN, 0, graph.carriers());
+			return true;
+		}
+	}
+	
+	/**
+	 * @param fromId The id of the airport the route departs from.
+	 * @param toId The id of the airport the route arrives at.
+	 * @param weight The new length of the route.
+	 * @modifies this
+	 * @effects Changes the length of the route. A length below the great-circle
+	 * 	distance between the airports weakens the A* bound for as long as the graph is
+	 * 	not reloaded. See updateRoute for how the change is applied.
+	 * @throws IllegalArgumentException if either airport is unknown, there is no such
+	 * 	route, or weight is negative or not a number
+	 */
+	public void changeWeight(String fromId, String toId, double weight) {
+		if (!(weight >= 0)) {
+			throw new IllegalArgumentException("Route length must not be negative: " + weight);
+		}
+		synchronized (writeLock) {
+			State current = this.state;
+			RouteGraph graph = current.graph;
+			int[] ends = indicesOf(graph, new String[] {fromId, toId});
+			int e = graph.edgeTo(ends[0], ends[1]);
+			if (e < 0) {
+				throw new IllegalArgumentException("No route from " + fromId + " to " + toId);
+			}
+			if (graph.weight(e) != weight) {
+				updateRoute(current, ends[0], ends[1], graph.weight(e), weight, graph.carrierSet(e), graph.carriers());
+			}
+		}
+	}
+	
+	// Publishes the graph with the route from u to v changed, where a NaN weight stands
+	// for a missing route, and carries over what the change leaves valid:
+	//		* the graph is derived in place of a rebuild, and compacted once its delta
+	//		  grows too large
+	//		* the component index is extended if a new route connects new components;
+	//		  after a removal it may over-approximate until the next compaction
+	//		* the great-circle bound is scaled down if the route got shorter than it
+	//		* the landmark tables stay valid lower bounds while routes only get longer
+	//		* the contraction hierarchy is always dropped until it is prepared again
+	//		* only the cached routes and trees the change can affect are dropped
+	// The caller holds writeLock.
+	private void updateRoute(State current, int u, int v, double oldWeight, double newWeight, int set,
+							 CarrierSets carriers) {
+		RouteGraph graph = current.graph;
+		boolean shorter = Double.isNaN(oldWeight) ? !Double.isNaN(newWeight) : newWeight < oldWeight;
+		RouteGraph updated = graph.withEdge(u, v, newWeight, set, carriers);
+		int records = updated.getDeltaEdgeCount() + updated.reverse().getDeltaEdgeCount();
+		if (records > Math.max(COMPACTION_MIN_RECORDS, updated.getEdgeCount() / 4)) {
+			updated = updated.compacted();
+		}
+		GreatCircle greatCircle = Double.isNaN(newWeight)
+				? current.greatCircle : current.greatCircle.admitting(u, v, newWeight);
+		LandmarkIndex landmarks = shorter ? null : current.landmarks;
+		State next = new State(updated, current.airports, greatCircle, landmarks, null);
+		next.spatial = current.spatial;
+		next.names = current.names;
+		this.state = next;
+		this.routeCache.edgeChanged(u, v, oldWeight, newWeight, greatCircle);
+		this.treeCache.edgeChanged(updated, u, v, oldWeight, newWeight);
+	}
+	
+	/**
+	 * @param id The numeric id of the new airport.
+	 * @param name The airport name.
+	 * @param city The city the airport serves.
+	 * @param iata The IATA code, or null if there is none.
+	 * @param icao The ICAO code, or null if there is none.
+	 * @param latitude The latitude of the airport, in degrees.
+	 * @param longitude The longitude of the airport, in degrees.
+	 * @modifies this
+	 * @effects Adds an airport without routes to the graph, without rebuilding it.
+	 * 	Cached routes and trees stay valid; the landmark tables and the contraction
+	 * 	hierarchy, which do not cover the airport, are dropped until prepared again.
+	 * @throws IllegalArgumentException if id is negative, already taken, or so far
+	 * 	past the largest id so far that the id index would grow out of proportion
+	 */
+	public void addAirport(int id, String name, String city, String iata, String icao,
+						   double latitude, double longitude) {
+		synchronized (writeLock) {
+			State current = this.state;
+			if (id < 0 || current.graph.indexOf(id) >= 0) {
+				throw new IllegalArgumentException("Airport id is negative or taken: " + id);
+			}
+			if (id >= current.graph.getIdLimit()) {
+				throw new IllegalArgumentException("Airport id must be below " + current.graph.getIdLimit() + ": " + id);
+			}
+			RouteGraph graph = current.graph.withNode(id, latitude, longitude);
+			AirportStore.Builder airports = new AirportStore.Builder(current.airports);
+			airports.add(name, city, iata, icao);
+			this.state = new State(graph, airports.build(), current.greatCircle.forGraph(graph), null, null);
+			this.treeCache.graphReplaced(graph);
+		}
+	}
+	
+	/**
+	 * @modifies this
+	 * @effects Folds the route and airport updates made since the graph was loaded
+	 * 	or last compacted into fresh CSR columns, which also makes the component index
+	 * 	exact again. Updates do this by themselves once enough of them pile up. No
+	 * 	cached result or prepared index is dropped.
+	 */
+	public void compact() {
+		synchronized (writeLock) {
+			State current = this.state;
+			RouteGraph graph = current.graph.compacted();
+			if (graph != current.graph) {
+				State next = new State(graph, current.airports, current.greatCircle, current.landmarks,
+									   current.hierarchy);
+				next.spatial = current.spatial;
+				next.names = current.names;
+				this.state = next;
+				this.treeCache.graphReplaced(graph);
+			}
+		}
+	}
+	
+	/**
+	 * @returns the cache of route query results.
+	 */
+	public RouteCache getRouteCache() {
+		return this.routeCache;
+	}
+	
+	/**
+	 * @returns the cache of shortest-path trees of hot origins.
+	 */
+	public ShortestPathTreeCache getTreeCache() {
+		return this.treeCache;
+	}
+	
+	/**
+	 * @returns the query and load metrics of this model.
+	 */
+	public Metrics getMetrics() {
+		return this.metrics;
+	}
+	
+	/**
+	 * @returns the current route graph. It is immutable, and stays valid for as long as
+	 * 	the caller holds it, even if another graph is installed meanwhile.
+	 */
+	public RouteGraph getGraph() {
+		return this.state.graph;
+	}
+	
+	/**
+	 * @param count The number of landmarks to use.
+	 * @param sidecarFile The file that caches the landmark distance tables.
+	 * @requires 1 <= count <= LandmarkIndex.MAX_LANDMARKS
+	 * @modifies this, sidecarFile
+	 * @effects Enables the ALT query mode by loading the landmark tables for the current
+	 * 	graph from sidecarFile, or computing them and saving them to sidecarFile if the
+	 * 	file is missing, was built for another graph, or uses another landmark count.
+	 * 	A count above the number of airports with routes both in and out stands for
+	 * 	all of them.
+	 */
+	public void prepareLandmarks(int count, String sidecarFile) {
+		State current = this.state;
+		RouteGraph graph = current.graph;
+		long fingerprint = graph.fingerprint();
+		File file = new File(sidecarFile);
+		Metrics.Lap lap = metrics.startLap();
+		try {
+			LandmarkIndex index = LandmarkIndex.load(file, graph, fingerprint);
+			if (index == null || index.getLandmarkCount() != LandmarkIndex.landmarkCount(graph, count)) {
+				index = LandmarkIndex.build(graph, count);
+				index.save(file, fingerprint);
+			}
+			if (lap != null) {
+				lap.record(Metrics.Phase.PREPARE_LANDMARKS);
+			}
+			attach(current, index, current.hierarchy);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * @returns true iff landmark tables are available for the current graph.
+	 */
+	public boolean hasLandmarks() {
+		return this.state.landmarks != null;
+	}
+	
+	// Adds prepared indexes to the state they were built for, unless another graph was
+	// installed meanwhile, in which case they are dropped.
+	private void attach(State base, LandmarkIndex landmarks, ContractionHierarchy hierarchy) {
+		synchronized (writeLock) {
+			State current = this.state;
+			if (current.graph != base.graph) {
+				return;
+			}
+			State next = new State(current.graph, current.airports, current.greatCircle,
+								   landmarks != null ? landmarks : current.landmarks,
+								   hierarchy != null ? hierarchy : current.hierarchy);
+			next.spatial = current.spatial;
+			next.names = current.names;
+			this.state = next;
+		}
+	}
+	
+	/**
+	 * @param hierarchyFile The file that stores the contraction hierarchy.
+	 * @param rebuild Whether to contract the graph if hierarchyFile cannot be used.
+	 * @modifies this, hierarchyFile
+	 * @effects Enables the CH query mode by loading the contraction hierarchy of the
+	 * 	current graph from hierarchyFile. If the file is missing or was built for another
+	 * 	graph and rebuild is true, contracts the graph and saves the result to hierarchyFile.
+	 */
+	public void prepareHierarchy(String hierarchyFile, boolean rebuild) {
+		State current = this.state;
+		RouteGraph graph = current.graph;
+		long fingerprint = graph.fingerprint();
+		File file = new File(hierarchyFile);
+		Metrics.Lap lap = metrics.startLap();
+		try {
+			ContractionHierarchy ch = ContractionHierarchy.load(file, fingerprint);
+			if (ch == null && rebuild) {
+				ch = ContractionHierarchy.build(graph);
+				ch.save(file, fingerprint);
+			}
+			if (lap != null) {
+				lap.record(Metrics.Phase.PREPARE_HIERARCHY);
+			}
+			attach(current, null, ch);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * @returns true iff a contraction hierarchy is available for the current graph.
+	 */
+	public boolean hasHierarchy() {
+		return this.state.hierarchy != null;
+	}
+	
+	/**
+	 * @param node1 The id of the start airport.
+	 * @param node2 The id of the destination airport.
+	 * @param mode The search algorithm to use.
+	 * @returns the shortest route from node1 to node2, or null if there is none.
+	 */
+	public RoutePath findRoute(String node1, String node2, QueryMode mode) {
+		return findRoute(node1, node2, mode, null);
+	}
+	
+	/**
+	 * @param node1 The id of the start airport.
+	 * @param node2 The id of the destination airport.
+	 * @param mode The search algorithm to use.
+	 * @param filter The carriers whose routes may be flown, or null to allow every route.
+	 * @throws IllegalArgumentException if filter was built for a graph other than the
+	 * 	current one
+	 * @returns the shortest route from node1 to node2 flying only routes allowed by
+	 * 	filter, or null if there is none. Filtered routes are never cached, and the
+	 * 	contraction hierarchy, which shortcuts over every carrier, is replaced by a
+	 * 	filtered bidirectional search.
+	 */
+	public RoutePath findRoute(String node1, String node2, QueryMode mode, CarrierFilter filter) {
+		long generation = routeCache.getGeneration();
+		State state = this.state;
+		return timedRoute(generation, state, state.graph.indexOf(node1), state.graph.indexOf(node2), mode, filter);
+	}
+	
+	/**
+	 * @param airport1 The id or code of the start airport.
+	 * @param airport2 The id or code of the destination airport.
+	 * @param mode The search algorithm to use.
+	 * @throws IllegalArgumentException if either airport is unknown
+	 * @returns the answer to findRoute(airport1, airport2, mode), with the graph the
+	 * 	airports were resolved in and the route was found in.
+	 */
+	public Answer<RoutePath> queryRoute(String airport1, String airport2, QueryMode mode) {
+		long generation = routeCache.getGeneration();
+		State state = this.state;
+		int source = airportIndex(state, airport1);
+		int target = airportIndex(state, airport2);
+		return new Answer<>(state.graph, timedRoute(generation, state, source, target, mode, null));
+	}
+	
+	// Answers a findRoute query on state, which was read after generation, and records
+	// it in the metrics if they are enabled. A negative index stands for an unknown airport.
+	private RoutePath timedRoute(long generation, State state, int source, int target, QueryMode mode,
+								 CarrierFilter filter) {
+		if (!metrics.isEnabled()) {
+			return route(generation, state, source, target, mode, filter, null);
+		}
+		long start = System.nanoTime();
+		Metrics.Probe probe = metrics.probeForThread();
+		RoutePath path = route(generation, state, source, target, mode, filter, probe);
+		metrics.recordQuery(mode, probe.getOutcome(), System.nanoTime() - start, path, probe);
+		return path;
+	}
+	
+	// Answers timedRoute, noting in probe, if given, how the query was answered and
+	// what its searches cost.
+	private RoutePath route(long generation, State state, int source, int target, QueryMode mode,
+							CarrierFilter filter, Metrics.Probe probe) {
+		RouteGraph graph = state.graph;
+		if (filter != null && filter.getCarriers() != graph.carriers()) {
+			throw new IllegalArgumentException("Carrier filter belongs to another graph");
+		}
+		if (source < 0 || target < 0) {
+			return answered(probe, Metrics.Outcome.UNKNOWN_AIRPORT, null);
+		}
+		// unreachable pairs are answered by the component index without a search
+		if (!graph.components().canReach(source, target)) {
+			return answered(probe, Metrics.Outcome.UNREACHABLE, null);
+		}
+		if (filter != null) {
+			return search(state, source, target, mode == QueryMode.CH ? QueryMode.BIDIRECTIONAL : mode, filter,
+						  probe);
+		}
+		RoutePath cached = routeCache.get(source, target, mode);
+		if (cached != null) {
+			return answered(probe, Metrics.Outcome.ROUTE_CACHE, cached == RouteCache.NO_ROUTE ? null : cached);
+		}
+		RoutePath path = null;
+		// Dijkstra queries from an origin that keeps coming back reuse its whole tree
+		if (mode == QueryMode.DIJKSTRA) {
+			path = treeCache.find(graph, source, target);
+		}
+		if (path == RouteCache.NO_ROUTE) {
+			path = answered(probe, Metrics.Outcome.TREE_CACHE, null);
+		} else if (path == null) {
+			path = search(state, source, target, mode, null, probe);
+		} else {
+			answered(probe, Metrics.Outcome.TREE_CACHE, path);
+		}
+		routeCache.put(generation, source, target, mode, path);
+		return path;
+	}
+	
+	private static RoutePath answered(Metrics.Probe probe, Metrics.Outcome outcome, RoutePath path) {
+		if (probe != null) {
+			probe.setOutcome(outcome);
+		}
+		return path;
+	}
+	
+	/**
+	 * @param latitude1 The latitude of the origin point, in degrees.
+	 * @param longitude1 The longitude of the origin point, in degrees.
+	 * @param radius1 The distance in kilometres within which an airport counts as an origin.
+	 * @param latitude2 The latitude of the destination point, in degrees.
+	 * @param longitude2 The longitude of the destination point, in degrees.
+	 * @param radius2 The distance in kilometres within which an airport counts as a destination.
+	 * @returns the shortest route from any airport within radius1 of the origin point
+	 * 	to any airport within radius2 of the destination point, found with a single
+	 * 	search seeded with every origin airport; a route of no legs if an airport lies
+	 * 	in both areas, or null if there is no route or either area has no airport.
+	 */
+	public RoutePath findRouteBetweenAreas(double latitude1, double longitude1, double radius1,
+										   double latitude2, double longitude2, double radius2) {
+		State state = this.state;
+		RouteGraph graph = state.graph;
+		int[] sources = state.spatial().within(latitude1, longitude1, radius1);
+		int[] targets = state.spatial().within(latitude2, longitude2, radius2);
+		if (sources.length == 0 || targets.length == 0) {
+			return null;
+		}
+		SearchWorkspace ws = SearchWorkspace.forThread(graph.getNodeCount());
+		SearchWorkspace marks = SearchWorkspace.reverseForThread(graph.getNodeCount());
+		int target = PathFinder.dijkstraNearest(graph, ws, marks, sources, targets);
+		return target < 0 ? null : RoutePath.fromWorkspace(ws, target);
+	}
+	
+	/**
+	 * @param latitude The latitude of the point, in degrees.
+	 * @param longitude The longitude of the point, in degrees.
+	 * @param k The number of airports wanted.
+	 * @requires k >= 0
+	 * @returns the ids of the k airports nearest to the point, nearest first.
+	 */
+	public List<String> nearestAirports(double latitude, double longitude, int k) {
+		State state = this.state;
+		return idsOf(state.graph, state.spatial().nearest(latitude, longitude, k));
+	}
+	
+	/**
+	 * @param latitude The latitude of the point, in degrees.
+	 * @param longitude The longitude of the point, in degrees.
+	 * @param radiusKm The largest great-circle distance, in kilometres, to include.
+	 * @returns the ids of the airports within radiusKm of the point, nearest first;
+	 * 	none if radiusKm is negative or not a number.
+	 */
+	public List<String> airportsWithin(double latitude, double longitude, double radiusKm) {
+		State state = this.state;
+		return idsOf(state.graph, state.spatial().within(latitude, longitude, radiusKm));
+	}
+	
+	private static List<String> idsOf(RouteGraph graph, int[] indices) {
+		ArrayList<String> ids = new ArrayList<>(indices.length);
+		for (int i : indices) {
+			ids.add(graph.idOf(i));
+		}
+		return ids;
+	}
+	
+	/**
+	 * @param id The id of an airport.
+	 * @returns the {latitude, longitude} of the airport in degrees, or null if id is unknown.
+	 */
+	public double[] positionOf(String id) {
+		RouteGraph graph = this.state.graph;
+		int i = graph.indexOf(id);
+		return i < 0 ? null : new double[] {graph.latitude(i), graph.longitude(i)};
+	}
+	
+	/**
+	 * @param windowMicros How long, in microseconds, a findRouteAsync query waits for
+	 * 	others from the same origin, or a negative number to stop batching.
+	 * @param maxBatch The number of waiting queries that ends a wait early.
+	 * @param executor The executor the batched searches run on.
+	 * @requires maxBatch >= 1
+	 * @modifies this
+	 * @effects Enables, reconfigures or disables the batching of findRouteAsync
+	 * 	queries. Queries waiting in a previous batcher are answered at once.
+	 */
+	public void setBatching(long windowMicros, int maxBatch, Executor executor) {
+		RouteBatcher previous;
+		synchronized (writeLock) {
+			previous = this.batcher;
+			this.batcher = windowMicros < 0 ? null : new RouteBatcher(windowMicros, maxBatch, executor);
+		}
+		if (previous != null) {
+			previous.close();
+		}
+	}
+	
+	/**
+	 * @returns the batcher of findRouteAsync queries, or null if batching is off.
+	 */
+	public RouteBatcher getBatcher() {
+		return this.batcher;
+	}
+	
+	/**
+	 * @param node1 The id of the start airport.
+	 * @param node2 The id of the destination airport.
+	 * @returns a future that completes with the same route as
+	 * 	findRoute(node1, node2, QueryMode.DIJKSTRA), or null if there is none. Cached
+	 * 	and unreachable pairs complete at once. Otherwise, when batching is on, the
+	 * 	query is searched together with the other queries from node1 that arrive within
+	 * 	the batching window; when it is off, it is searched by the calling thread.
+	 */
+	public CompletableFuture<RoutePath> findRouteAsync(String node1, String node2) {
+		long generation = routeCache.getGeneration();
+		State state = this.state;
+		return routeAsync(generation, state, state.graph.indexOf(node1), state.graph.indexOf(node2));
+	}
+	
+	/**
+	 * @param airport1 The id or code of the start airport.
+	 * @param airport2 The id or code of the destination airport.
+	 * @throws IllegalArgumentException if either airport is unknown
+	 * @returns a future that completes with the answer to findRouteAsync(airport1,
+	 * 	airport2), with the graph the airports were resolved in and the route was found in.
+	 */
+	public CompletableFuture<Answer<RoutePath>> queryRouteAsync(String airport1, String airport2) {
+		long generation = routeCache.getGeneration();
+		State state = this.state;
+		int source = airportIndex(state, airport1);
+		int target = airportIndex(state, airport2);
+		return routeAsync(generation, state, source, target).thenApply(path -> new Answer<>(state.graph, path));
+	}
+	
+	// Answers a findRouteAsync query on state, which was read after generation. A
+	// negative index stands for an unknown airport.
+	private CompletableFuture<RoutePath> routeAsync(long generation, State state, int source, int target) {
+		RouteBatcher batcher = this.batcher;
+		if (batcher == null) {
+			return CompletableFuture.completedFuture(
+					timedRoute(generation, state, source, target, QueryMode.DIJKSTRA, null));
+		}
+		boolean timed = metrics.isEnabled();
+		long start = timed ? System.nanoTime() : 0L;
+		RouteGraph graph = state.graph;
+		Metrics.Outcome outcome = null;
+		RoutePath path = null;
+		if (source < 0 || target < 0) {
+			outcome = Metrics.Outcome.UNKNOWN_AIRPORT;
+		} else if (!graph.components().canReach(source, target)) {
+			outcome = Metrics.Outcome.UNREACHABLE;
+		} else {
+			RoutePath cached = routeCache.get(source, target, QueryMode.DIJKSTRA);
+			if (cached != null) {
+				outcome = Metrics.Outcome.ROUTE_CACHE;
+				path = cached == RouteCache.NO_ROUTE ? null : cached;
+			}
+		}
+		if (outcome != null) {
+			if (timed) {
+				metrics.recordQuery(QueryMode.DIJKSTRA, outcome, System.nanoTime() - start, path, null);
+			}
+			return CompletableFuture.completedFuture(path);
 		}
-		return null;
+		// the searches of a batch are shared, so batched queries are only timed
+		return batcher.submit(graph, source, target).thenApply(found -> {
+			routeCache.put(generation, source, target, QueryMode.DIJKSTRA, found);
+			if (timed) {
+				metrics.recordQuery(QueryMode.DIJKSTRA, Metrics.Outcome.BATCHED, System.nanoTime() - start, found,
+									null);
+			}
+			return found;
+		});
 	}
 	
+	// Runs the search for mode and, if probe is given, adds the work of its workspaces.
+	private static RoutePath search(State state, int source, int target, QueryMode mode, CarrierFilter filter,
+									Metrics.Probe probe) {
+		RouteGraph graph = state.graph;
+		ContractionHierarchy hierarchy = state.hierarchy;
+		GreatCircle greatCircle = state.greatCircle;
+		LandmarkIndex landmarks = state.landmarks;
+		SearchWorkspace ws = SearchWorkspace.forThread(graph.getNodeCount());
+		if ((mode == QueryMode.CH && hierarchy != null) || mode == QueryMode.BIDIRECTIONAL) {
+			SearchWorkspace reverseWs = SearchWorkspace.reverseForThread(graph.getNodeCount());
+			RoutePath path;
+			if (mode == QueryMode.CH) {
+				path = hierarchy.findRoute(graph, ws, reverseWs, source, target);
+			} else {
+				int meeting = PathFinder.bidirectional(graph, ws, reverseWs, source, target, filter);
+				path = meeting < 0 ? null : RoutePath.fromMeeting(ws, reverseWs, meeting);
+			}
+			if (probe != null) {
+				probe.add(ws);
+				probe.add(reverseWs);
+			}
+			return path;
+		}
+		boolean found;
+		switch (mode) {
+		case ASTAR:
+			found = PathFinder.aStar(graph, ws, source, target, greatCircle, filter);
+			break;
+		case ALT:
+			found = PathFinder.aStar(graph, ws, source, target,
+									 landmarks != null ? landmarks : greatCircle, filter);
+			break;
+		default:
+			found = PathFinder.dijkstra(graph, ws, source, target, filter);
+			break;
+		}
+		if (probe != null) {
+			probe.add(ws);
+		}
+		return found ? RoutePath.fromWorkspace(ws, target) : null;
+	}
+	
+	/**
+	 * @param node1 The id of the start airport.
+	 * @param node2 The id of the destination airport.
+	 * @param k The number of alternatives wanted.
+	 * @requires 1 <= k <= KShortestPaths.MAX_PATHS
+	 * @returns the up to k shortest loopless routes from node1 to node2, shortest
+	 * 	first, found with spur searches running on the common ForkJoinPool; an empty
+	 * 	list if there is no route or an airport is unknown.
+	 */
+	public List<RoutePath> findRoutes(String node1, String node2, int k) {
+		RouteGraph graph = this.state.graph;
+		int source = graph.indexOf(node1);
+		int target = graph.indexOf(node2);
+		if (source < 0 || target < 0) {
+			return new ArrayList<>();
+		}
+		return KShortestPaths.find(graph, source, target, k, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param airport1 The id or code of the start airport.
+	 * @param airport2 The id or code of the destination airport.
+	 * @param k The number of alternatives wanted.
+	 * @requires 1 <= k <= KShortestPaths.MAX_PATHS
+	 * @throws IllegalArgumentException if either airport is unknown
+	 * @returns the answer to findRoutes(airport1, airport2, k), with the graph the
+	 * 	airports were resolved in and the routes were found in.
+	 */
+	public Answer<List<RoutePath>> queryRoutes(String airport1, String airport2, int k) {
+		State state = this.state;
+		int source = airportIndex(state, airport1);
+		int target = airportIndex(state, airport2);
+		return new Answer<>(state.graph,
+							KShortestPaths.find(state.graph, source, target, k, ForkJoinPool.commonPool()));
+	}
+	
+	/**
+	 * @param node1 The id of the start airport.
+	 * @param node2 The id of the destination airport.
+	 * @param maxLegs The largest number of legs (flights) the route may have.
+	 * @requires 0 <= maxLegs <= HopLimitedSearch.MAX_LEGS
+	 * @returns the shortest route from node1 to node2 with at most maxLegs legs, or null
+	 * 	if there is none.
+	 */
+	public RoutePath findRouteWithinLegs(String node1, String node2, int maxLegs) {
+		State state = this.state;
+		int source = state.graph.indexOf(node1);
+		int target = state.graph.indexOf(node2);
+		if (source < 0 || target < 0) {
+			return null;
+		}
+		return routeWithinLegs(state, source, target, maxLegs);
+	}
+	
+	/**
+	 * @param airport1 The id or code of the start airport.
+	 * @param airport2 The id or code of the destination airport.
+	 * @param maxLegs The largest number of legs (flights) the route may have.
+	 * @requires 0 <= maxLegs <= HopLimitedSearch.MAX_LEGS
+	 * @throws IllegalArgumentException if either airport is unknown
+	 * @returns the answer to findRouteWithinLegs(airport1, airport2, maxLegs), with the
+	 * 	graph the airports were resolved in and the route was found in.
+	 */
+	public Answer<RoutePath> queryRouteWithinLegs(String airport1, String airport2, int maxLegs) {
+		State state = this.state;
+		int source = airportIndex(state, airport1);
+		int target = airportIndex(state, airport2);
+		return new Answer<>(state.graph, routeWithinLegs(state, source, target, maxLegs));
+	}
+	
+	private static RoutePath routeWithinLegs(State state, int source, int target, int maxLegs) {
+		RouteGraph graph = state.graph;
+		HopLimitedSearch search = HopLimitedSearch.forThread(graph.getNodeCount());
+		return search.search(graph, source, target, maxLegs, state.greatCircle, null) ? search.path(target) : null;
+	}
+	
+	/**
+	 * @param origin The id of the start airport.
+	 * @param destinationIds The ids of the destination airports.
+	 * @param maxLegs The largest number of legs (flights) a route may have.
+	 * @requires 0 <= maxLegs <= HopLimitedSearch.MAX_LEGS
+	 * @throws IllegalArgumentException if an id is not a known airport
+	 * @returns an array holding, for every destination in order, the shortest route
+	 * 	from origin with at most maxLegs legs, or null if there is none. All routes come
+	 * 	from one layered search out of origin.
+	 */
+	public RoutePath[] findRoutesWithinLegs(String origin, String[] destinationIds, int maxLegs) {
+		RouteGraph graph = this.state.graph;
+		int source = indicesOf(graph, new String[] { origin })[0];
+		int[] targets = indicesOf(graph, destinationIds);
+		HopLimitedSearch search = HopLimitedSearch.forThread(graph.getNodeCount());
+		search.search(graph, source, -1, maxLegs, null, null);
+		RoutePath[] routes = new RoutePath[targets.length];
+		for (int i = 0; i < targets.length; i++) {
+			routes[i] = search.isReached(targets[i]) ? search.path(targets[i]) : null;
+		}
+		return routes;
+	}
+	
+	/**
+	 * @param id The id of the origin airport.
+	 * @param maxDistance The largest route distance to include, in kilometres.
+	 * @returns the airports reachable from id by a route at most maxDistance long,
+	 * 	nearest first with their distances, found by one search that stops at the
+	 * 	budget; null if id is unknown.
+	 */
+	public Reachability.ReachableSet reachableWithin(String id, double maxDistance) {
+		RouteGraph graph = this.state.graph;
+		int source = graph.indexOf(id);
+		if (source < 0) {
+			return null;
+		}
+		SearchWorkspace ws = SearchWorkspace.forThread(graph.getNodeCount());
+		return Reachability.withinDistance(graph, ws, source, maxDistance);
+	}
+	
+	/**
+	 * @param id The id of the origin airport.
+	 * @param maxLegs The largest number of legs (flights) to include.
+	 * @requires maxLegs >= 0
+	 * @returns the airports reachable from id with at most maxLegs legs, by ascending
+	 * 	number of legs, found by a breadth-first search whose large levels are expanded
+	 * 	on the common ForkJoinPool; null if id is unknown.
+	 */
+	public Reachability.ReachableSet reachableWithinLegs(String id, int maxLegs) {
+		RouteGraph graph = this.state.graph;
+		int source = graph.indexOf(id);
+		if (source < 0) {
+			return null;
+		}
+		return Reachability.withinLegs(graph, source, maxLegs, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param samples The number of random origins to search from, or 0 to search from
+	 * 	every airport.
+	 * @param threads The number of threads to run the searches on.
+	 * @requires samples >= 0 && threads > 0
+	 * @returns the betweenness and closeness centrality of the airports, exact or
+	 * 	estimated from samples origins, computed on a pool of threads threads made for
+	 * 	the call. The sampled origins are the same from call to call.
+	 */
+	public Centrality.Result computeCentrality(int samples, int threads) {
+		RouteGraph graph = this.state.graph;
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return samples == 0 ? Centrality.exact(graph, pool) : Centrality.sampled(graph, samples, 42L, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * @param csvFile The file to write.
+	 * @param runs Centrality runs over the current graph, the last of which is ranked.
+	 * @requires runs is not empty
+	 * @modifies csvFile
+	 * @effects Writes the airports ranked by the betweenness of the last run, with
+	 * 	the wall-clock time and speedup of every run, to csvFile.
+	 * @throws IOException if the file cannot be written
+	 */
+	public void exportCentrality(String csvFile, List<Centrality.Result> runs) throws IOException {
+		State state = this.state;
+		Centrality.writeCsv(csvFile, runs, state.graph, state.airports);
+	}
+	
+	/**
+	 * @param carriers Airline codes and alliance names (star, oneworld, skyteam),
+	 * 	separated by commas.
+	 * @returns a filter for the current graph that allows the routes flown by any of
+	 * 	the listed airlines or by any member of the listed alliances. Codes of airlines
+	 * 	that fly no route are ignored.
+	 */
+	public CarrierFilter carrierFilter(String carriers) {
+		List<String> codes = new ArrayList<>();
+		for (String token : carriers.split(",")) {
+			String code = token.trim();
+			if (code.isEmpty()) {
+				continue;
+			}
+			Alliance alliance = Alliance.forName(code);
+			if (alliance != null) {
+				codes.addAll(alliance.getMembers());
+			} else {
+				codes.add(code.toUpperCase());
+			}
+		}
+		return CarrierFilter.of(this.state.graph.carriers(), codes);
+	}
+	
+	/**
+	 * @param alliance An airline alliance.
+	 * @returns a filter for the current graph that allows the routes flown by any
+	 * 	member of alliance.
+	 */
+	public CarrierFilter allianceFilter(Alliance alliance) {
+		return CarrierFilter.of(this.state.graph.carriers(), alliance.getMembers());
+	}
+	
+	/**
+	 * @param originIds The ids of the origin airports.
+	 * @param destinationIds The ids of the destination airports.
+	 * @throws IllegalArgumentException if an id is not a known airport
+	 * @returns the row-major originIds.length x destinationIds.length matrix m with
+	 * 	m[i * destinationIds.length + j] the shortest route distance in kilometres from
+	 * 	originIds[i] to destinationIds[j], or positive infinity if there is no route.
+	 * 	The rows are computed in parallel on the common ForkJoinPool.
+	 */
+	public double[] distanceMatrix(String[] originIds, String[] destinationIds) {
+		RouteGraph graph = this.state.graph;
+		return DistanceMatrix.compute(graph, indicesOf(graph, originIds), indicesOf(graph, destinationIds),
+									  ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param originIds The ids of the origin airports.
+	 * @param destinationIds The ids of the destination airports.
+	 * @param consumer The receiver of the matrix rows.
+	 * @throws IllegalArgumentException if an id is not a known airport
+	 * @effects Computes the same matrix as distanceMatrix, but hands every row to
+	 * 	consumer as soon as it is finished, so the whole matrix is never held in memory.
+	 * 	consumer is called concurrently from the common ForkJoinPool.
+	 */
+	public void distanceMatrix(String[] originIds, String[] destinationIds,
+							   DistanceMatrix.RowConsumer consumer) {
+		RouteGraph graph = this.state.graph;
+		DistanceMatrix.stream(graph, indicesOf(graph, originIds), indicesOf(graph, destinationIds),
+							  ForkJoinPool.commonPool(), consumer);
+	}
+	
+	// Resolves an airport id, or failing that an IATA or ICAO code in any case, in state.
+	private static int airportIndex(State state, String airport) {
+		int index = state.graph.indexOf(airport);
+		if (index < 0) {
+			index = state.airports.indexOfCode(airport.toUpperCase());
+		}
+		if (index < 0) {
+			throw new IllegalArgumentException("unknown airport " + airport);
+		}
+		return index;
+	}
+	
+	private static int[] indicesOf(RouteGraph graph, String[] ids) {
+		int[] indices = new int[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			indices[i] = graph.indexOf(ids[i]);
+			if (indices[i] < 0) {
+				throw new IllegalArgumentException("Unknown airport id: " + ids[i]);
+			}
+		}
+		return indices;
+	}
+	
+	/**
+	 * @param node1 The id of the start airport.
+	 * @param node2 The id of the destination airport.
+	 * @returns the shortest route from node1 to node2 as a list of {from id, to id, distance}
+	 * 	edges, an empty list if node1 equals node2, or null if there is no route.
+	 */
+	public LinkedList<String[]> Dijkstra(String node1, String node2) {
+		if (node1.equals(node2)) {
+			return new LinkedList<>();
+		}
+		return toEdgeList(findRoute(node1, node2, QueryMode.DIJKSTRA));
+	}
+	
+	/**
+	 * @param node1 The id of the start airport.
+	 * @param node2 The id of the destination airport.
+	 * @returns the same route as Dijkstra(node1, node2), found with an A* search
+	 * 	guided by the great-circle distance to node2.
+	 */
+	public LinkedList<String[]> AStar(String node1, String node2) {
+		if (node1.equals(node2)) {
+			return new LinkedList<>();
+		}
+		return toEdgeList(findRoute(node1, node2, QueryMode.ASTAR));
+	}
+	
+	/**
+	 * @param path A route through the current graph, or null.
+	 * @returns path as a list of {from id, to id, distance} edges, or null if path is null.
+	 */
+	public LinkedList<String[]> toEdgeList(RoutePath path) {
+		if (path == null) {
+			return null;
+		}
+		RouteGraph graph = this.state.graph;
+		LinkedList<String[]> edges = new LinkedList<>();
+		for (int i = 1; i < path.getNodeCount(); i++) {
+			int from = path.nodeAt(i - 1);
+			int to = path.nodeAt(i);
+			String[] edge = {graph.idOf(from), graph.idOf(to), Double.toString(graph.edgeWeight(from, to))};
+			edges.add(edge);
+		}
+		return edges;
+	}
+	
+	/**
+	 * @param id The id of the destination airport.
+	 * @returns the ids of every airport, other than id itself, that has a route to id,
+	 * 	nearest first; an empty list if id is unknown.
+	 */
+	public List<String> getAirportsReaching(String id) {
+		RouteGraph graph = this.state.graph;
+		int target = graph.indexOf(id);
+		ArrayList<String> airports = new ArrayList<>();
+		if (target < 0) {
+			return airports;
+		}
+		RouteGraph reverse = graph.reverse();
+		SearchWorkspace ws = SearchWorkspace.forThread(reverse.getNodeCount());
+		// the search lists airports as it settles them, which is already nearest first
+		Reachability.ReachableSet reaching = Reachability.withinDistance(reverse, ws, target, Double.POSITIVE_INFINITY);
+		for (int i = 1; i < reaching.size(); i++) {
+			airports.add(graph.idOf(reaching.node(i)));
+		}
+		return airports;
+	}
+	
+	/**
+	 * @returns the names and codes of the airports, indexed like the nodes of the graph.
+	 */
+	public AirportStore getAirports() {
+		return this.state.airports;
+	}
+	
+	/**
+	 * @param name The name under which airports are listed, which is their city.
+	 * @returns the id of the airport listed under name, or null if there is none.
+	 */
 	public String getIdByName(String name) {
-		return this.nameToInfo.get(name).get(0);
+		State state = this.state;
+		int index = state.airports.indexOfCity(name);
+		return index < 0 ? null : state.graph.idOf(index);
+	}
+	
+	/**
+	 * @param code An IATA or ICAO airport code.
+	 * @returns the id of the airport with that code, or null if there is none.
+	 */
+	public String getIdByCode(String code) {
+		State state = this.state;
+		int index = state.airports.indexOfCode(code);
+		return index < 0 ? null : state.graph.idOf(index);
 	}
 	
+	/**
+	 * @param id The id of an airport.
+	 * @returns the name under which the airport is listed, or null if id is unknown.
+	 */
 	public String getNameById(String id) {
-		return this.idToInfo.get(id).get(1);
+		State state = this.state;
+		int index = state.graph.indexOf(id);
+		return index < 0 ? null : state.airports.city(index);
 	}
 	
+	/**
+	 * @param nameOrId An airport id, or the name under which an airport is listed.
+	 * @returns true iff nameOrId identifies an airport.
+	 */
 	public boolean containsNameOrId(String nameOrId) {
-		return this.idToInfo.containsKey(nameOrId) || this.nameToInfo.containsKey(nameOrId);
+		State state = this.state;
+		return state.graph.indexOf(nameOrId) >= 0 || state.airports.indexOfCity(nameOrId) >= 0;
 	}
 	
 }
@@ -0,0 +1,384 @@
+package main;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <b>AirportStore</b> is an immutable column store of the text attributes of the
+ * airports of a RouteGraph: name, city, IATA code and ICAO code. Airport i of the
+ * store is node i of the graph. All attributes live in a single UTF-8 byte arena,
+ * addressed by an offset column, and open-addressing hash tables map a city, an
+ * airport name, or an IATA or ICAO code to an airport index. Lookups hash and compare
+ * the key against the arena bytes in place, so they allocate nothing.
+ *
+ * The arena and offsets are held in buffers, so a store opened by GraphSnapshot reads
+ * its strings straight from the mapped file.
+ */
+public final class AirportStore {
+
+	/** The attribute holding the airport name. */
+	public static final int NAME = 0;
+	/** The attribute holding the city the airport serves. */
+	public static final int CITY = 1;
+	/** The attribute holding the 3-letter IATA code, or "" if there is none. */
+	public static final int IATA = 2;
+	/** The attribute holding the 4-letter ICAO code, or "" if there is none. */
+	public static final int ICAO = 3;
+
+	static final int FIELDS = 4;
+
+	private final int size;
+	private final ByteBuffer arena;
+	private final IntBuffer offsets;
+	private final int[] hashes;
+	private final int[] byCity;
+	private final int[] byName;
+	private final int[] byIata;
+	private final int[] byIcao;
+
+	// Abstraction Function:
+	// AirportStore, s, represents a list of size airports where attribute f of airport i
+	// is the UTF-8 text in arena[offsets[FIELDS * i + f], offsets[FIELDS * i + f + 1]).
+	// byCity, byName, byIata and byIcao are open-addressing tables whose non-zero slots
+	// hold i + 1 for an airport i indexed under its city, name, IATA or ICAO code.
+	//
+	// Representation Invariant for every AirportStore s:
+	// offsets.limit() == FIELDS * size + 1 && offsets is non-decreasing &&
+	// hashes[FIELDS * i + f] == the String hash code of attribute f of airport i &&
+	// the length of every table is a power of two greater than the number of keys in it
+
+	/**
+	 * @param arena The UTF-8 bytes of every attribute, in airport and attribute order.
+	 * @param offsets The FIELDS * size + 1 offsets of the attributes in arena.
+	 * @requires offsets.limit() % FIELDS == 1 && offsets is non-decreasing
+	 * @effects Constructs a new AirportStore over arena and offsets and builds its
+	 * 	lookup tables. When several airports share a city or name, lookups by it find
+	 * 	the one with the highest index.
+	 */
+	public AirportStore(ByteBuffer arena, IntBuffer offsets) {
+		this.size = (offsets.limit() - 1) / FIELDS;
+		this.arena = arena;
+		this.offsets = offsets;
+		this.hashes = new int[FIELDS * size];
+		for (int k = 0; k < hashes.length; k++) {
+			hashes[k] = hashUtf8(offsets.get(k), offsets.get(k + 1));
+		}
+		this.byCity = new int[tableSize(size)];
+		this.byName = new int[tableSize(size)];
+		this.byIata = new int[tableSize(size)];
+		this.byIcao = new int[tableSize(size)];
+		for (int i = 0; i < size; i++) {
+			insert(byCity, i, CITY);
+			insert(byName, i, NAME);
+			insert(byIata, i, IATA);
+			insert(byIcao, i, ICAO);
+		}
+	}
+
+	// Extends base, whose attributes are the first ones of arena and offsets, with the
+	// airports after them, copying the hashes and tables of base instead of rebuilding
+	// them; the tables are only rebuilt, from the hashes, when they have to grow.
+	private AirportStore(AirportStore base, ByteBuffer arena, IntBuffer offsets) {
+		this.size = (offsets.limit() - 1) / FIELDS;
+		this.arena = arena;
+		this.offsets = offsets;
+		this.hashes = Arrays.copyOf(base.hashes, FIELDS * size);
+		for (int k = base.hashes.length; k < hashes.length; k++) {
+			hashes[k] = hashUtf8(offsets.get(k), offsets.get(k + 1));
+		}
+		int from = base.size;
+		if (tableSize(size) == base.byCity.length) {
+			this.byCity = base.byCity.clone();
+			this.byName = base.byName.clone();
+			this.byIata = base.byIata.clone();
+			this.byIcao = base.byIcao.clone();
+		} else {
+			this.byCity = new int[tableSize(size)];
+			this.byName = new int[tableSize(size)];
+			this.byIata = new int[tableSize(size)];
+			this.byIcao = new int[tableSize(size)];
+			from = 0;
+		}
+		for (int i = from; i < size; i++) {
+			insert(byCity, i, CITY);
+			insert(byName, i, NAME);
+			insert(byIata, i, IATA);
+			insert(byIcao, i, ICAO);
+		}
+	}
+
+	private static int tableSize(int keys) {
+		return Integer.highestOneBit(Math.max(keys, 4) * 2 - 1) << 1;
+	}
+
+	// Puts airport i into table under attribute field, replacing an equal key.
+	private void insert(int[] table, int i, int field) {
+		int k = FIELDS * i + field;
+		if (offsets.get(k) == offsets.get(k + 1)) {
+			return;
+		}
+		int mask = table.length - 1;
+		for (int slot = mix(hashes[k]) & mask; ; slot = (slot + 1) & mask) {
+			int other = table[slot] - 1;
+			if (other < 0 || sameKey(other, i, field)) {
+				table[slot] = i + 1;
+				return;
+			}
+		}
+	}
+
+	// Looks key up in the table of attribute field; returns -1 if it is absent.
+	private int find(int[] table, String key, int field) {
+		if (key == null || key.isEmpty()) {
+			return -1;
+		}
+		int hash = key.hashCode();
+		int mask = table.length - 1;
+		for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+			int i = table[slot] - 1;
+			if (i < 0) {
+				return -1;
+			}
+			if (matches(i, field, hash, key)) {
+				return i;
+			}
+		}
+	}
+
+	private static int mix(int hash) {
+		return (hash * 0x9E3779B9) ^ (hash >>> 16);
+	}
+
+	/**
+	 * @returns the number of airports.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param city A city name.
+	 * @returns the index of the airport serving city, or -1 if there is none.
+	 */
+	public int indexOfCity(String city) {
+		return find(byCity, city, CITY);
+	}
+
+	/**
+	 * @param name An airport name.
+	 * @returns the index of the airport with that name, or -1 if there is none.
+	 */
+	public int indexOfName(String name) {
+		return find(byName, name, NAME);
+	}
+
+	/**
+	 * @param code An IATA or ICAO airport code.
+	 * @returns the index of the airport with that code, or -1 if there is none.
+	 */
+	public int indexOfCode(String code) {
+		int i = find(byIata, code, IATA);
+		return i >= 0 ? i : find(byIcao, code, ICAO);
+	}
+
+	/**
+	 * @param i The index of an airport.
+	 * @param field One of NAME, CITY, IATA and ICAO.
+	 * @requires 0 <= i < size()
+	 * @returns the attribute field of airport i, decoded into a new String.
+	 */
+	public String get(int i, int field) {
+		int k = FIELDS * i + field;
+		int start = offsets.get(k);
+		byte[] bytes = new byte[offsets.get(k + 1) - start];
+		arena.get(start, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param i The index of an airport.
+	 * @returns the name of airport i.
+	 */
+	public String name(int i) {
+		return get(i, NAME);
+	}
+
+	/**
+	 * @param i The index of an airport.
+	 * @returns the city of airport i.
+	 */
+	public String city(int i) {
+		return get(i, CITY);
+	}
+
+	/**
+	 * @returns the arena of this store; only the bytes it addresses are meaningful.
+	 */
+	ByteBuffer arena() {
+		return arena.duplicate();
+	}
+
+	/**
+	 * @returns the offset column of this store.
+	 */
+	IntBuffer offsets() {
+		return offsets.duplicate();
+	}
+
+	/**
+	 * @returns the number of bytes the attribute text occupies in the arena.
+	 */
+	int arenaBytes() {
+		return offsets.get(FIELDS * size);
+	}
+
+	// The hash of a UTF-8 range is String.hashCode of its UTF-16 decoding, so that it
+	// can be compared with the hash of a lookup key.
+	private int hashUtf8(int start, int end) {
+		int h = 0;
+		for (int p = start; p < end; ) {
+			int length = utf8Length(arena.get(p));
+			int codePoint = codePointAt(p, length);
+			p += length;
+			if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+				h = 31 * h + codePoint;
+			} else {
+				h = 31 * h + Character.highSurrogate(codePoint);
+				h = 31 * h + Character.lowSurrogate(codePoint);
+			}
+		}
+		return h;
+	}
+
+	// Compares attribute field of airport i with key, decoding the arena as it goes.
+	private boolean matches(int i, int field, int hash, String key) {
+		int k = FIELDS * i + field;
+		if (hashes[k] != hash) {
+			return false;
+		}
+		int p = offsets.get(k);
+		int end = offsets.get(k + 1);
+		int c = 0;
+		while (p < end && c < key.length()) {
+			int length = utf8Length(arena.get(p));
+			int codePoint = key.codePointAt(c);
+			if (p + length > end || codePointAt(p, length) != codePoint) {
+				return false;
+			}
+			p += length;
+			c += Character.charCount(codePoint);
+		}
+		return p == end && c == key.length();
+	}
+
+	private static int utf8Length(byte lead) {
+		int b = lead & 0xff;
+		return b < 0x80 ? 1 : b < 0xe0 ? 2 : b < 0xf0 ? 3 : 4;
+	}
+
+	// Decodes the code point whose length byte UTF-8 sequence starts at p.
+	private int codePointAt(int p, int length) {
+		int b = arena.get(p) & 0xff;
+		switch (length) {
+		case 1:
+			return b;
+		case 2:
+			return ((b & 0x1f) << 6) | (arena.get(p + 1) & 0x3f);
+		case 3:
+			return ((b & 0x0f) << 12) | ((arena.get(p + 1) & 0x3f) << 6) | (arena.get(p + 2) & 0x3f);
+		default:
+			return ((b & 0x07) << 18) | ((arena.get(p + 1) & 0x3f) << 12)
+					| ((arena.get(p + 2) & 0x3f) << 6) | (arena.get(p + 3) & 0x3f);
+		}
+	}
+
+	private boolean sameKey(int i, int j, int field) {
+		int a = FIELDS * i + field;
+		int b = FIELDS * j + field;
+		int length = offsets.get(a + 1) - offsets.get(a);
+		if (hashes[a] != hashes[b] || length != offsets.get(b + 1) - offsets.get(b)) {
+			return false;
+		}
+		return arena.slice(offsets.get(a), length).equals(arena.slice(offsets.get(b), length));
+	}
+
+	/**
+	 * <b>Builder</b> appends airports to the arena of a new AirportStore.
+	 */
+	public static final class Builder {
+
+		private final AirportStore base;
+		private byte[] arena;
+		private int[] offsets;
+		private int fieldCount;
+
+		/**
+		 * @param expectedAirports A hint for the number of airports that will be added.
+		 * @effects Constructs a new empty Builder.
+		 */
+		public Builder(int expectedAirports) {
+			this.base = null;
+			this.arena = new byte[Math.max(expectedAirports, 16) * 48];
+			this.offsets = new int[FIELDS * Math.max(expectedAirports, 16) + 1];
+		}
+
+		/**
+		 * @param base The airports to start from.
+		 * @effects Constructs a new Builder that holds a copy of the airports of base,
+		 * 	with the same indices, so that more can be appended after them. The store it
+		 * 	builds reuses the lookup tables of base and only adds the new airports.
+		 */
+		public Builder(AirportStore base) {
+			this.base = base;
+			int bytes = base.arenaBytes();
+			// room for a few more airports; append grows the arrays if needed
+			this.arena = new byte[bytes + 16 * 48];
+			this.offsets = new int[FIELDS * (base.size() + 16) + 1];
+			base.arena.get(0, arena, 0, bytes);
+			fieldCount = FIELDS * base.size();
+			base.offsets.get(0, offsets, 0, fieldCount + 1);
+		}
+
+		/**
+		 * @param name The airport name.
+		 * @param city The city the airport serves.
+		 * @param iata The IATA code, or null or "\N" if there is none.
+		 * @param icao The ICAO code, or null or "\N" if there is none.
+		 * @modifies this
+		 * @effects Appends an airport, which gets the next index.
+		 */
+		public void add(String name, String city, String iata, String icao) {
+			append(name);
+			append(city);
+			append(iata);
+			append(icao);
+		}
+
+		private void append(String value) {
+			byte[] bytes = value == null || value.equals("\\N")
+					? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+			int start = offsets[fieldCount];
+			if (start + bytes.length > arena.length) {
+				arena = Arrays.copyOf(arena, Math.max(start + bytes.length, arena.length * 2));
+			}
+			if (fieldCount + 1 == offsets.length) {
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			}
+			System.arraycopy(bytes, 0, arena, start, bytes.length);
+			offsets[++fieldCount] = start + bytes.length;
+		}
+
+		/**
+		 * @returns a new AirportStore holding every airport added so far.
+		 */
+		public AirportStore build() {
+			ByteBuffer bytes = ByteBuffer.wrap(Arrays.copyOf(arena, offsets[fieldCount]));
+			IntBuffer starts = IntBuffer.wrap(Arrays.copyOf(offsets, fieldCount + 1));
+			return base == null ? new AirportStore(bytes, starts) : new AirportStore(base, bytes, starts);
+		}
+
+	}
+
+}
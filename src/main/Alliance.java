@@ -0,0 +1,45 @@
+package main;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <b>Alliance</b> lists the airline alliances and the IATA codes of their member
+ * carriers, as of 2020.
+ */
+public enum Alliance {
+
+	STAR_ALLIANCE("A3", "AC", "CA", "AI", "NZ", "NH", "OZ", "OS", "AV", "SN", "CM", "OU", "MS",
+			"ET", "BR", "LO", "LH", "SK", "ZH", "SQ", "SA", "LX", "TP", "TG", "TK", "UA"),
+	ONEWORLD("AA", "BA", "CX", "AY", "IB", "JL", "MH", "QF", "QR", "AT", "RJ", "S7", "UL"),
+	SKYTEAM("SU", "AR", "AM", "UX", "AF", "AZ", "CI", "MU", "OK", "DL", "GA", "KQ", "KL", "KE",
+			"ME", "SV", "RO", "VN", "MF");
+
+	private final List<String> members;
+
+	Alliance(String... members) {
+		this.members = Arrays.asList(members);
+	}
+
+	/**
+	 * @returns the IATA codes of the member airlines.
+	 */
+	public List<String> getMembers() {
+		return members;
+	}
+
+	/**
+	 * @param name An alliance name such as "star", "oneworld" or "skyteam", in any case.
+	 * @returns the alliance with that name, or null if there is none.
+	 */
+	public static Alliance forName(String name) {
+		String key = name.trim().toUpperCase().replace(' ', '_');
+		for (Alliance alliance : values()) {
+			if (alliance.name().equals(key) || alliance.name().startsWith(key + "_")) {
+				return alliance;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,73 @@
+package main;
+
+/**
+ * <b>CarrierFilter</b> is an immutable restriction of a search to the routes flown by a
+ * chosen set of carriers. It holds one bit per carrier set of a CarrierSets, set iff the
+ * set contains an allowed carrier, so testing an edge during relaxation is a single
+ * bit lookup and the graph itself is never copied or filtered.
+ */
+public final class CarrierFilter {
+
+	private final CarrierSets carriers;
+	private final long[] allowedSets;
+
+	// Abstraction Function:
+	// CarrierFilter, f, allows an edge whose carrier set is s iff bit s of allowedSets is set,
+	// i.e. iff one of the carriers in set s of f.carriers was chosen.
+	//
+	// Representation Invariant for every CarrierFilter f:
+	// allowedSets.length == (carriers.getSetCount() + 63) / 64
+
+	/**
+	 * @param carriers The carrier dictionary of the graph to search.
+	 * @param allowedCarriers One bit per carrier index, set for the carriers to allow.
+	 * @effects Constructs a new CarrierFilter that allows every edge flown by at least
+	 * 	one carrier in allowedCarriers.
+	 */
+	public CarrierFilter(CarrierSets carriers, long[] allowedCarriers) {
+		this.carriers = carriers;
+		int sets = carriers.getSetCount();
+		this.allowedSets = new long[(sets + 63) >>> 6];
+		for (int s = 0; s < sets; s++) {
+			for (int p = carriers.firstMember(s); p < carriers.endMember(s); p++) {
+				int c = carriers.member(p);
+				if ((c >>> 6) < allowedCarriers.length && (allowedCarriers[c >>> 6] & (1L << c)) != 0) {
+					allowedSets[s >>> 6] |= 1L << s;
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param carriers The carrier dictionary of the graph to search.
+	 * @param codes Airline codes; codes that fly no route are ignored.
+	 * @returns a new CarrierFilter that allows the routes flown by any of codes.
+	 */
+	public static CarrierFilter of(CarrierSets carriers, Iterable<String> codes) {
+		long[] allowed = new long[(carriers.getCarrierCount() + 63) >>> 6];
+		for (String code : codes) {
+			int c = carriers.indexOf(code.trim());
+			if (c >= 0) {
+				allowed[c >>> 6] |= 1L << c;
+			}
+		}
+		return new CarrierFilter(carriers, allowed);
+	}
+
+	/**
+	 * @returns the carrier dictionary this filter was built for.
+	 */
+	public CarrierSets getCarriers() {
+		return carriers;
+	}
+
+	/**
+	 * @param set The carrier set of an edge.
+	 * @returns true iff the edge is flown by an allowed carrier.
+	 */
+	public boolean allows(int set) {
+		return (allowedSets[set >>> 6] & (1L << set)) != 0;
+	}
+
+}
@@ -0,0 +1,326 @@
+package main;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * <b>CarrierSets</b> is the immutable dictionary of the airlines that operate the
+ * edges of a RouteGraph. Every airline is a carrier with a dense index, and every
+ * distinct combination of carriers flying the same airport pair is interned once as
+ * a carrier set, so an edge stores a single set index however many airlines serve it.
+ *
+ * Airline codes are the 2-letter IATA or 3-letter ICAO codes of routes.csv, packed into
+ * an int one ASCII byte per character.
+ */
+public final class CarrierSets {
+
+	private final IntBuffer codes;
+	private final IntBuffer setOffsets;
+	private final IntBuffer setMembers;
+
+	// Abstraction Function:
+	// CarrierSets, c, represents the carriers 0 .. codes.limit() - 1, carrier i having
+	// the packed airline code codes[i], and the carrier sets 0 .. setOffsets.limit() - 2,
+	// set s holding the carriers setMembers[setOffsets[s]] .. setMembers[setOffsets[s + 1] - 1].
+	//
+	// Representation Invariant for every CarrierSets c:
+	// setOffsets.limit() >= 1 && setOffsets[0] == 0 && setOffsets is non-decreasing &&
+	// the members of every set are distinct, sorted, valid carrier indices
+
+	/**
+	 * @param codes The packed airline code of every carrier.
+	 * @param setOffsets The CSR offsets of the carrier sets.
+	 * @param setMembers The carriers of every set, in set order.
+	 * @requires the buffers hold carrier sets as laid out by Builder.build
+	 * @effects Constructs a new CarrierSets over the given buffers.
+	 */
+	CarrierSets(IntBuffer codes, IntBuffer setOffsets, IntBuffer setMembers) {
+		this.codes = codes;
+		this.setOffsets = setOffsets;
+		this.setMembers = setMembers;
+	}
+
+	/**
+	 * @returns the number of carriers.
+	 */
+	public int getCarrierCount() {
+		return codes.limit();
+	}
+
+	/**
+	 * @returns the number of distinct carrier sets.
+	 */
+	public int getSetCount() {
+		return setOffsets.limit() - 1;
+	}
+
+	/**
+	 * @param carrier The index of a carrier.
+	 * @returns the airline code of carrier.
+	 */
+	public String code(int carrier) {
+		return unpack(codes.get(carrier));
+	}
+
+	/**
+	 * @param code An airline code.
+	 * @returns the index of the carrier with that code, or -1 if no route is flown by it.
+	 */
+	public int indexOf(String code) {
+		int packed = pack(code);
+		if (packed == 0) {
+			return -1;
+		}
+		for (int i = 0; i < codes.limit(); i++) {
+			if (codes.get(i) == packed) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param set The index of a carrier set.
+	 * @returns the position of the first carrier of set in the member column.
+	 */
+	public int firstMember(int set) {
+		return setOffsets.get(set);
+	}
+
+	/**
+	 * @param set The index of a carrier set.
+	 * @returns one past the position of the last carrier of set in the member column.
+	 */
+	public int endMember(int set) {
+		return setOffsets.get(set + 1);
+	}
+
+	/**
+	 * @param position A position in the member column.
+	 * @returns the carrier at position.
+	 */
+	public int member(int position) {
+		return setMembers.get(position);
+	}
+
+	/**
+	 * @param set The index of a carrier set.
+	 * @param carrier The index of a carrier.
+	 * @returns the index of the set holding the carriers of set and carrier, or -1 if
+	 * 	no such set has been interned.
+	 */
+	public int union(int set, int carrier) {
+		int first = firstMember(set);
+		int size = endMember(set) - first;
+		int[] members = new int[size + 1];
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			int c = member(first + i);
+			if (c == carrier) {
+				return set;
+			}
+			if (count == i && carrier < c) {
+				members[count++] = carrier;
+			}
+			members[count++] = c;
+		}
+		if (count == size) {
+			members[count++] = carrier;
+		}
+		for (int other = 0; other < getSetCount(); other++) {
+			int start = firstMember(other);
+			if (endMember(other) - start != count) {
+				continue;
+			}
+			int i = 0;
+			while (i < count && member(start + i) == members[i]) {
+				i++;
+			}
+			if (i == count) {
+				return other;
+			}
+		}
+		return -1;
+	}
+
+	IntBuffer codes() {
+		return codes.duplicate();
+	}
+
+	IntBuffer setOffsets() {
+		return setOffsets.duplicate();
+	}
+
+	IntBuffer setMembers() {
+		return setMembers.duplicate();
+	}
+
+	/**
+	 * @param code An airline code of at most 4 ASCII characters.
+	 * @returns code packed into an int, or 0 if it is empty, too long, or "\N".
+	 */
+	public static int pack(String code) {
+		if (code == null || code.isEmpty() || code.length() > 4 || code.equals("\\N")) {
+			return 0;
+		}
+		int packed = 0;
+		for (int i = 0; i < code.length(); i++) {
+			char c = code.charAt(i);
+			if (c > 0x7f) {
+				return 0;
+			}
+			packed = (packed << 8) | c;
+		}
+		return packed;
+	}
+
+	private static String unpack(int packed) {
+		StringBuilder code = new StringBuilder(4);
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			int c = (packed >>> shift) & 0xff;
+			if (c != 0) {
+				code.append((char) c);
+			}
+		}
+		return code.toString();
+	}
+
+	/**
+	 * <b>Builder</b> assigns carrier indices to airline codes and interns carrier sets.
+	 */
+	public static final class Builder {
+
+		private final HashMap<Integer, Integer> carrierByCode;
+		private int[] codes;
+		private int carrierCount;
+		private final HashMap<Long, Integer> setsByHash;
+		private int[] setOffsets;
+		private int[] setMembers;
+		private int setCount;
+
+		/**
+		 * @effects Constructs a new Builder that holds only the empty carrier set.
+		 */
+		public Builder() {
+			this.carrierByCode = new HashMap<>();
+			this.codes = new int[64];
+			this.setsByHash = new HashMap<>();
+			this.setOffsets = new int[64];
+			this.setMembers = new int[256];
+			intern(new int[0], 0);
+		}
+
+		/**
+		 * @param base The carrier sets to start from.
+		 * @effects Constructs a new Builder that holds the carriers and sets of base,
+		 * 	with the same indices, so that more can be added to a copy of base.
+		 */
+		public Builder(CarrierSets base) {
+			this();
+			for (int c = 0; c < base.getCarrierCount(); c++) {
+				carrier(base.codes.get(c));
+			}
+			int[] members = new int[16];
+			for (int set = 1; set < base.getSetCount(); set++) {
+				int size = base.endMember(set) - base.firstMember(set);
+				if (size > members.length) {
+					members = new int[size];
+				}
+				base.setMembers.get(base.firstMember(set), members, 0, size);
+				intern(members, size);
+			}
+		}
+
+		/**
+		 * @returns the number of carriers added so far.
+		 */
+		public int getCarrierCount() {
+			return carrierCount;
+		}
+
+		/**
+		 * @returns the number of sets interned so far.
+		 */
+		public int getSetCount() {
+			return setCount;
+		}
+
+		/**
+		 * @param packedCode An airline code packed by pack.
+		 * @modifies this
+		 * @returns the index of the carrier with that code, adding it if it is new, or
+		 * 	-1 if packedCode is 0.
+		 */
+		public int carrier(int packedCode) {
+			if (packedCode == 0) {
+				return -1;
+			}
+			Integer known = carrierByCode.get(packedCode);
+			if (known != null) {
+				return known;
+			}
+			if (carrierCount == codes.length) {
+				codes = Arrays.copyOf(codes, carrierCount * 2);
+			}
+			codes[carrierCount] = packedCode;
+			carrierByCode.put(packedCode, carrierCount);
+			return carrierCount++;
+		}
+
+		/**
+		 * @param carriers A buffer of carrier indices; its first count entries are used.
+		 * @param count The number of carriers in the set.
+		 * @modifies this, carriers
+		 * @effects Sorts the first count entries of carriers and drops duplicates and -1s.
+		 * @returns the index of the set of those carriers, adding it if it is new.
+		 */
+		public int intern(int[] carriers, int count) {
+			Arrays.sort(carriers, 0, count);
+			int size = 0;
+			for (int i = 0; i < count; i++) {
+				if (carriers[i] >= 0 && (size == 0 || carriers[size - 1] != carriers[i])) {
+					carriers[size++] = carriers[i];
+				}
+			}
+			long hash = size;
+			for (int i = 0; i < size; i++) {
+				hash = hash * 0x9E3779B97F4A7C15L + carriers[i];
+			}
+			// a hash collision is resolved by probing the next hash value
+			while (true) {
+				Integer set = setsByHash.get(hash);
+				if (set == null) {
+					break;
+				}
+				if (setOffsets[set + 1] - setOffsets[set] == size
+						&& Arrays.equals(setMembers, setOffsets[set], setOffsets[set + 1], carriers, 0, size)) {
+					return set;
+				}
+				hash++;
+			}
+			if (setCount + 2 > setOffsets.length) {
+				setOffsets = Arrays.copyOf(setOffsets, setOffsets.length * 2);
+			}
+			int start = setOffsets[setCount];
+			if (start + size > setMembers.length) {
+				setMembers = Arrays.copyOf(setMembers, Math.max(start + size, setMembers.length * 2));
+			}
+			System.arraycopy(carriers, 0, setMembers, start, size);
+			setOffsets[setCount + 1] = start + size;
+			setsByHash.put(hash, setCount);
+			return setCount++;
+		}
+
+		/**
+		 * @returns a new CarrierSets holding every carrier and set added so far.
+		 */
+		public CarrierSets build() {
+			return new CarrierSets(IntBuffer.wrap(Arrays.copyOf(codes, carrierCount)),
+					IntBuffer.wrap(Arrays.copyOf(setOffsets, setCount + 1)),
+					IntBuffer.wrap(Arrays.copyOf(setMembers, setOffsets[setCount])));
+		}
+
+	}
+
+}
@@ -0,0 +1,417 @@
+package main;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <b>Centrality</b> ranks airports by betweenness, the number of shortest routes
+ * between other airports that pass through them, and by closeness, how near they are
+ * to the airports they reach. Both come from Brandes' algorithm: one Dijkstra search
+ * per origin that counts the shortest routes to every airport, followed by one pass
+ * back over the airports in reverse settle order that hands each airport's share of
+ * those routes to its predecessors. Nothing is copied per route.
+ *
+ * The origins are spread over a ForkJoinPool. Each range of origins borrows an
+ * accumulator that no other thread is using, so no more accumulators are made than
+ * threads run at once, and they are summed once all origins are done. In sampled mode
+ * only a random subset of origins is searched and betweenness is scaled up by the
+ * fraction sampled, which estimates it for graphs too large for every origin;
+ * closeness is then known for the sampled origins only.
+ *
+ * There is no representation invariant or abstraction function for this class. This
+ * is because Centrality is never constructed and only contains static methods.
+ */
+public final class Centrality {
+
+	// origins per task below which a range is no longer split
+	private static final int SPLIT_THRESHOLD = 16;
+
+	/**
+	 * <b>Result</b> is the immutable outcome of one centrality run.
+	 */
+	public static final class Result {
+
+		private final double[] betweenness;
+		private final double[] closeness;
+		private final int[] reached;
+		private final int sourceCount;
+		private final int parallelism;
+		private final long nanos;
+
+		// Abstraction Function:
+		// Result, r, represents the betweenness betweenness[v] and closeness closeness[v]
+		// of every node v, closeness being NaN for the nodes that were not searched from,
+		// found by searching from sourceCount origins on parallelism threads in nanos
+		// nanoseconds; reached[v] is the number of other nodes v reaches, or -1.
+
+		private Result(double[] betweenness, double[] closeness, int[] reached, int sourceCount,
+					   int parallelism, long nanos) {
+			this.betweenness = betweenness;
+			this.closeness = closeness;
+			this.reached = reached;
+			this.sourceCount = sourceCount;
+			this.parallelism = parallelism;
+			this.nanos = nanos;
+		}
+
+		/**
+		 * @returns the number of nodes the result covers.
+		 */
+		public int getNodeCount() {
+			return betweenness.length;
+		}
+
+		/**
+		 * @param v The index of a node.
+		 * @returns the number of shortest routes between two other nodes that pass
+		 * 	through v, each route between a pair counting as a share of one when the pair
+		 * 	has several; estimated if the result is sampled.
+		 */
+		public double betweenness(int v) {
+			return betweenness[v];
+		}
+
+		/**
+		 * @param v The index of a node.
+		 * @returns the betweenness of v as a fraction of the number of ordered pairs
+		 * 	of other nodes.
+		 */
+		public double normalizedBetweenness(int v) {
+			double n = betweenness.length;
+			return n < 3 ? 0.0 : betweenness[v] / ((n - 1) * (n - 2));
+		}
+
+		/**
+		 * @param v The index of a node.
+		 * @returns the number of other nodes v reaches divided by the sum of their
+		 * 	distances, scaled by the fraction of all other nodes that v reaches; 0 if v
+		 * 	reaches none, and NaN if v was not searched from.
+		 */
+		public double closeness(int v) {
+			return closeness[v];
+		}
+
+		/**
+		 * @param v The index of a node.
+		 * @returns the number of other nodes v reaches, or -1 if v was not searched from.
+		 */
+		public int reachedCount(int v) {
+			return reached[v];
+		}
+
+		/**
+		 * @returns the number of origins searched from.
+		 */
+		public int getSourceCount() {
+			return sourceCount;
+		}
+
+		/**
+		 * @returns true iff only some of the nodes were searched from.
+		 */
+		public boolean isSampled() {
+			return sourceCount < betweenness.length;
+		}
+
+		/**
+		 * @returns the number of threads of the pool the run used.
+		 */
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		/**
+		 * @returns the wall-clock time of the run, in nanoseconds.
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 * @returns the indices of the nodes by descending betweenness, ties by index.
+		 */
+		public int[] ranked() {
+			Integer[] order = new Integer[betweenness.length];
+			for (int v = 0; v < order.length; v++) {
+				order[v] = v;
+			}
+			Arrays.sort(order, (a, b) -> {
+				int c = Double.compare(betweenness[b], betweenness[a]);
+				return c != 0 ? c : Integer.compare(a, b);
+			});
+			int[] ranked = new int[order.length];
+			for (int i = 0; i < ranked.length; i++) {
+				ranked[i] = order[i];
+			}
+			return ranked;
+		}
+
+	}
+
+	private Centrality() {
+	}
+
+	/**
+	 * @param graph The graph to analyse.
+	 * @param pool The pool to run the searches on.
+	 * @returns the exact betweenness and closeness of every node, searching from
+	 * 	every node.
+	 */
+	public static Result exact(RouteGraph graph, ForkJoinPool pool) {
+		int[] sources = new int[graph.getNodeCount()];
+		for (int s = 0; s < sources.length; s++) {
+			sources[s] = s;
+		}
+		return compute(graph, sources, pool);
+	}
+
+	/**
+	 * @param graph The graph to analyse.
+	 * @param samples The number of origins to search from.
+	 * @param seed The seed of the random choice of origins.
+	 * @param pool The pool to run the searches on.
+	 * @requires samples > 0
+	 * @returns the betweenness of every node estimated from samples distinct random
+	 * 	origins, or the exact result if samples is at least the number of nodes.
+	 */
+	public static Result sampled(RouteGraph graph, int samples, long seed, ForkJoinPool pool) {
+		int n = graph.getNodeCount();
+		if (samples >= n) {
+			return exact(graph, pool);
+		}
+		// a partial Fisher-Yates shuffle picks the origins without repeats
+		int[] nodes = new int[n];
+		for (int v = 0; v < n; v++) {
+			nodes[v] = v;
+		}
+		Random random = new Random(seed);
+		for (int i = 0; i < samples; i++) {
+			int j = i + random.nextInt(n - i);
+			int t = nodes[i];
+			nodes[i] = nodes[j];
+			nodes[j] = t;
+		}
+		int[] sources = Arrays.copyOf(nodes, samples);
+		Arrays.sort(sources);
+		return compute(graph, sources, pool);
+	}
+
+	private static Result compute(RouteGraph graph, int[] sources, ForkJoinPool pool) {
+		int n = graph.getNodeCount();
+		double[] closeness = new double[n];
+		int[] reached = new int[n];
+		Arrays.fill(closeness, Double.NaN);
+		Arrays.fill(reached, -1);
+		ConcurrentLinkedQueue<Accumulator> idle = new ConcurrentLinkedQueue<>();
+		long start = System.nanoTime();
+		pool.invoke(new SourceTask(graph, sources, idle, closeness, reached, 0, sources.length));
+		double[] betweenness = new double[n];
+		for (Accumulator accumulator : idle) {
+			for (int v = 0; v < n; v++) {
+				betweenness[v] += accumulator.betweenness[v];
+			}
+		}
+		double scale = (double) n / sources.length;
+		if (scale != 1.0) {
+			for (int v = 0; v < n; v++) {
+				betweenness[v] *= scale;
+			}
+		}
+		long nanos = System.nanoTime() - start;
+		return new Result(betweenness, closeness, reached, sources.length, pool.getParallelism(), nanos);
+	}
+
+	/**
+	 * <b>Accumulator</b> is the betweenness accumulated by the searches from some of
+	 * the origins, with the scratch arrays of those searches. It is used by one thread
+	 * at a time.
+	 */
+	private static final class Accumulator {
+
+		final double[] betweenness;
+		final double[] paths;
+		final double[] dependency;
+		final int[] order;
+		final SearchWorkspace ws;
+
+		Accumulator(int nodeCount) {
+			this.betweenness = new double[nodeCount];
+			this.paths = new double[nodeCount];
+			this.dependency = new double[nodeCount];
+			this.order = new int[nodeCount];
+			this.ws = new SearchWorkspace(nodeCount);
+		}
+
+		// Runs Brandes' search from s: a Dijkstra search that counts the shortest routes
+		// to every node, then a pass in reverse settle order that finds each node's
+		// predecessors on those routes through the reverse graph and passes its
+		// dependency back to them. Returns the number of nodes settled, s included.
+		int search(RouteGraph graph, RouteGraph reverse, int s) {
+			SearchWorkspace ws = this.ws;
+			ws.reset();
+			double[] dist = ws.dist;
+			int[] reached = ws.reached;
+			int[] settled = ws.settled;
+			int stamp = ws.stamp;
+			IndexedMinHeap heap = ws.heap;
+			int count = 0;
+
+			dist[s] = 0.0;
+			paths[s] = 1.0;
+			reached[s] = stamp;
+			heap.insert(s, 0.0);
+			while (!heap.isEmpty()) {
+				int u = heap.pollMin();
+				settled[u] = stamp;
+				order[count++] = u;
+				dependency[u] = 0.0;
+				double du = dist[u];
+				for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+					int v = graph.target(e);
+					if (settled[v] == stamp) {
+						continue;
+					}
+					double dv = du + graph.weight(e);
+					if (reached[v] != stamp) {
+						reached[v] = stamp;
+						dist[v] = dv;
+						paths[v] = paths[u];
+						heap.insert(v, dv);
+					} else if (dv < dist[v]) {
+						dist[v] = dv;
+						paths[v] = paths[u];
+						heap.decreaseKey(v, dv);
+					} else if (dv == dist[v]) {
+						paths[v] += paths[u];
+					}
+				}
+			}
+			for (int i = count - 1; i > 0; i--) {
+				int w = order[i];
+				double share = (1.0 + dependency[w]) / paths[w];
+				for (int e = reverse.firstEdge(w); e < reverse.endEdge(w); e++) {
+					int v = reverse.target(e);
+					// the same sum as the forward search, so equal exactly on a shortest route
+					if (settled[v] == stamp && v != w && dist[v] + reverse.weight(e) == dist[w]) {
+						dependency[v] += paths[v] * share;
+					}
+				}
+				betweenness[w] += dependency[w];
+			}
+			return count;
+		}
+
+	}
+
+	/**
+	 * <b>SourceTask</b> runs the searches from a range of origins, splitting the range
+	 * in half until it is small enough to run on one worker.
+	 */
+	private static final class SourceTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RouteGraph graph;
+		private final int[] sources;
+		private final ConcurrentLinkedQueue<Accumulator> idle;
+		private final double[] closeness;
+		private final int[] reached;
+		private final int from;
+		private final int to;
+
+		SourceTask(RouteGraph graph, int[] sources, ConcurrentLinkedQueue<Accumulator> idle, double[] closeness,
+				   int[] reached, int from, int to) {
+			this.graph = graph;
+			this.sources = sources;
+			this.idle = idle;
+			this.closeness = closeness;
+			this.reached = reached;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > SPLIT_THRESHOLD) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new SourceTask(graph, sources, idle, closeness, reached, from, mid),
+						  new SourceTask(graph, sources, idle, closeness, reached, mid, to));
+				return;
+			}
+			Accumulator accumulator = idle.poll();
+			if (accumulator == null) {
+				accumulator = new Accumulator(graph.getNodeCount());
+			}
+			RouteGraph reverse = graph.reverse();
+			double others = graph.getNodeCount() - 1;
+			for (int i = from; i < to; i++) {
+				int s = sources[i];
+				int count = accumulator.search(graph, reverse, s);
+				double sum = 0.0;
+				for (int j = 1; j < count; j++) {
+					sum += accumulator.ws.dist[accumulator.order[j]];
+				}
+				// each origin's entries are written by the one task that searches from it
+				reached[s] = count - 1;
+				closeness[s] = count == 1 || sum == 0.0 ? 0.0 : ((count - 1) / sum) * ((count - 1) / others);
+			}
+			// every accumulator ever made ends up idle once the run is over
+			idle.add(accumulator);
+		}
+
+	}
+
+	/**
+	 * @param file The file to write.
+	 * @param runs Runs over the same graph, the last of which is the one ranked.
+	 * @param graph The graph the runs analysed.
+	 * @param airports The names and codes of the graph's airports.
+	 * @requires runs is not empty
+	 * @effects Writes the nodes of the last run as CSV, ranked by descending
+	 * 	betweenness, after comment lines that give the wall-clock time of every run
+	 * 	and its speedup over the first.
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void writeCsv(String file, List<Result> runs, RouteGraph graph, AirportStore airports)
+			throws IOException {
+		Result result = runs.get(runs.size() - 1);
+		try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+			out.println(String.format("# %s betweenness and closeness centrality from %d of %d airports",
+					result.isSampled() ? "sampled" : "exact", result.getSourceCount(), result.getNodeCount()));
+			out.println("# threads,wall_ms,speedup");
+			for (Result run : runs) {
+				out.println(String.format("# %d,%.1f,%.2f", run.getParallelism(), run.getNanos() / 1e6,
+						(double) runs.get(0).getNanos() / run.getNanos()));
+			}
+			out.println("rank,id,iata,icao,name,city,betweenness,normalized_betweenness,closeness,reached");
+			int[] ranked = result.ranked();
+			for (int i = 0; i < ranked.length; i++) {
+				int v = ranked[i];
+				boolean named = v < airports.size();
+				out.println(String.format("%d,%s,%s,%s,%s,%s,%.1f,%.6g,%s,%s", i + 1, graph.idOf(v),
+						named ? quoted(airports.get(v, AirportStore.IATA)) : "",
+						named ? quoted(airports.get(v, AirportStore.ICAO)) : "",
+						named ? quoted(airports.name(v)) : "", named ? quoted(airports.city(v)) : "",
+						result.betweenness(v), result.normalizedBetweenness(v),
+						Double.isNaN(result.closeness(v)) ? "" : String.format("%.6g", result.closeness(v)),
+						result.reachedCount(v) < 0 ? "" : Integer.toString(result.reachedCount(v))));
+			}
+		}
+	}
+
+	private static String quoted(String field) {
+		if (field.indexOf(',') < 0 && field.indexOf('"') < 0) {
+			return field;
+		}
+		return '"' + field.replace("\"", "\"\"") + '"';
+	}
+
+}
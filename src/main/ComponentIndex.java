@@ -0,0 +1,243 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * <b>ComponentIndex</b> is an immutable reachability index over a RouteGraph. It
+ * groups the nodes into strongly connected components with an iterative version of
+ * Tarjan's algorithm, and stores for every component of the condensation DAG the set
+ * of components it can reach. canReach then answers "is there any route from u to v"
+ * in O(1), without a search.
+ *
+ * Components without outgoing routes (including every airport that has no routes at
+ * all) only reach themselves and store no set.
+ */
+public final class ComponentIndex {
+
+	private final int[] componentOf;
+	private final int componentCount;
+	private final long[][] reachable;
+	private final boolean reversed;
+
+	// Abstraction Function:
+	// ComponentIndex, c, represents the relation "u can reach v" on the nodes of a graph:
+	// u can reach v iff componentOf[u] == componentOf[v], or reachable[componentOf[u]] != null
+	// and has bit componentOf[v] set. If reversed is true, the relation is read backward,
+	// for use with the reverse index of the graph.
+	//
+	// Representation Invariant for every ComponentIndex c:
+	// foreach v => 0 <= componentOf[v] < componentCount &&
+	// reachable.length == componentCount &&
+	// foreach component x => reachable[x] == null || reachable[x] has a bit for every
+	// component x can reach
+
+	private ComponentIndex(int[] componentOf, int componentCount, long[][] reachable, boolean reversed) {
+		this.componentOf = componentOf;
+		this.componentCount = componentCount;
+		this.reachable = reachable;
+		this.reversed = reversed;
+	}
+
+	/**
+	 * @param graph The graph to index.
+	 * @returns a new ComponentIndex of graph.
+	 */
+	public static ComponentIndex build(RouteGraph graph) {
+		int n = graph.getNodeCount();
+		int[] componentOf = new int[n];
+		int[] lowLink = new int[n];
+		int[] discovery = new int[n];
+		Arrays.fill(discovery, -1);
+		boolean[] onStack = new boolean[n];
+		int[] sccStack = new int[n];
+		int sccTop = 0;
+		// the call stack of the recursive formulation: a node and its next edge
+		int[] callNode = new int[n];
+		int[] callEdge = new int[n];
+		int time = 0;
+		int components = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (discovery[root] >= 0) {
+				continue;
+			}
+			int depth = 0;
+			callNode[0] = root;
+			callEdge[0] = graph.firstEdge(root);
+			discovery[root] = lowLink[root] = time++;
+			sccStack[sccTop++] = root;
+			onStack[root] = true;
+			while (depth >= 0) {
+				int u = callNode[depth];
+				int e = callEdge[depth];
+				if (e < graph.endEdge(u)) {
+					callEdge[depth]++;
+					int v = graph.target(e);
+					if (discovery[v] < 0) {
+						discovery[v] = lowLink[v] = time++;
+						sccStack[sccTop++] = v;
+						onStack[v] = true;
+						depth++;
+						callNode[depth] = v;
+						callEdge[depth] = graph.firstEdge(v);
+					} else if (onStack[v] && discovery[v] < lowLink[u]) {
+						lowLink[u] = discovery[v];
+					}
+					continue;
+				}
+				// u is finished: pop its component if it is a root, then return to the caller
+				if (lowLink[u] == discovery[u]) {
+					int v;
+					do {
+						v = sccStack[--sccTop];
+						onStack[v] = false;
+						componentOf[v] = components;
+					} while (v != u);
+					components++;
+				}
+				depth--;
+				if (depth >= 0 && lowLink[u] < lowLink[callNode[depth]]) {
+					lowLink[callNode[depth]] = lowLink[u];
+				}
+			}
+		}
+
+		// Tarjan numbers components in reverse topological order, so every component
+		// only has edges into components with smaller numbers, whose sets are complete.
+		int[] firstNode = new int[components + 1];
+		for (int v = 0; v < n; v++) {
+			firstNode[componentOf[v] + 1]++;
+		}
+		for (int c = 0; c < components; c++) {
+			firstNode[c + 1] += firstNode[c];
+		}
+		int[] cursor = Arrays.copyOf(firstNode, components);
+		int[] members = new int[n];
+		for (int v = 0; v < n; v++) {
+			members[cursor[componentOf[v]]++] = v;
+		}
+		int words = (components + 63) >>> 6;
+		long[][] reachable = new long[components][];
+		for (int c = 0; c < components; c++) {
+			long[] set = null;
+			for (int i = firstNode[c]; i < firstNode[c + 1]; i++) {
+				int u = members[i];
+				for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+					int d = componentOf[graph.target(e)];
+					if (d == c) {
+						continue;
+					}
+					if (set == null) {
+						set = new long[words];
+						set[c >>> 6] |= 1L << c;
+					}
+					set[d >>> 6] |= 1L << d;
+					long[] successor = reachable[d];
+					if (successor != null) {
+						for (int w = 0; w < words; w++) {
+							set[w] |= successor[w];
+						}
+					}
+				}
+			}
+			reachable[c] = set;
+		}
+		return new ComponentIndex(componentOf, components, reachable, false);
+	}
+
+	/**
+	 * @returns a ComponentIndex over the same graph that answers reachability
+	 * 	backward, for use with the graph's reverse index.
+	 */
+	public ComponentIndex reversed() {
+		return new ComponentIndex(componentOf, componentCount, reachable, !reversed);
+	}
+
+	/**
+	 * @param graph The graph this index was built for, with an edge from u to v added.
+	 * @param u The index of the parent node of the new edge.
+	 * @param v The index of the child node of the new edge.
+	 * @returns a ComponentIndex of graph: this index if u could already reach v, a new
+	 * 	index built from scratch if the edge closes a cycle and so merges components,
+	 * 	and otherwise a copy of this index in which every component that reaches u also
+	 * 	reaches everything v reaches. Only the reachable sets that change are copied.
+	 */
+	public ComponentIndex withEdge(RouteGraph graph, int u, int v) {
+		if (canReach(u, v)) {
+			return this;
+		}
+		if (canReach(v, u)) {
+			return build(graph);
+		}
+		int from = componentOf[reversed ? v : u];
+		int to = componentOf[reversed ? u : v];
+		int words = (componentCount + 63) >>> 6;
+		long[] gained = new long[words];
+		if (reachable[to] != null) {
+			System.arraycopy(reachable[to], 0, gained, 0, reachable[to].length);
+		}
+		gained[to >>> 6] |= 1L << to;
+		long[][] grown = reachable.clone();
+		for (int x = 0; x < componentCount; x++) {
+			long[] set = reachable[x];
+			boolean reachesFrom = x == from
+					|| (set != null && (from >>> 6) < set.length && (set[from >>> 6] & (1L << from)) != 0);
+			if (reachesFrom) {
+				long[] union = set == null ? new long[words] : Arrays.copyOf(set, words);
+				for (int w = 0; w < words; w++) {
+					union[w] |= gained[w];
+				}
+				grown[x] = union;
+			}
+		}
+		return new ComponentIndex(componentOf, componentCount, grown, reversed);
+	}
+
+	/**
+	 * @param nodeCount The number of nodes of the graph, grown by adding nodes without
+	 * 	any routes.
+	 * @requires nodeCount >= the number of nodes indexed
+	 * @returns a ComponentIndex that answers like this one for the nodes indexed, and
+	 * 	places every further node in a component of its own that reaches nothing.
+	 */
+	public ComponentIndex withNodes(int nodeCount) {
+		int known = componentOf.length;
+		int[] grownComponentOf = Arrays.copyOf(componentOf, nodeCount);
+		for (int v = known; v < nodeCount; v++) {
+			grownComponentOf[v] = componentCount + v - known;
+		}
+		int count = componentCount + nodeCount - known;
+		return new ComponentIndex(grownComponentOf, count, Arrays.copyOf(reachable, count), reversed);
+	}
+
+	/**
+	 * @returns the number of strongly connected components.
+	 */
+	public int getComponentCount() {
+		return componentCount;
+	}
+
+	/**
+	 * @param v The index of a node.
+	 * @returns the strongly connected component of v.
+	 */
+	public int componentOf(int v) {
+		return componentOf[v];
+	}
+
+	/**
+	 * @param u The index of the start node.
+	 * @param v The index of the destination node.
+	 * @returns true iff there is a path from u to v.
+	 */
+	public boolean canReach(int u, int v) {
+		int from = componentOf[reversed ? v : u];
+		int to = componentOf[reversed ? u : v];
+		if (from == to) {
+			return true;
+		}
+		long[] set = reachable[from];
+		return set != null && (to >>> 6) < set.length && (set[to >>> 6] & (1L << to)) != 0;
+	}
+
+}
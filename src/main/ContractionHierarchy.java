@@ -0,0 +1,587 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * <b>ContractionHierarchy</b> is an immutable contraction hierarchy (CH) over a
+ * RouteGraph. Preprocessing contracts the nodes one at a time in order of their edge
+ * difference, adding a shortcut u --> x (via v) whenever contracting v would destroy
+ * the only shortest path u --> v --> x, as decided by a bounded witness search.
+ *
+ * A query runs a forward search from the source and a backward search from the
+ * destination, both only along edges towards higher-ranked nodes, and unpacks the
+ * shortcuts of the best meeting path into the original route.
+ *
+ * Hierarchies can be saved to a file and loaded back, so the preprocessing only has
+ * to run when the route data changes.
+ */
+public final class ContractionHierarchy {
+
+	private static final int MAGIC = 0x43483031; // "CH01"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 32;
+
+	// Witness searches give up after settling this many nodes; a failed search only
+	// costs an unnecessary shortcut, never a wrong answer. Estimating a priority uses
+	// a smaller limit than the contraction itself.
+	private static final int ESTIMATE_SETTLE_LIMIT = 50;
+	private static final int CONTRACT_SETTLE_LIMIT = 500;
+
+	private final int[] rank;
+	private final int[] upOffsets;
+	private final int[] upTargets;
+	private final double[] upWeights;
+	private final int[] upVia;
+	private final int[] downOffsets;
+	private final int[] downSources;
+	private final double[] downWeights;
+	private final int[] downVia;
+
+	// Abstraction Function:
+	// ContractionHierarchy, ch, represents a node order rank and the edge set
+	// 		{ u --> upTargets[e] (upWeights[e]) | upOffsets[u] <= e < upOffsets[u+1] }
+	// 	  union
+	// 		{ downSources[e] --> v (downWeights[e]) | downOffsets[v] <= e < downOffsets[v+1] }
+	// where every edge leads from a lower-ranked to a higher-ranked node (up) or from a
+	// higher-ranked to a lower-ranked node (down). An edge whose via entry is -1 is an
+	// original edge; otherwise it is a shortcut of the two edges through node via.
+	//
+	// Representation Invariant for every ContractionHierarchy ch:
+	// rank is a permutation of [0, n) &&
+	// foreach up edge u --> x => rank[u] < rank[x] &&
+	// foreach down edge x --> v => rank[x] > rank[v] &&
+	// foreach shortcut a --> b via m => rank[m] < rank[a] && rank[m] < rank[b]
+
+	private ContractionHierarchy(int[] rank, int[] upOffsets, int[] upTargets, double[] upWeights,
+								 int[] upVia, int[] downOffsets, int[] downSources,
+								 double[] downWeights, int[] downVia) {
+		this.rank = rank;
+		this.upOffsets = upOffsets;
+		this.upTargets = upTargets;
+		this.upWeights = upWeights;
+		this.upVia = upVia;
+		this.downOffsets = downOffsets;
+		this.downSources = downSources;
+		this.downWeights = downWeights;
+		this.downVia = downVia;
+	}
+
+	/**
+	 * @returns the number of nodes in the hierarchy.
+	 */
+	public int getNodeCount() {
+		return rank.length;
+	}
+
+	/**
+	 * @returns the total number of upward and downward edges, shortcuts included.
+	 */
+	public int getEdgeCount() {
+		return upTargets.length + downSources.length;
+	}
+
+	/**
+	 * @param graph The graph to contract.
+	 * @returns a new ContractionHierarchy over graph. Node priorities are evaluated in
+	 * 	parallel; the contraction itself is sequential.
+	 */
+	public static ContractionHierarchy build(RouteGraph graph) {
+		return new Contractor(graph).contract();
+	}
+
+	/**
+	 * @param graph The graph this hierarchy was built from.
+	 * @param ws The workspace for the forward search.
+	 * @param reverseWs The workspace for the backward search.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @requires ws != reverseWs && both can hold getNodeCount() nodes
+	 * @modifies ws, reverseWs
+	 * @returns the shortest route from source to target with every shortcut unpacked,
+	 * 	or null if there is none.
+	 */
+	public RoutePath findRoute(RouteGraph graph, SearchWorkspace ws, SearchWorkspace reverseWs,
+							   int source, int target) {
+		ws.reset();
+		reverseWs.reset();
+		ws.dist[source] = 0.0;
+		ws.pred[source] = -1;
+		ws.reached[source] = ws.stamp;
+		ws.heap.insert(source, 0.0);
+		reverseWs.dist[target] = 0.0;
+		reverseWs.pred[target] = -1;
+		reverseWs.reached[target] = reverseWs.stamp;
+		reverseWs.heap.insert(target, 0.0);
+
+		double best = Double.POSITIVE_INFINITY;
+		int meeting = -1;
+		boolean forwardTurn = true;
+		while (true) {
+			boolean forwardOpen = !ws.heap.isEmpty() && ws.heap.peekKey() < best;
+			boolean backwardOpen = !reverseWs.heap.isEmpty() && reverseWs.heap.peekKey() < best;
+			if (!forwardOpen && !backwardOpen) {
+				break;
+			}
+			boolean forward = forwardOpen && (forwardTurn || !backwardOpen);
+			forwardTurn = !forwardTurn;
+			SearchWorkspace self = forward ? ws : reverseWs;
+			SearchWorkspace other = forward ? reverseWs : ws;
+			int u = self.heap.pollMin();
+			self.settled[u] = self.stamp;
+			self.settledCount++;
+			if (other.reached[u] == other.stamp) {
+				double candidate = self.dist[u] + other.dist[u];
+				if (candidate < best) {
+					best = candidate;
+					meeting = u;
+				}
+			}
+			if (forward) {
+				relax(ws, u, upOffsets, upTargets, upWeights);
+			} else {
+				relax(reverseWs, u, downOffsets, downSources, downWeights);
+			}
+		}
+		if (meeting < 0) {
+			return null;
+		}
+		return unpack(graph, ws, reverseWs, meeting, ws.settledCount + reverseWs.settledCount);
+	}
+
+	private static void relax(SearchWorkspace ws, int u, int[] offsets, int[] heads, double[] weights) {
+		double du = ws.dist[u];
+		int stamp = ws.stamp;
+		ws.relaxedCount += offsets[u + 1] - offsets[u];
+		for (int e = offsets[u], end = offsets[u + 1]; e < end; e++) {
+			int v = heads[e];
+			if (ws.settled[v] == stamp) {
+				continue;
+			}
+			double dv = du + weights[e];
+			if (ws.reached[v] != stamp) {
+				ws.reached[v] = stamp;
+				ws.dist[v] = dv;
+				ws.pred[v] = u;
+				ws.heap.insert(v, dv);
+			} else if (dv < ws.dist[v]) {
+				ws.dist[v] = dv;
+				ws.pred[v] = u;
+				ws.heap.decreaseKey(v, dv);
+			}
+		}
+	}
+
+	private RoutePath unpack(RouteGraph graph, SearchWorkspace ws, SearchWorkspace reverseWs,
+							 int meeting, int settledCount) {
+		// collect the hierarchy path: source ... meeting ... target
+		int upLength = 0;
+		for (int v = meeting; v >= 0; v = ws.pred[v]) {
+			upLength++;
+		}
+		int downLength = 0;
+		for (int v = reverseWs.pred[meeting]; v >= 0; v = reverseWs.pred[v]) {
+			downLength++;
+		}
+		int[] hierarchyPath = new int[upLength + downLength];
+		int i = upLength - 1;
+		for (int v = meeting; v >= 0; v = ws.pred[v]) {
+			hierarchyPath[i--] = v;
+		}
+		i = upLength;
+		for (int v = reverseWs.pred[meeting]; v >= 0; v = reverseWs.pred[v]) {
+			hierarchyPath[i++] = v;
+		}
+
+		// expand each hierarchy edge with an explicit stack of (from, to) pairs
+		int[] nodes = new int[Math.max(hierarchyPath.length, 16)];
+		int count = 0;
+		nodes[count++] = hierarchyPath[0];
+		int[] stack = new int[32];
+		double cost = 0.0;
+		for (int k = 1; k < hierarchyPath.length; k++) {
+			int top = 0;
+			stack[top++] = hierarchyPath[k - 1];
+			stack[top++] = hierarchyPath[k];
+			while (top > 0) {
+				int b = stack[--top];
+				int a = stack[--top];
+				int via = viaOf(a, b);
+				if (via < 0) {
+					if (count == nodes.length) {
+						nodes = Arrays.copyOf(nodes, count * 2);
+					}
+					nodes[count++] = b;
+					cost += graph.edgeWeight(a, b);
+				} else {
+					if (top + 4 > stack.length) {
+						stack = Arrays.copyOf(stack, stack.length * 2);
+					}
+					// push the second half first so the first half is expanded first
+					stack[top++] = via;
+					stack[top++] = b;
+					stack[top++] = a;
+					stack[top++] = via;
+				}
+			}
+		}
+		return new RoutePath(Arrays.copyOf(nodes, count), cost, settledCount);
+	}
+
+	// The edge a --> b is stored with the lower-ranked of its endpoints.
+	private int viaOf(int a, int b) {
+		if (rank[a] < rank[b]) {
+			for (int e = upOffsets[a]; e < upOffsets[a + 1]; e++) {
+				if (upTargets[e] == b) {
+					return upVia[e];
+				}
+			}
+		} else {
+			for (int e = downOffsets[b]; e < downOffsets[b + 1]; e++) {
+				if (downSources[e] == a) {
+					return downVia[e];
+				}
+			}
+		}
+		throw new IllegalStateException("hierarchy has no edge " + a + " --> " + b);
+	}
+
+	/**
+	 * @param file The file to write.
+	 * @param fingerprint The fingerprint of the graph this hierarchy was built for.
+	 * @effects Writes the hierarchy to file, replacing it.
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(File file, long fingerprint) throws IOException {
+		int n = rank.length;
+		int up = upTargets.length;
+		int down = downSources.length;
+		long size = HEADER_BYTES + 4L * n + 2L * 4 * (n + 1) + 16L * up + 16L * down;
+		file.delete();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			out.order(ByteOrder.nativeOrder());
+			out.putInt(MAGIC).putInt(VERSION).putLong(fingerprint).putInt(n).putInt(up).putInt(down);
+			out.position(HEADER_BYTES);
+			putInts(out, rank);
+			putInts(out, upOffsets);
+			putInts(out, upTargets);
+			putInts(out, upVia);
+			putInts(out, downOffsets);
+			putInts(out, downSources);
+			putInts(out, downVia);
+			out.asDoubleBuffer().put(upWeights);
+			out.position(out.position() + 8 * up);
+			out.asDoubleBuffer().put(downWeights);
+			out.force();
+		}
+	}
+
+	/**
+	 * @param file The file to read.
+	 * @param fingerprint The fingerprint of the graph the hierarchy will be used with.
+	 * @returns the ContractionHierarchy stored in file, or null if the file is missing,
+	 * 	malformed, or was written for a different graph.
+	 * @throws IOException if the file exists but cannot be read
+	 */
+	public static ContractionHierarchy load(File file, long fingerprint) throws IOException {
+		if (!file.isFile() || file.length() < HEADER_BYTES) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			in.order(ByteOrder.nativeOrder());
+			if (in.getInt() != MAGIC || in.getInt() != VERSION || in.getLong() != fingerprint) {
+				return null;
+			}
+			int n = in.getInt();
+			int up = in.getInt();
+			int down = in.getInt();
+			long expected = HEADER_BYTES + 4L * n + 2L * 4 * (n + 1) + 16L * up + 16L * down;
+			if (n < 0 || up < 0 || down < 0 || channel.size() != expected) {
+				return null;
+			}
+			in.position(HEADER_BYTES);
+			int[] rank = getInts(in, n);
+			int[] upOffsets = getInts(in, n + 1);
+			int[] upTargets = getInts(in, up);
+			int[] upVia = getInts(in, up);
+			int[] downOffsets = getInts(in, n + 1);
+			int[] downSources = getInts(in, down);
+			int[] downVia = getInts(in, down);
+			double[] upWeights = new double[up];
+			in.asDoubleBuffer().get(upWeights);
+			in.position(in.position() + 8 * up);
+			double[] downWeights = new double[down];
+			in.asDoubleBuffer().get(downWeights);
+			return new ContractionHierarchy(rank, upOffsets, upTargets, upWeights, upVia,
+					downOffsets, downSources, downWeights, downVia);
+		}
+	}
+
+	private static void putInts(MappedByteBuffer out, int[] values) {
+		out.asIntBuffer().put(values);
+		out.position(out.position() + 4 * values.length);
+	}
+
+	private static int[] getInts(MappedByteBuffer in, int length) {
+		int[] values = new int[length];
+		in.asIntBuffer().get(values);
+		in.position(in.position() + 4 * length);
+		return values;
+	}
+
+	/**
+	 * <b>Contractor</b> holds the mutable state of a hierarchy under construction: the
+	 * remaining graph, with shortcuts, as per-node lists of outgoing and incoming arcs.
+	 */
+	private static final class Contractor {
+
+		private final int n;
+		private final ArcList[] out;
+		private final ArcList[] in;
+		private final int[] deletedNeighbors;
+		private final int[] rank;
+
+		Contractor(RouteGraph graph) {
+			this.n = graph.getNodeCount();
+			this.out = new ArcList[n];
+			this.in = new ArcList[n];
+			for (int v = 0; v < n; v++) {
+				out[v] = new ArcList();
+				in[v] = new ArcList();
+			}
+			for (int u = 0; u < n; u++) {
+				for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+					int v = graph.target(e);
+					if (v != u) {
+						out[u].put(v, graph.weight(e), -1);
+						in[v].put(u, graph.weight(e), -1);
+					}
+				}
+			}
+			this.deletedNeighbors = new int[n];
+			this.rank = new int[n];
+		}
+
+		ContractionHierarchy contract() {
+			IndexedMinHeap queue = new IndexedMinHeap(n);
+			double[] priorities = new double[n];
+			IntStream.range(0, n).parallel().forEach(v -> priorities[v] = priority(v));
+			for (int v = 0; v < n; v++) {
+				queue.insert(v, priorities[v]);
+			}
+
+			int order = 0;
+			while (!queue.isEmpty()) {
+				int v = queue.pollMin();
+				// lazy update: priorities of the remaining nodes go stale as their neighbors
+				// are contracted, so re-evaluate the chosen node and defer it if it got worse
+				double current = priority(v);
+				if (!queue.isEmpty() && current > queue.peekKey()) {
+					queue.insert(v, current);
+					continue;
+				}
+				contractNode(v);
+				rank[v] = order++;
+			}
+			return assemble();
+		}
+
+		// Edge difference (shortcuts added minus arcs removed) plus the number of
+		// already contracted neighbors, which spreads contraction evenly over the graph.
+		private double priority(int v) {
+			int shortcuts = shortcuts(v, false);
+			int removed = out[v].size + in[v].size;
+			return shortcuts - removed + deletedNeighbors[v];
+		}
+
+		private void contractNode(int v) {
+			shortcuts(v, true);
+			// detach v: its remaining arcs all lead to higher-ranked nodes
+			for (int i = 0; i < out[v].size; i++) {
+				int x = out[v].heads[i];
+				in[x].remove(v);
+				deletedNeighbors[x]++;
+			}
+			for (int i = 0; i < in[v].size; i++) {
+				int u = in[v].heads[i];
+				out[u].remove(v);
+				if (out[v].indexOf(u) < 0) {
+					deletedNeighbors[u]++;
+				}
+			}
+		}
+
+		// Counts, and if add is true inserts, the shortcuts needed to contract v.
+		private int shortcuts(int v, boolean add) {
+			ArcList outgoing = out[v];
+			ArcList incoming = in[v];
+			if (outgoing.size == 0 || incoming.size == 0) {
+				return 0;
+			}
+			double maxOut = 0.0;
+			for (int j = 0; j < outgoing.size; j++) {
+				maxOut = Math.max(maxOut, outgoing.weights[j]);
+			}
+			SearchWorkspace ws = SearchWorkspace.forThread(n);
+			// the reached stamps of the second workspace mark the out-neighbors of v
+			SearchWorkspace marks = SearchWorkspace.reverseForThread(n);
+			marks.reset();
+			for (int j = 0; j < outgoing.size; j++) {
+				marks.reached[outgoing.heads[j]] = marks.stamp;
+			}
+			int settleLimit = add ? CONTRACT_SETTLE_LIMIT : ESTIMATE_SETTLE_LIMIT;
+			int count = 0;
+			for (int i = 0; i < incoming.size; i++) {
+				int u = incoming.heads[i];
+				double toV = incoming.weights[i];
+				int targets = marks.isReached(u) ? outgoing.size - 1 : outgoing.size;
+				witnessSearch(ws, u, v, toV + maxOut, marks, targets, settleLimit);
+				for (int j = 0; j < outgoing.size; j++) {
+					int x = outgoing.heads[j];
+					if (x == u) {
+						continue;
+					}
+					double viaV = toV + outgoing.weights[j];
+					if (ws.isReached(x) && ws.dist[x] <= viaV) {
+						continue;
+					}
+					count++;
+					if (add) {
+						out[u].put(x, viaV, v);
+						in[x].put(u, viaV, v);
+					}
+				}
+			}
+			return count;
+		}
+
+		// Bounded Dijkstra from u over the remaining graph that never passes through v.
+		// It stops once every marked target other than u is settled.
+		private void witnessSearch(SearchWorkspace ws, int u, int v, double maxDistance,
+								   SearchWorkspace marks, int targets, int settleLimit) {
+			ws.reset();
+			ws.dist[u] = 0.0;
+			ws.reached[u] = ws.stamp;
+			ws.heap.insert(u, 0.0);
+			while (targets > 0 && !ws.heap.isEmpty() && ws.settledCount < settleLimit) {
+				if (ws.heap.peekKey() > maxDistance) {
+					break;
+				}
+				int a = ws.heap.pollMin();
+				ws.settled[a] = ws.stamp;
+				ws.settledCount++;
+				if (a != u && marks.isReached(a)) {
+					targets--;
+				}
+				ArcList arcs = out[a];
+				double da = ws.dist[a];
+				for (int i = 0; i < arcs.size; i++) {
+					int b = arcs.heads[i];
+					if (b == v || ws.settled[b] == ws.stamp) {
+						continue;
+					}
+					double db = da + arcs.weights[i];
+					if (ws.reached[b] != ws.stamp) {
+						ws.reached[b] = ws.stamp;
+						ws.dist[b] = db;
+						ws.heap.insert(b, db);
+					} else if (db < ws.dist[b]) {
+						ws.dist[b] = db;
+						ws.heap.decreaseKey(b, db);
+					}
+				}
+			}
+		}
+
+		private ContractionHierarchy assemble() {
+			int[] upOffsets = new int[n + 1];
+			int[] downOffsets = new int[n + 1];
+			for (int v = 0; v < n; v++) {
+				upOffsets[v + 1] = upOffsets[v] + out[v].size;
+				downOffsets[v + 1] = downOffsets[v] + in[v].size;
+			}
+			int[] upTargets = new int[upOffsets[n]];
+			double[] upWeights = new double[upOffsets[n]];
+			int[] upVia = new int[upOffsets[n]];
+			int[] downSources = new int[downOffsets[n]];
+			double[] downWeights = new double[downOffsets[n]];
+			int[] downVia = new int[downOffsets[n]];
+			for (int v = 0; v < n; v++) {
+				out[v].copyTo(upOffsets[v], upTargets, upWeights, upVia);
+				in[v].copyTo(downOffsets[v], downSources, downWeights, downVia);
+			}
+			return new ContractionHierarchy(rank, upOffsets, upTargets, upWeights, upVia,
+					downOffsets, downSources, downWeights, downVia);
+		}
+
+	}
+
+	/**
+	 * <b>ArcList</b> is a growable list of arcs (head, weight, via) with at most one
+	 * arc per head node.
+	 */
+	private static final class ArcList {
+
+		int[] heads = new int[4];
+		double[] weights = new double[4];
+		int[] vias = new int[4];
+		int size;
+
+		int indexOf(int head) {
+			for (int i = 0; i < size; i++) {
+				if (heads[i] == head) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		// Adds the arc, or lowers the weight of the existing arc to the same head.
+		void put(int head, double weight, int via) {
+			int i = indexOf(head);
+			if (i >= 0) {
+				if (weight < weights[i]) {
+					weights[i] = weight;
+					vias[i] = via;
+				}
+				return;
+			}
+			if (size == heads.length) {
+				heads = Arrays.copyOf(heads, size * 2);
+				weights = Arrays.copyOf(weights, size * 2);
+				vias = Arrays.copyOf(vias, size * 2);
+			}
+			heads[size] = head;
+			weights[size] = weight;
+			vias[size] = via;
+			size++;
+		}
+
+		void remove(int head) {
+			int i = indexOf(head);
+			if (i >= 0) {
+				size--;
+				heads[i] = heads[size];
+				weights[i] = weights[size];
+				vias[i] = vias[size];
+			}
+		}
+
+		void copyTo(int offset, int[] heads, double[] weights, int[] vias) {
+			System.arraycopy(this.heads, 0, heads, offset, size);
+			System.arraycopy(this.weights, 0, weights, offset, size);
+			System.arraycopy(this.vias, 0, vias, offset, size);
+		}
+
+	}
+
+}
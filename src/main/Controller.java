@@ -5,12 +5,36 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 
 public class Controller {
 
 	public static void main(String[] args) {
 		AirlineModel am = new AirlineModel();
-		am.createNewGraph("data/airports-extended.csv", "data/routes.csv");
+		if (args.length > 0 && args[0].equals("--export-snapshot")) {
+			am.exportSnapshot("data/routes.snapshot", "data/airports-extended.csv", "data/routes.csv");
+			View.snapshotExported("data/routes.snapshot");
+			return;
+		}
+		if (args.length > 0 && args[0].equals("--serve")) {
+			am.loadGraph("data/routes.snapshot", "data/airports-extended.csv", "data/routes.csv");
+			am.prepareHierarchy("data/routes.csv.ch", false);
+			int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+			long batchWindowMicros = args.length > 2 ? Long.parseLong(args[2]) : 200;
+			try {
+				RouteServer server = new RouteServer(am, port, "data/routes.snapshot", "data/airports-extended.csv",
+													 "data/routes.csv", "data/routes.csv.ch", batchWindowMicros);
+				server.start();
+				View.serverStarted(server.getPort());
+				// the server threads are daemons, so the JVM lives as long as this thread
+				Thread.currentThread().join();
+			} catch (IOException | InterruptedException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+		am.loadGraph("data/routes.snapshot", "data/airports-extended.csv", "data/routes.csv");
+		am.prepareHierarchy("data/routes.csv.ch", false);
 		
 		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
         String command = null;
@@ -34,6 +58,205 @@ public class Controller {
             		e.printStackTrace();
             	}
         		View.shortestPath(am, b1, b2);
+        	} else if (command.equals("h")) {
+        		try {
+        			System.out.print("Maximum number of legs, followed by Enter: ");
+        			String legs = reader.readLine();
+        			System.out.print("First building id/name, followed by Enter: ");
+        			String b1 = reader.readLine();
+        			System.out.print("Second building id/name, followed by Enter: ");
+        			String b2 = reader.readLine();
+        			try {
+        				int maxLegs = Integer.parseInt(legs.trim());
+        				if (maxLegs < 0 || maxLegs > HopLimitedSearch.MAX_LEGS) {
+        					View.unknownCommand();
+        				} else {
+        					View.hopLimitedPath(am, b1, b2, maxLegs);
+        				}
+        			} catch (NumberFormatException e) {
+        				View.unknownCommand();
+        			}
+        		} catch (IOException e) {
+        			e.printStackTrace();
+        		}
+        	} else if (command.equals("k")) {
+        		try {
+        			System.out.print("Number of routes, followed by Enter: ");
+        			String count = reader.readLine();
+        			System.out.print("First building id/name, followed by Enter: ");
+        			String b1 = reader.readLine();
+        			System.out.print("Second building id/name, followed by Enter: ");
+        			String b2 = reader.readLine();
+        			try {
+        				int k = Integer.parseInt(count.trim());
+        				if (k < 1 || k > KShortestPaths.MAX_PATHS) {
+        					View.unknownCommand();
+        				} else {
+        					View.alternativePaths(am, b1, b2, k);
+        				}
+        			} catch (NumberFormatException e) {
+        				View.unknownCommand();
+        			}
+        		} catch (IOException e) {
+        			e.printStackTrace();
+        		}
+        	} else if (command.equals("o")) {
+        		try {
+        			System.out.print("Airline codes or alliances (star/oneworld/skyteam), separated by commas, followed by Enter: ");
+        			CarrierFilter filter = am.carrierFilter(reader.readLine());
+        			System.out.print("First building id/name, followed by Enter: ");
+        			String b1 = reader.readLine();
+        			System.out.print("Second building id/name, followed by Enter: ");
+        			String b2 = reader.readLine();
+        			View.shortestPath(am, b1, b2, am.getQueryMode(), filter);
+        		} catch (IOException e) {
+        			e.printStackTrace();
+        		}
+        	} else if (command.equals("s")) {
+        		try {
+        			System.out.print("Routing mode (dijkstra/astar/alt/ch/bidirectional), followed by Enter: ");
+        			String mode = reader.readLine();
+        			try {
+        				am.setQueryMode(QueryMode.valueOf(mode.trim().toUpperCase()));
+        				View.queryMode(am);
+        			} catch (IllegalArgumentException e) {
+        				View.unknownMode(mode);
+        			}
+        		} catch (IOException e) {
+        			e.printStackTrace();
+        		}
+        	} else if (command.equals("l")) {
+        		try {
+        			System.out.print("Number of landmarks, followed by Enter: ");
+        			String count = reader.readLine();
+        			try {
+        				int landmarks = Integer.parseInt(count.trim());
+        				if (landmarks < 1 || landmarks > LandmarkIndex.MAX_LANDMARKS) {
+        					View.unknownCommand();
+        				} else {
+        					am.prepareLandmarks(landmarks, "data/routes.csv.landmarks");
+        					View.landmarksReady(am);
+        				}
+        			} catch (NumberFormatException e) {
+        				View.unknownCommand();
+        			}
+        		} catch (IOException e) {
+        			e.printStackTrace();
+        		}
+        	} else if (command.equals("p")) {
+        		am.prepareHierarchy("data/routes.csv.ch", true);
+        		View.hierarchyReady(am);
+        	} else if (command.equals("n")) {
+        		try {
+        			System.out.print("Origin latitude,longitude or airport id/code, followed by Enter: ");
+        			String place1 = reader.readLine();
+        			System.out.print("Origin radius in km, followed by Enter: ");
+        			String radius1 = reader.readLine();
+        			System.out.print("Destination latitude,longitude or airport id/code, followed by Enter: ");
+        			String place2 = reader.readLine();
+        			System.out.print("Destination radius in km, followed by Enter: ");
+        			String radius2 = reader.readLine();
+        			try {
+        				double r1 = Double.parseDouble(radius1.trim());
+        				double r2 = Double.parseDouble(radius2.trim());
+        				if (!(r1 >= 0) || !(r2 >= 0)) {
+        					View.unknownCommand();
+        				} else {
+        					View.areaPath(am, place1, r1, place2, r2);
+        				}
+        			} catch (NumberFormatException e) {
+        				View.unknownCommand();
+        			}
+        		} catch (IOException e) {
+        			e.printStackTrace();
+        		}
+        	} else if (command.equals("f")) {
+        		try {
+        			System.out.print("Start of an airport name, city or code, followed by Enter: ");
+        			View.completions(am, reader.readLine());
+        		} catch (IOException e) {
+        			e.printStackTrace();
+        		}
+        	} else if (command.equals("i")) {
+        		try {
+        			System.out.print("Origin airport id/code, followed by Enter: ");
+        			String place = reader.readLine();
+        			System.out.print("Largest distance in km, or number of legs followed by \"legs\", followed by Enter: ");
+        			String budget = reader.readLine().trim();
+        			try {
+        				if (budget.endsWith("leg") || budget.endsWith("legs")) {
+        					int legs = Integer.parseInt(budget.replaceFirst("\\s*legs?$", ""));
+        					if (legs < 0) {
+        						View.unknownCommand();
+        					} else {
+        						View.reachable(am, place, legs);
+        					}
+        				} else {
+        					View.reachable(am, place, Double.parseDouble(budget));
+        				}
+        			} catch (NumberFormatException e) {
+        				View.unknownCommand();
+        			}
+        		} catch (IOException e) {
+        			e.printStackTrace();
+        		}
+        	} else if (command.equals("x")) {
+        		try {
+        			System.out.print("Number of sampled origins, or nothing for every airport, followed by Enter: ");
+        			String text = reader.readLine().trim();
+        			int samples = text.isEmpty() ? 0 : Integer.parseInt(text);
+        			if (samples < 0) {
+        				View.unknownCommand();
+        			} else {
+        				// time the run on 1, 2, 4, ... threads up to every processor
+        				List<Centrality.Result> runs = new ArrayList<>();
+        				int processors = Runtime.getRuntime().availableProcessors();
+        				for (int threads = 1; threads < processors; threads *= 2) {
+        					runs.add(am.computeCentrality(samples, threads));
+        				}
+        				runs.add(am.computeCentrality(samples, processors));
+        				am.exportCentrality("data/centrality.csv", runs);
+        				View.centrality(am, runs, "data/centrality.csv");
+        			}
+        		} catch (NumberFormatException e) {
+        			View.unknownCommand();
+        		} catch (IOException e) {
+        			e.printStackTrace();
+        		}
+        	} else if (command.equals("a")) {
+        		try {
+        			System.out.print("Destination id/name, followed by Enter: ");
+        			View.airportsReaching(am, reader.readLine());
+        		} catch (IOException e) {
+        			e.printStackTrace();
+        		}
+        	} else if (command.equals("e")) {
+        		am.exportSnapshot("data/routes.snapshot", "data/airports-extended.csv", "data/routes.csv");
+        		View.snapshotExported("data/routes.snapshot");
+        	} else if (command.equals("c")) {
+        		View.cacheStats(am);
+        	} else if (command.equals("t")) {
+        		try {
+        			System.out.print("Metrics action (show/on/off/reset/export), followed by Enter: ");
+        			String action = reader.readLine().trim();
+        			Metrics metrics = am.getMetrics();
+        			if (action.equals("show") || action.isEmpty()) {
+        				View.metrics(am);
+        			} else if (action.equals("on") || action.equals("off")) {
+        				metrics.setEnabled(action.equals("on"));
+        				View.metricsEnabled(am);
+        			} else if (action.equals("reset")) {
+        				metrics.reset();
+        				View.metricsEnabled(am);
+        			} else if (action.equals("export")) {
+        				metrics.export("data/metrics.txt");
+        				View.metricsExported("data/metrics.txt");
+        			} else {
+        				View.unknownCommand();
+        			}
+        		} catch (IOException e) {
+        			e.printStackTrace();
+        		}
         	} else if (command.equals("q")) {
         		return;
         	} else if (command.equals("m")) {
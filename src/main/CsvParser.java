@@ -0,0 +1,573 @@
+package main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * <b>CsvParser</b> reads the OpenFlights airport and route files into primitive
+ * columns. Each file is split at line boundaries into chunks, every chunk is memory
+ * mapped and its bytes are scanned in place, and the chunks are parsed in parallel.
+ * Numbers are parsed straight from the mapped bytes; only the text fields that are
+ * kept are decoded into Strings.
+ *
+ * Quoted fields may contain commas and doubled quotes, but not line breaks, since
+ * a chunk boundary is placed after any line break.
+ *
+ * There is no representation invariant or abstraction function for this class. This
+ * is because CsvParser is never constructed and only contains static methods.
+ */
+public final class CsvParser {
+
+	private static final int MIN_CHUNK_BYTES = 1 << 20;
+	private static final int MAX_CHUNK_BYTES = 64 << 20;
+
+	// airports-extended.csv: id, name, city, country, IATA, ICAO, latitude, longitude, ...
+	private static final int AIRPORT_ID = 0;
+	private static final int AIRPORT_NAME = 1;
+	private static final int AIRPORT_CITY = 2;
+	private static final int AIRPORT_IATA = 4;
+	private static final int AIRPORT_ICAO = 5;
+	private static final int AIRPORT_LATITUDE = 6;
+	private static final int AIRPORT_LONGITUDE = 7;
+
+	// routes.csv: airline, airline id, source, source id, destination, destination id, ...
+	private static final int ROUTE_AIRLINE = 0;
+	private static final int ROUTE_SOURCE_ID = 3;
+	private static final int ROUTE_DEST_ID = 5;
+
+	// exact powers of ten for the fast path of parseDouble
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private CsvParser() {
+	}
+
+	/**
+	 * <b>Airports</b> is the column table of the rows of an airport file, in file order.
+	 */
+	public static final class Airports {
+
+		private int[] ids;
+		private double[] latitudes;
+		private double[] longitudes;
+		private String[] names;
+		private String[] cities;
+		private String[] iataCodes;
+		private String[] icaoCodes;
+		private int size;
+
+		private Airports(int capacity) {
+			this.ids = new int[capacity];
+			this.latitudes = new double[capacity];
+			this.longitudes = new double[capacity];
+			this.names = new String[capacity];
+			this.cities = new String[capacity];
+			this.iataCodes = new String[capacity];
+			this.icaoCodes = new String[capacity];
+		}
+
+		private void add(int id, double latitude, double longitude, String name, String city,
+						 String iata, String icao) {
+			if (size == ids.length) {
+				int capacity = Math.max(16, size * 2);
+				ids = Arrays.copyOf(ids, capacity);
+				latitudes = Arrays.copyOf(latitudes, capacity);
+				longitudes = Arrays.copyOf(longitudes, capacity);
+				names = Arrays.copyOf(names, capacity);
+				cities = Arrays.copyOf(cities, capacity);
+				iataCodes = Arrays.copyOf(iataCodes, capacity);
+				icaoCodes = Arrays.copyOf(icaoCodes, capacity);
+			}
+			ids[size] = id;
+			latitudes[size] = latitude;
+			longitudes[size] = longitude;
+			names[size] = name;
+			cities[size] = city;
+			iataCodes[size] = iata;
+			icaoCodes[size] = icao;
+			size++;
+		}
+
+		private static Airports concat(List<Airports> parts) {
+			Airports all = new Airports(parts.stream().mapToInt(Airports::size).sum());
+			for (Airports part : parts) {
+				System.arraycopy(part.ids, 0, all.ids, all.size, part.size);
+				System.arraycopy(part.latitudes, 0, all.latitudes, all.size, part.size);
+				System.arraycopy(part.longitudes, 0, all.longitudes, all.size, part.size);
+				System.arraycopy(part.names, 0, all.names, all.size, part.size);
+				System.arraycopy(part.cities, 0, all.cities, all.size, part.size);
+				System.arraycopy(part.iataCodes, 0, all.iataCodes, all.size, part.size);
+				System.arraycopy(part.icaoCodes, 0, all.icaoCodes, all.size, part.size);
+				all.size += part.size;
+			}
+			return all;
+		}
+
+		/**
+		 * @returns the number of airports.
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @param i The row of an airport.
+		 * @returns the numeric id of the airport.
+		 */
+		public int id(int i) {
+			return ids[i];
+		}
+
+		/**
+		 * @param i The row of an airport.
+		 * @returns the latitude of the airport in degrees, or 0 if it is malformed.
+		 */
+		public double latitude(int i) {
+			return latitudes[i];
+		}
+
+		/**
+		 * @param i The row of an airport.
+		 * @returns the longitude of the airport in degrees, or 0 if it is malformed.
+		 */
+		public double longitude(int i) {
+			return longitudes[i];
+		}
+
+		/**
+		 * @param i The row of an airport.
+		 * @returns the name of the airport.
+		 */
+		public String name(int i) {
+			return names[i];
+		}
+
+		/**
+		 * @param i The row of an airport.
+		 * @returns the city of the airport.
+		 */
+		public String city(int i) {
+			return cities[i];
+		}
+
+		/**
+		 * @param i The row of an airport.
+		 * @returns the IATA code of the airport, or "\N" if it has none.
+		 */
+		public String iata(int i) {
+			return iataCodes[i];
+		}
+
+		/**
+		 * @param i The row of an airport.
+		 * @returns the ICAO code of the airport, or "\N" if it has none.
+		 */
+		public String icao(int i) {
+			return icaoCodes[i];
+		}
+
+	}
+
+	/**
+	 * <b>Routes</b> is the column table of the rows of a route file, in file order.
+	 */
+	public static final class Routes {
+
+		private int[] sourceIds;
+		private int[] destIds;
+		private int[] airlines;
+		private int size;
+
+		private Routes(int capacity) {
+			this.sourceIds = new int[capacity];
+			this.destIds = new int[capacity];
+			this.airlines = new int[capacity];
+		}
+
+		private void add(int sourceId, int destId, int airline) {
+			if (size == sourceIds.length) {
+				int capacity = Math.max(16, size * 2);
+				sourceIds = Arrays.copyOf(sourceIds, capacity);
+				destIds = Arrays.copyOf(destIds, capacity);
+				airlines = Arrays.copyOf(airlines, capacity);
+			}
+			sourceIds[size] = sourceId;
+			destIds[size] = destId;
+			airlines[size] = airline;
+			size++;
+		}
+
+		private static Routes concat(List<Routes> parts) {
+			Routes all = new Routes(parts.stream().mapToInt(Routes::size).sum());
+			for (Routes part : parts) {
+				System.arraycopy(part.sourceIds, 0, all.sourceIds, all.size, part.size);
+				System.arraycopy(part.destIds, 0, all.destIds, all.size, part.size);
+				System.arraycopy(part.airlines, 0, all.airlines, all.size, part.size);
+				all.size += part.size;
+			}
+			return all;
+		}
+
+		/**
+		 * @returns the number of routes.
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @param i The row of a route.
+		 * @returns the airport id the route departs from.
+		 */
+		public int sourceId(int i) {
+			return sourceIds[i];
+		}
+
+		/**
+		 * @param i The row of a route.
+		 * @returns the airport id the route arrives at.
+		 */
+		public int destId(int i) {
+			return destIds[i];
+		}
+
+		/**
+		 * @param i The row of a route.
+		 * @returns the code of the airline flying the route, packed as by
+		 * 	CarrierSets.pack, or 0 if it has none.
+		 */
+		public int airline(int i) {
+			return airlines[i];
+		}
+
+	}
+
+	/**
+	 * @param file The path to an OpenFlights airport file.
+	 * @returns every row of file that has a numeric id.
+	 * @throws IOException if the file cannot be read
+	 */
+	public static Airports readAirports(String file) throws IOException {
+		return Airports.concat(parseChunks(file, row -> {
+			Airports airports = new Airports(1024);
+			while (row.next()) {
+				int id = row.parseInt(AIRPORT_ID, -1);
+				if (id < 0) {
+					continue;
+				}
+				airports.add(id, row.parseDouble(AIRPORT_LATITUDE, 0.0),
+							 row.parseDouble(AIRPORT_LONGITUDE, 0.0),
+							 row.string(AIRPORT_NAME), row.string(AIRPORT_CITY),
+							 row.string(AIRPORT_IATA), row.string(AIRPORT_ICAO));
+			}
+			return airports;
+		}));
+	}
+
+	/**
+	 * @param file The path to an OpenFlights route file.
+	 * @returns every row of file whose source and destination airport ids are both
+	 * 	known; rows with "\N" ids are skipped.
+	 * @throws IOException if the file cannot be read
+	 */
+	public static Routes readRoutes(String file) throws IOException {
+		return Routes.concat(parseChunks(file, row -> {
+			Routes routes = new Routes(4096);
+			while (row.next()) {
+				int source = row.parseInt(ROUTE_SOURCE_ID, -1);
+				int dest = row.parseInt(ROUTE_DEST_ID, -1);
+				if (source >= 0 && dest >= 0) {
+					routes.add(source, dest, row.packAscii(ROUTE_AIRLINE));
+				}
+			}
+			return routes;
+		}));
+	}
+
+	// Maps every chunk of file and parses the chunks in parallel, returning the
+	// results in file order.
+	private static <T> List<T> parseChunks(String file, Function<Row, T> parser) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+			long[] bounds = chunkBounds(channel);
+			return IntStream.range(0, bounds.length - 1).parallel().mapToObj(i -> {
+				try {
+					MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+							bounds[i], bounds[i + 1] - bounds[i]);
+					return parser.apply(new Row(chunk));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	// Splits the file into chunks of roughly equal size that all start at a line.
+	private static long[] chunkBounds(FileChannel channel) throws IOException {
+		long size = channel.size();
+		int workers = Runtime.getRuntime().availableProcessors();
+		long chunkBytes = Math.min(MAX_CHUNK_BYTES, Math.max(MIN_CHUNK_BYTES, size / (4L * workers)));
+		long[] bounds = new long[(int) (size / chunkBytes) + 2];
+		int count = 1;
+		ByteBuffer window = ByteBuffer.allocate(4096);
+		long position = chunkBytes;
+		while (position < size) {
+			// move the boundary forward to just after the next line break
+			long lineStart = size;
+			search:
+			for (long p = position; p < size; p += window.limit()) {
+				window.clear();
+				if (channel.read(window, p) <= 0) {
+					break;
+				}
+				window.flip();
+				for (int i = 0; i < window.limit(); i++) {
+					if (window.get(i) == '\n') {
+						lineStart = p + i + 1;
+						break search;
+					}
+				}
+			}
+			if (lineStart >= size) {
+				break;
+			}
+			bounds[count++] = lineStart;
+			position = lineStart + chunkBytes;
+		}
+		bounds[count++] = size;
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * <b>Row</b> is a cursor over the lines of one mapped chunk. next splits the
+	 * following line into fields by recording where each field starts and ends in the
+	 * buffer, without copying; the field accessors then read the bytes in place.
+	 */
+	private static final class Row {
+
+		private final ByteBuffer buffer;
+		private final int limit;
+		private int position;
+		private int[] starts;
+		private int[] ends;
+		private boolean[] escaped;
+		private int fieldCount;
+		private byte[] scratch;
+
+		Row(ByteBuffer buffer) {
+			this.buffer = buffer;
+			this.limit = buffer.limit();
+			this.starts = new int[16];
+			this.ends = new int[16];
+			this.escaped = new boolean[16];
+			this.scratch = new byte[64];
+		}
+
+		// Splits the next non-empty line into fields; returns false at the end of the chunk.
+		boolean next() {
+			while (position < limit) {
+				fieldCount = 0;
+				int p = position;
+				while (true) {
+					int start = p;
+					int end;
+					boolean hasEscapes = false;
+					if (p < limit && buffer.get(p) == '"') {
+						start = ++p;
+						while (p < limit) {
+							byte b = buffer.get(p);
+							if (b == '"') {
+								if (p + 1 < limit && buffer.get(p + 1) == '"') {
+									hasEscapes = true;
+									p += 2;
+									continue;
+								}
+								break;
+							}
+							if (b == '\n') {
+								break;
+							}
+							p++;
+						}
+						end = p;
+						// skip the closing quote and anything before the next separator
+						while (p < limit && buffer.get(p) != ',' && buffer.get(p) != '\n') {
+							p++;
+						}
+					} else {
+						while (p < limit && buffer.get(p) != ',' && buffer.get(p) != '\n') {
+							p++;
+						}
+						end = p;
+						if (end > start && buffer.get(end - 1) == '\r' && (p == limit || buffer.get(p) == '\n')) {
+							end--;
+						}
+					}
+					addField(start, end, hasEscapes);
+					if (p >= limit || buffer.get(p) == '\n') {
+						position = p + 1;
+						break;
+					}
+					p++;
+				}
+				if (fieldCount > 1 || ends[0] > starts[0]) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void addField(int start, int end, boolean hasEscapes) {
+			if (fieldCount == starts.length) {
+				starts = Arrays.copyOf(starts, fieldCount * 2);
+				ends = Arrays.copyOf(ends, fieldCount * 2);
+				escaped = Arrays.copyOf(escaped, fieldCount * 2);
+			}
+			starts[fieldCount] = start;
+			ends[fieldCount] = end;
+			escaped[fieldCount] = hasEscapes;
+			fieldCount++;
+		}
+
+		// Returns the field as a non-negative decimal int, or missing if it is absent,
+		// "\N", or not a plain number.
+		int parseInt(int field, int missing) {
+			if (field >= fieldCount) {
+				return missing;
+			}
+			int start = starts[field];
+			int end = ends[field];
+			if (end <= start || end - start > 9) {
+				return missing;
+			}
+			int value = 0;
+			for (int p = start; p < end; p++) {
+				int digit = buffer.get(p) - '0';
+				if (digit < 0 || digit > 9) {
+					return missing;
+				}
+				value = value * 10 + digit;
+			}
+			return value;
+		}
+
+		// Returns a field of at most 4 ASCII bytes packed into an int, one byte per
+		// character, or 0 if it is absent, longer, or "\N".
+		int packAscii(int field) {
+			if (field >= fieldCount) {
+				return 0;
+			}
+			int start = starts[field];
+			int end = ends[field];
+			if (end <= start || end - start > 4) {
+				return 0;
+			}
+			int packed = 0;
+			for (int p = start; p < end; p++) {
+				byte b = buffer.get(p);
+				if (b <= 0 || b == '\\') {
+					return 0;
+				}
+				packed = (packed << 8) | b;
+			}
+			return packed;
+		}
+
+		// Returns the field as a double, or missing if it is absent or malformed.
+		// Decimals with at most 18 significant digits whose value is exactly
+		// representable take the exact fast path; anything else goes through
+		// Double.parseDouble.
+		double parseDouble(int field, double missing) {
+			if (field >= fieldCount) {
+				return missing;
+			}
+			int start = starts[field];
+			int end = ends[field];
+			int p = start;
+			boolean negative = false;
+			if (p < end && (buffer.get(p) == '-' || buffer.get(p) == '+')) {
+				negative = buffer.get(p) == '-';
+				p++;
+			}
+			long mantissa = 0;
+			int digits = 0;
+			int scale = 0;
+			boolean seenPoint = false;
+			boolean seenDigit = false;
+			for (; p < end; p++) {
+				byte b = buffer.get(p);
+				if (b >= '0' && b <= '9') {
+					seenDigit = true;
+					if (digits < 18) {
+						mantissa = mantissa * 10 + (b - '0');
+						if (mantissa != 0) {
+							digits++;
+						}
+						if (seenPoint) {
+							scale--;
+						}
+					} else {
+						return slowParseDouble(field, missing);
+					}
+				} else if (b == '.' && !seenPoint) {
+					seenPoint = true;
+				} else {
+					return slowParseDouble(field, missing);
+				}
+			}
+			if (!seenDigit) {
+				return missing;
+			}
+			if (mantissa >= 1L << 53 || scale < -22) {
+				return slowParseDouble(field, missing);
+			}
+			double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[-scale];
+			return negative ? -value : value;
+		}
+
+		private double slowParseDouble(int field, double missing) {
+			try {
+				return Double.parseDouble(string(field));
+			} catch (NumberFormatException e) {
+				return missing;
+			}
+		}
+
+		// Decodes the field as UTF-8, turning doubled quotes back into single ones.
+		String string(int field) {
+			if (field >= fieldCount) {
+				return "";
+			}
+			int start = starts[field];
+			int length = ends[field] - start;
+			if (length > scratch.length) {
+				scratch = new byte[Math.max(length, scratch.length * 2)];
+			}
+			int n = 0;
+			for (int p = start; p < start + length; p++) {
+				byte b = buffer.get(p);
+				scratch[n++] = b;
+				if (b == '"' && escaped[field]) {
+					p++;
+				}
+			}
+			return new String(scratch, 0, n, StandardCharsets.UTF_8);
+		}
+
+	}
+
+}
@@ -0,0 +1,19 @@
+package main;
+
+/**
+ * <b>DistanceBound</b> is a lower bound on the shortest-path distance between two
+ * nodes of a RouteGraph, used as the heuristic of goal-directed (A*) searches.
+ * Implementations must be admissible (never overestimate) and consistent:
+ * estimate(u, t) <= weight(u, v) + estimate(v, t) for every edge u --> v.
+ */
+public interface DistanceBound {
+
+	/**
+	 * @param node The index of the node being estimated.
+	 * @param target The index of the destination node.
+	 * @returns a lower bound on the distance from node to target; positive
+	 * 	infinity if node provably cannot reach target.
+	 */
+	double estimate(int node, int target);
+
+}
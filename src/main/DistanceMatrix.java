@@ -0,0 +1,121 @@
+package main;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <b>DistanceMatrix</b> computes origin-by-destination matrices of shortest route
+ * distances. Every origin gets one one-to-many Dijkstra search that stops as soon as
+ * all destinations it can reach are settled, and the origins are spread over a
+ * ForkJoinPool. Each worker thread reuses its own SearchWorkspaces, so a matrix
+ * allocates nothing per origin except its result row.
+ *
+ * There is no representation invariant or abstraction function for this class. This
+ * is because DistanceMatrix is never constructed and only contains static methods.
+ */
+public final class DistanceMatrix {
+
+	// origins per task below which a range is no longer split
+	private static final int SPLIT_THRESHOLD = 4;
+
+	/**
+	 * <b>RowConsumer</b> receives the rows of a matrix as they are finished.
+	 */
+	@FunctionalInterface
+	public interface RowConsumer {
+
+		/**
+		 * @param origin The position of the row's origin in the origin array.
+		 * @param distances The distance from the origin to every destination, in
+		 * 	destination order; positive infinity where there is no route. The array
+		 * 	belongs to the consumer once the call is made.
+		 * @effects Called once per origin, from the pool's worker threads and in no
+		 * 	particular order, so it must be thread-safe.
+		 */
+		void acceptRow(int origin, double[] distances);
+
+	}
+
+	private DistanceMatrix() {
+	}
+
+	/**
+	 * @param graph The graph to search.
+	 * @param origins The indices of the origin nodes.
+	 * @param destinations The indices of the destination nodes.
+	 * @param pool The pool to run the searches on.
+	 * @returns the row-major origins.length x destinations.length matrix m with
+	 * 	m[i * destinations.length + j] the shortest route distance from origins[i]
+	 * 	to destinations[j], or positive infinity if there is no route.
+	 */
+	public static double[] compute(RouteGraph graph, int[] origins, int[] destinations, ForkJoinPool pool) {
+		int width = destinations.length;
+		double[] matrix = new double[origins.length * width];
+		stream(graph, origins, destinations, pool,
+				(origin, distances) -> System.arraycopy(distances, 0, matrix, origin * width, width));
+		return matrix;
+	}
+
+	/**
+	 * @param graph The graph to search.
+	 * @param origins The indices of the origin nodes.
+	 * @param destinations The indices of the destination nodes.
+	 * @param pool The pool to run the searches on.
+	 * @param consumer The receiver of the rows.
+	 * @effects Computes the same matrix as compute, but hands each row to consumer as
+	 * 	soon as it is finished instead of keeping it, and returns once every row has
+	 * 	been delivered.
+	 */
+	public static void stream(RouteGraph graph, int[] origins, int[] destinations, ForkJoinPool pool,
+							  RowConsumer consumer) {
+		pool.invoke(new RowTask(graph, origins, destinations, consumer, 0, origins.length));
+	}
+
+	/**
+	 * <b>RowTask</b> computes the rows of a range of origins, splitting the range in
+	 * half until it is small enough to run on one worker.
+	 */
+	private static final class RowTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RouteGraph graph;
+		private final int[] origins;
+		private final int[] destinations;
+		private final RowConsumer consumer;
+		private final int from;
+		private final int to;
+
+		RowTask(RouteGraph graph, int[] origins, int[] destinations, RowConsumer consumer, int from, int to) {
+			this.graph = graph;
+			this.origins = origins;
+			this.destinations = destinations;
+			this.consumer = consumer;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > SPLIT_THRESHOLD) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new RowTask(graph, origins, destinations, consumer, from, mid),
+						  new RowTask(graph, origins, destinations, consumer, mid, to));
+				return;
+			}
+			SearchWorkspace ws = SearchWorkspace.forThread(graph.getNodeCount());
+			SearchWorkspace marks = SearchWorkspace.reverseForThread(graph.getNodeCount());
+			for (int i = from; i < to; i++) {
+				PathFinder.dijkstraToMany(graph, ws, marks, origins[i], destinations);
+				double[] row = new double[destinations.length];
+				for (int j = 0; j < row.length; j++) {
+					int t = destinations[j];
+					row[j] = ws.isSettled(t) ? ws.distance(t) : Double.POSITIVE_INFINITY;
+				}
+				consumer.acceptRow(i, row);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,109 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * <b>GraphDelta</b> is the append-only edge log behind the adjacency lists a RouteGraph
+ * has rewritten since it was built. When an update changes the routes of a node, the
+ * node's whole new adjacency list is appended here, and the updated graph points the
+ * node at that slice instead of at its slice of the base CSR columns.
+ *
+ * One log is shared by a chain of graph versions: every version reads only the prefix
+ * that existed when it was made, so appending for a newer version never changes what
+ * an older one sees. Appends must be serialized by the caller; readers need no lock.
+ * A version that is not the newest one in its chain gets a private copy of its prefix
+ * before anything is appended for it.
+ */
+final class GraphDelta {
+
+	private final int[] targets;
+	private final double[] weights;
+	private final int[] sets;
+	private int size;
+
+	// Abstraction Function:
+	// GraphDelta, d, represents the edge records 0 .. size - 1, record i pointing to node
+	// targets[i] with weight weights[i], flown by carrier set sets[i].
+	//
+	// Representation Invariant for every GraphDelta d:
+	// 0 <= size <= targets.length == weights.length == sets.length &&
+	// records below size are never written again
+
+	/**
+	 * @param capacity The number of records the log can hold before it is copied.
+	 * @effects Constructs a new empty GraphDelta.
+	 */
+	GraphDelta(int capacity) {
+		this.targets = new int[capacity];
+		this.weights = new double[capacity];
+		this.sets = new int[capacity];
+	}
+
+	private GraphDelta(GraphDelta prefix, int length, int capacity) {
+		this.targets = Arrays.copyOf(prefix.targets, capacity);
+		this.weights = Arrays.copyOf(prefix.weights, capacity);
+		this.sets = Arrays.copyOf(prefix.sets, capacity);
+		this.size = length;
+	}
+
+	/**
+	 * @returns the number of records appended so far.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param i The index of a record.
+	 * @returns the node record i points to.
+	 */
+	int target(int i) {
+		return targets[i];
+	}
+
+	/**
+	 * @param i The index of a record.
+	 * @returns the weight of record i.
+	 */
+	double weight(int i) {
+		return weights[i];
+	}
+
+	/**
+	 * @param i The index of a record.
+	 * @returns the carrier set of record i.
+	 */
+	int carrierSet(int i) {
+		return sets[i];
+	}
+
+	/**
+	 * @param length The number of records the caller's graph version reads.
+	 * @param extra The number of records about to be appended.
+	 * @requires length <= size()
+	 * @returns this log if records can be appended to it directly after the first length
+	 * 	records, or else a new log holding a copy of those records with room for extra more.
+	 */
+	GraphDelta forAppend(int length, int extra) {
+		if (length == size && size + extra <= targets.length) {
+			return this;
+		}
+		return new GraphDelta(this, length, Math.max(length + extra, 2 * length + 64));
+	}
+
+	/**
+	 * @param target The node the new record points to.
+	 * @param weight The weight of the new record.
+	 * @param set The carrier set of the new record.
+	 * @requires there is room for the record, as ensured by forAppend
+	 * @modifies this
+	 * @effects Appends a record.
+	 */
+	void append(int target, double weight, int set) {
+		targets[size] = target;
+		weights[size] = weight;
+		sets[size] = set;
+		size++;
+	}
+
+}
@@ -0,0 +1,331 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * <b>GraphSnapshot</b> is an immutable airport data set: a RouteGraph together with
+ * the AirportStore holding the names and codes of its airports. A snapshot is either built from the OpenFlights
+ * CSV files or opened from a binary snapshot file written by save.
+ *
+ * A snapshot file holds the node columns, the forward and reverse CSR arrays with
+ * their carrier sets, the carrier dictionary and the airport store's text arena in one little-endian, CRC32-checked file. open maps it
+ * with FileChannel.map and the RouteGraph and AirportStore read their columns straight
+ * from the mapped buffers, so nothing is decoded at startup. The file also
+ * records the size and modification time of the CSV files it was exported from, so a
+ * snapshot that no longer matches them is recognized as stale.
+ */
+public final class GraphSnapshot {
+
+	private static final int MAGIC = 0x52475331; // "RGS1"
+	private static final int VERSION = 3;
+	private static final int HEADER_BYTES = 96;
+	private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	private final RouteGraph graph;
+	private final AirportStore airports;
+
+	// Abstraction Function:
+	// GraphSnapshot, s, represents the airports and routes of s.graph, where the
+	// airport at node index i is airport i of s.airports.
+	//
+	// Representation Invariant for every GraphSnapshot s:
+	// airports.size() == graph.getNodeCount()
+
+	private GraphSnapshot(RouteGraph graph, AirportStore airports) {
+		this.graph = graph;
+		this.airports = airports;
+	}
+
+	/**
+	 * @param nodeFile The path to the OpenFlights airport file.
+	 * @param edgeFile The path to the OpenFlights route file.
+	 * @returns a new GraphSnapshot with every airport of nodeFile, indexed in ascending
+	 * 	id order, and every route of edgeFile between two known airports, weighted by
+	 * 	its great-circle length in kilometres.
+	 * @throws IOException if a file cannot be read
+	 */
+	public static GraphSnapshot fromCsv(String nodeFile, String edgeFile) throws IOException {
+		return fromCsv(nodeFile, edgeFile, null);
+	}
+
+	/**
+	 * @param nodeFile The path to the OpenFlights airport file.
+	 * @param edgeFile The path to the OpenFlights route file.
+	 * @param lap The lap that times the parse and build phases, or null.
+	 * @returns the same snapshot as fromCsv(nodeFile, edgeFile).
+	 * @throws IOException if a file cannot be read
+	 */
+	public static GraphSnapshot fromCsv(String nodeFile, String edgeFile, Metrics.Lap lap) throws IOException {
+		CsvParser.Airports rows = CsvParser.readAirports(nodeFile);
+		if (lap != null) {
+			lap.record(Metrics.Phase.PARSE_AIRPORTS);
+		}
+		CsvParser.Routes routes = CsvParser.readRoutes(edgeFile);
+		if (lap != null) {
+			lap.record(Metrics.Phase.PARSE_ROUTES);
+		}
+
+		// assign dense indices in ascending airport id order
+		long[] byId = new long[rows.size()];
+		for (int i = 0; i < byId.length; i++) {
+			byId[i] = ((long) rows.id(i) << 32) | i;
+		}
+		Arrays.sort(byId);
+		RouteGraph.Builder builder = new RouteGraph.Builder(byId.length, routes.size());
+		AirportStore.Builder airports = new AirportStore.Builder(byId.length);
+		int nodeCount = 0;
+		for (long key : byId) {
+			int i = (int) key;
+			// a repeated id keeps its first row
+			if (builder.addNode(rows.id(i), rows.latitude(i), rows.longitude(i)) == nodeCount) {
+				airports.add(rows.name(i), rows.city(i), rows.iata(i), rows.icao(i));
+				nodeCount++;
+			}
+		}
+
+		for (int i = 0; i < routes.size(); i++) {
+			int from = builder.indexOf(routes.sourceId(i));
+			int to = builder.indexOf(routes.destId(i));
+			if (from < 0 || to < 0) {
+				continue;
+			}
+			// great-circle kilometres keep the A* heuristic admissible
+			double distance = GreatCircle.distanceKm(builder.latitude(from), builder.longitude(from),
+													 builder.latitude(to), builder.longitude(to));
+			builder.addEdge(from, to, distance, builder.carrier(routes.airline(i)));
+		}
+		GraphSnapshot snapshot = new GraphSnapshot(builder.build(), airports.build());
+		if (lap != null) {
+			lap.record(Metrics.Phase.BUILD_GRAPH);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @returns the route graph of this snapshot.
+	 */
+	public RouteGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @returns the names and codes of the airports of this snapshot, indexed like the
+	 * 	nodes of its graph.
+	 */
+	public AirportStore getAirports() {
+		return airports;
+	}
+
+	/**
+	 * @param file The snapshot file to write.
+	 * @param nodeFile The airport file this snapshot was built from.
+	 * @param edgeFile The route file this snapshot was built from.
+	 * @effects Writes this snapshot to file, replacing it, stamped with the current
+	 * 	size and modification time of nodeFile and edgeFile.
+	 * @throws IOException if the file cannot be written, or the snapshot does not fit
+	 * 	in a single mapping
+	 */
+	public void save(File file, String nodeFile, String edgeFile) throws IOException {
+		int n = graph.getNodeCount();
+		int m = graph.getEdgeCount();
+		int idCapacity = graph.getIdCapacity();
+		int stringBytes = airports.arenaBytes();
+		CarrierSets carriers = graph.carriers();
+		int carrierCount = carriers.getCarrierCount();
+		int setCount = carriers.getSetCount();
+		int memberCount = carriers.endMember(setCount - 1);
+		Layout layout = new Layout(n, m, idCapacity, carrierCount, setCount, memberCount, stringBytes);
+		if (layout.fileBytes > Integer.MAX_VALUE) {
+			throw new IOException("graph too large for a snapshot: " + layout.fileBytes + " bytes");
+		}
+
+		file.delete();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, layout.fileBytes);
+			out.order(ORDER);
+			RouteGraph reverse = graph.reverse();
+			DoubleBuffer latitudes = doubles(out, layout.latitudes, n);
+			DoubleBuffer longitudes = doubles(out, layout.longitudes, n);
+			IntBuffer ids = ints(out, layout.ids, n);
+			IntBuffer offsets = ints(out, layout.offsets, n + 1);
+			IntBuffer reverseOffsets = ints(out, layout.reverseOffsets, n + 1);
+			for (int v = 0; v < n; v++) {
+				latitudes.put(v, graph.latitude(v));
+				longitudes.put(v, graph.longitude(v));
+				ids.put(v, graph.numericIdOf(v));
+				offsets.put(v, graph.firstEdge(v));
+				reverseOffsets.put(v, reverse.firstEdge(v));
+			}
+			offsets.put(n, m);
+			reverseOffsets.put(n, m);
+			IntBuffer indexById = ints(out, layout.indexById, idCapacity);
+			for (int id = 0; id < idCapacity; id++) {
+				indexById.put(id, graph.indexOf(id));
+			}
+			DoubleBuffer weights = doubles(out, layout.weights, m);
+			IntBuffer targets = ints(out, layout.targets, m);
+			DoubleBuffer reverseWeights = doubles(out, layout.reverseWeights, m);
+			IntBuffer reverseTargets = ints(out, layout.reverseTargets, m);
+			IntBuffer edgeSets = ints(out, layout.edgeSets, m);
+			IntBuffer reverseSets = ints(out, layout.reverseSets, m);
+			for (int e = 0; e < m; e++) {
+				weights.put(e, graph.weight(e));
+				targets.put(e, graph.target(e));
+				reverseWeights.put(e, reverse.weight(e));
+				reverseTargets.put(e, reverse.target(e));
+				edgeSets.put(e, graph.carrierSet(e));
+				reverseSets.put(e, reverse.carrierSet(e));
+			}
+			ints(out, layout.carrierCodes, carrierCount).put(carriers.codes());
+			ints(out, layout.setOffsets, setCount + 1).put(carriers.setOffsets());
+			ints(out, layout.setMembers, memberCount).put(carriers.setMembers());
+			ints(out, layout.stringOffsets, AirportStore.FIELDS * n + 1).put(airports.offsets());
+			out.put((int) layout.strings, airports.arena(), 0, stringBytes);
+
+			File nodes = new File(nodeFile);
+			File edges = new File(edgeFile);
+			out.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, n).putInt(12, m).putInt(16, idCapacity)
+					.putInt(20, carrierCount).putInt(80, setCount).putInt(84, memberCount)
+					.putLong(24, nodes.length()).putLong(32, nodes.lastModified())
+					.putLong(40, edges.length()).putLong(48, edges.lastModified())
+					.putLong(56, layout.fileBytes)
+					.putLong(64, stringBytes)
+					.putLong(72, checksum(out, layout.fileBytes));
+			out.force();
+		}
+	}
+
+	/**
+	 * @param file The snapshot file to open.
+	 * @param nodeFile The airport file the snapshot must have been exported from.
+	 * @param edgeFile The route file the snapshot must have been exported from.
+	 * @returns the GraphSnapshot stored in file, with its graph reading straight from
+	 * 	the mapped file, or null if file is missing, has another format version, fails
+	 * 	its checksum, or is stale because nodeFile or edgeFile has changed since it was
+	 * 	written. A CSV file that does not exist is not considered changed, so a snapshot
+	 * 	can be deployed without the files it was exported from.
+	 * @throws IOException if the file exists but cannot be read
+	 */
+	public static GraphSnapshot open(File file, String nodeFile, String edgeFile) throws IOException {
+		if (!file.isFile() || file.length() < HEADER_BYTES) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				return null;
+			}
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			in.order(ORDER);
+			if (in.getInt(0) != MAGIC || in.getInt(4) != VERSION || in.getLong(56) != channel.size()) {
+				return null;
+			}
+			if (isStale(in, 24, new File(nodeFile)) || isStale(in, 40, new File(edgeFile))) {
+				return null;
+			}
+			if (in.getLong(72) != checksum(in, channel.size())) {
+				return null;
+			}
+			int n = in.getInt(8);
+			int m = in.getInt(12);
+			int idCapacity = in.getInt(16);
+			int carrierCount = in.getInt(20);
+			int setCount = in.getInt(80);
+			int memberCount = in.getInt(84);
+			Layout layout = new Layout(n, m, idCapacity, carrierCount, setCount, memberCount, in.getLong(64));
+			if (layout.fileBytes != channel.size()) {
+				return null;
+			}
+			CarrierSets carriers = new CarrierSets(ints(in, layout.carrierCodes, carrierCount),
+					ints(in, layout.setOffsets, setCount + 1), ints(in, layout.setMembers, memberCount));
+			RouteGraph graph = RouteGraph.wrap(ints(in, layout.ids, n), ints(in, layout.indexById, idCapacity),
+					doubles(in, layout.latitudes, n), doubles(in, layout.longitudes, n),
+					ints(in, layout.offsets, n + 1), ints(in, layout.targets, m), doubles(in, layout.weights, m),
+					ints(in, layout.edgeSets, m), ints(in, layout.reverseOffsets, n + 1),
+					ints(in, layout.reverseTargets, m), doubles(in, layout.reverseWeights, m),
+					ints(in, layout.reverseSets, m), carriers);
+			AirportStore airports = new AirportStore(in.slice((int) layout.strings, (int) in.getLong(64)),
+					ints(in, layout.stringOffsets, AirportStore.FIELDS * n + 1));
+			return new GraphSnapshot(graph, airports);
+		}
+	}
+
+	// The header records the size and modification time of each source file at offset.
+	private static boolean isStale(ByteBuffer header, int offset, File source) {
+		return source.exists() && (header.getLong(offset) != source.length()
+				|| header.getLong(offset + 8) != source.lastModified());
+	}
+
+	private static long checksum(ByteBuffer buffer, long fileBytes) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.slice(HEADER_BYTES, (int) fileBytes - HEADER_BYTES));
+		return crc.getValue();
+	}
+
+	private static IntBuffer ints(ByteBuffer buffer, long offset, int count) {
+		return buffer.slice((int) offset, count * Integer.BYTES).order(ORDER).asIntBuffer();
+	}
+
+	private static DoubleBuffer doubles(ByteBuffer buffer, long offset, int count) {
+		return buffer.slice((int) offset, count * Double.BYTES).order(ORDER).asDoubleBuffer();
+	}
+
+	/**
+	 * <b>Layout</b> computes the byte offset of every section of a snapshot file. The
+	 * double sections come first so that every section stays naturally aligned.
+	 */
+	private static final class Layout {
+
+		final long latitudes;
+		final long longitudes;
+		final long weights;
+		final long reverseWeights;
+		final long ids;
+		final long indexById;
+		final long offsets;
+		final long targets;
+		final long reverseOffsets;
+		final long reverseTargets;
+		final long edgeSets;
+		final long reverseSets;
+		final long carrierCodes;
+		final long setOffsets;
+		final long setMembers;
+		final long stringOffsets;
+		final long strings;
+		final long fileBytes;
+
+		Layout(int n, int m, int idCapacity, int carrierCount, int setCount, int memberCount, long stringBytes) {
+			latitudes = HEADER_BYTES;
+			longitudes = latitudes + (long) n * Double.BYTES;
+			weights = longitudes + (long) n * Double.BYTES;
+			reverseWeights = weights + (long) m * Double.BYTES;
+			ids = reverseWeights + (long) m * Double.BYTES;
+			indexById = ids + (long) n * Integer.BYTES;
+			offsets = indexById + (long) idCapacity * Integer.BYTES;
+			targets = offsets + (long) (n + 1) * Integer.BYTES;
+			reverseOffsets = targets + (long) m * Integer.BYTES;
+			reverseTargets = reverseOffsets + (long) (n + 1) * Integer.BYTES;
+			edgeSets = reverseTargets + (long) m * Integer.BYTES;
+			reverseSets = edgeSets + (long) m * Integer.BYTES;
+			carrierCodes = reverseSets + (long) m * Integer.BYTES;
+			setOffsets = carrierCodes + (long) carrierCount * Integer.BYTES;
+			setMembers = setOffsets + (long) (setCount + 1) * Integer.BYTES;
+			stringOffsets = setMembers + (long) memberCount * Integer.BYTES;
+			strings = stringOffsets + (long) (AirportStore.FIELDS * n + 1) * Integer.BYTES;
+			fileBytes = strings + stringBytes;
+		}
+
+	}
+
+}
@@ -0,0 +1,115 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * <b>GreatCircle</b> computes great-circle distances between airport coordinates with
+ * the haversine formula. An instance is a DistanceBound over the coordinates of a
+ * RouteGraph: since every edge of the graph is weighted with the great-circle
+ * distance between its endpoints, the great-circle distance to the destination
+ * never overestimates the remaining route length. An edge reweighted below the
+ * great-circle distance of its endpoints scales the bound down until it holds again.
+ */
+public final class GreatCircle implements DistanceBound {
+
+	/** The mean radius of the Earth in kilometres. */
+	public static final double EARTH_RADIUS_KM = 6371.0088;
+
+	// Scaling the estimate down slightly keeps the bound consistent in the face of
+	// floating-point rounding in the triangle inequality.
+	private static final double SLACK = 1.0 - 1e-9;
+
+	// unit vectors of the node coordinates, interleaved as x, y, z
+	private final double[] unitVectors;
+	// the factor applied to every estimate, at most SLACK
+	private final double scale;
+
+	/**
+	 * @param graph The graph whose node coordinates are used.
+	 * @effects Constructs a new GreatCircle bound over the nodes of graph.
+	 */
+	public GreatCircle(RouteGraph graph) {
+		this.unitVectors = unitVectors(graph, new double[0]);
+		this.scale = SLACK;
+	}
+
+	private GreatCircle(double[] unitVectors, double scale) {
+		this.unitVectors = unitVectors;
+		this.scale = scale;
+	}
+
+	/**
+	 * @param graph A graph derived from the one this bound was made for.
+	 * @returns a bound over the nodes of graph, scaled down like this one.
+	 */
+	public GreatCircle forGraph(RouteGraph graph) {
+		return new GreatCircle(unitVectors(graph, unitVectors), scale);
+	}
+
+	// The unit vectors of the nodes of graph, copying those of the nodes that known
+	// already holds, since a derived graph only appends nodes.
+	private static double[] unitVectors(RouteGraph graph, double[] known) {
+		int n = graph.getNodeCount();
+		double[] vectors = Arrays.copyOf(known, 3 * n);
+		for (int i = known.length / 3; i < n; i++) {
+			double phi = Math.toRadians(graph.latitude(i));
+			double lambda = Math.toRadians(graph.longitude(i));
+			vectors[3 * i] = Math.cos(phi) * Math.cos(lambda);
+			vectors[3 * i + 1] = Math.cos(phi) * Math.sin(lambda);
+			vectors[3 * i + 2] = Math.sin(phi);
+		}
+		return vectors;
+	}
+
+	/**
+	 * @param u The index of the parent node of an edge.
+	 * @param v The index of the child node of the edge.
+	 * @param weight The weight of the edge.
+	 * @returns this bound if it never overestimates an edge from u to v with the given
+	 * 	weight, or else a copy scaled down so that it does not, which keeps the bound
+	 * 	admissible and consistent.
+	 */
+	public GreatCircle admitting(int u, int v, double weight) {
+		double distance = estimate(u, v);
+		if (distance <= weight) {
+			return this;
+		}
+		return new GreatCircle(unitVectors, scale * weight / distance * SLACK);
+	}
+
+	/**
+	 * @param lat1 The latitude of the first point, in degrees.
+	 * @param lon1 The longitude of the first point, in degrees.
+	 * @param lat2 The latitude of the second point, in degrees.
+	 * @param lon2 The longitude of the second point, in degrees.
+	 * @returns the great-circle distance between the two points in kilometres.
+	 */
+	public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+		double phi1 = Math.toRadians(lat1);
+		double phi2 = Math.toRadians(lat2);
+		return haversine(phi1, Math.toRadians(lon1), Math.cos(phi1),
+						 phi2, Math.toRadians(lon2), Math.cos(phi2));
+	}
+
+	// The haversine term equals a quarter of the squared chord between the two unit
+	// vectors, which avoids evaluating any trigonometric function but asin per call.
+	@Override
+	public double estimate(int node, int target) {
+		int a = 3 * node;
+		int b = 3 * target;
+		double dx = unitVectors[a] - unitVectors[b];
+		double dy = unitVectors[a + 1] - unitVectors[b + 1];
+		double dz = unitVectors[a + 2] - unitVectors[b + 2];
+		double halfChord = 0.5 * Math.sqrt(dx * dx + dy * dy + dz * dz);
+		return scale * 2.0 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, halfChord));
+	}
+
+	private static double haversine(double phi1, double lambda1, double cosPhi1,
+									double phi2, double lambda2, double cosPhi2) {
+		double sinDPhi = Math.sin((phi2 - phi1) * 0.5);
+		double sinDLambda = Math.sin((lambda2 - lambda1) * 0.5);
+		double a = sinDPhi * sinDPhi + cosPhi1 * cosPhi2 * sinDLambda * sinDLambda;
+		return 2.0 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+	}
+
+}
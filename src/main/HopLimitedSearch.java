@@ -0,0 +1,314 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * <b>HopLimitedSearch</b> finds shortest routes that use at most a given number of
+ * legs. It relaxes the graph layer by layer, Bellman-Ford style: layer k holds the
+ * nodes whose best distance improved using exactly k legs, and only that sparse
+ * frontier is expanded to build layer k + 1. The search ends after the last allowed
+ * layer or as soon as a frontier is empty.
+ *
+ * Layers are stored sparsely: every layer appends one entry per node it improved to
+ * a single log, holding the node, its distance and the entry it was reached from in
+ * the layer before. The log grows with the work a search does, not with the leg
+ * limit times the number of nodes.
+ *
+ * A search object is the reusable workspace of such searches, like SearchWorkspace:
+ * its arrays are stamped rather than cleared between queries, so a query allocates
+ * nothing except the RoutePaths read from it. Searches are not thread-safe. Use
+ * forThread to obtain the calling thread's own instance.
+ */
+public final class HopLimitedSearch {
+
+	/**
+	 * The largest leg limit a single query may ask for; no shortest route between two
+	 * airports comes anywhere near it.
+	 */
+	public static final int MAX_LEGS = 32;
+
+	private static final ThreadLocal<HopLimitedSearch> LOCAL =
+			ThreadLocal.withInitial(() -> new HopLimitedSearch(0));
+
+	private int capacity;
+	private double[] best;
+	private int[] bestLayer;
+	private int[] bestEntry;
+	private int[] reached;
+	private int[] entryOf;
+	private int[] queued;
+	private int[] queue;
+	private int[] hopsLeft;
+	private int[] hopStamp;
+	private int[] entryNode;
+	private double[] entryDist;
+	private int[] entryPred;
+	private int entryCount;
+	private int stamp;
+	private int queueStamp;
+	private int source;
+	private int scannedCount;
+
+	// Abstraction Function:
+	// HopLimitedSearch, h, represents the result of its last search from source: a node v
+	// with reached[v] == stamp is reachable in at most the allowed number of legs, best[v]
+	// is the shortest such distance, found with bestLayer[v] legs, and the route to it
+	// follows entryPred back from entry bestEntry[v] one layer at a time. The entries
+	// 0 .. entryCount - 1 hold the layers in order, entry 0 being source in layer 0.
+	//
+	// Representation Invariant for every HopLimitedSearch h:
+	// best, bestLayer, bestEntry, reached, entryOf, queued, queue, hopsLeft and hopStamp
+	// all have length capacity && entryNode, entryDist and entryPred have equal lengths
+	// >= entryCount && foreach v reached under stamp, with i == bestEntry[v] =>
+	// entryNode[i] == v && entryDist[i] == best[v] && following entryPred from i reaches
+	// entry 0 in exactly bestLayer[v] steps
+
+	/**
+	 * @param capacity The number of nodes the search must be able to hold.
+	 * @effects Constructs a new HopLimitedSearch.
+	 */
+	public HopLimitedSearch(int capacity) {
+		this.capacity = capacity;
+		this.best = new double[capacity];
+		this.bestLayer = new int[capacity];
+		this.bestEntry = new int[capacity];
+		this.reached = new int[capacity];
+		this.entryOf = new int[capacity];
+		this.queued = new int[capacity];
+		this.queue = new int[capacity];
+		this.hopsLeft = new int[capacity];
+		this.hopStamp = new int[capacity];
+		this.entryNode = new int[Math.max(capacity, 16)];
+		this.entryDist = new double[entryNode.length];
+		this.entryPred = new int[entryNode.length];
+	}
+
+	/**
+	 * @param nodeCount The number of nodes in the graph about to be searched.
+	 * @returns the calling thread's search, sized for nodeCount nodes.
+	 */
+	public static HopLimitedSearch forThread(int nodeCount) {
+		HopLimitedSearch search = LOCAL.get();
+		search.ensureCapacity(nodeCount);
+		return search;
+	}
+
+	/**
+	 * @param nodeCount The number of nodes in the graph about to be searched.
+	 * @modifies this
+	 * @effects Grows the search if it cannot hold nodeCount nodes.
+	 */
+	public void ensureCapacity(int nodeCount) {
+		if (nodeCount > capacity) {
+			capacity = nodeCount;
+			best = Arrays.copyOf(best, capacity);
+			bestLayer = Arrays.copyOf(bestLayer, capacity);
+			bestEntry = Arrays.copyOf(bestEntry, capacity);
+			reached = Arrays.copyOf(reached, capacity);
+			entryOf = Arrays.copyOf(entryOf, capacity);
+			queued = Arrays.copyOf(queued, capacity);
+			queue = Arrays.copyOf(queue, capacity);
+			hopsLeft = Arrays.copyOf(hopsLeft, capacity);
+			hopStamp = Arrays.copyOf(hopStamp, capacity);
+		}
+	}
+
+	private void reset() {
+		stamp++;
+		if (stamp == Integer.MAX_VALUE) {
+			Arrays.fill(reached, 0);
+			Arrays.fill(hopStamp, 0);
+			stamp = 1;
+		}
+		scannedCount = 0;
+	}
+
+	// Layers get their own stamps so that a node enters each frontier at most once.
+	private int nextQueueStamp() {
+		queueStamp++;
+		if (queueStamp == Integer.MAX_VALUE) {
+			Arrays.fill(queued, 0);
+			queueStamp = 1;
+		}
+		return queueStamp;
+	}
+
+	/**
+	 * @param graph The graph to search.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node, or -1 to search every node
+	 * 	within maxLegs legs of source.
+	 * @param maxLegs The largest number of legs a route may have.
+	 * @param bound A lower bound on the remaining distance to target, or null; it
+	 * 	need not be consistent. Ignored when target is -1.
+	 * @param filter The carriers whose routes may be flown, or null to allow every route.
+	 * @requires 0 <= maxLegs <= MAX_LEGS && this can hold graph.getNodeCount() nodes &&
+	 * 	filter, if given, was built for graph.carriers()
+	 * @modifies this
+	 * @effects Finds the shortest routes from source that use at most maxLegs legs,
+	 * 	to target or, when target is -1, to every node. With a target, nodes that
+	 * 	cannot reach it in the legs left over, or whose bound shows they cannot beat
+	 * 	the best route found so far, are never added to a frontier.
+	 * @returns true iff target was reached (always false when target is -1).
+	 */
+	public boolean search(RouteGraph graph, int source, int target, int maxLegs, DistanceBound bound,
+						  CarrierFilter filter) {
+		reset();
+		this.source = source;
+		if (target >= 0) {
+			if (!graph.components().canReach(source, target)) {
+				return false;
+			}
+			markHopsToTarget(graph.reverse(), target, maxLegs, filter);
+			if (hopStamp[source] != stamp) {
+				return false;
+			}
+		}
+		best[source] = 0.0;
+		bestLayer[source] = 0;
+		bestEntry[source] = 0;
+		reached[source] = stamp;
+		entryCount = 0;
+		append(source, 0.0, -1);
+		// the frontier is the entries from layerStart to layerEnd, the previous layer
+		int layerStart = 0;
+		int layerEnd = entryCount;
+		for (int layer = 1; layer <= maxLegs && layerStart < layerEnd; layer++) {
+			int legsLeft = maxLegs - layer;
+			int inLayer = nextQueueStamp();
+			for (int i = layerStart; i < layerEnd; i++) {
+				int u = entryNode[i];
+				// the target is never expanded: a longer route through it cannot end at it
+				if (u == target) {
+					continue;
+				}
+				scannedCount++;
+				double du = entryDist[i];
+				for (int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++) {
+					int v = graph.target(e);
+					double dv = du + graph.weight(e);
+					if (reached[v] == stamp && dv >= best[v]) {
+						continue;
+					}
+					if (filter != null && !filter.allows(graph.carrierSet(e))) {
+						continue;
+					}
+					if (target >= 0) {
+						if (hopStamp[v] != stamp || hopsLeft[v] > legsLeft) {
+							continue;
+						}
+						if (reached[target] == stamp && bound != null
+								&& dv + bound.estimate(v, target) >= best[target]) {
+							continue;
+						}
+					}
+					// a node improved twice within a layer keeps one entry, with its last value
+					if (queued[v] != inLayer) {
+						queued[v] = inLayer;
+						entryOf[v] = append(v, dv, i);
+					} else {
+						entryDist[entryOf[v]] = dv;
+						entryPred[entryOf[v]] = i;
+					}
+					reached[v] = stamp;
+					best[v] = dv;
+					bestLayer[v] = layer;
+					bestEntry[v] = entryOf[v];
+				}
+			}
+			layerStart = layerEnd;
+			layerEnd = entryCount;
+		}
+		return target >= 0 && reached[target] == stamp;
+	}
+
+	// Appends an entry to the log, growing it if needed, and returns its index.
+	private int append(int v, double dist, int pred) {
+		if (entryCount == entryNode.length) {
+			int length = 2 * entryNode.length;
+			entryNode = Arrays.copyOf(entryNode, length);
+			entryDist = Arrays.copyOf(entryDist, length);
+			entryPred = Arrays.copyOf(entryPred, length);
+		}
+		entryNode[entryCount] = v;
+		entryDist[entryCount] = dist;
+		entryPred[entryCount] = pred;
+		return entryCount++;
+	}
+
+	// Marks every node that can reach target in at most maxLegs legs with that number
+	// of legs, by a breadth-first search over the reverse graph.
+	private void markHopsToTarget(RouteGraph reverse, int target, int maxLegs, CarrierFilter filter) {
+		hopStamp[target] = stamp;
+		hopsLeft[target] = 0;
+		queue[0] = target;
+		int head = 0;
+		int tail = 1;
+		while (head < tail) {
+			int v = queue[head++];
+			int hops = hopsLeft[v] + 1;
+			if (hops > maxLegs) {
+				continue;
+			}
+			for (int e = reverse.firstEdge(v), end = reverse.endEdge(v); e < end; e++) {
+				int u = reverse.target(e);
+				if (hopStamp[u] == stamp || (filter != null && !filter.allows(reverse.carrierSet(e)))) {
+					continue;
+				}
+				hopStamp[u] = stamp;
+				hopsLeft[u] = hops;
+				queue[tail++] = u;
+			}
+		}
+	}
+
+	/**
+	 * @param v The index of a node.
+	 * @returns true iff the last search reached v within its leg limit.
+	 */
+	public boolean isReached(int v) {
+		return reached[v] == stamp;
+	}
+
+	/**
+	 * @param v The index of a node.
+	 * @requires isReached(v)
+	 * @returns the length of the shortest route to v found by the last search.
+	 */
+	public double distance(int v) {
+		return best[v];
+	}
+
+	/**
+	 * @param v The index of a node.
+	 * @requires isReached(v)
+	 * @returns the number of legs of the shortest route to v found by the last search.
+	 */
+	public int legCount(int v) {
+		return bestLayer[v];
+	}
+
+	/**
+	 * @returns the number of frontier nodes the last search expanded.
+	 */
+	public int getScannedCount() {
+		return scannedCount;
+	}
+
+	/**
+	 * @param v The index of a node.
+	 * @requires isReached(v)
+	 * @returns the shortest route to v found by the last search.
+	 */
+	public RoutePath path(int v) {
+		int legs = bestLayer[v];
+		int[] nodes = new int[legs + 1];
+		int i = bestEntry[v];
+		for (int layer = legs; layer >= 0; layer--) {
+			nodes[layer] = entryNode[i];
+			i = entryPred[i];
+		}
+		return new RoutePath(nodes, best[v], scannedCount);
+	}
+
+}
@@ -0,0 +1,226 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * <b>IndexedMinHeap</b> represents a mutable binary min-heap of int nodes keyed by
+ * primitive double priorities. Each node is present at most once, and its position
+ * in the heap is tracked so that its key can be decreased in O(log n) without
+ * searching the heap. No objects are allocated once the heap has grown to the
+ * number of nodes it is used with.
+ *
+ * The heap counts the insertions, removals and key changes since it was last cleared,
+ * so that a search can report how much heap work it did.
+ */
+public final class IndexedMinHeap {
+
+	private int[] nodes;
+	private double[] keys;
+	private int[] positions;
+	private int size;
+	private int pushCount;
+	private int popCount;
+	private int updateCount;
+
+	// Abstraction Function:
+	// IndexedMinHeap, h, represents the set of pairs {(nodes[i], keys[i]) | 0 <= i < size}
+	// ordered by key.
+	//
+	// Representation Invariant for every IndexedMinHeap h:
+	// 0 <= size <= nodes.length == keys.length &&
+	// foreach 0 < i < size => keys[(i - 1) / 2] <= keys[i] &&
+	// foreach 0 <= i < size => positions[nodes[i]] == i
+	//
+	// In other words,
+	//		* the first size slots of nodes/keys form a binary heap on keys
+	//		* positions maps every node in the heap back to its slot; entries of
+	//		  positions for nodes that are not in the heap are meaningless
+
+	/**
+	 * @param capacity The number of distinct nodes the heap must be able to hold.
+	 * @effects Constructs a new empty IndexedMinHeap.
+	 */
+	public IndexedMinHeap(int capacity) {
+		this.nodes = new int[Math.max(capacity, 1)];
+		this.keys = new double[this.nodes.length];
+		this.positions = new int[this.nodes.length];
+	}
+
+	/**
+	 * @param capacity The number of distinct nodes the heap must be able to hold.
+	 * @modifies this
+	 * @effects Grows the backing arrays if they cannot hold nodes [0, capacity).
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > nodes.length) {
+			nodes = Arrays.copyOf(nodes, capacity);
+			keys = Arrays.copyOf(keys, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+		}
+	}
+
+	/**
+	 * @modifies this
+	 * @effects Removes every node from the heap and zeroes its operation counts.
+	 */
+	public void clear() {
+		size = 0;
+		pushCount = 0;
+		popCount = 0;
+		updateCount = 0;
+	}
+
+	/**
+	 * @returns true iff the heap contains no nodes.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @returns the number of nodes in the heap.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @returns the number of nodes inserted since the heap was last cleared.
+	 */
+	public int getPushCount() {
+		return pushCount;
+	}
+
+	/**
+	 * @returns the number of nodes removed since the heap was last cleared.
+	 */
+	public int getPopCount() {
+		return popCount;
+	}
+
+	/**
+	 * @returns the number of key changes since the heap was last cleared.
+	 */
+	public int getUpdateCount() {
+		return updateCount;
+	}
+
+	/**
+	 * @requires !isEmpty()
+	 * @returns the smallest key in the heap.
+	 */
+	public double peekKey() {
+		return keys[0];
+	}
+
+	/**
+	 * @param node The node to insert.
+	 * @param key The priority of node.
+	 * @requires node is not already in the heap
+	 * @modifies this
+	 * @effects Inserts node with priority key.
+	 */
+	public void insert(int node, double key) {
+		pushCount++;
+		int i = size++;
+		nodes[i] = node;
+		keys[i] = key;
+		positions[node] = i;
+		siftUp(i);
+	}
+
+	/**
+	 * @param node The node whose priority is lowered.
+	 * @param key The new priority of node.
+	 * @requires node is in the heap && key <= its current priority
+	 * @modifies this
+	 * @effects Lowers the priority of node to key.
+	 */
+	public void decreaseKey(int node, double key) {
+		updateCount++;
+		int i = positions[node];
+		keys[i] = key;
+		siftUp(i);
+	}
+
+	/**
+	 * @param node The node whose priority changes.
+	 * @param key The new priority of node.
+	 * @requires node is in the heap
+	 * @modifies this
+	 * @effects Sets the priority of node to key, which may be higher or lower than
+	 * 	its current priority.
+	 */
+	public void changeKey(int node, double key) {
+		updateCount++;
+		int i = positions[node];
+		double old = keys[i];
+		keys[i] = key;
+		if (key < old) {
+			siftUp(i);
+		} else {
+			siftDown(i);
+		}
+	}
+
+	/**
+	 * @requires !isEmpty()
+	 * @modifies this
+	 * @effects Removes the node with the smallest key.
+	 * @returns the removed node.
+	 */
+	public int pollMin() {
+		popCount++;
+		int min = nodes[0];
+		size--;
+		if (size > 0) {
+			nodes[0] = nodes[size];
+			keys[0] = keys[size];
+			positions[nodes[0]] = 0;
+			siftDown(0);
+		}
+		return min;
+	}
+
+	private void siftUp(int i) {
+		int node = nodes[i];
+		double key = keys[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (keys[parent] <= key) {
+				break;
+			}
+			nodes[i] = nodes[parent];
+			keys[i] = keys[parent];
+			positions[nodes[i]] = i;
+			i = parent;
+		}
+		nodes[i] = node;
+		keys[i] = key;
+		positions[node] = i;
+	}
+
+	private void siftDown(int i) {
+		int node = nodes[i];
+		double key = keys[i];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if (right < size && keys[right] < keys[child]) {
+				child = right;
+			}
+			if (key <= keys[child]) {
+				break;
+			}
+			nodes[i] = nodes[child];
+			keys[i] = keys[child];
+			positions[nodes[i]] = i;
+			i = child;
+		}
+		nodes[i] = node;
+		keys[i] = key;
+		positions[node] = i;
+	}
+
+}
@@ -0,0 +1,295 @@
+package main;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <b>KShortestPaths</b> finds the k shortest loopless routes between two airports with
+ * Yen's algorithm. Every accepted route is deviated from at each of its nodes (a spur
+ * node) by a search that may not revisit the route's earlier nodes and may not leave
+ * the spur node along an edge already taken by an accepted route with the same prefix.
+ *
+ * The bans are per-query stamp masks, so the graph is never modified. One backward
+ * search from the destination gives the exact distance of every node to it on the
+ * unbanned graph. That is both the first route and a lower bound for every spur
+ * search, which therefore runs as an A* search that heads straight for the
+ * destination. The spur searches of a route are independent and run in parallel on a
+ * ForkJoinPool, each worker reusing its own SearchWorkspace and mask. Following
+ * Lawler, a route is only deviated from at or after the node where it left the route
+ * it was derived from, as earlier spurs were already taken from its parent.
+ *
+ * There is no representation invariant or abstraction function for this class. This
+ * is because KShortestPaths is never constructed and only contains static methods.
+ */
+public final class KShortestPaths {
+
+	/** The largest number of routes a single query may ask for. */
+	public static final int MAX_PATHS = 100;
+
+	private static final ThreadLocal<BanMask> MASKS = ThreadLocal.withInitial(BanMask::new);
+
+	private KShortestPaths() {
+	}
+
+	/**
+	 * <b>BanMask</b> marks the nodes a spur search may not visit and the nodes it may
+	 * not fly to directly from the spur node. A node is banned iff its entry equals the
+	 * current stamp.
+	 */
+	private static final class BanMask {
+
+		int[] nodes = new int[0];
+		int[] next = new int[0];
+		int stamp;
+
+		void reset(int nodeCount) {
+			if (nodes.length < nodeCount) {
+				nodes = new int[nodeCount];
+				next = new int[nodeCount];
+				stamp = 0;
+			}
+			stamp++;
+			if (stamp == Integer.MAX_VALUE) {
+				Arrays.fill(nodes, 0);
+				Arrays.fill(next, 0);
+				stamp = 1;
+			}
+		}
+
+	}
+
+	/**
+	 * <b>Candidate</b> is a route waiting to be accepted, with the position on it of
+	 * the spur node it was found from.
+	 */
+	private static final class Candidate implements Comparable<Candidate> {
+
+		final RoutePath path;
+		final int deviation;
+
+		Candidate(RoutePath path, int deviation) {
+			this.path = path;
+			this.deviation = deviation;
+		}
+
+		@Override
+		public int compareTo(Candidate other) {
+			int byCost = Double.compare(path.getCost(), other.path.getCost());
+			return byCost != 0 ? byCost : Integer.compare(path.getNodeCount(), other.path.getNodeCount());
+		}
+
+	}
+
+	/**
+	 * @param graph The graph to search.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @param k The number of routes wanted.
+	 * @param pool The pool to run the spur searches on.
+	 * @requires 1 <= k <= MAX_PATHS
+	 * @returns the up to k shortest loopless routes from source to target, in order of
+	 * 	increasing length; fewer if there are fewer, and none if target cannot be
+	 * 	reached. The settled count of each route is the number of nodes settled by all
+	 * 	the searches run up to accepting it.
+	 */
+	public static List<RoutePath> find(RouteGraph graph, int source, int target, int k, ForkJoinPool pool) {
+		List<RoutePath> accepted = new ArrayList<>();
+		if (!graph.components().canReach(source, target)) {
+			return accepted;
+		}
+		int n = graph.getNodeCount();
+		SearchWorkspace ws = SearchWorkspace.reverseForThread(n);
+		PathFinder.dijkstra(graph.reverse(), ws, target, -1);
+		double[] toTarget = new double[n];
+		for (int v = 0; v < n; v++) {
+			toTarget[v] = ws.isSettled(v) ? ws.distance(v) : Double.POSITIVE_INFINITY;
+		}
+		long settledCount = ws.getSettledCount();
+
+		int[] first = new int[n];
+		int length = 0;
+		for (int v = source; v >= 0; v = ws.predecessor(v)) {
+			first[length++] = v;
+		}
+		accepted.add(new RoutePath(Arrays.copyOf(first, length), toTarget[source], (int) settledCount));
+		if (source == target) {
+			return accepted;
+		}
+
+		PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+		HashSet<IntBuffer> seen = new HashSet<>();
+		seen.add(IntBuffer.wrap(accepted.get(0).toNodeArray()));
+		int deviation = 0;
+		while (accepted.size() < k) {
+			RoutePath previous = accepted.get(accepted.size() - 1);
+			int[] nodes = previous.toNodeArray();
+			double[] rootCosts = new double[nodes.length];
+			for (int i = 1; i < nodes.length; i++) {
+				rootCosts[i] = rootCosts[i - 1] + graph.edgeWeight(nodes[i - 1], nodes[i]);
+			}
+			int spurs = nodes.length - 1 - deviation;
+			RoutePath[] found = new RoutePath[spurs];
+			int[] settled = new int[spurs];
+			pool.invoke(new SpurTask(graph, toTarget, accepted, nodes, rootCosts, deviation, found, settled,
+									 0, spurs));
+			for (int i = 0; i < spurs; i++) {
+				settledCount += settled[i];
+				if (found[i] != null && seen.add(IntBuffer.wrap(found[i].toNodeArray()))) {
+					candidates.add(new Candidate(found[i], deviation + i));
+				}
+			}
+			Candidate next = candidates.poll();
+			if (next == null) {
+				break;
+			}
+			accepted.add(new RoutePath(next.path.toNodeArray(), next.path.getCost(),
+									   (int) Math.min(settledCount, Integer.MAX_VALUE)));
+			deviation = next.deviation;
+		}
+		return accepted;
+	}
+
+	/**
+	 * <b>SpurTask</b> runs the spur searches of a range of spur nodes, splitting the
+	 * range in half until it holds a single spur node.
+	 */
+	private static final class SpurTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RouteGraph graph;
+		private final double[] toTarget;
+		private final List<RoutePath> accepted;
+		private final int[] nodes;
+		private final double[] rootCosts;
+		private final int deviation;
+		private final RoutePath[] found;
+		private final int[] settled;
+		private final int from;
+		private final int to;
+
+		SpurTask(RouteGraph graph, double[] toTarget, List<RoutePath> accepted, int[] nodes, double[] rootCosts,
+				 int deviation, RoutePath[] found, int[] settled, int from, int to) {
+			this.graph = graph;
+			this.toTarget = toTarget;
+			this.accepted = accepted;
+			this.nodes = nodes;
+			this.rootCosts = rootCosts;
+			this.deviation = deviation;
+			this.found = found;
+			this.settled = settled;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new SpurTask(graph, toTarget, accepted, nodes, rootCosts, deviation, found, settled,
+									   from, mid),
+						  new SpurTask(graph, toTarget, accepted, nodes, rootCosts, deviation, found, settled,
+									   mid, to));
+				return;
+			}
+			for (int i = from; i < to; i++) {
+				int spur = deviation + i;
+				BanMask mask = MASKS.get();
+				mask.reset(graph.getNodeCount());
+				for (int r = 0; r < spur; r++) {
+					mask.nodes[nodes[r]] = mask.stamp;
+				}
+				for (RoutePath path : accepted) {
+					if (path.getNodeCount() > spur + 1 && sharesRoot(path, nodes, spur)) {
+						mask.next[path.nodeAt(spur + 1)] = mask.stamp;
+					}
+				}
+				SearchWorkspace ws = SearchWorkspace.forThread(graph.getNodeCount());
+				found[i] = spurSearch(graph, ws, mask, toTarget, nodes, spur, rootCosts[spur]);
+				settled[i] = ws.getSettledCount();
+			}
+		}
+
+	}
+
+	private static boolean sharesRoot(RoutePath path, int[] nodes, int spur) {
+		for (int r = 0; r <= spur; r++) {
+			if (path.nodeAt(r) != nodes[r]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Runs an A* search from nodes[spur] to the last node of nodes that avoids the banned
+	// nodes and next hops, and prefixes the route it finds with nodes[0 .. spur - 1].
+	private static RoutePath spurSearch(RouteGraph graph, SearchWorkspace ws, BanMask mask, double[] toTarget,
+										int[] nodes, int spur, double rootCost) {
+		int source = nodes[spur];
+		int target = nodes[nodes.length - 1];
+		ws.reset();
+		double[] dist = ws.dist;
+		int[] pred = ws.pred;
+		int[] reached = ws.reached;
+		int[] settled = ws.settled;
+		int stamp = ws.stamp;
+		IndexedMinHeap heap = ws.heap;
+
+		dist[source] = 0.0;
+		pred[source] = -1;
+		reached[source] = stamp;
+		heap.insert(source, toTarget[source]);
+		while (!heap.isEmpty()) {
+			int u = heap.pollMin();
+			settled[u] = stamp;
+			ws.settledCount++;
+			if (u == target) {
+				break;
+			}
+			double du = dist[u];
+			for (int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++) {
+				int v = graph.target(e);
+				if (settled[v] == stamp || mask.nodes[v] == mask.stamp
+						|| (u == source && mask.next[v] == mask.stamp)) {
+					continue;
+				}
+				double h = toTarget[v];
+				if (h == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				double dv = du + graph.weight(e);
+				if (reached[v] != stamp) {
+					reached[v] = stamp;
+					dist[v] = dv;
+					pred[v] = u;
+					heap.insert(v, dv + h);
+				} else if (dv < dist[v]) {
+					dist[v] = dv;
+					pred[v] = u;
+					heap.decreaseKey(v, dv + h);
+				}
+			}
+		}
+		if (settled[target] != stamp) {
+			return null;
+		}
+		int length = spur;
+		for (int v = target; v >= 0; v = pred[v]) {
+			length++;
+		}
+		int[] route = new int[length];
+		System.arraycopy(nodes, 0, route, 0, spur);
+		int i = length - 1;
+		for (int v = target; v >= 0; v = pred[v]) {
+			route[i--] = v;
+		}
+		return new RoutePath(route, rootCost + dist[target], ws.getSettledCount());
+	}
+
+}
@@ -0,0 +1,280 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/**
+ * <b>LandmarkIndex</b> is an immutable ALT (A*, Landmarks, Triangle inequality)
+ * DistanceBound. For K landmark nodes L it stores d(L, v) and d(v, L) for every node v;
+ * the triangle inequality then gives two lower bounds on d(v, t):
+ * 		d(L, t) - d(L, v)    and    d(v, L) - d(t, L)
+ * and the estimate is the largest of them over all landmarks.
+ *
+ * The distance tables live outside the Java heap, either in a direct buffer or in
+ * a memory-mapped sidecar file written by save, so a restart can reopen them with
+ * load instead of recomputing 2K one-to-all searches.
+ */
+public final class LandmarkIndex implements DistanceBound {
+
+	/**
+	 * The largest number of landmarks an index may have; past a few dozen, more
+	 * landmarks barely tighten the bound while every estimate reads all of them.
+	 */
+	public static final int MAX_LANDMARKS = 64;
+
+	private static final int MAGIC = 0x414c5431; // "ALT1"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 32;
+
+	// Scaling the estimate down slightly keeps the bound consistent in the face of
+	// floating-point rounding in the stored distances.
+	private static final double SLACK = 1.0 - 1e-9;
+
+	private final int nodeCount;
+	private final int[] landmarks;
+	private final DoubleBuffer fromLandmark;
+	private final DoubleBuffer toLandmark;
+
+	// Abstraction Function:
+	// LandmarkIndex, x, represents the landmarks x.landmarks together with the tables
+	// fromLandmark[v * K + i] = d(landmarks[i], v) and toLandmark[v * K + i] = d(v, landmarks[i]),
+	// where K = landmarks.length and unreachable distances are positive infinity.
+	//
+	// Representation Invariant for every LandmarkIndex x:
+	// landmarks.length >= 1 &&
+	// fromLandmark.capacity() == toLandmark.capacity() == nodeCount * landmarks.length
+
+	private LandmarkIndex(int nodeCount, int[] landmarks, DoubleBuffer fromLandmark, DoubleBuffer toLandmark) {
+		this.nodeCount = nodeCount;
+		this.landmarks = landmarks;
+		this.fromLandmark = fromLandmark;
+		this.toLandmark = toLandmark;
+	}
+
+	/**
+	 * @param graph The graph to preprocess.
+	 * @param count The number of landmarks to select.
+	 * @requires 1 <= count <= MAX_LANDMARKS && graph has at least one edge
+	 * @throws IllegalArgumentException if a distance table would not fit in a buffer
+	 * @returns a new LandmarkIndex over graph with landmarkCount(graph, count)
+	 * 	landmarks. Landmarks are chosen by farthest-point selection on the great-circle
+	 * 	distance between airports that have routes, and the 2 * count distance tables
+	 * 	are computed in parallel.
+	 */
+	public static LandmarkIndex build(RouteGraph graph, int count) {
+		RouteGraph reverse = graph.reverse();
+		int n = graph.getNodeCount();
+		int[] landmarks = selectLandmarks(graph, reverse, count);
+		int k = landmarks.length;
+		int bytes = tableBytes(n, k);
+		if (bytes < 0) {
+			throw new IllegalArgumentException("Landmark tables for " + n + " airports and " + k
+											   + " landmarks are too large");
+		}
+		DoubleBuffer from = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+		DoubleBuffer to = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+
+		// task 2i fills d(L_i, *) on the graph, task 2i + 1 fills d(*, L_i) on its reverse index
+		IntStream.range(0, 2 * k).parallel().forEach(task -> {
+			int i = task >>> 1;
+			boolean forward = (task & 1) == 0;
+			RouteGraph g = forward ? graph : reverse;
+			DoubleBuffer table = forward ? from : to;
+			SearchWorkspace ws = SearchWorkspace.forThread(n);
+			PathFinder.dijkstra(g, ws, landmarks[i], -1);
+			for (int v = 0; v < n; v++) {
+				table.put(v * k + i, ws.distance(v));
+			}
+		});
+		return new LandmarkIndex(n, landmarks, from, to);
+	}
+
+	/**
+	 * @param graph The graph an index would be built for.
+	 * @param count The number of landmarks asked for.
+	 * @returns the number of landmarks build(graph, count) selects: count, or the
+	 * 	number of airports with routes both in and out if that is smaller.
+	 */
+	public static int landmarkCount(RouteGraph graph, int count) {
+		RouteGraph reverse = graph.reverse();
+		int routed = 0;
+		for (int v = 0; v < graph.getNodeCount() && routed < count; v++) {
+			if (graph.outDegree(v) > 0 && reverse.outDegree(v) > 0) {
+				routed++;
+			}
+		}
+		return routed;
+	}
+
+	// The size of one distance table in bytes, or -1 if it does not fit in an int.
+	private static int tableBytes(int nodeCount, int k) {
+		long bytes = (long) nodeCount * k * Double.BYTES;
+		return bytes > Integer.MAX_VALUE ? -1 : (int) bytes;
+	}
+
+	private static int[] selectLandmarks(RouteGraph graph, RouteGraph reverse, int count) {
+		int n = graph.getNodeCount();
+		double[] nearest = new double[n];
+		int first = -1;
+		for (int v = 0; v < n; v++) {
+			boolean routed = graph.outDegree(v) > 0 && reverse.outDegree(v) > 0;
+			nearest[v] = routed ? Double.POSITIVE_INFINITY : -1.0;
+			if (routed && (first < 0 || graph.outDegree(v) > graph.outDegree(first))) {
+				first = v;
+			}
+		}
+		if (first < 0) {
+			throw new IllegalArgumentException("graph has no routes to place landmarks on");
+		}
+
+		// start from the best-connected hub, then repeatedly take the routed airport
+		// farthest from every landmark chosen so far
+		int[] chosen = new int[count];
+		int size = 0;
+		int next = first;
+		while (size < count && next >= 0) {
+			chosen[size++] = next;
+			nearest[next] = -1.0;
+			double lat = graph.latitude(next);
+			double lon = graph.longitude(next);
+			next = -1;
+			for (int v = 0; v < n; v++) {
+				if (nearest[v] < 0) {
+					continue;
+				}
+				double d = GreatCircle.distanceKm(lat, lon, graph.latitude(v), graph.longitude(v));
+				if (d < nearest[v]) {
+					nearest[v] = d;
+				}
+				if (next < 0 || nearest[v] > nearest[next]) {
+					next = v;
+				}
+			}
+		}
+		int[] landmarks = new int[size];
+		System.arraycopy(chosen, 0, landmarks, 0, size);
+		return landmarks;
+	}
+
+	/**
+	 * @returns the number of landmarks.
+	 */
+	public int getLandmarkCount() {
+		return landmarks.length;
+	}
+
+	/**
+	 * @param i The position of a landmark.
+	 * @requires 0 <= i < getLandmarkCount()
+	 * @returns the node index of the i-th landmark.
+	 */
+	public int landmarkAt(int i) {
+		return landmarks[i];
+	}
+
+	@Override
+	public double estimate(int node, int target) {
+		int k = landmarks.length;
+		int v = node * k;
+		int t = target * k;
+		double best = 0.0;
+		for (int i = 0; i < k; i++) {
+			double fromV = fromLandmark.get(v + i);
+			double fromT = fromLandmark.get(t + i);
+			// L reaches node but not target, so node cannot reach target either
+			if (fromT == Double.POSITIVE_INFINITY) {
+				if (fromV != Double.POSITIVE_INFINITY) {
+					return Double.POSITIVE_INFINITY;
+				}
+			} else if (fromV != Double.POSITIVE_INFINITY && fromT - fromV > best) {
+				best = fromT - fromV;
+			}
+			double toV = toLandmark.get(v + i);
+			double toT = toLandmark.get(t + i);
+			// target reaches L but node does not, so node cannot reach target either
+			if (toV == Double.POSITIVE_INFINITY) {
+				if (toT != Double.POSITIVE_INFINITY) {
+					return Double.POSITIVE_INFINITY;
+				}
+			} else if (toT != Double.POSITIVE_INFINITY && toV - toT > best) {
+				best = toV - toT;
+			}
+		}
+		return SLACK * best;
+	}
+
+	/**
+	 * @param file The sidecar file to write.
+	 * @param fingerprint The fingerprint of the graph this index was built for.
+	 * @effects Writes the landmarks and both distance tables to file, replacing it.
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(File file, long fingerprint) throws IOException {
+		int k = landmarks.length;
+		long size = HEADER_BYTES + (long) k * Integer.BYTES + 2L * nodeCount * k * Double.BYTES;
+		file.delete();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			out.order(ByteOrder.nativeOrder());
+			out.putInt(MAGIC).putInt(VERSION).putLong(fingerprint).putInt(nodeCount).putInt(k);
+			out.position(HEADER_BYTES);
+			for (int landmark : landmarks) {
+				out.putInt(landmark);
+			}
+			out.asDoubleBuffer().put(fromLandmark.duplicate().rewind());
+			out.position(out.position() + tableBytes(nodeCount, k));
+			out.asDoubleBuffer().put(toLandmark.duplicate().rewind());
+			out.force();
+		}
+	}
+
+	/**
+	 * @param file The sidecar file to open.
+	 * @param graph The graph the index will be used with.
+	 * @param fingerprint The fingerprint of graph.
+	 * @returns the LandmarkIndex stored in file, with its distance tables mapped
+	 * 	directly from the file, or null if the file is missing, malformed, or was
+	 * 	written for a different graph.
+	 * @throws IOException if the file exists but cannot be read
+	 */
+	public static LandmarkIndex load(File file, RouteGraph graph, long fingerprint) throws IOException {
+		if (!file.isFile() || file.length() < HEADER_BYTES) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			in.order(ByteOrder.nativeOrder());
+			if (in.getInt() != MAGIC || in.getInt() != VERSION || in.getLong() != fingerprint) {
+				return null;
+			}
+			int n = in.getInt();
+			int k = in.getInt();
+			long expected = HEADER_BYTES + (long) k * Integer.BYTES + 2L * n * k * Double.BYTES;
+			if (n != graph.getNodeCount() || k < 1 || k > MAX_LANDMARKS || tableBytes(n, k) < 0
+					|| channel.size() != expected) {
+				return null;
+			}
+			in.position(HEADER_BYTES);
+			IntBuffer landmarkBuffer = in.slice().order(ByteOrder.nativeOrder()).asIntBuffer();
+			int[] landmarks = new int[k];
+			landmarkBuffer.get(landmarks);
+			in.position(HEADER_BYTES + k * Integer.BYTES);
+			DoubleBuffer from = in.slice().order(ByteOrder.nativeOrder()).asDoubleBuffer();
+			from.limit(n * k);
+			in.position(in.position() + tableBytes(n, k));
+			DoubleBuffer to = in.slice().order(ByteOrder.nativeOrder()).asDoubleBuffer();
+			to.limit(n * k);
+			return new LandmarkIndex(n, landmarks, from.slice(), to.slice());
+		}
+	}
+
+}
@@ -0,0 +1,189 @@
+package main;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <b>LogHistogram</b> counts non-negative long values, such as latencies in
+ * nanoseconds or node counts, in logarithmic buckets: every power of two is split
+ * into SUB_BUCKETS equal buckets, so a value is known to within 1/SUB_BUCKETS of
+ * itself however large it is, and the whole range of long fits in a few hundred
+ * buckets. Quantiles read from the histogram carry the same relative error.
+ *
+ * Recording is lock-free and allocates nothing. The bucket counts are striped over a
+ * few copies chosen by thread, so threads recording at the same time rarely write to
+ * the same cache line. Reads sum the stripes without stopping writers, so a histogram
+ * read while it is being recorded into reflects some but maybe not all of the values
+ * recorded concurrently.
+ */
+public final class LogHistogram {
+
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	// values below SUB_BUCKETS have a bucket each; every power of two above has SUB_BUCKETS
+	static final int BUCKET_COUNT = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BITS) * SUB_BUCKETS;
+
+	private final int stripeMask;
+	private final AtomicLongArray counts;
+	private final LongAdder sum;
+	private final LongAccumulator max;
+
+	// Abstraction Function:
+	// LogHistogram, h, represents the multiset of values recorded since it was made or
+	// last reset, of which bucketCount(b) lie in [bucketLow(b), bucketHigh(b)], with the
+	// exact sum sum and the exact largest value max.
+	//
+	// Representation Invariant for every LogHistogram h:
+	// stripeMask + 1 is a power of two && counts.length() == (stripeMask + 1) * BUCKET_COUNT &&
+	// bucket b of stripe s is counts[s * BUCKET_COUNT + b]
+
+	/**
+	 * @effects Constructs a new empty LogHistogram with one stripe per processor, up
+	 * 	to eight.
+	 */
+	public LogHistogram() {
+		int stripes = Integer.highestOneBit(Math.min(8, Runtime.getRuntime().availableProcessors()));
+		this.stripeMask = stripes - 1;
+		this.counts = new AtomicLongArray(stripes * BUCKET_COUNT);
+		this.sum = new LongAdder();
+		this.max = new LongAccumulator(Math::max, 0L);
+	}
+
+	/**
+	 * @param value A non-negative value.
+	 * @returns the index of the bucket that counts value.
+	 */
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) Math.max(value, 0L);
+		}
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BITS;
+		// the SUB_BITS bits below the leading one pick the bucket within the power of two
+		return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	/**
+	 * @param bucket The index of a bucket.
+	 * @returns the smallest value counted in bucket.
+	 */
+	static long bucketLow(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+	}
+
+	/**
+	 * @param bucket The index of a bucket.
+	 * @returns the largest value counted in bucket.
+	 */
+	static long bucketHigh(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		return bucketLow(bucket) + (1L << shift) - 1;
+	}
+
+	/**
+	 * @param value The value to record; negative values are recorded as 0.
+	 * @modifies this
+	 * @effects Adds value to the histogram.
+	 */
+	public void record(long value) {
+		long v = Math.max(value, 0L);
+		int stripe = (int) Thread.currentThread().getId() & stripeMask;
+		counts.getAndIncrement(stripe * BUCKET_COUNT + bucketOf(v));
+		sum.add(v);
+		max.accumulate(v);
+	}
+
+	/**
+	 * @param bucket The index of a bucket.
+	 * @returns the number of values recorded in bucket.
+	 */
+	public long bucketCount(int bucket) {
+		long count = 0;
+		for (int stripe = 0; stripe <= stripeMask; stripe++) {
+			count += counts.get(stripe * BUCKET_COUNT + bucket);
+		}
+		return count;
+	}
+
+	/**
+	 * @returns the number of values recorded.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * @returns the sum of the values recorded.
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * @returns the largest value recorded, or 0 if there is none.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @returns the mean of the values recorded, or 0 if there is none.
+	 */
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0.0 : (double) getSum() / count;
+	}
+
+	/**
+	 * @param quantile The fraction of values that must lie at or below the result.
+	 * @requires 0 <= quantile <= 1
+	 * @returns the upper end of the bucket holding the value of rank quantile, capped
+	 * 	at the largest value recorded, or 0 if no value was recorded.
+	 */
+	public long getValueAtQuantile(double quantile) {
+		long[] buckets = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int b = 0; b < BUCKET_COUNT; b++) {
+			buckets[b] = bucketCount(b);
+			count += buckets[b];
+		}
+		if (count == 0) {
+			return 0L;
+		}
+		long rank = Math.max(1L, (long) Math.ceil(quantile * count));
+		long seen = 0;
+		for (int b = 0; b < BUCKET_COUNT; b++) {
+			seen += buckets[b];
+			if (seen >= rank) {
+				return Math.min(bucketHigh(b), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * @modifies this
+	 * @effects Forgets every value recorded. Values recorded while the histogram is
+	 * 	being reset may be kept in part.
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0L);
+		}
+		sum.reset();
+		max.reset();
+	}
+
+}
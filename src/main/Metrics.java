@@ -0,0 +1,411 @@
+package main;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <b>Metrics</b> collects what the route queries and the graph loads of an
+ * AirlineModel cost: for every query its latency, per routing mode, and how it was
+ * answered; for every search the nodes it settled, the edges it scanned, its heap
+ * operations and the legs of the route it found; and for every load phase its wall
+ * time and an estimate of the bytes it allocated.
+ *
+ * Counters are LongAdders and distributions are LogHistograms, so threads record
+ * without locking or allocating. Metrics start out disabled unless the system
+ * property pathfinder.metrics is true; while they are, the model checks one volatile
+ * flag per query and records nothing. The only cost left is the handful of counters
+ * every search keeps in its workspace anyway.
+ *
+ * snapshot renders everything as plain text, one "name{labels} value" line per
+ * figure, in the style of the Prometheus text format.
+ */
+public final class Metrics {
+
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * <b>Outcome</b> is how a route query was answered.
+	 */
+	public enum Outcome {
+		UNKNOWN_AIRPORT, UNREACHABLE, ROUTE_CACHE, TREE_CACHE, SEARCH, BATCHED
+	}
+
+	/**
+	 * <b>Phase</b> is a timed step of loading or preparing a graph.
+	 */
+	public enum Phase {
+		PARSE_AIRPORTS, PARSE_ROUTES, BUILD_GRAPH, OPEN_SNAPSHOT, PREPARE_LANDMARKS, PREPARE_HIERARCHY
+	}
+
+	/**
+	 * <b>Probe</b> accumulates the work of the searches behind one query. A probe
+	 * belongs to the thread that obtained it from probeForThread.
+	 */
+	public static final class Probe {
+
+		private long settled;
+		private long relaxed;
+		private long pushes;
+		private long pops;
+		private long updates;
+		private boolean searched;
+		private Outcome outcome;
+
+		private Probe() {
+		}
+
+		private Probe clear() {
+			settled = 0;
+			relaxed = 0;
+			pushes = 0;
+			pops = 0;
+			updates = 0;
+			searched = false;
+			outcome = Outcome.SEARCH;
+			return this;
+		}
+
+		/**
+		 * @param outcome How the query was answered.
+		 * @modifies this
+		 * @effects Notes how the query was answered.
+		 */
+		public void setOutcome(Outcome outcome) {
+			this.outcome = outcome;
+		}
+
+		/**
+		 * @returns how the query was answered, SEARCH unless set otherwise.
+		 */
+		public Outcome getOutcome() {
+			return outcome;
+		}
+
+		/**
+		 * @param ws The workspace of a finished search.
+		 * @modifies this
+		 * @effects Adds the work of the last search run in ws.
+		 */
+		public void add(SearchWorkspace ws) {
+			IndexedMinHeap heap = ws.getHeap();
+			settled += ws.getSettledCount();
+			relaxed += ws.getRelaxedCount();
+			pushes += heap.getPushCount();
+			pops += heap.getPopCount();
+			updates += heap.getUpdateCount();
+			searched = true;
+		}
+
+	}
+
+	/**
+	 * <b>Lap</b> times consecutive load phases on one thread: each call to record
+	 * charges the time and bytes allocated since the previous one to a phase.
+	 */
+	public final class Lap {
+
+		private long startNanos;
+		private long startBytes;
+
+		private Lap() {
+			this.startNanos = System.nanoTime();
+			this.startBytes = allocatedBytes();
+		}
+
+		/**
+		 * @param phase The phase that just finished.
+		 * @modifies this, the enclosing Metrics
+		 * @effects Records the time and allocation since the lap started or last
+		 * 	recorded as one run of phase, and starts timing the next phase.
+		 */
+		public void record(Phase phase) {
+			long nanos = System.nanoTime();
+			long bytes = allocatedBytes();
+			recordPhase(phase, nanos - startNanos, startBytes < 0 || bytes < 0 ? -1 : bytes - startBytes);
+			startNanos = nanos;
+			startBytes = bytes;
+		}
+
+	}
+
+	private volatile boolean enabled;
+	private final ThreadLocal<Probe> probes;
+	private final LogHistogram[] latency;
+	private final LongAdder[] outcomes;
+	private final LogHistogram settled;
+	private final LogHistogram relaxed;
+	private final LogHistogram pushes;
+	private final LogHistogram pops;
+	private final LogHistogram updates;
+	private final LogHistogram legs;
+	private final LongAdder[] phaseRuns;
+	private final LongAdder[] phaseNanos;
+	private final LongAdder[] phaseBytes;
+	private final AtomicLongArray lastPhaseNanos;
+	private final AtomicLongArray lastPhaseBytes;
+
+	// Abstraction Function:
+	// Metrics, m, represents the queries and load phases recorded while m was enabled:
+	// latency[mode.ordinal()] holds the latencies of the queries in mode, outcomes[o.ordinal()]
+	// counts the queries answered with o, the search histograms hold one value per query
+	// answered by a search, and phaseRuns, phaseNanos and phaseBytes total the runs of
+	// every phase, whose last run took lastPhaseNanos and allocated lastPhaseBytes.
+	//
+	// Representation Invariant for every Metrics m:
+	// latency has one histogram per QueryMode && outcomes has one counter per Outcome &&
+	// the phase arrays have one entry per Phase && lastPhaseBytes and phaseBytes are
+	// -1 and 0 for phases whose allocation cannot be measured
+
+	/**
+	 * @effects Constructs a new Metrics with nothing recorded, enabled iff the system
+	 * 	property pathfinder.metrics is true.
+	 */
+	public Metrics() {
+		this.enabled = Boolean.getBoolean("pathfinder.metrics");
+		this.probes = ThreadLocal.withInitial(Probe::new);
+		this.latency = new LogHistogram[QueryMode.values().length];
+		for (int i = 0; i < latency.length; i++) {
+			latency[i] = new LogHistogram();
+		}
+		this.outcomes = adders(Outcome.values().length);
+		this.settled = new LogHistogram();
+		this.relaxed = new LogHistogram();
+		this.pushes = new LogHistogram();
+		this.pops = new LogHistogram();
+		this.updates = new LogHistogram();
+		this.legs = new LogHistogram();
+		int phases = Phase.values().length;
+		this.phaseRuns = adders(phases);
+		this.phaseNanos = adders(phases);
+		this.phaseBytes = adders(phases);
+		this.lastPhaseNanos = new AtomicLongArray(phases);
+		this.lastPhaseBytes = new AtomicLongArray(phases);
+	}
+
+	private static LongAdder[] adders(int count) {
+		LongAdder[] adders = new LongAdder[count];
+		for (int i = 0; i < count; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	// Bytes allocated by the calling thread so far, or -1 if the JVM cannot tell.
+	private static long allocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * @returns true iff queries and load phases are being recorded.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled Whether to record queries and load phases from now on.
+	 * @modifies this
+	 * @effects Starts or stops recording. What was recorded so far is kept.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @returns the calling thread's probe, cleared, for the searches of the query it
+	 * 	is about to answer.
+	 */
+	public Probe probeForThread() {
+		return probes.get().clear();
+	}
+
+	/**
+	 * @returns a lap that starts timing the first load phase now, or null if this is
+	 * 	disabled.
+	 */
+	public Lap startLap() {
+		return enabled ? new Lap() : null;
+	}
+
+	/**
+	 * @param mode The routing mode of the query.
+	 * @param outcome How the query was answered.
+	 * @param nanos How long the query took.
+	 * @param path The route found, or null if there is none.
+	 * @param probe The probe holding the work of the query's searches, or null if it
+	 * 	ran none that could be measured.
+	 * @modifies this
+	 * @effects Records the query.
+	 */
+	public void recordQuery(QueryMode mode, Outcome outcome, long nanos, RoutePath path, Probe probe) {
+		latency[mode.ordinal()].record(nanos);
+		outcomes[outcome.ordinal()].increment();
+		if (path != null) {
+			legs.record(path.getLegCount());
+		}
+		if (probe != null && probe.searched) {
+			settled.record(probe.settled);
+			relaxed.record(probe.relaxed);
+			pushes.record(probe.pushes);
+			pops.record(probe.pops);
+			updates.record(probe.updates);
+		}
+	}
+
+	/**
+	 * @param phase The phase that ran.
+	 * @param nanos How long it took.
+	 * @param bytes How many bytes it allocated, or -1 if that is not known.
+	 * @modifies this
+	 * @effects Records one run of phase.
+	 */
+	public void recordPhase(Phase phase, long nanos, long bytes) {
+		int i = phase.ordinal();
+		phaseRuns[i].increment();
+		phaseNanos[i].add(nanos);
+		lastPhaseNanos.set(i, nanos);
+		lastPhaseBytes.set(i, bytes);
+		if (bytes > 0) {
+			phaseBytes[i].add(bytes);
+		}
+	}
+
+	/**
+	 * @param mode A routing mode.
+	 * @returns the latencies, in nanoseconds, of the queries recorded in mode.
+	 */
+	public LogHistogram getLatency(QueryMode mode) {
+		return latency[mode.ordinal()];
+	}
+
+	/**
+	 * @param outcome A way of answering a query.
+	 * @returns the number of queries recorded that were answered that way.
+	 */
+	public long getOutcomeCount(Outcome outcome) {
+		return outcomes[outcome.ordinal()].sum();
+	}
+
+	/**
+	 * @returns the numbers of nodes settled by the queries answered by a search.
+	 */
+	public LogHistogram getSettled() {
+		return settled;
+	}
+
+	/**
+	 * @returns the numbers of edges scanned by the queries answered by a search.
+	 */
+	public LogHistogram getRelaxed() {
+		return relaxed;
+	}
+
+	/**
+	 * @modifies this
+	 * @effects Forgets everything recorded, without changing whether this is enabled.
+	 */
+	public void reset() {
+		for (LogHistogram histogram : latency) {
+			histogram.reset();
+		}
+		for (LongAdder outcome : outcomes) {
+			outcome.reset();
+		}
+		for (LogHistogram histogram : new LogHistogram[] {settled, relaxed, pushes, pops, updates, legs}) {
+			histogram.reset();
+		}
+		for (int i = 0; i < phaseRuns.length; i++) {
+			phaseRuns[i].reset();
+			phaseNanos[i].reset();
+			phaseBytes[i].reset();
+			lastPhaseNanos.set(i, 0L);
+			lastPhaseBytes.set(i, 0L);
+		}
+	}
+
+	/**
+	 * @returns every figure recorded, one "name{labels} value" line each: query
+	 * 	counts by outcome, latency quantiles by routing mode, quantiles of the work of
+	 * 	searched queries, and the runs, time and allocation of every load phase.
+	 * 	Modes and phases with nothing recorded are left out.
+	 */
+	public List<String> snapshot() {
+		List<String> lines = new ArrayList<>();
+		lines.add("metrics_enabled " + (enabled ? 1 : 0));
+		for (Outcome outcome : Outcome.values()) {
+			lines.add("route_queries_total{outcome=\"" + label(outcome) + "\"} " + getOutcomeCount(outcome));
+		}
+		for (QueryMode mode : QueryMode.values()) {
+			addHistogram(lines, "route_query_latency_nanos", "mode=\"" + label(mode) + "\"", latency[mode.ordinal()]);
+		}
+		addHistogram(lines, "route_search_settled_nodes", "", settled);
+		addHistogram(lines, "route_search_relaxed_edges", "", relaxed);
+		addHistogram(lines, "route_search_heap_pushes", "", pushes);
+		addHistogram(lines, "route_search_heap_pops", "", pops);
+		addHistogram(lines, "route_search_heap_key_updates", "", updates);
+		addHistogram(lines, "route_path_legs", "", legs);
+		for (Phase phase : Phase.values()) {
+			int i = phase.ordinal();
+			long runs = phaseRuns[i].sum();
+			if (runs == 0) {
+				continue;
+			}
+			String labels = "{phase=\"" + label(phase) + "\"} ";
+			lines.add("load_phase_runs_total" + labels + runs);
+			lines.add("load_phase_nanos_total" + labels + phaseNanos[i].sum());
+			lines.add("load_phase_last_nanos" + labels + lastPhaseNanos.get(i));
+			if (lastPhaseBytes.get(i) >= 0) {
+				lines.add("load_phase_allocated_bytes_total" + labels + phaseBytes[i].sum());
+				lines.add("load_phase_last_allocated_bytes" + labels + lastPhaseBytes.get(i));
+			}
+		}
+		return lines;
+	}
+
+	private static void addHistogram(List<String> lines, String name, String labels, LogHistogram histogram) {
+		long count = histogram.getCount();
+		if (count == 0) {
+			return;
+		}
+		String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+		lines.add(name + "_count" + suffix + count);
+		lines.add(name + "_sum" + suffix + histogram.getSum());
+		lines.add(name + "_max" + suffix + histogram.getMax());
+		String prefix = labels.isEmpty() ? "{" : "{" + labels + ",";
+		for (double quantile : QUANTILES) {
+			lines.add(name + prefix + "quantile=\"" + quantile + "\"} " + histogram.getValueAtQuantile(quantile));
+		}
+	}
+
+	private static String label(Enum<?> value) {
+		return value.name().toLowerCase();
+	}
+
+	/**
+	 * @param file The file to write.
+	 * @modifies file
+	 * @effects Writes snapshot() to file, one line per figure, replacing it.
+	 * @throws IOException if the file cannot be written
+	 */
+	public void export(String file) throws IOException {
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8))) {
+			for (String line : snapshot()) {
+				out.println(line);
+			}
+		}
+	}
+
+}
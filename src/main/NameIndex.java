@@ -0,0 +1,630 @@
+package main;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * <b>NameIndex</b> is an immutable lookup index over the city names, airport names and
+ * IATA and ICAO codes of an AirportStore. Every non-empty attribute is a key, folded
+ * to lower case without accents, and so is every later word of a name, so that
+ * "heathrow" finds London Heathrow Airport. The keys are packed in sorted order into
+ * one char array. The keys starting with a given prefix therefore form one contiguous
+ * range, found by two binary searches, and the keys that share a prefix are
+ * neighbours, which the typo-tolerant search uses to share work between them.
+ *
+ * Results are ranked by the number of routes an airport has, so that the airports
+ * travellers mean come first, and limited to the number asked for. The ranges of the
+ * one and two character prefixes span thousands of keys, so their best results are
+ * worked out when the index is built; every longer prefix is narrow. A query fills a
+ * caller-supplied Completions and allocates nothing once the Completions has grown to
+ * the size of the index and the length of the queries.
+ */
+public final class NameIndex {
+
+	// keys of at most this many characters are not searched for typos
+	private static final int EXACT_ONLY_LENGTH = 3;
+	private static final int LONG_QUERY_LENGTH = 7;
+	// prefixes of at most this many characters have their best results stored
+	private static final int SHORT_PREFIX_LENGTH = 2;
+	private static final int SHORT_RESULTS = 16;
+	// set in fields[e] if the key is a later word of the attribute rather than all of it
+	private static final byte WORD = 0x10;
+	private static final byte FIELD_MASK = 0x0f;
+	private static final char[] FOLD = new char[0x250];
+
+	static {
+		for (char c = 0; c < FOLD.length; c++) {
+			String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+			FOLD[c] = Character.toLowerCase(decomposed.charAt(0));
+		}
+		// letters that do not decompose into a base letter and a mark: sharp s, o and
+		// a with stroke or ligature, d and l with stroke, dotless i
+		FOLD['\u00df'] = 's';
+		FOLD['\u00f8'] = 'o';
+		FOLD['\u00d8'] = 'o';
+		FOLD['\u00e6'] = 'a';
+		FOLD['\u00c6'] = 'a';
+		FOLD['\u0111'] = 'd';
+		FOLD['\u0110'] = 'd';
+		FOLD['\u0142'] = 'l';
+		FOLD['\u0141'] = 'l';
+		FOLD['\u0131'] = 'i';
+	}
+
+	private final AirportStore store;
+	private final char[] chars;
+	private final int[] starts;
+	private final int[] commonPrefix;
+	private final int[] airports;
+	private final byte[] fields;
+	private final int[] ranks;
+	private final long[] shortPrefixes;
+	private final int[] shortStarts;
+	private final int[] shortEntries;
+
+	// Abstraction Function:
+	// NameIndex, x, represents the sequence of entries 0 .. airports.length - 1, entry e
+	// being the folded key chars[starts[e] .. starts[e + 1]) of attribute
+	// fields[e] & FIELD_MASK of airport airports[e], whose rank is ranks[airports[e]];
+	// the key is the whole attribute unless fields[e] & WORD is set.
+	//
+	// Representation Invariant for every NameIndex x:
+	// starts.length == airports.length + 1 == fields.length + 1 == commonPrefix.length + 1 &&
+	// the keys are in ascending order, ties in descending rank of their airport &&
+	// commonPrefix[e] is the length of the common prefix of the keys of e - 1 and e,
+	// and 0 for e == 0 &&
+	// shortPrefixes is ascending and holds packed(p) for every prefix p of at most
+	// SHORT_PREFIX_LENGTH characters of some key, and for the empty prefix &&
+	// shortEntries[shortStarts[i] .. shortStarts[i + 1]) are the entries through which
+	// the best SHORT_RESULTS airports for prefix i match, best first
+
+	/**
+	 * <b>Completions</b> holds the results of a NameIndex query together with the
+	 * scratch space of the search, and is reused from query to query. Completions are
+	 * not thread-safe. Use forThread to obtain the calling thread's own instance.
+	 */
+	public static final class Completions {
+
+		private static final ThreadLocal<Completions> LOCAL = ThreadLocal.withInitial(Completions::new);
+
+		private char[] query = new char[16];
+		private int queryLength;
+		private int[] rows = new int[0];
+		private int[] best = new int[0];
+		private int[] stamps = new int[0];
+		private long[] scores = new long[0];
+		private int[] entries = new int[0];
+		private int[] touched = new int[16];
+		private int stamp;
+		private int[] results = new int[16];
+		private int[] resultFields = new int[16];
+		private int size;
+		private boolean fuzzy;
+
+		/**
+		 * @effects Constructs new empty Completions.
+		 */
+		public Completions() {
+		}
+
+		/**
+		 * @returns the calling thread's Completions.
+		 */
+		public static Completions forThread() {
+			return LOCAL.get();
+		}
+
+		/**
+		 * @returns the number of airports found by the last query.
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @param i The rank of a result.
+		 * @requires 0 <= i < size()
+		 * @returns the index of the airport of result i.
+		 */
+		public int airport(int i) {
+			return results[i];
+		}
+
+		/**
+		 * @param i The rank of a result.
+		 * @requires 0 <= i < size()
+		 * @returns the attribute, one of AirportStore.NAME, CITY, IATA and ICAO, through
+		 * 	which result i matched.
+		 */
+		public int field(int i) {
+			return resultFields[i] & FIELD_MASK;
+		}
+
+		/**
+		 * @returns true iff the last query found no key with its prefix and fell back
+		 * 	to keys within a few typos of it.
+		 */
+		public boolean isFuzzy() {
+			return fuzzy;
+		}
+
+		private void prepare(int airportCount, int limit) {
+			if (stamps.length < airportCount) {
+				stamps = Arrays.copyOf(stamps, airportCount);
+				scores = Arrays.copyOf(scores, airportCount);
+				entries = Arrays.copyOf(entries, airportCount);
+			}
+			if (results.length < limit) {
+				results = new int[limit];
+				resultFields = new int[limit];
+			}
+			stamp++;
+			if (stamp == Integer.MAX_VALUE) {
+				Arrays.fill(stamps, 0);
+				stamp = 1;
+			}
+			size = 0;
+			fuzzy = false;
+		}
+
+		private void fold(CharSequence text) {
+			int start = 0;
+			int end = text.length();
+			while (start < end && Character.isWhitespace(text.charAt(start))) {
+				start++;
+			}
+			while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+				end--;
+			}
+			if (query.length < end - start) {
+				query = new char[Math.max(end - start, 2 * query.length)];
+			}
+			queryLength = end - start;
+			for (int i = 0; i < queryLength; i++) {
+				query[i] = NameIndex.fold(text.charAt(start + i));
+			}
+		}
+
+	}
+
+	/**
+	 * @param store The airports to index.
+	 * @param graph The graph whose nodes the airports are, used to rank them by their
+	 * 	number of routes.
+	 * @requires graph.getNodeCount() >= store.size()
+	 * @effects Constructs a new NameIndex over every non-empty attribute of store.
+	 */
+	public NameIndex(AirportStore store, RouteGraph graph) {
+		this.store = store;
+		int n = store.size();
+		this.ranks = new int[n];
+		RouteGraph reverse = graph.reverse();
+		for (int i = 0; i < n; i++) {
+			ranks[i] = graph.outDegree(i) + reverse.outDegree(i);
+		}
+		String[] keys = new String[4 * n];
+		int[] owners = new int[4 * n];
+		byte[] kinds = new byte[4 * n];
+		int count = 0;
+		int[] fieldOrder = {AirportStore.IATA, AirportStore.ICAO, AirportStore.CITY, AirportStore.NAME};
+		for (int i = 0; i < n; i++) {
+			for (int field : fieldOrder) {
+				String value = store.get(i, field);
+				for (int from = 0; from < value.length(); from = nextWord(value, from)) {
+					if (count == keys.length) {
+						keys = Arrays.copyOf(keys, 2 * count);
+						owners = Arrays.copyOf(owners, 2 * count);
+						kinds = Arrays.copyOf(kinds, 2 * count);
+					}
+					keys[count] = fold(value.substring(from));
+					owners[count] = i;
+					kinds[count] = (byte) (from == 0 ? field : field | WORD);
+					count++;
+				}
+			}
+		}
+		String[] sortKeys = keys;
+		int[] sortOwners = owners;
+		Integer[] order = new Integer[count];
+		for (int e = 0; e < count; e++) {
+			order[e] = e;
+		}
+		Arrays.sort(order, (x, y) -> {
+			int c = sortKeys[x].compareTo(sortKeys[y]);
+			if (c == 0) {
+				c = Integer.compare(ranks[sortOwners[y]], ranks[sortOwners[x]]);
+			}
+			return c != 0 ? c : Integer.compare(sortOwners[x], sortOwners[y]);
+		});
+
+		int length = 0;
+		for (int e = 0; e < count; e++) {
+			length += keys[e].length();
+		}
+		this.chars = new char[length];
+		this.starts = new int[count + 1];
+		this.commonPrefix = new int[count];
+		this.airports = new int[count];
+		this.fields = new byte[count];
+		String previous = "";
+		for (int e = 0; e < count; e++) {
+			String key = keys[order[e]];
+			key.getChars(0, key.length(), chars, starts[e]);
+			starts[e + 1] = starts[e] + key.length();
+			airports[e] = owners[order[e]];
+			fields[e] = kinds[order[e]];
+			int common = 0;
+			while (common < key.length() && common < previous.length() && key.charAt(common) == previous.charAt(common)) {
+				common++;
+			}
+			commonPrefix[e] = common;
+			previous = key;
+		}
+
+		// every short prefix first appears at an entry sharing less than its length with
+		// the entry before, so walking the entries lists them in ascending packed order
+		long[] prefixes = new long[64];
+		int[] prefixStarts = new int[65];
+		int[] prefixEntries = new int[64 * SHORT_RESULTS];
+		int prefixCount = 0;
+		Completions out = new Completions();
+		for (int e = -1; e < count; e++) {
+			int from = e < 0 ? 0 : commonPrefix[e] + 1;
+			int to = e < 0 ? 0 : Math.min(SHORT_PREFIX_LENGTH, starts[e + 1] - starts[e]);
+			for (int p = from; p <= to; p++) {
+				if (prefixCount == prefixes.length) {
+					prefixes = Arrays.copyOf(prefixes, 2 * prefixCount);
+					prefixStarts = Arrays.copyOf(prefixStarts, 2 * prefixCount + 1);
+					prefixEntries = Arrays.copyOf(prefixEntries, 2 * prefixCount * SHORT_RESULTS);
+				}
+				out.prepare(n, SHORT_RESULTS);
+				out.queryLength = p;
+				if (p > 0) {
+					System.arraycopy(chars, starts[e], out.query, 0, p);
+				}
+				select(out, scan(out, e < 0 ? 0 : e), SHORT_RESULTS);
+				prefixes[prefixCount] = packed(out.query, p);
+				for (int i = 0; i < out.size; i++) {
+					prefixEntries[prefixStarts[prefixCount] + i] = out.entries[out.results[i]];
+				}
+				prefixStarts[prefixCount + 1] = prefixStarts[prefixCount] + out.size;
+				prefixCount++;
+			}
+		}
+		this.shortPrefixes = Arrays.copyOf(prefixes, prefixCount);
+		this.shortStarts = Arrays.copyOf(prefixStarts, prefixCount + 1);
+		this.shortEntries = Arrays.copyOf(prefixEntries, shortStarts[prefixCount]);
+	}
+
+	// The start of the next word of value after from, a letter or digit that follows
+	// some other character, or value.length() if there is none.
+	static int nextWord(String value, int from) {
+		for (int i = from + 1; i < value.length(); i++) {
+			if (Character.isLetterOrDigit(value.charAt(i)) && !Character.isLetterOrDigit(value.charAt(i - 1))) {
+				return i;
+			}
+		}
+		return value.length();
+	}
+
+	// A prefix of at most SHORT_PREFIX_LENGTH characters as one number; the empty prefix
+	// is -1, and a longer prefix sorts after its own prefixes and before their successors.
+	private static long packed(char[] prefix, int length) {
+		long key = -1;
+		for (int i = 0; i < length; i++) {
+			key = key < 0 ? (long) prefix[i] << 17 : key | (prefix[i] + 1L);
+		}
+		return key;
+	}
+
+	static char fold(char c) {
+		return c < FOLD.length ? FOLD[c] : Character.toLowerCase(c);
+	}
+
+	static String fold(String text) {
+		char[] folded = new char[text.length()];
+		for (int i = 0; i < folded.length; i++) {
+			folded[i] = fold(text.charAt(i));
+		}
+		return new String(folded);
+	}
+
+	/**
+	 * @returns the number of keys in the index.
+	 */
+	public int size() {
+		return airports.length;
+	}
+
+	/**
+	 * @param entry The index of a key.
+	 * @requires 0 <= entry < size()
+	 * @returns the index of the airport the key belongs to.
+	 */
+	public int airport(int entry) {
+		return airports[entry];
+	}
+
+	/**
+	 * @param entry The index of a key, in key order.
+	 * @returns the first key at or after entry that is a city name spelled unlike every
+	 * 	city before it, or -1 if there is none. Cities that differ only in case or
+	 * 	accents share a key but are each returned once. Among airports serving the same
+	 * 	city, the one with the most routes comes first, so its entry is the one returned.
+	 */
+	public int nextCity(int entry) {
+		for (int e = Math.max(entry, 0); e < fields.length; e++) {
+			if (fields[e] == AirportStore.CITY && !sameCityAsBefore(e)) {
+				return e;
+			}
+		}
+		return -1;
+	}
+
+	// True iff an earlier city entry has the same key as e and the same unfolded city;
+	// such entries are adjacent to e except for other entries with the same key in between.
+	private boolean sameCityAsBefore(int e) {
+		int length = starts[e + 1] - starts[e];
+		String city = store.city(airports[e]);
+		for (int p = e - 1; p >= 0 && commonPrefix[p + 1] >= length && starts[p + 1] - starts[p] == length; p--) {
+			if (fields[p] == AirportStore.CITY && store.city(airports[p]).equals(city)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param text A city name, airport name or code, in any case and with or without
+	 * 	accents.
+	 * @returns the index of the airport with the most routes among those with an
+	 * 	attribute equal to text, or -1 if there is none.
+	 */
+	public int find(CharSequence text) {
+		Completions out = Completions.forThread();
+		out.fold(text);
+		int lo = lowerBound(out.query, out.queryLength);
+		int best = -1;
+		for (int e = lo; e < airports.length && isPrefix(e, out.query, out.queryLength); e++) {
+			if (starts[e + 1] - starts[e] == out.queryLength && (fields[e] & WORD) == 0
+					&& (best < 0 || ranks[airports[e]] > ranks[best])) {
+				best = airports[e];
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @param text The text typed so far.
+	 * @param limit The largest number of airports wanted.
+	 * @param out The Completions that receive the result.
+	 * @requires limit >= 0
+	 * @modifies out
+	 * @effects Finds the airports with an attribute, or a word of one, starting with
+	 * 	text, exact matches of a whole attribute first and then by descending number of
+	 * 	routes, at most limit of them. If there is none and text is longer than a code,
+	 * 	finds the airports with such a key that starts with the first character of text
+	 * 	and then a string within one edit of the rest, or two if it is long, fewest
+	 * 	edits first.
+	 * @returns out.size().
+	 */
+	public int complete(CharSequence text, int limit, Completions out) {
+		out.prepare(ranks.length, limit);
+		out.fold(text);
+		int m = out.queryLength;
+		if (limit == 0) {
+			return 0;
+		}
+		if (m <= SHORT_PREFIX_LENGTH && limit <= SHORT_RESULTS) {
+			int i = Arrays.binarySearch(shortPrefixes, packed(out.query, m));
+			int size = i < 0 ? 0 : Math.min(limit, shortStarts[i + 1] - shortStarts[i]);
+			for (int r = 0; r < size; r++) {
+				int e = shortEntries[shortStarts[i] + r];
+				out.results[r] = airports[e];
+				out.resultFields[r] = fields[e];
+			}
+			out.size = size;
+			return size;
+		}
+		int touched = scan(out, lowerBound(out.query, m));
+		if (touched == 0 && m > EXACT_ONLY_LENGTH) {
+			out.fuzzy = true;
+			touched = fuzzy(out, m < LONG_QUERY_LENGTH ? 1 : 2);
+		}
+		select(out, touched, limit);
+		return out.size;
+	}
+
+	// Scores the keys starting with the query, from lo, the first of them.
+	private int scan(Completions out, int lo) {
+		int m = out.queryLength;
+		int touched = 0;
+		for (int e = lo; e < airports.length && isPrefix(e, out.query, m); e++) {
+			boolean exact = starts[e + 1] - starts[e] == m && (fields[e] & WORD) == 0;
+			touched = offer(out, touched, e, ((exact ? 1L : 0L) << 32) | ranks[airports[e]]);
+		}
+		return touched;
+	}
+
+	// Keeps the best score of each airport and lists the airports touched.
+	private int offer(Completions out, int touched, int entry, long score) {
+		int a = airports[entry];
+		if (out.stamps[a] != out.stamp) {
+			out.stamps[a] = out.stamp;
+			out.scores[a] = score;
+			out.entries[a] = entry;
+			if (touched == out.touched.length) {
+				out.touched = Arrays.copyOf(out.touched, 2 * touched);
+			}
+			out.touched[touched++] = a;
+		} else if (score > out.scores[a]) {
+			out.scores[a] = score;
+			out.entries[a] = entry;
+		}
+		return touched;
+	}
+
+	// Moves the limit best-scored touched airports into the results, best first, with
+	// a bounded min-heap over the results array.
+	private void select(Completions out, int touched, int limit) {
+		int[] heap = out.results;
+		int size = 0;
+		for (int t = 0; t < touched; t++) {
+			int a = out.touched[t];
+			if (size < limit) {
+				heap[size] = a;
+				for (int i = size++; i > 0 && worse(out, heap[i], heap[(i - 1) >>> 1]); i = (i - 1) >>> 1) {
+					swap(heap, i, (i - 1) >>> 1);
+				}
+			} else if (worse(out, heap[0], a)) {
+				heap[0] = a;
+				siftDown(out, heap, size);
+			}
+		}
+		// repeatedly moving the worst to the end leaves the heap sorted best first
+		for (int end = size - 1; end > 0; end--) {
+			swap(heap, 0, end);
+			siftDown(out, heap, end);
+		}
+		for (int i = 0; i < size; i++) {
+			out.resultFields[i] = fields[out.entries[heap[i]]];
+		}
+		out.size = size;
+	}
+
+	private static boolean worse(Completions out, int a, int b) {
+		long sa = out.scores[a];
+		long sb = out.scores[b];
+		return sa < sb || (sa == sb && a > b);
+	}
+
+	private static void siftDown(Completions out, int[] heap, int size) {
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				return;
+			}
+			if (child + 1 < size && worse(out, heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!worse(out, heap[child], heap[i])) {
+				return;
+			}
+			swap(heap, i, child);
+			i = child;
+		}
+	}
+
+	private static void swap(int[] a, int i, int j) {
+		int t = a[i];
+		a[i] = a[j];
+		a[j] = t;
+	}
+
+	// Scores every key that starts with the first character of the query and has a
+	// prefix within maxEdits edits of it. Typos are rarely in the first character, and
+	// keeping it confines the search to one letter's range of keys. Row d of the
+	// edit-distance table depends only on the first d characters of a key, so each key
+	// reuses the rows it shares with the key before it, and once a row is out of reach
+	// every key sharing that row's prefix is skipped without computing anything.
+	private int fuzzy(Completions out, int maxEdits) {
+		char[] query = out.query;
+		int m = out.queryLength;
+		int width = m + 1;
+		int maxDepth = m + maxEdits;
+		if (out.rows.length < (maxDepth + 1) * width) {
+			out.rows = new int[(maxDepth + 1) * width];
+			out.best = new int[maxDepth + 1];
+		}
+		int[] rows = out.rows;
+		int[] best = out.best;
+		for (int j = 0; j <= m; j++) {
+			rows[j] = j;
+		}
+		best[0] = m;
+		int touched = 0;
+		int computed = 0;
+		int dead = Integer.MAX_VALUE;
+		int lo = lowerBound(query, 1);
+		for (int e = lo; e < airports.length && chars[starts[e]] == query[0]; e++) {
+			int depth;
+			if (commonPrefix[e] >= dead) {
+				// the key shares the prefix whose row went out of reach
+				depth = dead;
+			} else {
+				depth = Math.min(commonPrefix[e], computed);
+				dead = Integer.MAX_VALUE;
+				int limit = Math.min(starts[e + 1] - starts[e], maxDepth);
+				while (depth < limit) {
+					char c = chars[starts[e] + depth];
+					int above = depth * width;
+					int row = above + width;
+					rows[row] = depth + 1;
+					int rowMin = depth + 1;
+					for (int j = 1; j <= m; j++) {
+						int cost = rows[above + j - 1] + (query[j - 1] == c ? 0 : 1);
+						cost = Math.min(cost, Math.min(rows[above + j], rows[row + j - 1]) + 1);
+						rows[row + j] = cost;
+						rowMin = Math.min(rowMin, cost);
+					}
+					depth++;
+					best[depth] = Math.min(best[depth - 1], rows[row + m]);
+					if (rowMin > maxEdits) {
+						dead = depth;
+						break;
+					}
+				}
+				computed = depth;
+			}
+			int edits = best[depth];
+			if (edits <= maxEdits) {
+				touched = offer(out, touched, e, ((long) (maxEdits - edits) << 32) | ranks[airports[e]]);
+			}
+		}
+		return touched;
+	}
+
+	// The first entry whose key is not less than the query.
+	private int lowerBound(char[] query, int length) {
+		int lo = 0;
+		int hi = airports.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (compare(mid, query, length) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private int compare(int entry, char[] query, int length) {
+		int p = starts[entry];
+		int end = starts[entry + 1];
+		for (int i = 0; i < length; i++, p++) {
+			if (p == end) {
+				return -1;
+			}
+			if (chars[p] != query[i]) {
+				return chars[p] < query[i] ? -1 : 1;
+			}
+		}
+		return p == end ? 0 : 1;
+	}
+
+	private boolean isPrefix(int entry, char[] query, int length) {
+		int p = starts[entry];
+		if (starts[entry + 1] - p < length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (chars[p + i] != query[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
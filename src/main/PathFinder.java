@@ -0,0 +1,432 @@
+package main;
+
+/**
+ * <b>PathFinder</b> contains the shortest-path searches that run over a RouteGraph.
+ * Every search keeps its state in a caller-supplied SearchWorkspace, so a query
+ * allocates nothing except the RoutePath that is reconstructed once it finishes.
+ *
+ * There is no representation invariant or abstraction function for this class. This
+ * is because PathFinder is never constructed and only contains static methods.
+ */
+public final class PathFinder {
+
+	private PathFinder() {
+	}
+
+	/**
+	 * @param graph The graph to search.
+	 * @param ws The workspace that receives the search state.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node, or -1 to search every
+	 * 	node reachable from source.
+	 * @requires ws can hold graph.getNodeCount() nodes
+	 * @modifies ws
+	 * @effects Runs Dijkstra's algorithm from source until target is settled (or
+	 * 	the reachable graph is exhausted), leaving distances and predecessors in ws.
+	 * 	When a target is given, nodes that cannot reach it are never queued.
+	 * @returns true iff target was reached (always false when target is -1).
+	 */
+	public static boolean dijkstra(RouteGraph graph, SearchWorkspace ws, int source, int target) {
+		return dijkstra(graph, ws, source, target, null);
+	}
+
+	/**
+	 * @param graph The graph to search.
+	 * @param ws The workspace that receives the search state.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node, or -1 to search every
+	 * 	node reachable from source.
+	 * @param filter The carriers whose routes may be flown, or null to allow every route.
+	 * @requires ws can hold graph.getNodeCount() nodes && filter, if given, was built
+	 * 	for graph.carriers()
+	 * @modifies ws
+	 * @effects Runs the same search as dijkstra(graph, ws, source, target), skipping
+	 * 	every edge that filter does not allow.
+	 * @returns true iff target was reached (always false when target is -1).
+	 */
+	public static boolean dijkstra(RouteGraph graph, SearchWorkspace ws, int source, int target,
+								   CarrierFilter filter) {
+		ws.reset();
+		ComponentIndex components = graph.components();
+		if (target >= 0 && !components.canReach(source, target)) {
+			return false;
+		}
+		double[] dist = ws.dist;
+		int[] pred = ws.pred;
+		int[] reached = ws.reached;
+		int[] settled = ws.settled;
+		int stamp = ws.stamp;
+		IndexedMinHeap heap = ws.heap;
+
+		dist[source] = 0.0;
+		pred[source] = -1;
+		reached[source] = stamp;
+		heap.insert(source, 0.0);
+		while (!heap.isEmpty()) {
+			int u = heap.pollMin();
+			settled[u] = stamp;
+			ws.settledCount++;
+			if (u == target) {
+				return true;
+			}
+			double du = dist[u];
+			int first = graph.firstEdge(u);
+			int end = graph.endEdge(u);
+			ws.relaxedCount += end - first;
+			for (int e = first; e < end; e++) {
+				int v = graph.target(e);
+				if (settled[v] == stamp || (filter != null && !filter.allows(graph.carrierSet(e)))) {
+					continue;
+				}
+				double dv = du + graph.weight(e);
+				if (reached[v] != stamp) {
+					if (target >= 0 && !components.canReach(v, target)) {
+						continue;
+					}
+					reached[v] = stamp;
+					dist[v] = dv;
+					pred[v] = u;
+					heap.insert(v, dv);
+				} else if (dv < dist[v]) {
+					dist[v] = dv;
+					pred[v] = u;
+					heap.decreaseKey(v, dv);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param graph The graph to search.
+	 * @param ws The workspace that receives the search state.
+	 * @param marks A second workspace, used only to mark the targets.
+	 * @param source The index of the start node.
+	 * @param targets The indices of the destination nodes; duplicates are allowed.
+	 * @requires ws != marks && both can hold graph.getNodeCount() nodes
+	 * @modifies ws, marks
+	 * @effects Runs Dijkstra's algorithm from source until every target that source
+	 * 	can reach is settled, leaving distances and predecessors in ws. Targets that
+	 * 	source cannot reach are never searched for.
+	 * @returns the number of distinct targets settled.
+	 */
+	public static int dijkstraToMany(RouteGraph graph, SearchWorkspace ws, SearchWorkspace marks,
+									 int source, int[] targets) {
+		ws.reset();
+		marks.reset();
+		ComponentIndex components = graph.components();
+		int remaining = 0;
+		for (int t : targets) {
+			if (marks.reached[t] != marks.stamp && components.canReach(source, t)) {
+				marks.reached[t] = marks.stamp;
+				remaining++;
+			}
+		}
+		int found = remaining;
+		if (remaining == 0) {
+			return 0;
+		}
+		double[] dist = ws.dist;
+		int[] pred = ws.pred;
+		int[] reached = ws.reached;
+		int[] settled = ws.settled;
+		int stamp = ws.stamp;
+		IndexedMinHeap heap = ws.heap;
+
+		dist[source] = 0.0;
+		pred[source] = -1;
+		reached[source] = stamp;
+		heap.insert(source, 0.0);
+		while (!heap.isEmpty()) {
+			int u = heap.pollMin();
+			settled[u] = stamp;
+			ws.settledCount++;
+			if (marks.reached[u] == marks.stamp && --remaining == 0) {
+				break;
+			}
+			double du = dist[u];
+			int first = graph.firstEdge(u);
+			int end = graph.endEdge(u);
+			ws.relaxedCount += end - first;
+			for (int e = first; e < end; e++) {
+				int v = graph.target(e);
+				if (settled[v] == stamp) {
+					continue;
+				}
+				double dv = du + graph.weight(e);
+				if (reached[v] != stamp) {
+					reached[v] = stamp;
+					dist[v] = dv;
+					pred[v] = u;
+					heap.insert(v, dv);
+				} else if (dv < dist[v]) {
+					dist[v] = dv;
+					pred[v] = u;
+					heap.decreaseKey(v, dv);
+				}
+			}
+		}
+		return found - remaining;
+	}
+
+	/**
+	 * @param graph The graph to search.
+	 * @param ws The workspace that receives the search state.
+	 * @param marks A second workspace, used only to mark the targets.
+	 * @param sources The indices of the start nodes; duplicates are allowed.
+	 * @param targets The indices of the destination nodes; duplicates are allowed.
+	 * @requires ws != marks && both can hold graph.getNodeCount() nodes
+	 * @modifies ws, marks
+	 * @effects Runs a single Dijkstra search that starts from every source at
+	 * 	distance 0 and stops at the first target it settles, leaving distances and
+	 * 	predecessors in ws. Following the predecessors from that target leads back to
+	 * 	the source its shortest route starts from.
+	 * @returns the target nearest to any source, or -1 if no source reaches a target.
+	 */
+	public static int dijkstraNearest(RouteGraph graph, SearchWorkspace ws, SearchWorkspace marks,
+									  int[] sources, int[] targets) {
+		ws.reset();
+		marks.reset();
+		for (int t : targets) {
+			marks.reached[t] = marks.stamp;
+		}
+		double[] dist = ws.dist;
+		int[] pred = ws.pred;
+		int[] reached = ws.reached;
+		int[] settled = ws.settled;
+		int stamp = ws.stamp;
+		IndexedMinHeap heap = ws.heap;
+
+		for (int s : sources) {
+			if (reached[s] != stamp) {
+				dist[s] = 0.0;
+				pred[s] = -1;
+				reached[s] = stamp;
+				heap.insert(s, 0.0);
+			}
+		}
+		while (!heap.isEmpty()) {
+			int u = heap.pollMin();
+			settled[u] = stamp;
+			ws.settledCount++;
+			if (marks.reached[u] == marks.stamp) {
+				return u;
+			}
+			double du = dist[u];
+			int first = graph.firstEdge(u);
+			int end = graph.endEdge(u);
+			ws.relaxedCount += end - first;
+			for (int e = first; e < end; e++) {
+				int v = graph.target(e);
+				if (settled[v] == stamp) {
+					continue;
+				}
+				double dv = du + graph.weight(e);
+				if (reached[v] != stamp) {
+					reached[v] = stamp;
+					dist[v] = dv;
+					pred[v] = u;
+					heap.insert(v, dv);
+				} else if (dv < dist[v]) {
+					dist[v] = dv;
+					pred[v] = u;
+					heap.decreaseKey(v, dv);
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param graph The graph to search.
+	 * @param ws The workspace that receives the search state.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @param bound A consistent lower bound on the remaining distance to target.
+	 * @requires ws can hold graph.getNodeCount() nodes
+	 * @modifies ws
+	 * @effects Runs an A* search from source to target, ordering nodes by their
+	 * 	distance from source plus bound's estimate of their distance to target.
+	 * 	Nodes that cannot reach target, or whose estimate is infinite, are never queued.
+	 * @returns true iff target was reached.
+	 */
+	public static boolean aStar(RouteGraph graph, SearchWorkspace ws, int source, int target,
+								DistanceBound bound) {
+		return aStar(graph, ws, source, target, bound, null);
+	}
+
+	/**
+	 * @param graph The graph to search.
+	 * @param ws The workspace that receives the search state.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @param bound A consistent lower bound on the remaining distance to target.
+	 * @param filter The carriers whose routes may be flown, or null to allow every route.
+	 * @requires ws can hold graph.getNodeCount() nodes && filter, if given, was built
+	 * 	for graph.carriers()
+	 * @modifies ws
+	 * @effects Runs the same search as aStar(graph, ws, source, target, bound),
+	 * 	skipping every edge that filter does not allow. A bound on the whole graph
+	 * 	stays a lower bound on the filtered one.
+	 * @returns true iff target was reached.
+	 */
+	public static boolean aStar(RouteGraph graph, SearchWorkspace ws, int source, int target,
+								DistanceBound bound, CarrierFilter filter) {
+		ws.reset();
+		ComponentIndex components = graph.components();
+		if (!components.canReach(source, target)) {
+			return false;
+		}
+		double[] dist = ws.dist;
+		double[] estimate = ws.bound;
+		int[] pred = ws.pred;
+		int[] reached = ws.reached;
+		int[] settled = ws.settled;
+		int stamp = ws.stamp;
+		IndexedMinHeap heap = ws.heap;
+
+		dist[source] = 0.0;
+		estimate[source] = bound.estimate(source, target);
+		pred[source] = -1;
+		reached[source] = stamp;
+		heap.insert(source, estimate[source]);
+		while (!heap.isEmpty()) {
+			int u = heap.pollMin();
+			settled[u] = stamp;
+			ws.settledCount++;
+			if (u == target) {
+				return true;
+			}
+			double du = dist[u];
+			int first = graph.firstEdge(u);
+			int end = graph.endEdge(u);
+			ws.relaxedCount += end - first;
+			for (int e = first; e < end; e++) {
+				int v = graph.target(e);
+				if (settled[v] == stamp || (filter != null && !filter.allows(graph.carrierSet(e)))) {
+					continue;
+				}
+				double dv = du + graph.weight(e);
+				if (reached[v] != stamp) {
+					if (!components.canReach(v, target)) {
+						continue;
+					}
+					double h = bound.estimate(v, target);
+					if (h == Double.POSITIVE_INFINITY) {
+						continue;
+					}
+					reached[v] = stamp;
+					dist[v] = dv;
+					estimate[v] = h;
+					pred[v] = u;
+					heap.insert(v, dv + h);
+				} else if (dv < dist[v]) {
+					dist[v] = dv;
+					pred[v] = u;
+					heap.decreaseKey(v, dv + estimate[v]);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param graph The graph to search; its reverse index is searched backward.
+	 * @param ws The workspace for the forward search.
+	 * @param reverseWs The workspace for the backward search.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @requires ws != reverseWs && both can hold graph.getNodeCount() nodes
+	 * @modifies ws, reverseWs
+	 * @effects Runs Dijkstra's algorithm forward from source and backward from target,
+	 * 	always advancing the side with the smaller queue head, and stops once the two
+	 * 	queue heads add up to at least the best meeting cost seen so far. Nodes that
+	 * 	cannot lie on a route from source to target are never queued.
+	 * @returns the node where the shortest route from source to target meets both
+	 * 	searches, or -1 if there is no route.
+	 */
+	public static int bidirectional(RouteGraph graph, SearchWorkspace ws, SearchWorkspace reverseWs,
+									int source, int target) {
+		return bidirectional(graph, ws, reverseWs, source, target, null);
+	}
+
+	/**
+	 * @param graph The graph to search; its reverse index is searched backward.
+	 * @param ws The workspace for the forward search.
+	 * @param reverseWs The workspace for the backward search.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @param filter The carriers whose routes may be flown, or null to allow every route.
+	 * @requires ws != reverseWs && both can hold graph.getNodeCount() nodes && filter,
+	 * 	if given, was built for graph.carriers()
+	 * @modifies ws, reverseWs
+	 * @effects Runs the same search as bidirectional(graph, ws, reverseWs, source,
+	 * 	target), skipping every edge, in either direction, that filter does not allow.
+	 * @returns the node where the shortest allowed route from source to target meets
+	 * 	both searches, or -1 if there is no such route.
+	 */
+	public static int bidirectional(RouteGraph graph, SearchWorkspace ws, SearchWorkspace reverseWs,
+									int source, int target, CarrierFilter filter) {
+		ws.reset();
+		reverseWs.reset();
+		ws.dist[source] = 0.0;
+		ws.pred[source] = -1;
+		ws.reached[source] = ws.stamp;
+		ws.heap.insert(source, 0.0);
+		reverseWs.dist[target] = 0.0;
+		reverseWs.pred[target] = -1;
+		reverseWs.reached[target] = reverseWs.stamp;
+		reverseWs.heap.insert(target, 0.0);
+
+		RouteGraph reverse = graph.reverse();
+		if (!graph.components().canReach(source, target)) {
+			return -1;
+		}
+		double best = source == target ? 0.0 : Double.POSITIVE_INFINITY;
+		int meeting = source == target ? source : -1;
+		while (!ws.heap.isEmpty() && !reverseWs.heap.isEmpty()
+				&& ws.heap.peekKey() + reverseWs.heap.peekKey() < best) {
+			boolean forward = ws.heap.peekKey() <= reverseWs.heap.peekKey();
+			SearchWorkspace self = forward ? ws : reverseWs;
+			SearchWorkspace other = forward ? reverseWs : ws;
+			RouteGraph g = forward ? graph : reverse;
+			ComponentIndex components = g.components();
+			int goal = forward ? target : source;
+			int u = self.heap.pollMin();
+			self.settled[u] = self.stamp;
+			self.settledCount++;
+			double du = self.dist[u];
+			int first = g.firstEdge(u);
+			int end = g.endEdge(u);
+			self.relaxedCount += end - first;
+			for (int e = first; e < end; e++) {
+				int v = g.target(e);
+				if (self.settled[v] == self.stamp || (filter != null && !filter.allows(g.carrierSet(e)))) {
+					continue;
+				}
+				double dv = du + g.weight(e);
+				if (self.reached[v] != self.stamp) {
+					if (!components.canReach(v, goal)) {
+						continue;
+					}
+					self.reached[v] = self.stamp;
+					self.dist[v] = dv;
+					self.pred[v] = u;
+					self.heap.insert(v, dv);
+				} else if (dv < self.dist[v]) {
+					self.dist[v] = dv;
+					self.pred[v] = u;
+					self.heap.decreaseKey(v, dv);
+				} else {
+					continue;
+				}
+				if (other.reached[v] == other.stamp && dv + other.dist[v] < best) {
+					best = dv + other.dist[v];
+					meeting = v;
+				}
+			}
+		}
+		return meeting;
+	}
+
+}
@@ -0,0 +1,29 @@
+package main;
+
+/**
+ * <b>QueryMode</b> names the search algorithm used to answer a route query.
+ */
+public enum QueryMode {
+
+	/** Plain Dijkstra search from the start airport. */
+	DIJKSTRA,
+
+	/** A* search guided by the great-circle distance to the destination. */
+	ASTAR,
+
+	/**
+	 * A* search guided by landmark distance tables (ALT); behaves like ASTAR until
+	 * the landmarks have been prepared.
+	 */
+	ALT,
+
+	/**
+	 * Bidirectional upward search in a contraction hierarchy; behaves like DIJKSTRA
+	 * until the hierarchy has been prepared.
+	 */
+	CH,
+
+	/** Dijkstra search from both ends at once, over the reverse index backward. */
+	BIDIRECTIONAL
+
+}
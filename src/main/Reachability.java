@@ -0,0 +1,304 @@
+package main;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <b>Reachability</b> answers bounded one-to-all queries: the airports an origin can
+ * reach within a flying distance, or within a number of legs, found by one search
+ * that stops at the budget instead of one search per candidate destination.
+ *
+ * The distance search is Dijkstra's algorithm that never queues a node beyond the
+ * budget. The leg search is a breadth-first search that expands one level at a time.
+ * The frontier of a level is split over a ForkJoinPool once it has enough routes to
+ * be worth it, which it has from the second leg out of a large hub on. Workers claim
+ * newly found airports in a shared atomic bitset, so each is claimed exactly once
+ * without a lock, and append them to the next frontier in blocks.
+ *
+ * There is no representation invariant or abstraction function for this class. This
+ * is because Reachability is never constructed and only contains static methods.
+ */
+public final class Reachability {
+
+	// frontier nodes per task below which a level is no longer split
+	private static final int SPLIT_THRESHOLD = 64;
+	// levels whose frontier has fewer routes than this are expanded by the caller
+	private static final int PARALLEL_THRESHOLD = 4096;
+	// nodes a task collects before reserving room for them in the next frontier
+	private static final int BLOCK_SIZE = 256;
+	private static final ThreadLocal<int[][]> LOCAL = ThreadLocal.withInitial(() -> new int[][] {new int[0], new int[0]});
+
+	/**
+	 * <b>ReachableSet</b> is the immutable result of a bounded query: the airports
+	 * reached, in the order the search reached them, with the number of legs and, for
+	 * distance queries, the distance to each.
+	 */
+	public static final class ReachableSet {
+
+		private final int[] nodes;
+		private final int[] legs;
+		private final double[] distances;
+
+		// Abstraction Function:
+		// ReachableSet, r, represents the airports nodes[0 .. nodes.length - 1], airport
+		// nodes[i] being legs[i] legs and, if distances != null, distances[i] kilometres
+		// away from the origin.
+		//
+		// Representation Invariant for every ReachableSet r:
+		// nodes.length == legs.length && (distances == null || distances.length == nodes.length) &&
+		// the nodes are distinct && legs is non-decreasing if distances == null,
+		// and distances is non-decreasing otherwise
+
+		private ReachableSet(int[] nodes, int[] legs, double[] distances) {
+			this.nodes = nodes;
+			this.legs = legs;
+			this.distances = distances;
+		}
+
+		/**
+		 * @returns the number of airports reached, the origin included.
+		 */
+		public int size() {
+			return nodes.length;
+		}
+
+		/**
+		 * @param i The position of an airport in the result.
+		 * @requires 0 <= i < size()
+		 * @returns the index of airport i.
+		 */
+		public int node(int i) {
+			return nodes[i];
+		}
+
+		/**
+		 * @param i The position of an airport in the result.
+		 * @requires 0 <= i < size()
+		 * @returns the number of legs from the origin to airport i: the fewest for a
+		 * 	leg query, and those of the shortest route for a distance query.
+		 */
+		public int legs(int i) {
+			return legs[i];
+		}
+
+		/**
+		 * @returns true iff the result holds distances, which is when it was found by
+		 * 	a distance query.
+		 */
+		public boolean hasDistances() {
+			return distances != null;
+		}
+
+		/**
+		 * @param i The position of an airport in the result.
+		 * @requires hasDistances() && 0 <= i < size()
+		 * @returns the shortest route distance from the origin to airport i.
+		 */
+		public double distance(int i) {
+			return distances[i];
+		}
+
+	}
+
+	private Reachability() {
+	}
+
+	/**
+	 * @param graph The graph to search.
+	 * @param ws The workspace that receives the search state.
+	 * @param source The index of the origin.
+	 * @param maxDistance The largest route distance to include, in kilometres.
+	 * @requires ws can hold graph.getNodeCount() nodes
+	 * @modifies ws
+	 * @effects Runs Dijkstra's algorithm from source, queueing only nodes within
+	 * 	maxDistance, and leaves its state in ws.
+	 * @returns the airports whose shortest route from source is at most maxDistance
+	 * 	long, nearest first, source included.
+	 */
+	public static ReachableSet withinDistance(RouteGraph graph, SearchWorkspace ws, int source, double maxDistance) {
+		int n = graph.getNodeCount();
+		int[][] scratch = LOCAL.get();
+		if (scratch[0].length < n) {
+			scratch[0] = new int[n];
+			scratch[1] = new int[n];
+		}
+		int[] order = scratch[0];
+		int[] legsOf = scratch[1];
+		int count = 0;
+		ws.reset();
+		double[] dist = ws.dist;
+		int[] pred = ws.pred;
+		int[] reached = ws.reached;
+		int[] settled = ws.settled;
+		int stamp = ws.stamp;
+		IndexedMinHeap heap = ws.heap;
+
+		dist[source] = 0.0;
+		pred[source] = -1;
+		reached[source] = stamp;
+		heap.insert(source, 0.0);
+		while (!heap.isEmpty()) {
+			int u = heap.pollMin();
+			settled[u] = stamp;
+			ws.settledCount++;
+			// the predecessor was settled first, so its legs are known
+			legsOf[u] = pred[u] < 0 ? 0 : legsOf[pred[u]] + 1;
+			order[count++] = u;
+			double du = dist[u];
+			int first = graph.firstEdge(u);
+			int end = graph.endEdge(u);
+			ws.relaxedCount += end - first;
+			for (int e = first; e < end; e++) {
+				int v = graph.target(e);
+				double dv = du + graph.weight(e);
+				if (settled[v] == stamp || dv > maxDistance) {
+					continue;
+				}
+				if (reached[v] != stamp) {
+					reached[v] = stamp;
+					dist[v] = dv;
+					pred[v] = u;
+					heap.insert(v, dv);
+				} else if (dv < dist[v]) {
+					dist[v] = dv;
+					pred[v] = u;
+					heap.decreaseKey(v, dv);
+				}
+			}
+		}
+		int[] nodes = Arrays.copyOf(order, count);
+		int[] legs = new int[count];
+		double[] distances = new double[count];
+		for (int i = 0; i < count; i++) {
+			legs[i] = legsOf[nodes[i]];
+			distances[i] = dist[nodes[i]];
+		}
+		return new ReachableSet(nodes, legs, distances);
+	}
+
+	/**
+	 * @param graph The graph to search.
+	 * @param source The index of the origin.
+	 * @param maxLegs The largest number of legs (flights) to include.
+	 * @param pool The pool to expand large frontiers on, or null to run every level
+	 * 	on the calling thread, as is also done if the pool has a single thread.
+	 * @requires maxLegs >= 0
+	 * @returns the airports that source can reach with at most maxLegs legs, by
+	 * 	ascending number of legs and in no particular order within one number, source
+	 * 	included.
+	 */
+	public static ReachableSet withinLegs(RouteGraph graph, int source, int maxLegs, ForkJoinPool pool) {
+		int n = graph.getNodeCount();
+		AtomicLongArray visited = new AtomicLongArray((n + 63) >>> 6);
+		int[] order = new int[n];
+		int[] legs = new int[n];
+		AtomicInteger tail = new AtomicInteger(1);
+		claim(visited, source);
+		order[0] = source;
+		int from = 0;
+		int to = 1;
+		for (int level = 1; level <= maxLegs && from < to; level++) {
+			long routes = 0;
+			for (int i = from; i < to; i++) {
+				routes += graph.outDegree(order[i]);
+			}
+			LevelTask task = new LevelTask(graph, visited, order, legs, tail, level, from, to);
+			if (pool == null || pool.getParallelism() < 2 || routes < PARALLEL_THRESHOLD) {
+				task.expand();
+			} else {
+				pool.invoke(task);
+			}
+			from = to;
+			to = tail.get();
+		}
+		int[] nodes = Arrays.copyOf(order, to);
+		int[] levels = new int[to];
+		for (int i = 0; i < to; i++) {
+			levels[i] = legs[nodes[i]];
+		}
+		return new ReachableSet(nodes, levels, null);
+	}
+
+	// Sets the bit of v, and returns true iff this call was the one that set it.
+	private static boolean claim(AtomicLongArray visited, int v) {
+		int word = v >>> 6;
+		long bit = 1L << v;
+		long bits = visited.get(word);
+		while ((bits & bit) == 0) {
+			if (visited.compareAndSet(word, bits, bits | bit)) {
+				return true;
+			}
+			bits = visited.get(word);
+		}
+		return false;
+	}
+
+	/**
+	 * <b>LevelTask</b> expands a range of one level's frontier into the next level,
+	 * splitting the range in half until it is small enough to run on one worker.
+	 */
+	private static final class LevelTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RouteGraph graph;
+		private final AtomicLongArray visited;
+		private final int[] order;
+		private final int[] legs;
+		private final AtomicInteger tail;
+		private final int level;
+		private final int from;
+		private final int to;
+
+		LevelTask(RouteGraph graph, AtomicLongArray visited, int[] order, int[] legs, AtomicInteger tail,
+				  int level, int from, int to) {
+			this.graph = graph;
+			this.visited = visited;
+			this.order = order;
+			this.legs = legs;
+			this.tail = tail;
+			this.level = level;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > SPLIT_THRESHOLD) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new LevelTask(graph, visited, order, legs, tail, level, from, mid),
+						  new LevelTask(graph, visited, order, legs, tail, level, mid, to));
+				return;
+			}
+			expand();
+		}
+
+		// Claims the unvisited targets of the range's routes and appends them to the
+		// next level. Each node is written by the one task that claimed it, and the
+		// caller reads the level only after every task has finished.
+		void expand() {
+			int[] block = new int[BLOCK_SIZE];
+			int size = 0;
+			for (int i = from; i < to; i++) {
+				int u = order[i];
+				for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+					int v = graph.target(e);
+					if (claim(visited, v)) {
+						legs[v] = level;
+						block[size++] = v;
+						if (size == BLOCK_SIZE) {
+							System.arraycopy(block, 0, order, tail.getAndAdd(size), size);
+							size = 0;
+						}
+					}
+				}
+			}
+			System.arraycopy(block, 0, order, tail.getAndAdd(size), size);
+		}
+
+	}
+
+}
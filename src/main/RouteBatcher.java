@@ -0,0 +1,214 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <b>RouteBatcher</b> coalesces concurrent Dijkstra queries that share an origin. A
+ * query is not searched at once but parked for a short window; when the window closes,
+ * or enough queries are waiting, the parked queries are grouped by origin and every
+ * group is answered by a single one-to-many search that stops once all of the group's
+ * destinations are settled. Each caller gets a future that completes with its own route.
+ *
+ * Under bursty load with popular origins this trades at most one window of latency for
+ * far fewer searches. The batcher is thread-safe. Once it is closed, or if the
+ * executor rejects a search, queries are searched on the calling thread instead, so
+ * every future completes.
+ */
+public final class RouteBatcher implements AutoCloseable {
+
+	private final long windowNanos;
+	private final int maxBatch;
+	private final Executor executor;
+	private final ScheduledExecutorService timer;
+	private ArrayList<Request> pending;
+	private boolean closed;
+	private final LongAdder requests;
+	private final LongAdder searches;
+
+	// Representation Invariant for every RouteBatcher b:
+	// pending != null && (pending is empty || a flush of pending is scheduled) &&
+	// pending.size() < maxBatch && (closed => pending is empty)
+
+	/**
+	 * <b>Request</b> is one parked query and the future its caller waits on.
+	 */
+	private static final class Request {
+
+		final RouteGraph graph;
+		final int source;
+		final int target;
+		final CompletableFuture<RoutePath> result;
+
+		Request(RouteGraph graph, int source, int target) {
+			this.graph = graph;
+			this.source = source;
+			this.target = target;
+			this.result = new CompletableFuture<>();
+		}
+
+	}
+
+	/**
+	 * @param windowMicros How long, in microseconds, the first query of a batch waits
+	 * 	for others to join it.
+	 * @param maxBatch The number of waiting queries that closes a window early.
+	 * @param executor The executor the grouped searches run on.
+	 * @requires windowMicros >= 0 && maxBatch >= 1
+	 * @effects Constructs a new RouteBatcher with no queries waiting.
+	 */
+	public RouteBatcher(long windowMicros, int maxBatch, Executor executor) {
+		this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+		this.maxBatch = maxBatch;
+		this.executor = executor;
+		this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "route-batch-timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.pending = new ArrayList<>();
+		this.requests = new LongAdder();
+		this.searches = new LongAdder();
+	}
+
+	/**
+	 * @param graph The graph to search.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @modifies this
+	 * @effects Parks the query until its batch is flushed, or, once this is closed,
+	 * 	searches it on the calling thread.
+	 * @returns a future that completes with the shortest route from source to target,
+	 * 	or with null if there is none.
+	 */
+	public CompletableFuture<RoutePath> submit(RouteGraph graph, int source, int target) {
+		requests.increment();
+		Request request = new Request(graph, source, target);
+		ArrayList<Request> full = null;
+		boolean parked;
+		synchronized (this) {
+			parked = !closed;
+			if (parked) {
+				pending.add(request);
+				if (pending.size() >= maxBatch) {
+					full = pending;
+					pending = new ArrayList<>();
+				} else if (pending.size() == 1) {
+					ArrayList<Request> batch = pending;
+					timer.schedule(() -> flush(batch), windowNanos, TimeUnit.NANOSECONDS);
+				}
+			}
+		}
+		if (full != null) {
+			dispatch(full);
+		} else if (!parked) {
+			// closed, so the timer is gone and nothing would flush the query
+			searches.increment();
+			answer(List.of(request));
+		}
+		return request.result;
+	}
+
+	// Runs when the window of batch closes, unless batch was dispatched early because it
+	// filled up, in which case it is no longer pending and there is nothing to do.
+	private void flush(ArrayList<Request> batch) {
+		synchronized (this) {
+			if (batch != pending) {
+				return;
+			}
+			pending = new ArrayList<>();
+		}
+		dispatch(batch);
+	}
+
+	private void dispatch(List<Request> batch) {
+		HashMap<Integer, List<List<Request>>> bySource = new HashMap<>();
+		for (Request request : batch) {
+			List<List<Request>> groups = bySource.computeIfAbsent(request.source, s -> new ArrayList<>(1));
+			List<Request> group = null;
+			for (List<Request> candidate : groups) {
+				if (candidate.get(0).graph == request.graph) {
+					group = candidate;
+					break;
+				}
+			}
+			if (group == null) {
+				group = new ArrayList<>();
+				groups.add(group);
+			}
+			group.add(request);
+		}
+		for (List<List<Request>> groups : bySource.values()) {
+			for (List<Request> group : groups) {
+				searches.increment();
+				try {
+					executor.execute(() -> answer(group));
+				} catch (RejectedExecutionException e) {
+					// the executor was shut down first; answer here rather than never
+					answer(group);
+				}
+			}
+		}
+	}
+
+	private static void answer(List<Request> group) {
+		try {
+			RouteGraph graph = group.get(0).graph;
+			int[] targets = new int[group.size()];
+			for (int i = 0; i < targets.length; i++) {
+				targets[i] = group.get(i).target;
+			}
+			SearchWorkspace ws = SearchWorkspace.forThread(graph.getNodeCount());
+			SearchWorkspace marks = SearchWorkspace.reverseForThread(graph.getNodeCount());
+			PathFinder.dijkstraToMany(graph, ws, marks, group.get(0).source, targets);
+			for (Request request : group) {
+				request.result.complete(ws.isSettled(request.target)
+						? RoutePath.fromWorkspace(ws, request.target) : null);
+			}
+		} catch (RuntimeException e) {
+			for (Request request : group) {
+				request.result.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * @returns the number of queries submitted.
+	 */
+	public long getRequestCount() {
+		return requests.sum();
+	}
+
+	/**
+	 * @returns the number of grouped searches run to answer them.
+	 */
+	public long getSearchCount() {
+		return searches.sum();
+	}
+
+	/**
+	 * @modifies this
+	 * @effects Answers the queries still waiting and stops the window timer. Queries
+	 * 	submitted afterwards are searched on the submitting thread.
+	 */
+	@Override
+	public void close() {
+		ArrayList<Request> batch;
+		synchronized (this) {
+			closed = true;
+			batch = pending;
+			pending = new ArrayList<>();
+		}
+		dispatch(batch);
+		timer.shutdownNow();
+	}
+
+}
@@ -0,0 +1,276 @@
+package main;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <b>RouteCache</b> is a thread-safe, size-bounded, least-recently-used cache of route
+ * query results keyed on (source index, destination index, query mode). Routes are
+ * stored compactly as the int array of node indices they visit; queries without a
+ * route are cached too.
+ *
+ * Every entry is tagged with the graph generation it was computed for. Bumping the
+ * generation with invalidate atomically turns every older entry into a miss, so a
+ * result computed against a graph that has since been replaced is never served. When
+ * the graph only changes by one edge, edgeChanged starts a new generation too, but
+ * carries over every entry the change provably cannot have affected.
+ *
+ * The cache is split into independently locked segments to keep lock contention low.
+ */
+public final class RouteCache {
+
+	private static final int SEGMENTS = 16;
+
+	/**
+	 * The result returned by get for a cached query that has no route.
+	 */
+	public static final RoutePath NO_ROUTE = new RoutePath(new int[] {-1}, Double.POSITIVE_INFINITY, 0, true);
+
+	private final Segment[] segments;
+	private final AtomicLong generation;
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder evictions;
+
+	// Representation Invariant for every RouteCache c:
+	// segments.length == SEGMENTS && every segment holds at most its capacity entries &&
+	// foreach entry x in a segment => x.generation <= generation.get()
+
+	/**
+	 * @param capacity The maximum number of routes to keep.
+	 * @requires capacity >= SEGMENTS
+	 * @effects Constructs a new empty RouteCache at generation 0.
+	 */
+	public RouteCache(int capacity) {
+		this.segments = new Segment[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(Math.max(1, capacity / SEGMENTS));
+		}
+		this.generation = new AtomicLong();
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+	}
+
+	/**
+	 * @returns the current graph generation. Callers read it before running a query
+	 * 	and pass it to put, so the result is tagged with the graph it was computed on.
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * @modifies this
+	 * @effects Starts a new generation, so every entry cached so far becomes a miss,
+	 * 	and drops those entries.
+	 */
+	public void invalidate() {
+		generation.incrementAndGet();
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * @param u The index of the parent node of the changed edge.
+	 * @param v The index of the child node of the changed edge.
+	 * @param oldWeight The weight of the edge before the change, or NaN if it was added.
+	 * @param newWeight The weight of the edge after the change, or NaN if it was removed.
+	 * @param bound A lower bound on distances in the changed graph.
+	 * @modifies this
+	 * @effects Starts a new generation, so every entry cached so far becomes a miss, then
+	 * 	carries the entries that are still correct over to it and drops the others. When
+	 * 	the edge got longer or was removed, only routes flying it are dropped. When it got
+	 * 	shorter or was added, routes flying it are dropped, and so is every other entry a
+	 * 	route through the edge could beat according to bound, including every query
+	 * 	cached as having no route.
+	 */
+	public void edgeChanged(int u, int v, double oldWeight, double newWeight, DistanceBound bound) {
+		long current = generation.incrementAndGet();
+		boolean shorter = Double.isNaN(oldWeight) ? !Double.isNaN(newWeight) : newWeight < oldWeight;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				Iterator<Map.Entry<Long, Entry>> entries = segment.entrySet().iterator();
+				while (entries.hasNext()) {
+					Map.Entry<Long, Entry> mapping = entries.next();
+					Entry entry = mapping.getValue();
+					long key = mapping.getKey();
+					if (entry.generation != current - 1 || entry.flies(u, v)
+							|| (shorter && entry.beatenVia(source(key), target(key), u, v, newWeight, bound))) {
+						entries.remove();
+					} else {
+						// the value is replaced in place, which does not disturb the iteration
+						mapping.setValue(new Entry(entry.nodes, entry.cost, current));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @param mode The query mode.
+	 * @returns the cached result for the query if there is one for the current
+	 * 	generation: a RoutePath, or NO_ROUTE if the query has no route; null on a miss.
+	 */
+	public RoutePath get(int source, int target, QueryMode mode) {
+		long key = key(source, target, mode);
+		Segment segment = segmentFor(key);
+		Entry entry;
+		synchronized (segment) {
+			entry = segment.get(key);
+		}
+		if (entry == null || entry.generation != generation.get()) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		if (entry.nodes == null) {
+			return NO_ROUTE;
+		}
+		return new RoutePath(entry.nodes, entry.cost, 0, true);
+	}
+
+	/**
+	 * @param queryGeneration The generation read with getGeneration before the query ran.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @param mode The query mode.
+	 * @param path The route found, or null if there is none.
+	 * @modifies this
+	 * @effects Caches the result, evicting the least recently used entry of its segment
+	 * 	if the segment is full. Does nothing if the generation has moved on.
+	 */
+	public void put(long queryGeneration, int source, int target, QueryMode mode, RoutePath path) {
+		if (queryGeneration != generation.get()) {
+			return;
+		}
+		long key = key(source, target, mode);
+		Entry entry = path == null
+				? new Entry(null, 0.0, queryGeneration)
+				: new Entry(path.toNodeArray(), path.getCost(), queryGeneration);
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
+			segment.put(key, entry);
+		}
+	}
+
+	/**
+	 * @returns the number of lookups answered from the cache.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @returns the number of lookups that found nothing for the current generation.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @returns the number of entries evicted to make room for newer ones.
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @returns the number of entries currently held.
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	private static long key(int source, int target, QueryMode mode) {
+		return ((long) source << 32) | ((long) target << 4) | mode.ordinal();
+	}
+
+	private static int source(long key) {
+		return (int) (key >>> 32);
+	}
+
+	private static int target(long key) {
+		return (int) (key >>> 4) & 0x0fffffff;
+	}
+
+	private Segment segmentFor(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return segments[(int) (h >>> 60) & (SEGMENTS - 1)];
+	}
+
+	private static final class Entry {
+
+		final int[] nodes;
+		final double cost;
+		final long generation;
+
+		Entry(int[] nodes, double cost, long generation) {
+			this.nodes = nodes;
+			this.cost = cost;
+			this.generation = generation;
+		}
+
+		// Whether the route flies the edge from u to v.
+		boolean flies(int u, int v) {
+			if (nodes == null) {
+				return false;
+			}
+			for (int i = 1; i < nodes.length; i++) {
+				if (nodes[i - 1] == u && nodes[i] == v) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		// Whether a route from source to target through an edge from u to v of the given
+		// weight may be shorter than this entry; a query without a route always may.
+		boolean beatenVia(int source, int target, int u, int v, double weight, DistanceBound bound) {
+			return nodes == null
+					|| bound.estimate(source, u) + weight + bound.estimate(v, target) < cost;
+		}
+
+	}
+
+	/**
+	 * <b>Segment</b> is one access-ordered LinkedHashMap of the cache; callers
+	 * synchronize on it.
+	 */
+	private final class Segment extends LinkedHashMap<Long, Entry> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+			if (size() > capacity) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+
+	}
+
+}
@@ -0,0 +1,795 @@
+package main;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * <b>RouteGraph</b> represents an immutable directed weighted graph stored in
+ * compressed-sparse-row (CSR) form. Every node is identified by a dense int index
+ * in [0, getNodeCount()), and the outgoing edges of node u occupy the index range
+ * [firstEdge(u), endEdge(u)) of two flat arrays holding edge targets and weights.
+ * Parallel edges between the same pair of nodes are merged into a single edge that
+ * keeps the lowest weight. Every RouteGraph is built together with its reverse
+ * index, a RouteGraph over the same nodes with every edge reversed, so searches can
+ * also run backward from a destination, and with a ComponentIndex that answers
+ * whether any route exists between two nodes. Every edge also records the set of
+ * airlines flying it, as an index into the graph's CarrierSets.
+ *
+ * Neighbor iteration is allocation-free:
+ * 		for (int e = g.firstEdge(u); e < g.endEdge(u); e++) {
+ * 			int v = g.target(e);
+ * 			double w = g.weight(e);
+ * 		}
+ *
+ * The node and edge columns are held in int and double buffers, which wrap plain
+ * arrays for a graph made by a RouteGraph.Builder and map a file directly for a
+ * graph opened by GraphSnapshot, so both are searched by the same code.
+ *
+ * RouteGraphs are created with a RouteGraph.Builder or opened with GraphSnapshot.
+ * A graph can also be derived from another one by adding, removing or reweighting a
+ * single edge, or by adding a node, without rebuilding it: the derived graph shares the
+ * base columns, and only the adjacency lists that changed are rewritten, into a
+ * GraphDelta. Such a graph is searched exactly like a plain one; compacted folds its
+ * changes back into plain CSR columns.
+ */
+public final class RouteGraph {
+
+	// withNode accepts ids this far past twice the id capacity, which bounds how much
+	// the dense id index can grow by one added node
+	private static final int ID_HEADROOM = 1 << 16;
+
+	private final int nodeCount;
+	private final IntBuffer ids;
+	private final IntBuffer indexById;
+	private final DoubleBuffer latitudes;
+	private final DoubleBuffer longitudes;
+	private final IntBuffer offsets;
+	private final IntBuffer targets;
+	private final DoubleBuffer weights;
+	private final IntBuffer edgeSets;
+	private final CarrierSets carriers;
+	private final int baseEdgeCount;
+	private final int edgeCount;
+	// the overlay of a derived graph: null, 0, null, null for a plain CSR graph
+	private final GraphDelta delta;
+	private final int deltaSize;
+	private final int[] patchedFirst;
+	private final int[] patchedEnd;
+	private RouteGraph reverse;
+	private ComponentIndex components;
+
+	// Abstraction Function:
+	// RouteGraph, g, represents a graph with nodeCount nodes, where node i is the
+	// airport with numeric id ids[i], and for every e in [offsets[i], offsets[i+1]) there
+	// is an edge from node i to node targets[e] with weight weights[e]. Node i is located
+	// at (latitudes[i], longitudes[i]) and edge e is flown by the carriers of set
+	// edgeSets[e] of carriers. Each buffer x is read with absolute x.get(i).
+	// If patchedFirst != null and patchedFirst[i] >= 0, the edges of node i are instead
+	// the records patchedFirst[i] - baseEdgeCount .. patchedEnd[i] - baseEdgeCount - 1 of
+	// delta, so edge indices below baseEdgeCount are base edges and the others delta records.
+	//
+	// Representation Invariant for every RouteGraph g:
+	// ids.limit() == latitudes.limit() == longitudes.limit() == nodeCount &&
+	// offsets[0] == 0 && offsets is non-decreasing && offsets.limit() <= nodeCount + 1 &&
+	// offsets[offsets.limit() - 1] == baseEdgeCount == targets.limit() == weights.limit() == edgeSets.limit() &&
+	// foreach edge e => 0 <= target(e) < nodeCount &&
+	// foreach i => indexById[ids[i]] == i &&
+	// edgeCount == the sum of the out-degrees of all nodes &&
+	// (patchedFirst == null) == (patchedEnd == null) &&
+	// patchedFirst == null => offsets.limit() == nodeCount + 1 && delta == null &&
+	// patchedFirst != null => patchedFirst.length == patchedEnd.length == nodeCount &&
+	// 		deltaSize <= delta.size() &&
+	// 		foreach i >= offsets.limit() - 1 => patchedFirst[i] >= 0 &&
+	// 		foreach i with patchedFirst[i] >= 0 =>
+	// 			baseEdgeCount <= patchedFirst[i] <= patchedEnd[i] <= baseEdgeCount + deltaSize
+	//
+	// In other words,
+	//		* the edges of each node are a contiguous slice of targets/weights
+	//		* every edge target is a valid node index
+	//		* the adjacency list of a patched node is a contiguous slice of the delta
+	//		* the numeric airport id of every node maps back to its index
+	//		* reverse.reverse == this, and reverse has an edge v --> u with weight w
+	//		  iff this has an edge u --> v with weight w
+
+	private RouteGraph(IntBuffer ids, IntBuffer indexById, DoubleBuffer latitudes, DoubleBuffer longitudes,
+					   IntBuffer offsets, IntBuffer targets, DoubleBuffer weights, IntBuffer edgeSets,
+					   CarrierSets carriers) {
+		this.nodeCount = ids.limit();
+		this.ids = ids;
+		this.indexById = indexById;
+		this.latitudes = latitudes;
+		this.longitudes = longitudes;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+		this.edgeSets = edgeSets;
+		this.carriers = carriers;
+		this.baseEdgeCount = targets.limit();
+		this.edgeCount = targets.limit();
+		this.delta = null;
+		this.deltaSize = 0;
+		this.patchedFirst = null;
+		this.patchedEnd = null;
+	}
+
+	// Derives a graph that keeps the base columns of base and reads the adjacency lists
+	// it patches from delta.
+	private RouteGraph(RouteGraph base, IntBuffer ids, IntBuffer indexById, DoubleBuffer latitudes,
+					   DoubleBuffer longitudes, GraphDelta delta, int deltaSize, int[] patchedFirst,
+					   int[] patchedEnd, int edgeCount, CarrierSets carriers) {
+		this.nodeCount = ids.limit();
+		this.ids = ids;
+		this.indexById = indexById;
+		this.latitudes = latitudes;
+		this.longitudes = longitudes;
+		this.offsets = base.offsets;
+		this.targets = base.targets;
+		this.weights = base.weights;
+		this.edgeSets = base.edgeSets;
+		this.carriers = carriers;
+		this.baseEdgeCount = base.baseEdgeCount;
+		this.edgeCount = edgeCount;
+		this.delta = delta;
+		this.deltaSize = deltaSize;
+		this.patchedFirst = patchedFirst;
+		this.patchedEnd = patchedEnd;
+	}
+
+	/**
+	 * @returns an int that is equal to the number of nodes in the graph.
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @returns an int that is equal to the number of edges in the graph.
+	 */
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * @returns the number of edge records this graph reads from its delta rather than
+	 * 	from its base columns, counting the records of every adjacency list rewritten
+	 * 	since the base was built; 0 for a plain CSR graph.
+	 */
+	public int getDeltaEdgeCount() {
+		return deltaSize;
+	}
+
+	/**
+	 * @param id An airport id that may or may not identify a node in the graph.
+	 * @returns the dense index of the node labeled id, or -1 if there is no such node.
+	 */
+	public int indexOf(String id) {
+		if (id == null || id.isEmpty() || id.length() > 9) {
+			return -1;
+		}
+		int numericId = 0;
+		for (int i = 0; i < id.length(); i++) {
+			char c = id.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			numericId = numericId * 10 + (c - '0');
+		}
+		return numericId < indexById.limit() ? indexById.get(numericId) : -1;
+	}
+
+	/**
+	 * @param id A numeric airport id.
+	 * @returns the dense index of the node with numeric id id, or -1 if there is no such node.
+	 */
+	public int indexOf(int id) {
+		return id >= 0 && id < indexById.limit() ? indexById.get(id) : -1;
+	}
+
+	/**
+	 * @param index The index of a node in the graph.
+	 * @requires 0 <= index < getNodeCount()
+	 * @returns the airport id of the node at index.
+	 */
+	public String idOf(int index) {
+		return Integer.toString(ids.get(index));
+	}
+
+	/**
+	 * @param index The index of a node in the graph.
+	 * @requires 0 <= index < getNodeCount()
+	 * @returns the numeric airport id of the node at index.
+	 */
+	public int numericIdOf(int index) {
+		return ids.get(index);
+	}
+
+	/**
+	 * @param index The index of a node in the graph.
+	 * @returns the latitude of the node at index, in degrees.
+	 */
+	public double latitude(int index) {
+		return latitudes.get(index);
+	}
+
+	/**
+	 * @param index The index of a node in the graph.
+	 * @returns the longitude of the node at index, in degrees.
+	 */
+	public double longitude(int index) {
+		return longitudes.get(index);
+	}
+
+	/**
+	 * @param u The index of a node in the graph.
+	 * @returns the index of the first outgoing edge of u.
+	 */
+	public int firstEdge(int u) {
+		int[] first = patchedFirst;
+		return first == null || first[u] < 0 ? offsets.get(u) : first[u];
+	}
+
+	/**
+	 * @param u The index of a node in the graph.
+	 * @returns one past the index of the last outgoing edge of u.
+	 */
+	public int endEdge(int u) {
+		int[] first = patchedFirst;
+		return first == null || first[u] < 0 ? offsets.get(u + 1) : patchedEnd[u];
+	}
+
+	/**
+	 * @param u The index of a node in the graph.
+	 * @returns the number of outgoing edges of u.
+	 */
+	public int outDegree(int u) {
+		return endEdge(u) - firstEdge(u);
+	}
+
+	/**
+	 * @param e The index of an edge in the graph.
+	 * @returns the index of the node that edge e points to.
+	 */
+	public int target(int e) {
+		return e < baseEdgeCount ? targets.get(e) : delta.target(e - baseEdgeCount);
+	}
+
+	/**
+	 * @param e The index of an edge in the graph.
+	 * @returns the weight of edge e.
+	 */
+	public double weight(int e) {
+		return e < baseEdgeCount ? weights.get(e) : delta.weight(e - baseEdgeCount);
+	}
+
+	/**
+	 * @param e The index of an edge in the graph.
+	 * @returns the index in carriers() of the set of airlines that fly edge e.
+	 */
+	public int carrierSet(int e) {
+		return e < baseEdgeCount ? edgeSets.get(e) : delta.carrierSet(e - baseEdgeCount);
+	}
+
+	/**
+	 * @returns the airlines and carrier sets of the edges of this graph.
+	 */
+	public CarrierSets carriers() {
+		return carriers;
+	}
+
+	/**
+	 * @param u The index of the parent node.
+	 * @param v The index of the child node.
+	 * @returns the weight of the edge from u to v, or NaN if there is no such edge.
+	 */
+	public double edgeWeight(int u, int v) {
+		int e = edgeTo(u, v);
+		return e < 0 ? Double.NaN : weight(e);
+	}
+
+	/**
+	 * @param u The index of the parent node.
+	 * @param v The index of the child node.
+	 * @returns the index of the edge from u to v, or -1 if there is no such edge.
+	 */
+	public int edgeTo(int u, int v) {
+		for (int e = firstEdge(u), end = endEdge(u); e < end; e++) {
+			if (target(e) == v) {
+				return e;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @returns the reverse index of this graph: a RouteGraph with the same nodes and
+	 * 	every edge reversed, whose reverse() is this graph again.
+	 */
+	public RouteGraph reverse() {
+		return reverse;
+	}
+
+	/**
+	 * @returns the strongly connected components and reachability index of this graph.
+	 * 	The index of a graph derived by removing or lengthening edges may be the index of
+	 * 	the graph it was derived from, and so report routes that no longer exist; it never
+	 * 	misses a route, and is exact again once the graph is compacted.
+	 */
+	public ComponentIndex components() {
+		return components;
+	}
+
+	// Builds the reverse index of this graph and links the two graphs to each other.
+	private void linkReverse() {
+		int n = nodeCount;
+		int m = targets.limit();
+		int[] reverseOffsets = new int[n + 1];
+		for (int e = 0; e < m; e++) {
+			reverseOffsets[targets.get(e) + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			reverseOffsets[v + 1] += reverseOffsets[v];
+		}
+		int[] cursor = Arrays.copyOf(reverseOffsets, n);
+		int[] reverseTargets = new int[m];
+		double[] reverseWeights = new double[m];
+		int[] reverseSets = new int[m];
+		// visiting sources in ascending order keeps every reversed slice sorted
+		for (int u = 0; u < n; u++) {
+			for (int e = offsets.get(u), end = offsets.get(u + 1); e < end; e++) {
+				int slot = cursor[targets.get(e)]++;
+				reverseTargets[slot] = u;
+				reverseWeights[slot] = weights.get(e);
+				reverseSets[slot] = edgeSets.get(e);
+			}
+		}
+		link(new RouteGraph(ids, indexById, latitudes, longitudes, IntBuffer.wrap(reverseOffsets),
+				IntBuffer.wrap(reverseTargets), DoubleBuffer.wrap(reverseWeights), IntBuffer.wrap(reverseSets),
+				carriers));
+	}
+
+	// Links this graph and its reverse index to each other and indexes their components.
+	private void link(RouteGraph reverse) {
+		link(reverse, null);
+	}
+
+	// Like link(reverse), but reuses components instead of indexing them again if given.
+	private void link(RouteGraph reverse, ComponentIndex components) {
+		this.reverse = reverse;
+		reverse.reverse = this;
+		this.components = components != null ? components : ComponentIndex.build(this);
+		reverse.components = this.components.reversed();
+	}
+
+	/**
+	 * @param u The index of the parent node.
+	 * @param v The index of the child node.
+	 * @param weight The new weight of the edge from u to v, or NaN to remove the edge.
+	 * @param set The index in carriers of the set of airlines flying the edge.
+	 * @param carriers The carrier dictionary of the new graph, in which every carrier set
+	 * 	of this graph keeps its index.
+	 * @requires 0 <= u, v < getNodeCount() && weight is NaN or weight >= 0
+	 * @returns a graph equal to this one, with the same node indices, except that the
+	 * 	edge from u to v is added or updated with weight and set, or removed if weight is
+	 * 	NaN, linked to a reverse index changed the same way. Only the adjacency list of u
+	 * 	and, in the reverse index, of v are rewritten; everything else is shared with this
+	 * 	graph, which stays valid and unchanged. A new edge updates the component index
+	 * 	incrementally; otherwise the index is kept as it is. Calls that derive graphs must
+	 * 	not run concurrently with each other.
+	 */
+	RouteGraph withEdge(int u, int v, double weight, int set, CarrierSets carriers) {
+		RouteGraph graph = patched(u, v, weight, set, carriers);
+		boolean added = !Double.isNaN(weight) && edgeTo(u, v) < 0;
+		graph.link(reverse.patched(v, u, weight, set, carriers),
+				added ? components.withEdge(graph, u, v) : components);
+		return graph;
+	}
+
+	// Rewrites the adjacency list of u, still sorted by target, into the delta.
+	private RouteGraph patched(int u, int v, double weight, int set, CarrierSets carriers) {
+		int first = firstEdge(u);
+		int end = endEdge(u);
+		boolean remove = Double.isNaN(weight);
+		GraphDelta log = (delta != null ? delta : new GraphDelta(0)).forAppend(deltaSize, end - first + 1);
+		int start = baseEdgeCount + log.size();
+		int e = first;
+		for (; e < end && target(e) < v; e++) {
+			log.append(target(e), weight(e), carrierSet(e));
+		}
+		boolean present = e < end && target(e) == v;
+		if (present) {
+			e++;
+		}
+		if (!remove) {
+			log.append(v, weight, set);
+		}
+		for (; e < end; e++) {
+			log.append(target(e), weight(e), carrierSet(e));
+		}
+		int[] newFirst = patchedFirst != null ? patchedFirst.clone() : unpatched(nodeCount);
+		int[] newEnd = patchedEnd != null ? patchedEnd.clone() : new int[nodeCount];
+		newFirst[u] = start;
+		newEnd[u] = baseEdgeCount + log.size();
+		int edges = edgeCount + (remove ? (present ? -1 : 0) : (present ? 0 : 1));
+		return new RouteGraph(this, ids, indexById, latitudes, longitudes, log, log.size(), newFirst, newEnd,
+				edges, carriers);
+	}
+
+	/**
+	 * @param id The numeric airport id of the new node.
+	 * @param latitude The latitude of the airport, in degrees.
+	 * @param longitude The longitude of the airport, in degrees.
+	 * @requires 0 <= id < getIdLimit() && indexOf(id) == -1
+	 * @returns a graph equal to this one with one more node, labeled id, at index
+	 * 	getNodeCount() and without any edges, linked to its reverse index. The node
+	 * 	columns are copied; the edge columns and delta are shared with this graph.
+	 */
+	RouteGraph withNode(int id, double latitude, double longitude) {
+		int n = nodeCount;
+		int[] newIds = new int[n + 1];
+		ids.get(0, newIds, 0, n);
+		newIds[n] = id;
+		double[] newLatitudes = new double[n + 1];
+		latitudes.get(0, newLatitudes, 0, n);
+		newLatitudes[n] = latitude;
+		double[] newLongitudes = new double[n + 1];
+		longitudes.get(0, newLongitudes, 0, n);
+		newLongitudes[n] = longitude;
+		int capacity = indexById.limit();
+		int[] newIndexById = new int[Math.max(capacity, id + 1)];
+		indexById.get(0, newIndexById, 0, capacity);
+		Arrays.fill(newIndexById, capacity, newIndexById.length, -1);
+		newIndexById[id] = n;
+
+		IntBuffer idColumn = IntBuffer.wrap(newIds);
+		IntBuffer indexColumn = IntBuffer.wrap(newIndexById);
+		DoubleBuffer latitudeColumn = DoubleBuffer.wrap(newLatitudes);
+		DoubleBuffer longitudeColumn = DoubleBuffer.wrap(newLongitudes);
+		RouteGraph graph = grown(idColumn, indexColumn, latitudeColumn, longitudeColumn);
+		graph.link(reverse.grown(idColumn, indexColumn, latitudeColumn, longitudeColumn),
+				components.withNodes(n + 1));
+		return graph;
+	}
+
+	// Gives the node appended by withNode an empty adjacency list.
+	private RouteGraph grown(IntBuffer ids, IntBuffer indexById, DoubleBuffer latitudes, DoubleBuffer longitudes) {
+		int n = nodeCount;
+		int[] newFirst = patchedFirst != null ? Arrays.copyOf(patchedFirst, n + 1) : unpatched(n + 1);
+		int[] newEnd = patchedEnd != null ? Arrays.copyOf(patchedEnd, n + 1) : new int[n + 1];
+		newFirst[n] = baseEdgeCount;
+		newEnd[n] = baseEdgeCount;
+		return new RouteGraph(this, ids, indexById, latitudes, longitudes, delta, deltaSize, newFirst, newEnd,
+				edgeCount, carriers);
+	}
+
+	private static int[] unpatched(int nodeCount) {
+		int[] first = new int[nodeCount];
+		Arrays.fill(first, -1);
+		return first;
+	}
+
+	/**
+	 * @returns a plain CSR graph with the same nodes, node indices, edges and carriers as
+	 * 	this graph, linked to its reverse index and with an exact component index, or
+	 * 	this graph itself if it has never been changed since it was built.
+	 */
+	RouteGraph compacted() {
+		if (patchedFirst == null) {
+			return this;
+		}
+		int n = nodeCount;
+		int[] newOffsets = new int[n + 1];
+		int[] newTargets = new int[edgeCount];
+		double[] newWeights = new double[edgeCount];
+		int[] newSets = new int[edgeCount];
+		int out = 0;
+		for (int u = 0; u < n; u++) {
+			newOffsets[u] = out;
+			for (int e = firstEdge(u), end = endEdge(u); e < end; e++) {
+				newTargets[out] = target(e);
+				newWeights[out] = weight(e);
+				newSets[out] = carrierSet(e);
+				out++;
+			}
+		}
+		newOffsets[n] = out;
+		RouteGraph graph = new RouteGraph(ids, indexById, latitudes, longitudes, IntBuffer.wrap(newOffsets),
+				IntBuffer.wrap(newTargets), DoubleBuffer.wrap(newWeights), IntBuffer.wrap(newSets), carriers);
+		graph.linkReverse();
+		return graph;
+	}
+
+	/**
+	 * @param ids The numeric airport id of every node.
+	 * @param indexById The node index of every numeric id, or -1.
+	 * @param latitudes The latitude of every node.
+	 * @param longitudes The longitude of every node.
+	 * @param offsets The CSR offsets of the forward edges.
+	 * @param targets The targets of the forward edges.
+	 * @param weights The weights of the forward edges.
+	 * @param edgeSets The carrier sets of the forward edges.
+	 * @param reverseOffsets The CSR offsets of the reversed edges.
+	 * @param reverseTargets The targets of the reversed edges.
+	 * @param reverseWeights The weights of the reversed edges.
+	 * @param reverseSets The carrier sets of the reversed edges.
+	 * @param carriers The carrier dictionary of the edges.
+	 * @requires the buffers hold a graph and its reverse index as laid out by build
+	 * @returns a RouteGraph that reads its columns straight from the given buffers,
+	 * 	linked to its reverse index and with a freshly computed ComponentIndex.
+	 */
+	static RouteGraph wrap(IntBuffer ids, IntBuffer indexById, DoubleBuffer latitudes,
+						   DoubleBuffer longitudes, IntBuffer offsets, IntBuffer targets,
+						   DoubleBuffer weights, IntBuffer edgeSets, IntBuffer reverseOffsets,
+						   IntBuffer reverseTargets, DoubleBuffer reverseWeights, IntBuffer reverseSets,
+						   CarrierSets carriers) {
+		RouteGraph graph = new RouteGraph(ids, indexById, latitudes, longitudes, offsets, targets, weights,
+				edgeSets, carriers);
+		graph.link(new RouteGraph(ids, indexById, latitudes, longitudes,
+				reverseOffsets, reverseTargets, reverseWeights, reverseSets, carriers));
+		return graph;
+	}
+
+	/**
+	 * @returns one past the largest numeric airport id that indexOf can resolve.
+	 */
+	int getIdCapacity() {
+		return indexById.limit();
+	}
+
+	/**
+	 * @returns one past the largest numeric id withNode accepts for a new node.
+	 */
+	int getIdLimit() {
+		return (int) Math.min(2L * indexById.limit() + ID_HEADROOM, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @returns a hash of the node ids and weighted edges of this graph, used to check
+	 * 	that data derived from a graph and stored on disk still matches it. A derived
+	 * 	graph hashes like its compacted form.
+	 */
+	public long fingerprint() {
+		long h = 1125899906842597L;
+		for (int i = 0; i < nodeCount; i++) {
+			h = 31 * h + idOf(i).hashCode();
+		}
+		// the CSR offsets of the compacted form
+		int offset = 0;
+		h = 31 * h + offset;
+		for (int i = 0; i < nodeCount; i++) {
+			offset += outDegree(i);
+			h = 31 * h + offset;
+		}
+		for (int u = 0; u < nodeCount; u++) {
+			for (int e = firstEdge(u), end = endEdge(u); e < end; e++) {
+				h = 31 * h + target(e);
+				h = 31 * h + Double.doubleToLongBits(weight(e));
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * <b>Builder</b> is a mutable accumulator of nodes and edges that produces a
+	 * RouteGraph. Nodes must be added before the edges that reference them.
+	 */
+	public static final class Builder {
+
+		private int[] ids;
+		private int[] indexById;
+		private double[] latitudes;
+		private double[] longitudes;
+		private int nodeCount;
+		private int[] sources;
+		private int[] dests;
+		private double[] lengths;
+		private int[] edgeCarriers;
+		private int edgeCount;
+		private final CarrierSets.Builder carriers;
+
+		/**
+		 * @param expectedNodes A hint for the number of nodes that will be added.
+		 * @param expectedEdges A hint for the number of edges that will be added.
+		 * @effects Constructs a new empty Builder.
+		 */
+		public Builder(int expectedNodes, int expectedEdges) {
+			this.ids = new int[Math.max(expectedNodes, 16)];
+			this.latitudes = new double[this.ids.length];
+			this.longitudes = new double[this.ids.length];
+			this.indexById = new int[16];
+			Arrays.fill(this.indexById, -1);
+			this.sources = new int[Math.max(expectedEdges, 16)];
+			this.dests = new int[this.sources.length];
+			this.lengths = new double[this.sources.length];
+			this.edgeCarriers = new int[this.sources.length];
+			this.carriers = new CarrierSets.Builder();
+		}
+
+		/**
+		 * @param id The numeric airport id of the new node.
+		 * @param latitude The latitude of the airport, in degrees.
+		 * @param longitude The longitude of the airport, in degrees.
+		 * @requires id >= 0
+		 * @modifies this
+		 * @effects Adds a node labeled id if it is not already present.
+		 * @returns the dense index of the node labeled id.
+		 */
+		public int addNode(int id, double latitude, double longitude) {
+			if (id >= indexById.length) {
+				int oldLength = indexById.length;
+				indexById = Arrays.copyOf(indexById, Math.max(id + 1, oldLength * 2));
+				Arrays.fill(indexById, oldLength, indexById.length, -1);
+			}
+			if (indexById[id] >= 0) {
+				return indexById[id];
+			}
+			if (nodeCount == ids.length) {
+				ids = Arrays.copyOf(ids, nodeCount * 2);
+				latitudes = Arrays.copyOf(latitudes, ids.length);
+				longitudes = Arrays.copyOf(longitudes, ids.length);
+			}
+			ids[nodeCount] = id;
+			latitudes[nodeCount] = latitude;
+			longitudes[nodeCount] = longitude;
+			indexById[id] = nodeCount;
+			return nodeCount++;
+		}
+
+		/**
+		 * @param id The numeric airport id of a node.
+		 * @returns the dense index of the node labeled id, or -1 if it has not been added.
+		 */
+		public int indexOf(int id) {
+			return id >= 0 && id < indexById.length ? indexById[id] : -1;
+		}
+
+		/**
+		 * @param index The index of a node returned by addNode.
+		 * @returns the latitude of the node at index, in degrees.
+		 */
+		public double latitude(int index) {
+			return latitudes[index];
+		}
+
+		/**
+		 * @param index The index of a node returned by addNode.
+		 * @returns the longitude of the node at index, in degrees.
+		 */
+		public double longitude(int index) {
+			return longitudes[index];
+		}
+
+		/**
+		 * @param packedCode An airline code packed by CarrierSets.pack.
+		 * @modifies this
+		 * @returns the carrier index of the airline, for use with addEdge, or -1 if
+		 * 	packedCode is 0.
+		 */
+		public int carrier(int packedCode) {
+			return carriers.carrier(packedCode);
+		}
+
+		/**
+		 * @param from The index of the parent node.
+		 * @param to The index of the child node.
+		 * @param weight The weight of the new edge.
+		 * @requires from and to were returned by addNode
+		 * @modifies this
+		 * @effects Adds an edge from 'from' to 'to' with the given weight, flown by no
+		 * 	known carrier.
+		 */
+		public void addEdge(int from, int to, double weight) {
+			addEdge(from, to, weight, -1);
+		}
+
+		/**
+		 * @param from The index of the parent node.
+		 * @param to The index of the child node.
+		 * @param weight The weight of the new edge.
+		 * @param carrier The carrier flying the edge as returned by carrier, or -1.
+		 * @requires from and to were returned by addNode
+		 * @modifies this
+		 * @effects Adds an edge from 'from' to 'to' with the given weight and carrier.
+		 */
+		public void addEdge(int from, int to, double weight, int carrier) {
+			if (edgeCount == sources.length) {
+				int newLength = edgeCount * 2;
+				sources = Arrays.copyOf(sources, newLength);
+				dests = Arrays.copyOf(dests, newLength);
+				lengths = Arrays.copyOf(lengths, newLength);
+				edgeCarriers = Arrays.copyOf(edgeCarriers, newLength);
+			}
+			sources[edgeCount] = from;
+			dests[edgeCount] = to;
+			lengths[edgeCount] = weight;
+			edgeCarriers[edgeCount] = carrier;
+			edgeCount++;
+		}
+
+		/**
+		 * @returns a new RouteGraph containing every node and edge added so far, with
+		 * 	the edges of each node sorted by target and parallel edges merged into one
+		 * 	edge flown by all of their carriers, together with its reverse index and
+		 * 	component index.
+		 */
+		public RouteGraph build() {
+			int n = nodeCount;
+			// a stable counting sort by target, then one by source node, leaves every
+			// adjacency slice sorted by target in time linear in nodes and edges
+			int[] byTarget = countingOrder(dests, edgeCount, n);
+			int[] offsets = new int[n + 1];
+			for (int i = 0; i < edgeCount; i++) {
+				offsets[sources[i] + 1]++;
+			}
+			for (int u = 0; u < n; u++) {
+				offsets[u + 1] += offsets[u];
+			}
+			int[] cursor = Arrays.copyOf(offsets, n);
+			int[] targets = new int[edgeCount];
+			double[] weights = new double[edgeCount];
+			int[] sets = new int[edgeCount];
+			for (int k = 0; k < edgeCount; k++) {
+				int i = byTarget[k];
+				int slot = cursor[sources[i]]++;
+				targets[slot] = dests[i];
+				weights[slot] = lengths[i];
+				sets[slot] = edgeCarriers[i];
+			}
+
+			// merge the parallel edges of each adjacency slice in place, interning the
+			// carriers of each merged group as one carrier set
+			int[] compactOffsets = new int[n + 1];
+			int[] group = new int[16];
+			int out = 0;
+			for (int u = 0; u < n; u++) {
+				int start = offsets[u];
+				int end = offsets[u + 1];
+				compactOffsets[u] = out;
+				for (int e = start; e < end; ) {
+					int t = targets[e];
+					double w = weights[e];
+					int size = 0;
+					for (; e < end && targets[e] == t; e++) {
+						w = Math.min(w, weights[e]);
+						if (size == group.length) {
+							group = Arrays.copyOf(group, size * 2);
+						}
+						group[size++] = sets[e];
+					}
+					targets[out] = t;
+					weights[out] = w;
+					sets[out] = carriers.intern(group, size);
+					out++;
+				}
+			}
+			compactOffsets[n] = out;
+
+			RouteGraph graph = new RouteGraph(IntBuffer.wrap(Arrays.copyOf(ids, n)),
+					IntBuffer.wrap(Arrays.copyOf(indexById, indexById.length)),
+					DoubleBuffer.wrap(Arrays.copyOf(latitudes, n)), DoubleBuffer.wrap(Arrays.copyOf(longitudes, n)),
+					IntBuffer.wrap(compactOffsets), IntBuffer.wrap(Arrays.copyOf(targets, out)),
+					DoubleBuffer.wrap(Arrays.copyOf(weights, out)), IntBuffer.wrap(Arrays.copyOf(sets, out)),
+					carriers.build());
+			graph.linkReverse();
+			return graph;
+		}
+
+		// The indices 0 .. count - 1 ordered by keys[i], each in 0 .. range - 1, keeping
+		// indices with equal keys in their original order.
+		private static int[] countingOrder(int[] keys, int count, int range) {
+			int[] starts = new int[range + 1];
+			for (int i = 0; i < count; i++) {
+				starts[keys[i] + 1]++;
+			}
+			for (int k = 0; k < range; k++) {
+				starts[k + 1] += starts[k];
+			}
+			int[] order = new int[count];
+			for (int i = 0; i < count; i++) {
+				order[starts[keys[i]]++] = i;
+			}
+			return order;
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+package main;
+
+/**
+ * <b>RoutePath</b> represents an immutable path through a RouteGraph as the sequence
+ * of node indices it visits, together with its total cost and the number of nodes
+ * the search that produced it settled.
+ *
+ * Examples of RoutePaths include the empty route from a node to itself (one node,
+ * zero legs) and a route with >= 1 legs: A --> B --> C.
+ */
+public final class RoutePath {
+
+	private final int[] nodes;
+	private final double cost;
+	private final int settledCount;
+	private final boolean cached;
+
+	// Representation Invariant for every RoutePath p:
+	// nodes != null && nodes.length >= 1 && cost >= 0
+
+	/**
+	 * @param nodes The node indices of the path, from source to destination.
+	 * @param cost The total weight of the path.
+	 * @param settledCount The number of nodes settled while finding the path.
+	 * @requires nodes != null && nodes.length >= 1 && nodes is not modified afterwards
+	 * @effects Constructs a new RoutePath.
+	 */
+	public RoutePath(int[] nodes, double cost, int settledCount) {
+		this(nodes, cost, settledCount, false);
+	}
+
+	/**
+	 * @param nodes The node indices of the path, from source to destination.
+	 * @param cost The total weight of the path.
+	 * @param settledCount The number of nodes settled while finding the path.
+	 * @param cached Whether the path was served from a cache rather than a search.
+	 * @requires nodes != null && nodes.length >= 1 && nodes is not modified afterwards
+	 * @effects Constructs a new RoutePath.
+	 */
+	public RoutePath(int[] nodes, double cost, int settledCount, boolean cached) {
+		this.nodes = nodes;
+		this.cost = cost;
+		this.settledCount = settledCount;
+		this.cached = cached;
+	}
+
+	/**
+	 * @param ws The workspace of a finished search that reached target.
+	 * @param target The index of the destination node.
+	 * @requires ws.isReached(target)
+	 * @returns the RoutePath to target recorded in the predecessor array of ws.
+	 */
+	public static RoutePath fromWorkspace(SearchWorkspace ws, int target) {
+		int length = 1;
+		for (int v = target; ws.predecessor(v) >= 0; v = ws.predecessor(v)) {
+			length++;
+		}
+		int[] nodes = new int[length];
+		int v = target;
+		for (int i = length - 1; i >= 0; i--) {
+			nodes[i] = v;
+			v = ws.predecessor(v);
+		}
+		return new RoutePath(nodes, ws.distance(target), ws.getSettledCount());
+	}
+
+	/**
+	 * @param ws The workspace of the forward half of a finished bidirectional search.
+	 * @param reverseWs The workspace of its backward half.
+	 * @param meeting The node where the two searches met.
+	 * @requires both workspaces reached meeting
+	 * @returns the RoutePath that follows the forward predecessors from the source to
+	 * 	meeting and the backward predecessors from meeting to the destination.
+	 */
+	public static RoutePath fromMeeting(SearchWorkspace ws, SearchWorkspace reverseWs, int meeting) {
+		int forwardLength = 0;
+		for (int v = meeting; v >= 0; v = ws.predecessor(v)) {
+			forwardLength++;
+		}
+		int backwardLength = 0;
+		for (int v = reverseWs.predecessor(meeting); v >= 0; v = reverseWs.predecessor(v)) {
+			backwardLength++;
+		}
+		int[] nodes = new int[forwardLength + backwardLength];
+		int i = forwardLength - 1;
+		for (int v = meeting; v >= 0; v = ws.predecessor(v)) {
+			nodes[i--] = v;
+		}
+		i = forwardLength;
+		for (int v = reverseWs.predecessor(meeting); v >= 0; v = reverseWs.predecessor(v)) {
+			nodes[i++] = v;
+		}
+		return new RoutePath(nodes, ws.distance(meeting) + reverseWs.distance(meeting),
+							 ws.getSettledCount() + reverseWs.getSettledCount());
+	}
+
+	/**
+	 * @returns the index of the first node of the path.
+	 */
+	public int getSource() {
+		return nodes[0];
+	}
+
+	/**
+	 * @returns the index of the last node of the path.
+	 */
+	public int getDestination() {
+		return nodes[nodes.length - 1];
+	}
+
+	/**
+	 * @returns the number of nodes on the path.
+	 */
+	public int getNodeCount() {
+		return nodes.length;
+	}
+
+	/**
+	 * @returns the number of legs (edges) on the path.
+	 */
+	public int getLegCount() {
+		return nodes.length - 1;
+	}
+
+	/**
+	 * @param i The position of a node on the path.
+	 * @requires 0 <= i < getNodeCount()
+	 * @returns the index of the i-th node of the path.
+	 */
+	public int nodeAt(int i) {
+		return nodes[i];
+	}
+
+	/**
+	 * @returns a new array holding the node indices of the path in order.
+	 */
+	public int[] toNodeArray() {
+		return nodes.clone();
+	}
+
+	/**
+	 * @returns the total weight of the path.
+	 */
+	public double getCost() {
+		return cost;
+	}
+
+	/**
+	 * @returns the number of nodes settled by the search that found this path.
+	 */
+	public int getSettledCount() {
+		return settledCount;
+	}
+
+	/**
+	 * @returns true iff the path was served from a cache rather than a search.
+	 */
+	public boolean isCached() {
+		return cached;
+	}
+
+}
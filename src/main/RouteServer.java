@@ -0,0 +1,337 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * <b>RouteServer</b> answers route queries from many clients at once over a plain-text
+ * line protocol on a local TCP port. Every request is one line of space-separated
+ * words, and its response starts with a line beginning with OK, NONE or ERROR:
+ *
+ * <pre>
+ * ROUTE from to [mode]    OK km id id ...  |  NONE
+ * LEGS max from to        OK km id id ...  |  NONE
+ * PATHS k from to         OK count, followed by count lines of: km id id ...
+ * RELOAD                  OK reloading, after which the data files are reloaded
+ * STATS [on|off|reset]    OK count, followed by count lines of the model's metrics
+ * QUIT                    closes the connection
+ * </pre>
+ *
+ * Airports are given by id or by IATA or ICAO code, and routes are answered with ids.
+ * LEGS takes at most HopLimitedSearch.MAX_LEGS legs and PATHS at most
+ * KShortestPaths.MAX_PATHS routes. A request that is malformed, exceeds a limit or
+ * fails is answered with a single line, ERROR followed by the reason, and the
+ * connection stays open.
+ *
+ * Each connection is served on its own virtual thread when the JVM has them (Java 21
+ * and later; older JVMs fall back to a cached pool of platform threads). Connections
+ * only wait on I/O; the searches themselves run on a fixed pool with one platform
+ * thread per core, so the thread-local search workspaces are reused from query to
+ * query instead of being allocated for every connection.
+ *
+ * With a batching window, Dijkstra ROUTE queries go through the model's RouteBatcher,
+ * so queries from the same origin that arrive within the window share one search.
+ *
+ * Queries run against the immutable graph the AirlineModel had installed when they
+ * started. RELOAD loads the data files on a background thread and swaps the new graph
+ * in as a whole; queries already running finish against the old one.
+ */
+public final class RouteServer implements Closeable {
+
+	// waiting queries that close a batching window early
+	private static final int MAX_BATCH = 256;
+
+	private final AirlineModel model;
+	private final ServerSocket socket;
+	private final String snapshotFile;
+	private final String nodeFile;
+	private final String edgeFile;
+	private final String hierarchyFile;
+	private final ExecutorService connections;
+	private final ExecutorService queries;
+	private final ExecutorService background;
+	private final AtomicReference<CompletableFuture<Boolean>> reload;
+
+	/**
+	 * @param model The model to query.
+	 * @param port The local port to listen on, or 0 for any free port.
+	 * @param snapshotFile The binary snapshot RELOAD opens.
+	 * @param nodeFile The airport file RELOAD falls back to.
+	 * @param edgeFile The route file RELOAD falls back to.
+	 * @param hierarchyFile The contraction hierarchy RELOAD loads, or null.
+	 * @param batchWindowMicros The batching window of Dijkstra ROUTE queries in
+	 * 	microseconds, or a negative number to search every query on its own.
+	 * @throws IOException if the port cannot be bound
+	 * @modifies model
+	 * @effects Constructs a new RouteServer bound to port on the loopback address and
+	 * 	sets the batching of model. It does not accept connections until start is called.
+	 */
+	public RouteServer(AirlineModel model, int port, String snapshotFile, String nodeFile, String edgeFile,
+					   String hierarchyFile, long batchWindowMicros) throws IOException {
+		this.model = model;
+		this.socket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+		this.snapshotFile = snapshotFile;
+		this.nodeFile = nodeFile;
+		this.edgeFile = edgeFile;
+		this.hierarchyFile = hierarchyFile;
+		this.connections = connectionExecutor();
+		this.queries = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+													daemonThreads("route-query-"));
+		this.background = Executors.newSingleThreadExecutor(daemonThreads("route-reload-"));
+		this.reload = new AtomicReference<>(CompletableFuture.completedFuture(true));
+		model.setBatching(batchWindowMicros, MAX_BATCH, queries);
+	}
+
+	// Virtual threads are looked up reflectively so that the server still builds and
+	// runs on JVMs that predate them.
+	private static ExecutorService connectionExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return Executors.newCachedThreadPool(daemonThreads("route-connection-"));
+		}
+	}
+
+	private static ThreadFactory daemonThreads(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return task -> {
+			Thread thread = new Thread(task, prefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * @returns the local port the server listens on.
+	 */
+	public int getPort() {
+		return socket.getLocalPort();
+	}
+
+	/**
+	 * @modifies this
+	 * @effects Starts accepting connections on a background thread and returns.
+	 */
+	public void start() {
+		Thread acceptor = new Thread(this::acceptLoop, "route-accept");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * @modifies this
+	 * @effects Stops accepting connections and shuts the server's threads down.
+	 */
+	@Override
+	public void close() throws IOException {
+		socket.close();
+		connections.shutdownNow();
+		queries.shutdownNow();
+		background.shutdownNow();
+	}
+
+	private void acceptLoop() {
+		while (!socket.isClosed()) {
+			try {
+				Socket client = socket.accept();
+				connections.execute(() -> serve(client));
+			} catch (IOException e) {
+				// the socket was closed, or the client went away while connecting
+			}
+		}
+	}
+
+	private void serve(Socket client) {
+		try (Socket connection = client;
+			 BufferedReader in = new BufferedReader(
+					 new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+			 PrintWriter out = new PrintWriter(
+					 new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String request = line.trim();
+				if (request.equalsIgnoreCase("QUIT")) {
+					break;
+				}
+				if (request.isEmpty()) {
+					continue;
+				}
+				out.print(answer(request));
+				out.flush();
+			}
+		} catch (IOException e) {
+			// the client went away
+		}
+	}
+
+	/**
+	 * @param request One request line.
+	 * @returns the response to request, ending in a line break. The caller waits while
+	 * 	the searches run on the query pool.
+	 */
+	String answer(String request) {
+		String[] words = request.split("\\s+");
+		StringBuilder response = new StringBuilder();
+		try {
+			switch (words[0].toUpperCase()) {
+			case "ROUTE":
+				expectWords(words, 3, 4);
+				QueryMode mode = words.length == 4 ? QueryMode.valueOf(words[3].toUpperCase()) : model.getQueryMode();
+				answerRoute(response, words[1], words[2], mode, -1);
+				break;
+			case "LEGS":
+				expectWords(words, 4, 4);
+				int maxLegs = Integer.parseInt(words[1]);
+				if (maxLegs < 0 || maxLegs > HopLimitedSearch.MAX_LEGS) {
+					throw new IllegalArgumentException("LEGS needs 0 <= max <= " + HopLimitedSearch.MAX_LEGS);
+				}
+				answerRoute(response, words[2], words[3], null, maxLegs);
+				break;
+			case "PATHS":
+				expectWords(words, 4, 4);
+				answerPaths(response, words[2], words[3], Integer.parseInt(words[1]));
+				break;
+			case "RELOAD":
+				expectWords(words, 1, 1);
+				response.append(startReload() ? "OK reloading" : "OK already reloading").append('\n');
+				break;
+			case "STATS":
+				expectWords(words, 1, 2);
+				answerStats(response, words.length == 2 ? words[1].toLowerCase() : "");
+				break;
+			default:
+				response.append("ERROR unknown request ").append(words[0]).append('\n');
+				break;
+			}
+		} catch (RuntimeException e) {
+			// a failed search answers only this request; the connection stays usable
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			String reason = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+			response.setLength(0);
+			response.append("ERROR ").append(reason.replace('\n', ' ')).append('\n');
+		}
+		return response.toString();
+	}
+
+	// Runs search on the query pool and waits for it.
+	private <T> T onQueryPool(Supplier<T> search) {
+		try {
+			return CompletableFuture.supplyAsync(search, queries).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private static void expectWords(String[] words, int min, int max) {
+		if (words.length < min || words.length > max) {
+			throw new IllegalArgumentException(words[0].toUpperCase() + " takes " + (min - 1)
+					+ (max > min ? " to " + (max - 1) : "") + " arguments");
+		}
+	}
+
+	// Answers a ROUTE (maxLegs < 0) or LEGS query. The model resolves the airports and
+	// runs the search against one graph, and hands that graph back to turn the node
+	// indices of the route into ids, so a reload in between cannot mix up two graphs.
+	private void answerRoute(StringBuilder response, String from, String to, QueryMode mode, int maxLegs) {
+		AirlineModel.Answer<RoutePath> answer;
+		if (maxLegs >= 0) {
+			answer = onQueryPool(() -> model.queryRouteWithinLegs(from, to, maxLegs));
+		} else if (mode == QueryMode.DIJKSTRA && model.getBatcher() != null) {
+			// the batcher runs the search on the query pool itself
+			answer = model.queryRouteAsync(from, to).join();
+		} else {
+			answer = onQueryPool(() -> model.queryRoute(from, to, mode));
+		}
+		RoutePath path = answer.getResult();
+		if (path == null) {
+			response.append("NONE\n");
+		} else {
+			response.append("OK ");
+			appendPath(response, answer.getGraph(), path);
+		}
+	}
+
+	private void answerPaths(StringBuilder response, String from, String to, int k) {
+		if (k < 1 || k > KShortestPaths.MAX_PATHS) {
+			throw new IllegalArgumentException("PATHS needs 1 <= k <= " + KShortestPaths.MAX_PATHS);
+		}
+		AirlineModel.Answer<List<RoutePath>> answer = onQueryPool(() -> model.queryRoutes(from, to, k));
+		response.append("OK ").append(answer.getResult().size()).append('\n');
+		for (RoutePath path : answer.getResult()) {
+			appendPath(response, answer.getGraph(), path);
+		}
+	}
+
+	private void answerStats(StringBuilder response, String action) {
+		Metrics metrics = model.getMetrics();
+		if (action.equals("on") || action.equals("off")) {
+			metrics.setEnabled(action.equals("on"));
+		} else if (action.equals("reset")) {
+			metrics.reset();
+		} else if (!action.isEmpty()) {
+			throw new IllegalArgumentException("STATS takes on, off or reset");
+		}
+		List<String> lines = metrics.snapshot();
+		response.append("OK ").append(lines.size()).append('\n');
+		for (String line : lines) {
+			response.append(line).append('\n');
+		}
+	}
+
+	private static void appendPath(StringBuilder response, RouteGraph graph, RoutePath path) {
+		response.append(String.format("%.3f", path.getCost()));
+		for (int i = 0; i < path.getNodeCount(); i++) {
+			response.append(' ').append(graph.idOf(path.nodeAt(i)));
+		}
+		response.append('\n');
+	}
+
+	private boolean startReload() {
+		CompletableFuture<Boolean> running = reload.get();
+		if (!running.isDone()) {
+			return false;
+		}
+		CompletableFuture<Boolean> next = new CompletableFuture<>();
+		if (!reload.compareAndSet(running, next)) {
+			return false;
+		}
+		model.reloadAsync(snapshotFile, nodeFile, edgeFile, hierarchyFile, background)
+			 .whenComplete((mapped, failure) -> {
+				 if (failure != null) {
+					 next.completeExceptionally(failure);
+				 } else {
+					 next.complete(mapped);
+				 }
+			 });
+		return true;
+	}
+
+	/**
+	 * @returns a future that completes when the last reload requested by RELOAD has
+	 * 	finished, or an already completed future if none was requested.
+	 */
+	public CompletableFuture<Boolean> getReload() {
+		return reload.get();
+	}
+
+}
@@ -0,0 +1,160 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * <b>SearchWorkspace</b> holds the per-node scratch arrays of a shortest-path search:
+ * tentative distances, predecessors and an IndexedMinHeap. A workspace is reused from
+ * query to query; instead of clearing its arrays, every query bumps a stamp and a
+ * node's entries are only meaningful if it was reached under the current stamp.
+ *
+ * Workspaces are not thread-safe. Use forThread to obtain the calling thread's own
+ * workspace.
+ */
+public final class SearchWorkspace {
+
+	private static final ThreadLocal<SearchWorkspace> LOCAL =
+			ThreadLocal.withInitial(() -> new SearchWorkspace(0));
+	private static final ThreadLocal<SearchWorkspace> LOCAL_REVERSE =
+			ThreadLocal.withInitial(() -> new SearchWorkspace(0));
+
+	// The arrays are package-private so that PathFinder can read and write them
+	// directly in its inner loops.
+	double[] dist;
+	double[] bound;
+	int[] pred;
+	int[] reached;
+	int[] settled;
+	int stamp;
+	int settledCount;
+	int relaxedCount;
+	final IndexedMinHeap heap;
+
+	// Representation Invariant for every SearchWorkspace ws:
+	// dist, pred, reached and settled all have the same length &&
+	// foreach v => settled[v] == stamp implies reached[v] == stamp &&
+	// foreach v with reached[v] == stamp && settled[v] != stamp => v is in heap
+	// with key dist[v], or dist[v] + bound[v] for goal-directed searches
+
+	/**
+	 * @param capacity The number of nodes the workspace must be able to hold.
+	 * @effects Constructs a new SearchWorkspace.
+	 */
+	public SearchWorkspace(int capacity) {
+		this.dist = new double[capacity];
+		this.bound = new double[capacity];
+		this.pred = new int[capacity];
+		this.reached = new int[capacity];
+		this.settled = new int[capacity];
+		this.heap = new IndexedMinHeap(capacity);
+	}
+
+	/**
+	 * @param nodeCount The number of nodes in the graph about to be searched.
+	 * @returns the calling thread's workspace, sized for nodeCount nodes.
+	 */
+	public static SearchWorkspace forThread(int nodeCount) {
+		SearchWorkspace ws = LOCAL.get();
+		ws.ensureCapacity(nodeCount);
+		return ws;
+	}
+
+	/**
+	 * @param nodeCount The number of nodes in the graph about to be searched.
+	 * @returns a second workspace of the calling thread, distinct from forThread, for
+	 * 	the backward half of a bidirectional search.
+	 */
+	public static SearchWorkspace reverseForThread(int nodeCount) {
+		SearchWorkspace ws = LOCAL_REVERSE.get();
+		ws.ensureCapacity(nodeCount);
+		return ws;
+	}
+
+	/**
+	 * @param nodeCount The number of nodes in the graph about to be searched.
+	 * @modifies this
+	 * @effects Grows the workspace if it cannot hold nodeCount nodes.
+	 */
+	public void ensureCapacity(int nodeCount) {
+		if (nodeCount > dist.length) {
+			dist = Arrays.copyOf(dist, nodeCount);
+			bound = Arrays.copyOf(bound, nodeCount);
+			pred = Arrays.copyOf(pred, nodeCount);
+			reached = Arrays.copyOf(reached, nodeCount);
+			settled = Arrays.copyOf(settled, nodeCount);
+			heap.ensureCapacity(nodeCount);
+		}
+	}
+
+	/**
+	 * @modifies this
+	 * @effects Forgets the previous search so that every node is unreached.
+	 */
+	public void reset() {
+		stamp++;
+		if (stamp == Integer.MAX_VALUE) {
+			Arrays.fill(reached, 0);
+			Arrays.fill(settled, 0);
+			stamp = 1;
+		}
+		settledCount = 0;
+		relaxedCount = 0;
+		heap.clear();
+	}
+
+	/**
+	 * @param v The index of a node.
+	 * @returns true iff v was reached by the last search.
+	 */
+	public boolean isReached(int v) {
+		return reached[v] == stamp;
+	}
+
+	/**
+	 * @param v The index of a node.
+	 * @returns true iff the last search settled v, i.e. its distance is final.
+	 */
+	public boolean isSettled(int v) {
+		return settled[v] == stamp;
+	}
+
+	/**
+	 * @param v The index of a node.
+	 * @returns the distance found for v by the last search, or positive infinity
+	 * 	if v was not reached.
+	 */
+	public double distance(int v) {
+		return reached[v] == stamp ? dist[v] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * @param v The index of a node.
+	 * @requires isReached(v)
+	 * @returns the predecessor of v on its shortest path, or -1 if v is a source.
+	 */
+	public int predecessor(int v) {
+		return pred[v];
+	}
+
+	/**
+	 * @returns the number of nodes settled by the last search.
+	 */
+	public int getSettledCount() {
+		return settledCount;
+	}
+
+	/**
+	 * @returns the number of edges the last search scanned out of the nodes it settled.
+	 */
+	public int getRelaxedCount() {
+		return relaxedCount;
+	}
+
+	/**
+	 * @returns the heap of this workspace, whose operation counts cover the last search.
+	 */
+	public IndexedMinHeap getHeap() {
+		return heap;
+	}
+
+}
@@ -0,0 +1,281 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <b>ShortestPathTreeCache</b> is a thread-safe cache of complete shortest-path trees
+ * for hot origins. Once an origin has been queried hotThreshold times, one search from
+ * it to every reachable node is run and its predecessor and distance arrays are kept,
+ * so every later query from that origin, to any destination, is answered by walking
+ * the predecessor array.
+ *
+ * The cache is bounded by the bytes its trees occupy and evicts the least recently
+ * used tree first. When the graph changes by one edge, only the trees the change
+ * affects are dropped; the others are kept for the changed graph.
+ */
+public final class ShortestPathTreeCache {
+
+	// rough per-tree overhead of the object headers and map entry
+	private static final long TREE_OVERHEAD_BYTES = 96;
+
+	private final long maxBytes;
+	private final int hotThreshold;
+	private final LinkedHashMap<Integer, Tree> trees;
+	private AtomicIntegerArray originCounts;
+	private RouteGraph graph;
+	private long bytes;
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder evictions;
+
+	// Representation Invariant for every ShortestPathTreeCache c:
+	// 0 <= bytes <= maxBytes && bytes == sum of the sizes of the trees in c.trees &&
+	// foreach tree t in c.trees => t.graph == c.graph
+
+	/**
+	 * @param maxBytes The maximum number of bytes the cached trees may occupy.
+	 * @param hotThreshold The number of queries from an origin after which its tree
+	 * 	is computed and cached.
+	 * @requires maxBytes > 0 && hotThreshold >= 1
+	 * @effects Constructs a new empty ShortestPathTreeCache.
+	 */
+	public ShortestPathTreeCache(long maxBytes, int hotThreshold) {
+		this.maxBytes = maxBytes;
+		this.hotThreshold = hotThreshold;
+		this.trees = new LinkedHashMap<>(16, 0.75f, true);
+		this.originCounts = new AtomicIntegerArray(0);
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+	}
+
+	/**
+	 * @param graph The graph that later queries will run on.
+	 * @modifies this
+	 * @effects Drops every cached tree and origin count.
+	 */
+	public synchronized void invalidate(RouteGraph graph) {
+		this.graph = graph;
+		this.trees.clear();
+		this.bytes = 0;
+		this.originCounts = new AtomicIntegerArray(graph.getNodeCount());
+	}
+
+	/**
+	 * @param graph The graph that later queries will run on, derived from the current
+	 * 	one by changing the edge from u to v.
+	 * @param u The index of the parent node of the changed edge.
+	 * @param v The index of the child node of the changed edge.
+	 * @param oldWeight The weight of the edge before the change, or NaN if it was added.
+	 * @param newWeight The weight of the edge after the change, or NaN if it was removed.
+	 * @modifies this
+	 * @effects Drops the trees that route through the edge, and when the edge got
+	 * 	shorter or was added, the trees that it now offers a shorter route to v, and keeps
+	 * 	the others for graph, together with the origin counts.
+	 */
+	public synchronized void edgeChanged(RouteGraph graph, int u, int v, double oldWeight, double newWeight) {
+		boolean shorter = Double.isNaN(oldWeight) ? !Double.isNaN(newWeight) : newWeight < oldWeight;
+		Iterator<Tree> it = trees.values().iterator();
+		while (it.hasNext()) {
+			Tree tree = it.next();
+			if (tree.predecessor(v) == u || (shorter && tree.distance(u) + newWeight < tree.distance(v))) {
+				it.remove();
+				bytes -= tree.bytes();
+			}
+		}
+		graphReplaced(graph);
+	}
+
+	/**
+	 * @param graph The graph that later queries will run on, with the same routes as
+	 * 	the current one and possibly more nodes, appended without any routes.
+	 * @modifies this
+	 * @effects Keeps every cached tree and origin count for graph.
+	 */
+	public synchronized void graphReplaced(RouteGraph graph) {
+		for (Map.Entry<Integer, Tree> entry : trees.entrySet()) {
+			entry.setValue(entry.getValue().forGraph(graph));
+		}
+		int n = graph.getNodeCount();
+		if (n > originCounts.length()) {
+			// grow with headroom, so that adding airports one at a time does not copy
+			// the counts every time
+			AtomicIntegerArray counts = new AtomicIntegerArray(Math.max(n, originCounts.length() * 9 / 8));
+			for (int i = 0; i < originCounts.length(); i++) {
+				counts.set(i, originCounts.get(i));
+			}
+			originCounts = counts;
+		}
+		this.graph = graph;
+	}
+
+	/**
+	 * @param graph The graph to search.
+	 * @param source The index of the start node.
+	 * @param target The index of the destination node.
+	 * @modifies this
+	 * @effects Counts the query against source, and computes and caches the tree of
+	 * 	source if source has just become hot.
+	 * @returns the shortest route from source to target taken from the tree of source,
+	 * 	RouteCache.NO_ROUTE if the tree shows there is none, or null if source is not
+	 * 	hot yet and the caller has to search.
+	 */
+	public RoutePath find(RouteGraph graph, int source, int target) {
+		Tree tree = lookup(graph, source);
+		if (tree != null) {
+			hits.increment();
+			return tree.route(target, false);
+		}
+		misses.increment();
+		AtomicIntegerArray counts = countsFor(graph);
+		if (counts == null || counts.incrementAndGet(source) < hotThreshold) {
+			return null;
+		}
+		tree = Tree.compute(graph, source);
+		store(tree);
+		return tree.route(target, true);
+	}
+
+	private synchronized Tree lookup(RouteGraph graph, int source) {
+		if (graph != this.graph) {
+			return null;
+		}
+		return trees.get(source);
+	}
+
+	private synchronized AtomicIntegerArray countsFor(RouteGraph graph) {
+		return graph == this.graph ? originCounts : null;
+	}
+
+	private synchronized void store(Tree tree) {
+		if (tree.graph != this.graph || tree.bytes() > maxBytes) {
+			return;
+		}
+		Tree old = trees.put(tree.source, tree);
+		if (old != null) {
+			bytes -= old.bytes();
+		}
+		bytes += tree.bytes();
+		Iterator<Tree> eldest = trees.values().iterator();
+		while (bytes > maxBytes && eldest.hasNext()) {
+			Tree evicted = eldest.next();
+			eldest.remove();
+			bytes -= evicted.bytes();
+			evictions.increment();
+		}
+	}
+
+	/**
+	 * @returns the number of trees currently cached.
+	 */
+	public synchronized int size() {
+		return trees.size();
+	}
+
+	/**
+	 * @returns the number of bytes the cached trees occupy.
+	 */
+	public synchronized long getByteCount() {
+		return bytes;
+	}
+
+	/**
+	 * @returns the number of queries answered from a cached tree.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @returns the number of queries whose origin had no cached tree.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @returns the number of trees evicted to stay within the byte budget.
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * <b>Tree</b> is an immutable shortest-path tree: the distance to and predecessor
+	 * of every node, as seen from one source.
+	 */
+	private static final class Tree {
+
+		final RouteGraph graph;
+		final int source;
+		final double[] dist;
+		final int[] pred;
+		final int settledCount;
+
+		private Tree(RouteGraph graph, int source, double[] dist, int[] pred, int settledCount) {
+			this.graph = graph;
+			this.source = source;
+			this.dist = dist;
+			this.pred = pred;
+			this.settledCount = settledCount;
+		}
+
+		static Tree compute(RouteGraph graph, int source) {
+			int n = graph.getNodeCount();
+			SearchWorkspace ws = SearchWorkspace.forThread(n);
+			PathFinder.dijkstra(graph, ws, source, -1);
+			double[] dist = new double[n];
+			int[] pred = new int[n];
+			Arrays.fill(pred, -1);
+			for (int v = 0; v < n; v++) {
+				dist[v] = ws.distance(v);
+				if (ws.isReached(v)) {
+					pred[v] = ws.predecessor(v);
+				}
+			}
+			return new Tree(graph, source, dist, pred, ws.getSettledCount());
+		}
+
+		// A tree made before nodes were added to the graph does not reach them.
+		Tree forGraph(RouteGraph graph) {
+			return new Tree(graph, source, dist, pred, settledCount);
+		}
+
+		double distance(int v) {
+			return v < dist.length ? dist[v] : Double.POSITIVE_INFINITY;
+		}
+
+		int predecessor(int v) {
+			return v < pred.length ? pred[v] : -1;
+		}
+
+		long bytes() {
+			return TREE_OVERHEAD_BYTES + (long) dist.length * (Double.BYTES + Integer.BYTES);
+		}
+
+		// A route from a tree that was just computed reports the search that built it.
+		RoutePath route(int target, boolean fresh) {
+			if (distance(target) == Double.POSITIVE_INFINITY) {
+				return RouteCache.NO_ROUTE;
+			}
+			int length = 1;
+			for (int v = target; v != source; v = pred[v]) {
+				length++;
+			}
+			int[] nodes = new int[length];
+			int v = target;
+			for (int i = length - 1; i >= 0; i--) {
+				nodes[i] = v;
+				v = pred[v];
+			}
+			return new RoutePath(nodes, dist[target], fresh ? settledCount : 0, !fresh);
+		}
+
+	}
+
+}
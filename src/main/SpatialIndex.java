@@ -0,0 +1,317 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * <b>SpatialIndex</b> is an immutable k-d tree over the airport coordinates of a
+ * RouteGraph that answers k-nearest and radius queries. Coordinates are stored as unit
+ * vectors in three dimensions, like those of GreatCircle, so that the straight-line
+ * chord between two points grows with their great-circle distance everywhere on the
+ * sphere: a query near the poles or across the antimeridian needs no special case.
+ *
+ * The tree is implicit. Its nodes are the slots of flat arrays, and the subtree over
+ * the slots [lo, hi) has its splitting point in the middle slot, with the points below
+ * the split on one side and the rest on the other. Building it takes O(n log n) time.
+ * A query allocates only its result.
+ */
+public final class SpatialIndex {
+
+	private final int[] nodes;
+	private final double[] xyz;
+	private final byte[] axes;
+
+	// Abstraction Function:
+	// SpatialIndex, s, represents the set of points {(nodes[i], xyz[3i .. 3i + 2])}, the
+	// graph nodes and their unit vectors, organised as a k-d tree.
+	//
+	// Representation Invariant for every SpatialIndex s:
+	// xyz.length == 3 * nodes.length && axes.length == nodes.length &&
+	// foreach subtree over [lo, hi) with mid == (lo + hi) >>> 1 and a == axes[mid] =>
+	// 		every slot in [lo, mid) has coordinate a <= that of mid &&
+	// 		every slot in (mid, hi) has coordinate a >= that of mid
+
+	/**
+	 * @param graph The graph whose nodes are indexed.
+	 * @effects Constructs a new SpatialIndex over every node of graph.
+	 */
+	public SpatialIndex(RouteGraph graph) {
+		int n = graph.getNodeCount();
+		this.nodes = new int[n];
+		this.xyz = new double[3 * n];
+		this.axes = new byte[n];
+		for (int i = 0; i < n; i++) {
+			nodes[i] = i;
+			unitVector(graph.latitude(i), graph.longitude(i), xyz, 3 * i);
+		}
+		build(0, n);
+	}
+
+	private static void unitVector(double latitude, double longitude, double[] into, int at) {
+		double phi = Math.toRadians(latitude);
+		double lambda = Math.toRadians(longitude);
+		into[at] = Math.cos(phi) * Math.cos(lambda);
+		into[at + 1] = Math.cos(phi) * Math.sin(lambda);
+		into[at + 2] = Math.sin(phi);
+	}
+
+	// Splits [lo, hi) on the axis along which its points spread furthest.
+	private void build(int lo, int hi) {
+		if (hi - lo <= 1) {
+			return;
+		}
+		int axis = 0;
+		double widest = -1.0;
+		for (int a = 0; a < 3; a++) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = lo; i < hi; i++) {
+				min = Math.min(min, xyz[3 * i + a]);
+				max = Math.max(max, xyz[3 * i + a]);
+			}
+			if (max - min > widest) {
+				widest = max - min;
+				axis = a;
+			}
+		}
+		int mid = (lo + hi) >>> 1;
+		select(lo, hi - 1, mid, axis);
+		axes[mid] = (byte) axis;
+		build(lo, mid);
+		build(mid + 1, hi);
+	}
+
+	// Quickselect: reorders [left, right] so that slot k holds the point that would be
+	// there if the slots were sorted by coordinate axis.
+	private void select(int left, int right, int k, int axis) {
+		while (left < right) {
+			double pivot = xyz[3 * ((left + right) >>> 1) + axis];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (xyz[3 * i + axis] < pivot) {
+					i++;
+				}
+				while (xyz[3 * j + axis] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void swap(int i, int j) {
+		int node = nodes[i];
+		nodes[i] = nodes[j];
+		nodes[j] = node;
+		for (int a = 0; a < 3; a++) {
+			double c = xyz[3 * i + a];
+			xyz[3 * i + a] = xyz[3 * j + a];
+			xyz[3 * j + a] = c;
+		}
+	}
+
+	/**
+	 * @returns the number of points in the index.
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * @param radiusKm A great-circle distance in kilometres.
+	 * @requires radiusKm >= 0
+	 * @returns the squared chord between two points radiusKm apart.
+	 */
+	private static double squaredChord(double radiusKm) {
+		double chord = 2.0 * Math.sin(Math.min(radiusKm / GreatCircle.EARTH_RADIUS_KM, Math.PI) * 0.5);
+		return chord * chord;
+	}
+
+	/**
+	 * @param latitude The latitude of the query point, in degrees.
+	 * @param longitude The longitude of the query point, in degrees.
+	 * @param k The number of nodes wanted.
+	 * @requires k >= 0
+	 * @returns the k nodes nearest to the point, or every node if there are fewer,
+	 * 	nearest first.
+	 */
+	public int[] nearest(double latitude, double longitude, int k) {
+		int count = Math.min(k, nodes.length);
+		double[] query = new double[3];
+		unitVector(latitude, longitude, query, 0);
+		// a max-heap on squared chord of the best count points seen so far
+		double[] heapKeys = new double[count];
+		int[] heapNodes = new int[count];
+		int size = count == 0 ? 0 : nearest(0, nodes.length, query, heapKeys, heapNodes, 0);
+		int[] result = Arrays.copyOf(heapNodes, size);
+		sortByKey(Arrays.copyOf(heapKeys, size), result, 0, size - 1);
+		return result;
+	}
+
+	private int nearest(int lo, int hi, double[] query, double[] heapKeys, int[] heapNodes, int size) {
+		if (lo >= hi) {
+			return size;
+		}
+		int mid = (lo + hi) >>> 1;
+		double d = squaredDistance(mid, query);
+		if (size < heapKeys.length) {
+			heapKeys[size] = d;
+			heapNodes[size] = nodes[mid];
+			siftUp(heapKeys, heapNodes, size++);
+		} else if (d < heapKeys[0]) {
+			heapKeys[0] = d;
+			heapNodes[0] = nodes[mid];
+			siftDown(heapKeys, heapNodes, size);
+		}
+		double diff = query[axes[mid]] - xyz[3 * mid + axes[mid]];
+		boolean lowFirst = diff < 0;
+		size = lowFirst ? nearest(lo, mid, query, heapKeys, heapNodes, size)
+				: nearest(mid + 1, hi, query, heapKeys, heapNodes, size);
+		// the far side can only help if the splitting plane is closer than the worst kept point
+		if (size < heapKeys.length || diff * diff < heapKeys[0]) {
+			size = lowFirst ? nearest(mid + 1, hi, query, heapKeys, heapNodes, size)
+					: nearest(lo, mid, query, heapKeys, heapNodes, size);
+		}
+		return size;
+	}
+
+	/**
+	 * @param latitude The latitude of the query point, in degrees.
+	 * @param longitude The longitude of the query point, in degrees.
+	 * @param radiusKm The largest great-circle distance, in kilometres, to include.
+	 * @returns the nodes within radiusKm of the point, nearest first; none if radiusKm
+	 * 	is negative or not a number.
+	 */
+	public int[] within(double latitude, double longitude, double radiusKm) {
+		if (!(radiusKm >= 0)) {
+			return new int[0];
+		}
+		double[] query = new double[3];
+		unitVector(latitude, longitude, query, 0);
+		double limit = squaredChord(radiusKm);
+		int[] found = new int[16];
+		double[] keys = new double[16];
+		int count = 0;
+		// an explicit stack of [lo, hi) ranges; the tree is at most 64 levels deep
+		int[] stack = new int[2 * 64];
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = nodes.length;
+		while (top > 0) {
+			int hi = stack[--top];
+			int lo = stack[--top];
+			if (lo >= hi) {
+				continue;
+			}
+			int mid = (lo + hi) >>> 1;
+			double d = squaredDistance(mid, query);
+			if (d <= limit) {
+				if (count == found.length) {
+					found = Arrays.copyOf(found, 2 * count);
+					keys = Arrays.copyOf(keys, 2 * count);
+				}
+				found[count] = nodes[mid];
+				keys[count++] = d;
+			}
+			double diff = query[axes[mid]] - xyz[3 * mid + axes[mid]];
+			if (diff <= 0 || diff * diff <= limit) {
+				stack[top++] = lo;
+				stack[top++] = mid;
+			}
+			if (diff >= 0 || diff * diff <= limit) {
+				stack[top++] = mid + 1;
+				stack[top++] = hi;
+			}
+		}
+		sortByKey(keys, found, 0, count - 1);
+		return Arrays.copyOf(found, count);
+	}
+
+	private double squaredDistance(int slot, double[] query) {
+		double dx = xyz[3 * slot] - query[0];
+		double dy = xyz[3 * slot + 1] - query[1];
+		double dz = xyz[3 * slot + 2] - query[2];
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	private static void siftUp(double[] keys, int[] values, int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (keys[parent] >= keys[i]) {
+				return;
+			}
+			swap(keys, values, parent, i);
+			i = parent;
+		}
+	}
+
+	private static void siftDown(double[] keys, int[] values, int size) {
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				return;
+			}
+			if (child + 1 < size && keys[child + 1] > keys[child]) {
+				child++;
+			}
+			if (keys[i] >= keys[child]) {
+				return;
+			}
+			swap(keys, values, i, child);
+			i = child;
+		}
+	}
+
+	// Sorts values[left .. right] by ascending keys, moving the keys along.
+	private static void sortByKey(double[] keys, int[] values, int left, int right) {
+		while (right - left > 16) {
+			double pivot = keys[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (keys[i] < pivot) {
+					i++;
+				}
+				while (keys[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(keys, values, i++, j--);
+				}
+			}
+			// recurse into the smaller half to bound the stack depth
+			if (j - left < right - i) {
+				sortByKey(keys, values, left, j);
+				left = i;
+			} else {
+				sortByKey(keys, values, i, right);
+				right = j;
+			}
+		}
+		for (int i = left + 1; i <= right; i++) {
+			for (int j = i; j > left && keys[j - 1] > keys[j]; j--) {
+				swap(keys, values, j - 1, j);
+			}
+		}
+	}
+
+	private static void swap(double[] keys, int[] values, int i, int j) {
+		double key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		int value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+
+}
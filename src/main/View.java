@@ -2,6 +2,7 @@ package main;
 
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 
 public class View {
 	
@@ -16,6 +17,15 @@ public class View {
 	
 	
 	public static void shortestPath(AirlineModel model, String id1, String id2) {
+		shortestPath(model, id1, id2, model.getQueryMode());
+	}
+	
+	public static void shortestPath(AirlineModel model, String id1, String id2, QueryMode mode) {
+		shortestPath(model, id1, id2, mode, null);
+	}
+	
+	public static void shortestPath(AirlineModel model, String id1, String id2, QueryMode mode,
+									CarrierFilter filter) {
 		boolean invalidChar = false;
 		if (!model.containsNameOrId(id1)) {
 			System.out.println("Unknown building: [" + id1 + "]");
@@ -27,7 +37,8 @@ public class View {
 		}
 		if (invalidChar) return;
 		
-		LinkedList<String[]> path = model.Dijkstra(id1, id2);
+		RoutePath route = id1.equals(id2) ? null : model.findRoute(id1, id2, mode, filter);
+		LinkedList<String[]> path = id1.equals(id2) ? new LinkedList<>() : model.toEdgeList(route);
 		
 		String name1, name2;
 		name1 = model.getNameById(id1);
@@ -48,12 +59,278 @@ public class View {
 			System.out.println("\tFlight from " + start + " to " + destination + " with distance " + edge[2]);
 			totalDistance += Double.parseDouble(edge[2]);
 		}
-		System.out.println(String.format("Total distance: %.3f pixel units.", totalDistance));
+		System.out.println(String.format("Total distance: %.3f km.", totalDistance));
+		if (route != null && route.isCached()) {
+			System.out.println("Served from cache.");
+		} else if (route != null) {
+			System.out.println(String.format("Settled %d airports using %s.", route.getSettledCount(), mode));
+		}
 		
 	}
 	
+	public static void hopLimitedPath(AirlineModel model, String id1, String id2, int maxLegs) {
+		if (!model.containsNameOrId(id1) || !model.containsNameOrId(id2)) {
+			System.out.println("Unknown building: [" + (model.containsNameOrId(id1) ? id2 : id1) + "]");
+			return;
+		}
+		String name1 = model.getNameById(id1);
+		String name2 = model.getNameById(id2);
+		RoutePath limited = model.findRouteWithinLegs(id1, id2, maxLegs);
+		RoutePath unconstrained = id1.equals(id2) ? null : model.findRoute(id1, id2, model.getQueryMode());
+		if (limited == null) {
+			System.out.println(String.format("There is no path from %s to %s with at most %d legs.",
+					name1, name2, maxLegs));
+		} else {
+			System.out.println("Path from " + name1 + " to " + name2 + " with at most " + maxLegs + " legs:");
+			for (String[] edge : model.toEdgeList(limited)) {
+				System.out.println("\tFlight from " + model.getNameById(edge[0]) + " to "
+						+ model.getNameById(edge[1]) + " with distance " + edge[2]);
+			}
+			System.out.println(String.format("Total distance: %.3f km in %d legs.",
+					limited.getCost(), limited.getLegCount()));
+		}
+		if (unconstrained == null) {
+			System.out.println("Without a leg limit: no path.");
+		} else {
+			System.out.println(String.format("Without a leg limit: %.3f km in %d legs.",
+					unconstrained.getCost(), unconstrained.getLegCount()));
+		}
+	}
+	
+	public static void alternativePaths(AirlineModel model, String id1, String id2, int k) {
+		if (!model.containsNameOrId(id1) || !model.containsNameOrId(id2)) {
+			System.out.println("Unknown building: [" + (model.containsNameOrId(id1) ? id2 : id1) + "]");
+			return;
+		}
+		String name1 = model.getNameById(id1);
+		String name2 = model.getNameById(id2);
+		long start = System.nanoTime();
+		List<RoutePath> routes = model.findRoutes(id1, id2, k);
+		long elapsed = System.nanoTime() - start;
+		if (routes.isEmpty()) {
+			System.out.println(String.format("There is no path from %s to %s.", name1, name2));
+			return;
+		}
+		System.out.println("Shortest paths from " + name1 + " to " + name2 + ":");
+		int rank = 1;
+		for (RoutePath route : routes) {
+			StringBuilder stops = new StringBuilder();
+			for (String[] edge : model.toEdgeList(route)) {
+				stops.append(" -> ").append(model.getNameById(edge[1]));
+			}
+			System.out.println(String.format("\t%d. %.3f km in %d legs: %s%s", rank++, route.getCost(),
+					route.getLegCount(), name1, stops));
+		}
+		System.out.println(String.format("Found %d paths in %.1f ms.", routes.size(), elapsed / 1e6));
+	}
+	
+	public static void areaPath(AirlineModel model, String place1, double radius1, String place2, double radius2) {
+		double[] origin = positionOf(model, place1);
+		double[] destination = positionOf(model, place2);
+		if (origin == null || destination == null) {
+			System.out.println("Unknown place: [" + (origin == null ? place1 : place2) + "]");
+			return;
+		}
+		List<String> origins = model.airportsWithin(origin[0], origin[1], radius1);
+		List<String> destinations = model.airportsWithin(destination[0], destination[1], radius2);
+		System.out.println(String.format("%d airports within %.0f km of the origin, %d within %.0f km of the destination.",
+				origins.size(), radius1, destinations.size(), radius2));
+		if (origins.isEmpty() || destinations.isEmpty()) {
+			double[] empty = origins.isEmpty() ? origin : destination;
+			String nearest = model.nearestAirports(empty[0], empty[1], 1).get(0);
+			double[] at = model.positionOf(nearest);
+			System.out.println(String.format("The nearest airport to the %s is %s, %.0f km away.",
+					origins.isEmpty() ? "origin" : "destination", model.getNameById(nearest),
+					GreatCircle.distanceKm(empty[0], empty[1], at[0], at[1])));
+			return;
+		}
+		long start = System.nanoTime();
+		RoutePath route = model.findRouteBetweenAreas(origin[0], origin[1], radius1,
+													  destination[0], destination[1], radius2);
+		long elapsed = System.nanoTime() - start;
+		if (route == null) {
+			System.out.println("There is no path between the two areas.");
+			return;
+		}
+		System.out.println("Path from " + model.getNameById(model.getGraph().idOf(route.nodeAt(0))) + " to "
+				+ model.getNameById(model.getGraph().idOf(route.nodeAt(route.getNodeCount() - 1))) + ":");
+		for (String[] edge : model.toEdgeList(route)) {
+			System.out.println("\tFlight from " + model.getNameById(edge[0]) + " to "
+					+ model.getNameById(edge[1]) + " with distance " + edge[2]);
+		}
+		System.out.println(String.format("Total distance: %.3f km; one search settled %d airports in %.1f ms.",
+				route.getCost(), route.getSettledCount(), elapsed / 1e6));
+	}
+	
+	// Reads "latitude,longitude", or an airport id or code, as a position in degrees.
+	private static double[] positionOf(AirlineModel model, String place) {
+		String[] parts = place.split(",");
+		if (parts.length == 2) {
+			try {
+				return new double[] {Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim())};
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return model.positionOf(idOf(model, place));
+	}
+	
+	public static void completions(AirlineModel model, String text) {
+		NameIndex index = model.getNameIndex();
+		AirportStore airports = model.getAirports();
+		NameIndex.Completions found = NameIndex.Completions.forThread();
+		long start = System.nanoTime();
+		index.complete(text, 10, found);
+		long elapsed = System.nanoTime() - start;
+		String[] fields = {"name", "city", "IATA", "ICAO"};
+		for (int i = 0; i < found.size(); i++) {
+			int a = found.airport(i);
+			String iata = airports.get(a, AirportStore.IATA);
+			System.out.println(String.format("\t%d. %s, %s%s - %s, by %s", i + 1, airports.name(a),
+					airports.city(a), iata.isEmpty() ? "" : " (" + iata + ")", model.getGraph().idOf(a),
+					fields[found.field(i)]));
+		}
+		System.out.println(String.format("Found %d airports%s in %.1f us.", found.size(),
+				found.isFuzzy() ? " allowing for typos" : "", elapsed / 1e3));
+	}
+	
+	public static void reachable(AirlineModel model, String place, double maxDistance) {
+		String id = idOf(model, place);
+		long start = System.nanoTime();
+		Reachability.ReachableSet reached = model.reachableWithin(id, maxDistance);
+		long elapsed = System.nanoTime() - start;
+		reachable(model, place, reached, String.format("%.0f km", maxDistance), elapsed);
+	}
+	
+	public static void reachable(AirlineModel model, String place, int maxLegs) {
+		String id = idOf(model, place);
+		long start = System.nanoTime();
+		Reachability.ReachableSet reached = model.reachableWithinLegs(id, maxLegs);
+		long elapsed = System.nanoTime() - start;
+		reachable(model, place, reached, maxLegs + (maxLegs == 1 ? " leg" : " legs"), elapsed);
+	}
+	
+	private static void reachable(AirlineModel model, String place, Reachability.ReachableSet reached,
+								  String budget, long elapsed) {
+		if (reached == null) {
+			System.out.println("Unknown building: [" + place + "]");
+			return;
+		}
+		RouteGraph graph = model.getGraph();
+		for (int i = 1; i < reached.size(); i++) {
+			String id = graph.idOf(reached.node(i));
+			String distance = reached.hasDistances() ? String.format("%.3f km, ", reached.distance(i)) : "";
+			System.out.println(model.getNameById(id) + " - " + id + " (" + distance + reached.legs(i)
+					+ (reached.legs(i) == 1 ? " leg)" : " legs)"));
+		}
+		System.out.println(String.format("%d airports are reachable from %s within %s, found in %.1f ms.",
+				reached.size() - 1, model.getNameById(graph.idOf(reached.node(0))), budget, elapsed / 1e6));
+	}
+	
+	// Reads an airport code, or else an airport id.
+	private static String idOf(AirlineModel model, String place) {
+		String id = model.getIdByCode(place.trim().toUpperCase());
+		return id != null ? id : place.trim();
+	}
+	
+	public static void centrality(AirlineModel model, List<Centrality.Result> runs, String csvFile) {
+		Centrality.Result result = runs.get(runs.size() - 1);
+		RouteGraph graph = model.getGraph();
+		int[] ranked = result.ranked();
+		for (int i = 0; i < Math.min(10, ranked.length); i++) {
+			String id = graph.idOf(ranked[i]);
+			System.out.println(String.format("\t%d. %s - %s: betweenness %.0f, closeness %s", i + 1,
+					model.getNameById(id), id, result.betweenness(ranked[i]),
+					Double.isNaN(result.closeness(ranked[i])) ? "-" : String.format("%.4g", result.closeness(ranked[i]))));
+		}
+		for (Centrality.Result run : runs) {
+			System.out.println(String.format("%s run from %d airports on %d threads: %.1f ms, %.2fx the first run.",
+					run.isSampled() ? "Sampled" : "Exact", run.getSourceCount(), run.getParallelism(),
+					run.getNanos() / 1e6, (double) runs.get(0).getNanos() / run.getNanos()));
+		}
+		System.out.println("Ranking written to " + csvFile + ".");
+	}
+	
+	public static void airportsReaching(AirlineModel model, String id) {
+		if (!model.containsNameOrId(id)) {
+			System.out.println("Unknown building: [" + id + "]");
+			return;
+		}
+		List<String> airports = model.getAirportsReaching(id);
+		for (String airport : airports) {
+			System.out.println(model.getNameById(airport) + " - " + airport);
+		}
+		System.out.println(String.format("%d airports can reach %s.", airports.size(), model.getNameById(id)));
+	}
+	
+	public static void cacheStats(AirlineModel model) {
+		RouteCache cache = model.getRouteCache();
+		System.out.println(String.format("Route cache: %d entries, %d hits, %d misses, %d evictions, generation %d.",
+				cache.size(), cache.getHitCount(), cache.getMissCount(), cache.getEvictionCount(),
+				cache.getGeneration()));
+		ShortestPathTreeCache trees = model.getTreeCache();
+		System.out.println(String.format("Tree cache: %d trees in %.1f MB, %d hits, %d misses, %d evictions.",
+				trees.size(), trees.getByteCount() / 1048576.0, trees.getHitCount(), trees.getMissCount(),
+				trees.getEvictionCount()));
+	}
+	
+	public static void metrics(AirlineModel model) {
+		for (String line : model.getMetrics().snapshot()) {
+			System.out.println(line);
+		}
+	}
+	
+	public static void metricsEnabled(AirlineModel model) {
+		System.out.println("Metrics " + (model.getMetrics().isEnabled() ? "on." : "off."));
+	}
+	
+	public static void metricsExported(String metricsFile) {
+		System.out.println("Metrics written to " + metricsFile + ".");
+	}
+	
 	public static void listCommands() {
-		System.out.println("r");
+		System.out.println("b - list airports");
+		System.out.println("r - shortest route between two airports");
+		System.out.println("h - shortest route with at most a number of legs");
+		System.out.println("k - several shortest alternative routes between two airports");
+		System.out.println("o - shortest route flown by chosen airlines or alliances");
+		System.out.println("a - list airports that can reach an airport");
+		System.out.println("n - shortest route between any airports near two places");
+		System.out.println("f - find airports by the start of a name, city or code");
+		System.out.println("i - list airports reachable within a distance or a number of legs");
+		System.out.println("x - rank hub airports by betweenness and closeness centrality");
+		System.out.println("s - set the routing mode");
+		System.out.println("l - prepare landmarks for the alt routing mode");
+		System.out.println("p - prepare the contraction hierarchy for the ch routing mode");
+		System.out.println("c - show route and tree cache statistics");
+		System.out.println("t - show, enable, reset or export query and load metrics");
+		System.out.println("e - export a binary snapshot of the airport data");
+		System.out.println("m - list commands");
+		System.out.println("q - quit");
+	}
+	
+	public static void queryMode(AirlineModel model) {
+		System.out.println("Routing mode: " + model.getQueryMode());
+	}
+	
+	public static void landmarksReady(AirlineModel model) {
+		System.out.println("Landmarks " + (model.hasLandmarks() ? "ready." : "unavailable."));
+	}
+	
+	public static void snapshotExported(String snapshotFile) {
+		System.out.println("Snapshot written to " + snapshotFile + ".");
+	}
+	
+	public static void serverStarted(int port) {
+		System.out.println("Serving route queries on port " + port + ".");
+	}
+	
+	public static void hierarchyReady(AirlineModel model) {
+		System.out.println("Contraction hierarchy " + (model.hasHierarchy() ? "ready." : "unavailable."));
+	}
+	
+	public static void unknownMode(String mode) {
+		System.out.println("Unknown routing mode: [" + mode + "]");
 	}
 	
 	public static void unknownCommand() {